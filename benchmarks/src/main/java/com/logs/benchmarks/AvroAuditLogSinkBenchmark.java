@@ -0,0 +1,71 @@
+package com.logs.benchmarks;
+
+import com.logs.AuditLogRecord;
+import com.logs.AvroAuditLogSink;
+import com.logs.OutputOptions;
+import com.logs.S3LogParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AvroAuditLogSinkBenchmark class measures writing parsed audit logs into an avro file with every codec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AvroAuditLogSinkBenchmark {
+
+    private static final int AUDIT_LOG_COUNT = 4096;
+
+    @Param({"null", "deflate", "snappy", "zstd"})
+    public String codec;
+
+    private AuditLogRecord[] auditLogRecords;
+    private int[] auditLogLengths;
+    private int next;
+    private File avroFile;
+    private AvroAuditLogSink avroAuditLogSink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] auditLogs = BenchmarkData.auditLogs(BenchmarkData.Input.GENERATED, AUDIT_LOG_COUNT, 42);
+        S3LogParser s3LogParser = new S3LogParser();
+        auditLogRecords = new AuditLogRecord[AUDIT_LOG_COUNT];
+        for (int i = 0; i < AUDIT_LOG_COUNT; i++) {
+            auditLogRecords[i] = s3LogParser.parseAuditLogRecord(auditLogs[i]);
+        }
+        auditLogLengths = BenchmarkData.byteLengths(auditLogs);
+        avroFile = File.createTempFile("AvroAuditLogSinkBenchmark", ".avro");
+    }
+
+    /**
+     * Every iteration writes a new file, so the file doesn't grow for the whole run.
+     */
+    @Setup(Level.Iteration)
+    public void openSink() throws IOException {
+        avroAuditLogSink = new AvroAuditLogSink(avroFile, false, new OutputOptions().setAvroCodec(codec));
+    }
+
+    @Benchmark
+    public void write(ByteCounter byteCounter) throws IOException {
+        next = (next + 1) & (AUDIT_LOG_COUNT - 1);
+        avroAuditLogSink.write(auditLogRecords[next]);
+        byteCounter.bytes += auditLogLengths[next];
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSink() throws IOException {
+        avroAuditLogSink.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        avroFile.delete();
+    }
+}
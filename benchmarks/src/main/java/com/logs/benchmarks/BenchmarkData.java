@@ -0,0 +1,124 @@
+package com.logs.benchmarks;
+
+import com.logs.AuditLogGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * BenchmarkData class builds the inputs of the benchmarks, either with {@link AuditLogGenerator},
+ * so the benchmarks run on the same data as the scale tests, or from a real log entry
+ * with a unique request id and a spread of timestamps, principals and paths on every line.
+ */
+public final class BenchmarkData {
+
+    /**
+     * Where the audit logs of a benchmark come from.
+     */
+    public enum Input {
+        /**
+         * Audit logs of {@link AuditLogGenerator}.
+         */
+        GENERATED,
+        /**
+         * Variations of {@link #SAMPLE_LOG_ENTRY}.
+         */
+        SAMPLE
+    }
+
+    /**
+     * A real log entry, the same as in TestS3LogParser; the upper case placeholders are replaced on every line.
+     */
+    static final String SAMPLE_LOG_ENTRY =
+            "183c9826b45486e485693808f38e2c4071004bf5dfd4c3ab210f0a21a4000000 bucket-london"
+                    + " [13/May/2021:11:SECOND +0000] 109.157.171.174 arn:aws:iam::152813717700:user/dev REQUESTID"
+                    + " REST.PUT.OBJECT fork-0001/test/PATH"
+                    + " \"PUT /fork-0001/test/PATH HTTP/1.1\" 200 - - 794 55 17"
+                    + " \"https://audit.example.org/hadoop/1/op_create/e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278/"
+                    + "?op=op_create&p1=fork-0001/test/PATH&pr=PRINCIPAL&ps=2eac5a04-2153-48db-896a-09bc9a2fd132"
+                    + "&id=e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278&t0=154&fs=e8ede3c7-8506-4a43-8268-fe8fcbb510a4&t1=156"
+                    + "&ts=1620905165700\" \"Hadoop 3.4.0-SNAPSHOT, java/1.8.0_282 vendor/AdoptOpenJDK\" -"
+                    + " TrIqtEYGWAwvu0h1N9WJKyoqM0TyHUaY+ZZBwP2yNf2qQp1Z/0= SigV4 ECDHE-RSA-AES128-GCM-SHA256 AuthHeader"
+                    + " bucket-london.s3.eu-west-2.amazonaws.com TLSv1.2";
+
+    private static final String[] PRINCIPALS = {"alice", "bob", "carol", "dave"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * auditLogs method builds audit logs in timestamp order
+     * @param input where the audit logs come from
+     * @param count number of audit logs
+     * @param seed seed of the random values, the same seed gives the same audit logs
+     * @return the audit logs
+     */
+    public static String[] auditLogs(Input input, int count, long seed) {
+        if (input == Input.GENERATED) {
+            return new AuditLogGenerator().setSeed(seed).auditLogs(count);
+        }
+        Random random = new Random(seed);
+        String[] auditLogs = new String[count];
+        for (int i = 0; i < count; i++) {
+            int second = i * 60 / Math.max(1, count);
+            auditLogs[i] = SAMPLE_LOG_ENTRY
+                    .replace("SECOND", String.format("26:%02d", second))
+                    .replace("REQUESTID", String.format("%016X", random.nextLong()))
+                    .replace("PATH", "testFile" + random.nextInt(1000))
+                    .replace("PRINCIPAL", PRINCIPALS[random.nextInt(PRINCIPALS.length)]);
+        }
+        return auditLogs;
+    }
+
+    /**
+     * byteLengths method measures the values in bytes, as they are in an audit log file, for the MB/s of the benchmarks
+     * @param values these are the values, e.g. audit logs
+     * @return the number of UTF-8 bytes of every value
+     */
+    public static int[] byteLengths(String[] values) {
+        int[] byteLengths = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            byteLengths[i] = values[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+        return byteLengths;
+    }
+
+    /**
+     * referrerHeader method finds the referrer header of an audit log
+     * @param auditLog this is an audit log built by {@link #auditLogs(Input, int, long)}
+     * @return the quoted referrer header
+     */
+    public static String referrerHeader(String auditLog) {
+        int start = auditLog.indexOf("\"https://");
+        return auditLog.substring(start, auditLog.indexOf('"', start + 1) + 1);
+    }
+
+    /**
+     * writeAuditLogFiles method writes a directory of generated audit log files, every file sorted by timestamp
+     * @param directory this is the directory, it is created if needed
+     * @param files number of files
+     * @param totalBytes approximate number of bytes of all the files together
+     * @param seed seed of the random values
+     * @return number of bytes written
+     * @throws IOException
+     */
+    public static long writeAuditLogFiles(File directory, int files, long totalBytes, long seed) throws IOException {
+        return new AuditLogGenerator().setSeed(seed).setFiles(files).setTotalBytes(totalBytes).writeAuditLogFiles(directory);
+    }
+
+    /**
+     * deleteDirectory method deletes a directory of files
+     * @param directory this is the directory
+     */
+    public static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,53 @@
+package com.logs.benchmarks;
+
+import com.logs.Merger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MergerBenchmark class measures merging a directory of audit log files into 'AuditLogFile',
+ * by appending the files and in timestamp order.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean timestampOrder;
+
+    @Param({"16"})
+    public int files;
+
+    @Param({"67108864"})
+    public long totalBytes;
+
+    private final Merger merger = new Merger();
+    private File directory;
+    private long bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("MergerBenchmark").toFile();
+        bytes = BenchmarkData.writeAuditLogFiles(directory, files, totalBytes, 42);
+    }
+
+    @Benchmark
+    public void mergeFiles(ByteCounter byteCounter) throws IOException {
+        merger.mergeFiles(directory.getPath(), timestampOrder);
+        byteCounter.bytes += bytes;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.deleteDirectory(directory);
+        new File("AuditLogFile").delete();
+    }
+}
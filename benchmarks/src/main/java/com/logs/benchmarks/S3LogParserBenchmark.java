@@ -0,0 +1,100 @@
+package com.logs.benchmarks;
+
+import com.logs.AuditLogFilter;
+import com.logs.AuditLogRecord;
+import com.logs.FieldProjection;
+import com.logs.S3LogParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * S3LogParserBenchmark class measures parsing single audit logs and referrer headers,
+ * with the tokenizer and with the regular expression, and parsing with a selective filter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class S3LogParserBenchmark {
+
+    private static final int AUDIT_LOG_COUNT = 4096;
+
+    @Param({"TOKENIZER", "REGEX"})
+    public S3LogParser.ParsingMode parsingMode;
+
+    @Param({"GENERATED", "SAMPLE"})
+    public BenchmarkData.Input input;
+
+    private S3LogParser s3LogParser;
+    private S3LogParser filteringParser;
+    private String[] auditLogs;
+    private String[] referrerHeaders;
+    private int[] auditLogLengths;
+    private int[] referrerHeaderLengths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        s3LogParser = new S3LogParser(parsingMode);
+        filteringParser = new S3LogParser(parsingMode, true, null, FieldProjection.ALL,
+                AuditLogFilter.parse("verb=REST.PUT.*,http!=200..299"));
+        auditLogs = BenchmarkData.auditLogs(input, AUDIT_LOG_COUNT, 42);
+        referrerHeaders = new String[AUDIT_LOG_COUNT];
+        for (int i = 0; i < AUDIT_LOG_COUNT; i++) {
+            referrerHeaders[i] = BenchmarkData.referrerHeader(auditLogs[i]);
+        }
+        auditLogLengths = BenchmarkData.byteLengths(auditLogs);
+        referrerHeaderLengths = BenchmarkData.byteLengths(referrerHeaders);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (AUDIT_LOG_COUNT - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Map<String, String> parseAuditLog(ByteCounter byteCounter) {
+        int index = nextIndex();
+        byteCounter.bytes += auditLogLengths[index];
+        return s3LogParser.parseAuditLog(auditLogs[index]);
+    }
+
+    @Benchmark
+    public Map<String, String> parseReferrerHeader(ByteCounter byteCounter) {
+        int index = nextIndex();
+        byteCounter.bytes += referrerHeaderLengths[index];
+        return s3LogParser.parseReferrerHeader(referrerHeaders[index]);
+    }
+
+    /**
+     * Parses the audit log and its referrer header and reads every value, as the sinks do,
+     * so the referrer values are also percent-decoded.
+     */
+    @Benchmark
+    public void parseAuditLogRecord(ByteCounter byteCounter, Blackhole blackhole) {
+        int index = nextIndex();
+        byteCounter.bytes += auditLogLengths[index];
+        AuditLogRecord auditLogRecord = s3LogParser.parseAuditLogRecord(auditLogs[index]);
+        for (String value : auditLogRecord.getAuditLogMap().values()) {
+            blackhole.consume(value);
+        }
+        for (String value : auditLogRecord.getReferrerHeaderMap().values()) {
+            blackhole.consume(value);
+        }
+    }
+
+    /**
+     * Parses only the failed writes, most audit logs are skipped after their http status.
+     */
+    @Benchmark
+    public AuditLogRecord parseFilteredAuditLogRecord(ByteCounter byteCounter) {
+        int index = nextIndex();
+        byteCounter.bytes += auditLogLengths[index];
+        return filteringParser.parseAuditLogRecord(auditLogs[index]);
+    }
+}
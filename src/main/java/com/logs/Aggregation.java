@@ -0,0 +1,96 @@
+package com.logs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregation class defines a report computed by {@link AuditLogAggregator}: the audit logs are grouped by the values
+ * of some fields, groups of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS} or keys of {@link S3LogParser#REFERRER_HEADER_KEYS},
+ * and every group gets the count of its audit logs and the measures of {@link AggregationTable#MEASURES}.
+ */
+public final class Aggregation {
+
+    /**
+     * Reports computed when none is given: requests and bytes by bucket, verb and http status,
+     * by S3A principal and operation, and errors by error code.
+     */
+    public static final List<Aggregation> DEFAULT_AGGREGATIONS = Collections.unmodifiableList(Arrays.asList(
+            of(S3LogParser.BUCKET_GROUP, S3LogParser.VERB_GROUP, S3LogParser.HTTP_GROUP),
+            of("pr", "op"),
+            of(S3LogParser.AWSERRORCODE_GROUP)));
+
+    private final List<String> fields;
+
+    private Aggregation(List<String> fields) {
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+    }
+
+    /**
+     * of method defines a report grouped by some fields
+     * @param fields names of groups of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}
+     *               and of keys of {@link S3LogParser#REFERRER_HEADER_KEYS}, in the order of the report
+     * @return the aggregation
+     * @throws IllegalArgumentException if there is no field or a name is neither a group nor a known referrer key
+     */
+    public static Aggregation of(String... fields) {
+        return of(Arrays.asList(fields));
+    }
+
+    /**
+     * of method defines a report grouped by some fields
+     * @param fields names of groups and of known referrer keys, in the order of the report
+     * @return the aggregation
+     * @throws IllegalArgumentException if there is no field or a name is neither a group nor a known referrer key
+     */
+    public static Aggregation of(List<String> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("An aggregation needs at least one field to group by");
+        }
+        for (String field : fields) {
+            if (!S3LogParser.AWS_LOG_REGEXP_GROUPS.contains(field) && !S3LogParser.REFERRER_HEADER_KEYS.contains(field)) {
+                throw new IllegalArgumentException("Unknown audit log field : " + field);
+            }
+        }
+        return new Aggregation(fields);
+    }
+
+    /**
+     * parse method defines a report from a comma separated list of field names, e.g. "bucket,verb,http"
+     * @param fields this is the list of field names
+     * @return the aggregation
+     * @throws IllegalArgumentException if there is no field or a name is neither a group nor a known referrer key
+     */
+    public static Aggregation parse(String fields) {
+        List<String> names = new ArrayList<>();
+        for (String name : fields.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return of(names);
+    }
+
+    /**
+     * @return the fields the audit logs are grouped by
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Aggregation && fields.equals(((Aggregation) o).fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", fields);
+    }
+}
@@ -0,0 +1,345 @@
+package com.logs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AggregationTable class holds the groups of an {@link Aggregation} and their measures:
+ * the count of audit logs, the sum, min and max of every numeric group of {@link #MEASURES}
+ * and a {@link LatencyHistogram} of every group of {@link #HISTOGRAM_MEASURES}.
+ *
+ * The values of every field get a dense int id, the ids of the fields of an audit log are combined into the id of its
+ * group one field at a time through a {@link LongIntHashMap} per field, and the measures are kept in primitive
+ * arrays indexed by the id of the group; so adding an audit log of a known group doesn't create any object.
+ * Ids are local to a table: tables filled by different threads are merged through the values of the fields,
+ * see {@link #merge(AggregationTable)}.
+ *
+ * An AggregationTable is not thread safe, every thread fills its own.
+ */
+public class AggregationTable {
+
+    /**
+     * Numeric groups whose sum, min and max are kept for every group; "-" is not counted.
+     */
+    public static final List<String> MEASURES = Collections.unmodifiableList(Arrays.asList(
+            S3LogParser.BYTESSENT_GROUP, S3LogParser.OBJECTSIZE_GROUP,
+            S3LogParser.TOTALTIME_GROUP, S3LogParser.TURNAROUNDTIME_GROUP));
+
+    /**
+     * Groups of {@link #MEASURES} whose distribution is kept for every group, in milliseconds.
+     */
+    public static final List<String> HISTOGRAM_MEASURES = Collections.unmodifiableList(Arrays.asList(
+            S3LogParser.TOTALTIME_GROUP, S3LogParser.TURNAROUNDTIME_GROUP));
+
+    private static final int[] HISTOGRAM_MEASURE_INDEXES = new int[HISTOGRAM_MEASURES.size()];
+
+    static {
+        for (int i = 0; i < HISTOGRAM_MEASURES.size(); i++) {
+            HISTOGRAM_MEASURE_INDEXES[i] = MEASURES.indexOf(HISTOGRAM_MEASURES.get(i));
+        }
+    }
+
+    private final Aggregation aggregation;
+    private final String[] fieldNames;
+    /**
+     * Index of every field in {@link S3LogParser#REFERRER_HEADER_KEYS}, -1 for the groups of the audit log.
+     */
+    private final int[] referrerKeyIndexes;
+
+    /**
+     * Values of every field and their ids, the id of a value is its index in the list.
+     */
+    private final List<Map<String, Integer>> valueIds = new ArrayList<>();
+    private final List<List<String>> values = new ArrayList<>();
+    /**
+     * Last value looked up for every field and its id; the parser canonicalizes values which repeat,
+     * so most lookups are answered by comparing references.
+     */
+    private final String[] lastValues;
+    private final int[] lastValueIds;
+    /**
+     * Id of the first fields of a group and the id of the value of the next field, to the id of the first fields
+     * including the next one.
+     */
+    private final LongIntHashMap[] prefixIds;
+
+    private int groups;
+    /**
+     * Ids of the values of the fields of every group, fields after fields.
+     */
+    private int[] groupValueIds;
+    private long[] counts;
+    private long[][] sums;
+    private long[][] mins;
+    private long[][] maxs;
+    private LatencyHistogram[][] histograms;
+    private final int[] groupIds;
+    private final long[] measureValues = new long[MEASURES.size()];
+
+    /**
+     * @param aggregation this is the aggregation whose groups the table holds
+     */
+    public AggregationTable(Aggregation aggregation) {
+        this.aggregation = aggregation;
+        List<String> fields = aggregation.getFields();
+        fieldNames = fields.toArray(new String[0]);
+        referrerKeyIndexes = new int[fieldNames.length];
+        lastValues = new String[fieldNames.length];
+        lastValueIds = new int[fieldNames.length];
+        Arrays.fill(lastValueIds, -1);
+        prefixIds = new LongIntHashMap[fieldNames.length];
+        groupIds = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            referrerKeyIndexes[i] = S3LogParser.AWS_LOG_REGEXP_GROUPS.contains(fieldNames[i])
+                    ? -1 : S3LogParser.REFERRER_HEADER_KEYS.indexOf(fieldNames[i]);
+            valueIds.add(new HashMap<>());
+            values.add(new ArrayList<>());
+            if (i > 0) {
+                prefixIds[i] = new LongIntHashMap();
+            }
+        }
+        int capacity = 16;
+        groupValueIds = new int[capacity * fieldNames.length];
+        counts = new long[capacity];
+        sums = new long[MEASURES.size()][capacity];
+        mins = new long[MEASURES.size()][capacity];
+        maxs = new long[MEASURES.size()][capacity];
+        histograms = new LatencyHistogram[HISTOGRAM_MEASURES.size()][capacity];
+    }
+
+    /**
+     * @return the aggregation whose groups the table holds
+     */
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * add method counts an audit log in its group
+     * @param auditLogRecord this is the parsed audit log
+     */
+    public void add(AuditLogRecord auditLogRecord) {
+        Map<String, String> auditLogMap = auditLogRecord.getAuditLogMap();
+        Map<String, String> referrerHeaderMap = auditLogRecord.getReferrerHeaderMap();
+        ReferrerHeader referrerHeader = referrerHeaderMap instanceof ReferrerHeader ? (ReferrerHeader) referrerHeaderMap : null;
+        for (int i = 0; i < fieldNames.length; i++) {
+            String value;
+            if (referrerKeyIndexes[i] < 0) {
+                value = auditLogMap.get(fieldNames[i]);
+            } else if (referrerHeader != null) {
+                value = referrerHeader.get(referrerKeyIndexes[i]);
+            } else {
+                value = referrerHeaderMap.get(fieldNames[i]);
+            }
+            groupIds[i] = valueId(i, value);
+        }
+        int group = groupId(groupIds);
+        for (int m = 0; m < MEASURES.size(); m++) {
+            measureValues[m] = parseNatural(auditLogMap.get(MEASURES.get(m)));
+        }
+        counts[group]++;
+        for (int m = 0; m < MEASURES.size(); m++) {
+            addMeasure(m, group, measureValues[m]);
+        }
+        for (int h = 0; h < HISTOGRAM_MEASURE_INDEXES.length; h++) {
+            long value = measureValues[HISTOGRAM_MEASURE_INDEXES[h]];
+            if (value >= 0) {
+                histogram(h, group).add(value);
+            }
+        }
+    }
+
+    /**
+     * merge method adds the groups of another table of the same aggregation to this one
+     * @param other this is the other table, it is not changed
+     * @throws IllegalArgumentException if the other table is of another aggregation
+     */
+    public void merge(AggregationTable other) {
+        if (!aggregation.equals(other.aggregation)) {
+            throw new IllegalArgumentException("Can't merge aggregation " + other.aggregation + " into " + aggregation);
+        }
+        int[] ids = new int[fieldNames.length];
+        for (int otherGroup = 0; otherGroup < other.groups; otherGroup++) {
+            for (int i = 0; i < fieldNames.length; i++) {
+                ids[i] = valueId(i, other.getValue(otherGroup, i));
+            }
+            int group = groupId(ids);
+            counts[group] += other.counts[otherGroup];
+            for (int m = 0; m < MEASURES.size(); m++) {
+                mergeMeasure(m, group, other.sums[m][otherGroup], other.mins[m][otherGroup], other.maxs[m][otherGroup]);
+            }
+            for (int h = 0; h < HISTOGRAM_MEASURES.size(); h++) {
+                if (other.histograms[h][otherGroup] != null) {
+                    histogram(h, group).merge(other.histograms[h][otherGroup]);
+                }
+            }
+        }
+    }
+
+    private int valueId(int field, String value) {
+        if (value == lastValues[field] && lastValueIds[field] >= 0) {
+            return lastValueIds[field];
+        }
+        Map<String, Integer> ids = valueIds.get(field);
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = ids.size();
+            ids.put(value, id);
+            values.get(field).add(value);
+        }
+        lastValues[field] = value;
+        lastValueIds[field] = id;
+        return id;
+    }
+
+    /**
+     * groupId method combines the ids of the values of the fields into the id of the group, adding the group if it is new
+     */
+    private int groupId(int[] ids) {
+        long id = ids[0];
+        for (int i = 1; i < ids.length; i++) {
+            id = prefixIds[i].getOrAdd(id << 32 | ids[i]);
+        }
+        // ids of the values of the first field and ids of the last map are both dense
+        int group = (int) id;
+        if (group == groups) {
+            addGroup(ids);
+        }
+        return group;
+    }
+
+    private void addGroup(int[] ids) {
+        if (groups == counts.length) {
+            int capacity = counts.length * 2;
+            groupValueIds = Arrays.copyOf(groupValueIds, capacity * fieldNames.length);
+            counts = Arrays.copyOf(counts, capacity);
+            for (int m = 0; m < MEASURES.size(); m++) {
+                sums[m] = Arrays.copyOf(sums[m], capacity);
+                mins[m] = Arrays.copyOf(mins[m], capacity);
+                maxs[m] = Arrays.copyOf(maxs[m], capacity);
+            }
+            for (int h = 0; h < HISTOGRAM_MEASURES.size(); h++) {
+                histograms[h] = Arrays.copyOf(histograms[h], capacity);
+            }
+        }
+        System.arraycopy(ids, 0, groupValueIds, groups * fieldNames.length, fieldNames.length);
+        for (int m = 0; m < MEASURES.size(); m++) {
+            sums[m][groups] = -1;
+        }
+        groups++;
+    }
+
+    private void addMeasure(int measure, int group, long value) {
+        mergeMeasure(measure, group, value, value, value);
+    }
+
+    /**
+     * mergeMeasure method adds the sum, min and max of some values of a measure to a group, nothing if the sum is -1
+     */
+    private void mergeMeasure(int measure, int group, long sum, long min, long max) {
+        if (sum < 0) {
+            return;
+        }
+        if (sums[measure][group] < 0) {
+            sums[measure][group] = sum;
+            mins[measure][group] = min;
+            maxs[measure][group] = max;
+        } else {
+            sums[measure][group] += sum;
+            mins[measure][group] = Math.min(mins[measure][group], min);
+            maxs[measure][group] = Math.max(maxs[measure][group], max);
+        }
+    }
+
+    private LatencyHistogram histogram(int histogramMeasure, int group) {
+        LatencyHistogram histogram = histograms[histogramMeasure][group];
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms[histogramMeasure][group] = histogram;
+        }
+        return histogram;
+    }
+
+    /**
+     * parseNatural method reads a natural number like {@link AvroAuditLogSink#parseLong(String)}, without boxing
+     * @return the number, or -1 for "-", null and values which are not natural numbers
+     */
+    static long parseNatural(String value) {
+        if (value == null || value.isEmpty() || value.length() > 18) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * @return number of groups
+     */
+    public int size() {
+        return groups;
+    }
+
+    /**
+     * @param group id of the group, between 0 and {@link #size()}
+     * @param field index of the field in {@link Aggregation#getFields()}
+     * @return the value of the field for the group, null for audit logs without the field
+     */
+    public String getValue(int group, int field) {
+        return values.get(field).get(groupValueIds[group * fieldNames.length + field]);
+    }
+
+    /**
+     * @param group id of the group
+     * @return number of audit logs of the group
+     */
+    public long getCount(int group) {
+        return counts[group];
+    }
+
+    /**
+     * @param group id of the group
+     * @param measure index of the measure in {@link #MEASURES}
+     * @return sum of the measure over the audit logs of the group, -1 if none of them has a value
+     */
+    public long getSum(int group, int measure) {
+        return sums[measure][group];
+    }
+
+    /**
+     * @param group id of the group
+     * @param measure index of the measure in {@link #MEASURES}
+     * @return smallest value of the measure in the group, -1 if none of its audit logs has a value
+     */
+    public long getMin(int group, int measure) {
+        return sums[measure][group] < 0 ? -1 : mins[measure][group];
+    }
+
+    /**
+     * @param group id of the group
+     * @param measure index of the measure in {@link #MEASURES}
+     * @return largest value of the measure in the group, -1 if none of its audit logs has a value
+     */
+    public long getMax(int group, int measure) {
+        return sums[measure][group] < 0 ? -1 : maxs[measure][group];
+    }
+
+    /**
+     * @param group id of the group
+     * @param histogramMeasure index of the measure in {@link #HISTOGRAM_MEASURES}
+     * @return distribution of the measure in the group, null if none of its audit logs has a value
+     */
+    public LatencyHistogram getHistogram(int group, int histogramMeasure) {
+        return histograms[histogramMeasure][group];
+    }
+}
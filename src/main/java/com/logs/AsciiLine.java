@@ -0,0 +1,69 @@
+package com.logs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AsciiLine class is a {@link CharSequence} over a range of bytes which are all ASCII, so every byte is a char
+ * and nothing is decoded until a value is materialized with {@link #toString()}.
+ *
+ * A line is a view of the window of an {@link AuditLogLineReader}: it and its sub-sequences are only valid
+ * until the reader moves to the next line. Not thread safe.
+ */
+final class AsciiLine implements CharSequence {
+
+    private ByteBuffer bytes;
+    private int offset;
+    private int length;
+
+    AsciiLine() {
+    }
+
+    private AsciiLine(ByteBuffer bytes, int offset, int length) {
+        set(bytes, offset, length);
+    }
+
+    /**
+     * set method points the line to another range of bytes
+     * @param bytes this is the buffer holding the bytes, its position is changed by {@link #toString()}
+     * @param offset this is the index of the first byte in the buffer
+     * @param length this is the number of bytes
+     */
+    void set(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return (char) (bytes.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new AsciiLine(bytes, offset + start, end - start);
+    }
+
+    /**
+     * toString method copies the bytes into a string; ASCII bytes are copied as they are into a compact string
+     */
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.position(offset);
+        bytes.get(copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
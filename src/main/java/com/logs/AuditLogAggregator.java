@@ -0,0 +1,287 @@
+package com.logs;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * AuditLogAggregator class computes reports like the request count and bytes by bucket, verb and http status
+ * in the same pass as the parsing, see {@link Aggregation}, so simple reports don't need the avro file and a cluster.
+ *
+ * Every thread which writes audit logs fills its own {@link AggregationTable}s, so the parsing threads of
+ * {@link ParallelAuditLogParser} aggregate the audit logs of their ranges without sharing anything;
+ * the partial tables are merged by {@link #getResults()} when all audit logs are written.
+ * When a report file is given, closing the aggregator writes the merged tables into it as json:
+ * every group with its count, the sum, min and max of {@link AggregationTable#MEASURES} and
+ * the percentiles of {@link AggregationTable#HISTOGRAM_MEASURES}, the largest groups first.
+ *
+ * When fields to sketch are given, every thread also fills a {@link FieldSketch} per field, for the top values
+ * by requests and bytes sent and the distinct count of fields with too many values to group by, like keys and ips.
+ * Closing the aggregator saves the merged sketches into the sketch file, see {@link AuditLogSketches},
+ * and adds their top values to the report.
+ */
+public class AuditLogAggregator implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(AuditLogAggregator.class);
+
+    private final List<Aggregation> aggregations;
+    private final List<String> sketchFields;
+    private final File reportFile;
+    private final File sketchFile;
+
+    private ThreadLocal<Partial> partials = ThreadLocal.withInitial(this::newPartial);
+    private final List<Partial> allPartials = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Tables and sketches filled by one thread.
+     */
+    private static final class Partial {
+        private final AggregationTable[] tables;
+        private final FieldSketch[] sketches;
+
+        private Partial(AggregationTable[] tables, FieldSketch[] sketches) {
+            this.tables = tables;
+            this.sketches = sketches;
+        }
+    }
+
+    /**
+     * @param aggregations these are the reports to compute
+     */
+    public AuditLogAggregator(List<Aggregation> aggregations) {
+        this(aggregations, null);
+    }
+
+    /**
+     * @param aggregations these are the reports to compute
+     * @param reportFile this is the json file the reports are written into when the aggregator is closed, or null
+     */
+    public AuditLogAggregator(List<Aggregation> aggregations, File reportFile) {
+        this(aggregations, Collections.emptyList(), reportFile, null);
+    }
+
+    /**
+     * @param aggregations these are the reports to compute
+     * @param sketchFields these are the fields to sketch, see {@link FieldSketch}
+     * @param reportFile this is the json file the reports are written into when the aggregator is closed, or null
+     * @param sketchFile this is the file the sketches are saved into when the aggregator is closed, or null
+     * @throws IllegalArgumentException if a field to sketch is neither a group nor a known referrer key
+     */
+    public AuditLogAggregator(List<Aggregation> aggregations, List<String> sketchFields, File reportFile, File sketchFile) {
+        for (String field : sketchFields) {
+            FieldSketch.checkField(field);
+        }
+        this.aggregations = Collections.unmodifiableList(new ArrayList<>(aggregations));
+        this.sketchFields = Collections.unmodifiableList(new ArrayList<>(sketchFields));
+        this.reportFile = reportFile;
+        this.sketchFile = sketchFile;
+    }
+
+    /**
+     * create method creates the aggregator of the output options; the aggregations are only computed for a report file
+     * and the fields are only sketched for a sketch file
+     * @param outputOptions this is where the report and sketch files, the aggregations and the fields to sketch are set
+     * @return the aggregator, or null if neither a report file nor a sketch file is set
+     * @throws IllegalArgumentException if the projection leaves out a field of the reports or sketches,
+     * see {@link OutputOptions#checkProjection()}
+     */
+    public static AuditLogAggregator create(OutputOptions outputOptions) {
+        if (outputOptions.getReportFile() == null && outputOptions.getSketchFile() == null) {
+            return null;
+        }
+        outputOptions.checkProjection();
+        return new AuditLogAggregator(
+                outputOptions.getReportFile() == null ? Collections.emptyList() : outputOptions.getAggregations(),
+                outputOptions.getSketchFile() == null ? Collections.emptyList() : outputOptions.getSketchFields(),
+                outputOptions.getReportFile(), outputOptions.getSketchFile());
+    }
+
+    private Partial newPartial() {
+        AggregationTable[] tables = new AggregationTable[aggregations.size()];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = new AggregationTable(aggregations.get(i));
+        }
+        FieldSketch[] sketches = new FieldSketch[sketchFields.size()];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new FieldSketch(sketchFields.get(i));
+        }
+        Partial partial = new Partial(tables, sketches);
+        allPartials.add(partial);
+        return partial;
+    }
+
+    /**
+     * @return the reports computed
+     */
+    public List<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    /**
+     * @return the fields sketched
+     */
+    public List<String> getSketchFields() {
+        return sketchFields;
+    }
+
+    /**
+     * write method counts an audit log in the tables and sketches of the current thread; it can be called from any thread
+     * @param auditLogRecord this is the parsed audit log
+     */
+    @Override
+    public void write(AuditLogRecord auditLogRecord) {
+        Partial partial = partials.get();
+        for (AggregationTable aggregationTable : partial.tables) {
+            aggregationTable.add(auditLogRecord);
+        }
+        for (FieldSketch sketch : partial.sketches) {
+            sketch.add(auditLogRecord);
+        }
+    }
+
+    /**
+     * getResults method merges the tables of all threads, it must be called when no thread writes anymore
+     * @return a table per aggregation, in the order of {@link #getAggregations()}
+     */
+    public List<AggregationTable> getResults() {
+        List<AggregationTable> results = new ArrayList<>();
+        for (Aggregation aggregation : aggregations) {
+            results.add(new AggregationTable(aggregation));
+        }
+        synchronized (allPartials) {
+            for (Partial partial : allPartials) {
+                for (int i = 0; i < partial.tables.length; i++) {
+                    results.get(i).merge(partial.tables[i]);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * getSketchResults method merges the sketches of all threads, it must be called when no thread writes anymore
+     * @return a sketch per field, in the order of {@link #getSketchFields()}
+     */
+    public List<FieldSketch> getSketchResults() {
+        List<FieldSketch> results = new ArrayList<>();
+        for (String field : sketchFields) {
+            results.add(new FieldSketch(field));
+        }
+        synchronized (allPartials) {
+            for (Partial partial : allPartials) {
+                for (int i = 0; i < partial.sketches.length; i++) {
+                    results.get(i).merge(partial.sketches[i]);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * compact method merges the tables and sketches of all threads into one, so an aggregator fed by many short-lived
+     * thread pools, like the runs of {@link AuditLogFollower}, doesn't keep the partial tables of every pool;
+     * it must be called when no thread writes, threads which write afterwards fill new tables
+     */
+    public void compact() {
+        List<AggregationTable> tables = getResults();
+        List<FieldSketch> sketches = getSketchResults();
+        partials = ThreadLocal.withInitial(this::newPartial);
+        synchronized (allPartials) {
+            allPartials.clear();
+            allPartials.add(new Partial(tables.toArray(new AggregationTable[0]), sketches.toArray(new FieldSketch[0])));
+        }
+    }
+
+    /**
+     * writeReport method writes the merged tables into a json file
+     * @param jsonFile this is the report file, it is replaced if it exists
+     * @throws IOException
+     */
+    public void writeReport(File jsonFile) throws IOException {
+        List<AggregationTable> results = getResults();
+        List<FieldSketch> sketches = getSketchResults();
+        try (JsonGenerator jsonGenerator = new ObjectMapper().getFactory().createGenerator(jsonFile, JsonEncoding.UTF8)) {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeArrayFieldStart("aggregations");
+            for (AggregationTable aggregationTable : results) {
+                writeTable(jsonGenerator, aggregationTable);
+            }
+            jsonGenerator.writeEndArray();
+            if (!sketches.isEmpty()) {
+                AuditLogSketches.writeJson(jsonGenerator, sketches, AuditLogSketches.DEFAULT_TOP);
+            }
+            jsonGenerator.writeEndObject();
+        }
+    }
+
+    private static void writeTable(JsonGenerator jsonGenerator, AggregationTable aggregationTable) throws IOException {
+        List<String> fields = aggregationTable.getAggregation().getFields();
+        Integer[] groups = new Integer[aggregationTable.size()];
+        for (int group = 0; group < groups.length; group++) {
+            groups[group] = group;
+        }
+        Arrays.sort(groups, Comparator.comparingLong((Integer group) -> aggregationTable.getCount(group)).reversed());
+
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeArrayFieldStart("groupBy");
+        for (String field : fields) {
+            jsonGenerator.writeString(field);
+        }
+        jsonGenerator.writeEndArray();
+        jsonGenerator.writeArrayFieldStart("groups");
+        for (int group : groups) {
+            jsonGenerator.writeStartObject();
+            for (int field = 0; field < fields.size(); field++) {
+                jsonGenerator.writeStringField(fields.get(field), aggregationTable.getValue(group, field));
+            }
+            jsonGenerator.writeNumberField("count", aggregationTable.getCount(group));
+            for (int measure = 0; measure < AggregationTable.MEASURES.size(); measure++) {
+                String name = AggregationTable.MEASURES.get(measure);
+                if (aggregationTable.getSum(group, measure) < 0) {
+                    continue;
+                }
+                jsonGenerator.writeObjectFieldStart(name);
+                jsonGenerator.writeNumberField("sum", aggregationTable.getSum(group, measure));
+                jsonGenerator.writeNumberField("min", aggregationTable.getMin(group, measure));
+                jsonGenerator.writeNumberField("max", aggregationTable.getMax(group, measure));
+                int histogramMeasure = AggregationTable.HISTOGRAM_MEASURES.indexOf(name);
+                LatencyHistogram histogram = histogramMeasure < 0 ? null
+                        : aggregationTable.getHistogram(group, histogramMeasure);
+                if (histogram != null) {
+                    jsonGenerator.writeNumberField("p50", histogram.percentile(0.5));
+                    jsonGenerator.writeNumberField("p90", histogram.percentile(0.9));
+                    jsonGenerator.writeNumberField("p99", histogram.percentile(0.99));
+                }
+                jsonGenerator.writeEndObject();
+            }
+            jsonGenerator.writeEndObject();
+        }
+        jsonGenerator.writeEndArray();
+        jsonGenerator.writeEndObject();
+    }
+
+    /**
+     * close method writes the report file and the sketch file, if they are set
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (reportFile != null) {
+            writeReport(reportFile);
+            LOG.info("Successfully written the report into " + reportFile);
+        }
+        if (sketchFile != null) {
+            AuditLogSketches.write(sketchFile, getSketchResults());
+            LOG.info("Successfully written the sketches into " + sketchFile);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.logs;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * AuditLogFilter class is a condition on the groups of an audit log which {@link S3LogParser} evaluates
+ * before parsing it, so the audit logs a job doesn't want are skipped at the cost of scanning their first fields.
+ *
+ * The tokenizer only scans a line up to the last field the filter needs, see {@link #getLastField()};
+ * the conditions are then evaluated on the characters of the line at the offsets of the fields, without creating
+ * strings, and a line which doesn't pass is skipped without scanning the rest of it.
+ * Values are compared with the value of the group as it is parsed, e.g. quoted groups with their quotes.
+ *
+ * Filters are built with {@link #equalTo(String, String)}, {@link #prefix(String, String)},
+ * {@link #between(String, long, long)}, {@link #timestampBetween(long, long)} and combined with
+ * {@link #and(AuditLogFilter...)}, {@link #or(AuditLogFilter...)} and {@link #not(AuditLogFilter)},
+ * or parsed from the command line syntax of {@link #parse(String)}.
+ * A filter is immutable and can be shared by threads.
+ */
+public abstract class AuditLogFilter {
+
+    /**
+     * Groups holding a natural number or "-", which {@link #between(String, long, long)} applies to.
+     */
+    public static final List<String> NUMERIC_GROUPS = Collections.unmodifiableList(Arrays.asList(
+            S3LogParser.HTTP_GROUP, S3LogParser.BYTESSENT_GROUP, S3LogParser.OBJECTSIZE_GROUP,
+            S3LogParser.TOTALTIME_GROUP, S3LogParser.TURNAROUNDTIME_GROUP));
+
+    private AuditLogFilter() {
+    }
+
+    /**
+     * @return index of the last group the filter looks at, the tokenizer has to scan a line up to it
+     */
+    public abstract int getLastField();
+
+    /**
+     * test method evaluates the filter on a tokenized audit log
+     * @param line this is the audit log
+     * @param tokenizer this is the tokenizer which scanned the audit log up to {@link #getLastField()}
+     * @param timestampDecoder this is used to decode the timestamp
+     * @return true if the audit log passes the filter
+     */
+    abstract boolean test(CharSequence line, S3LogTokenizer tokenizer, S3TimestampDecoder timestampDecoder);
+
+    /**
+     * equalTo method builds a filter keeping the audit logs whose group has a value
+     * @param group this is the name of the group, e.g. "bucket"
+     * @param value this is the value
+     * @return the filter
+     * @throws IllegalArgumentException if the group is unknown
+     */
+    public static AuditLogFilter equalTo(String group, String value) {
+        return new Chars(fieldOf(group), value, false);
+    }
+
+    /**
+     * prefix method builds a filter keeping the audit logs whose group starts with a prefix
+     * @param group this is the name of the group, e.g. "verb"
+     * @param prefix this is the prefix, e.g. "REST.PUT."
+     * @return the filter
+     * @throws IllegalArgumentException if the group is unknown
+     */
+    public static AuditLogFilter prefix(String group, String prefix) {
+        return new Chars(fieldOf(group), prefix, true);
+    }
+
+    /**
+     * between method builds a filter keeping the audit logs whose numeric group is in a range;
+     * "-" is not in any range
+     * @param group this is the name of a group of {@link #NUMERIC_GROUPS}, e.g. "http"
+     * @param min this is the smallest value kept
+     * @param max this is the largest value kept
+     * @return the filter
+     * @throws IllegalArgumentException if the group is not numeric
+     */
+    public static AuditLogFilter between(String group, long min, long max) {
+        if (!NUMERIC_GROUPS.contains(group)) {
+            throw new IllegalArgumentException("Not a numeric audit log field : " + group);
+        }
+        return new NumberRange(fieldOf(group), min, max);
+    }
+
+    /**
+     * timestampBetween method builds a filter keeping the audit logs of a time window;
+     * audit logs whose timestamp can't be decoded are not in any window
+     * @param fromMillis start of the window in milliseconds since the epoch, inclusive
+     * @param toMillis end of the window in milliseconds since the epoch, exclusive
+     * @return the filter
+     */
+    public static AuditLogFilter timestampBetween(long fromMillis, long toMillis) {
+        return new TimestampRange(fromMillis, toMillis);
+    }
+
+    /**
+     * and method builds a filter keeping the audit logs which pass all the filters,
+     * the filters on earlier fields are evaluated first
+     * @param filters this is the list of filters
+     * @return the filter
+     */
+    public static AuditLogFilter and(AuditLogFilter... filters) {
+        return filters.length == 1 ? filters[0] : new Combination(filters, true);
+    }
+
+    /**
+     * or method builds a filter keeping the audit logs which pass any of the filters,
+     * the filters on earlier fields are evaluated first
+     * @param filters this is the list of filters
+     * @return the filter
+     */
+    public static AuditLogFilter or(AuditLogFilter... filters) {
+        return filters.length == 1 ? filters[0] : new Combination(filters, false);
+    }
+
+    /**
+     * not method builds a filter keeping the audit logs which don't pass a filter
+     * @param filter this is the filter
+     * @return the filter
+     */
+    public static AuditLogFilter not(AuditLogFilter filter) {
+        return new Not(filter);
+    }
+
+    /**
+     * parse method builds a filter from the syntax of the command line: conditions separated by ',' must all hold,
+     * a condition is 'group=value' or 'group!=value' and alternatives of a condition are separated by '|'.
+     * A value ending with '*' is a prefix, 'min..max' is a range of a numeric group (either end may be left out)
+     * and the timestamp takes a range of ISO-8601 instants, e.g.
+     * "bucket=bucket-london,verb=REST.PUT.*|REST.GET.OBJECT,http!=200..299,timestamp=2021-05-13T11:00:00Z..2021-05-13T12:00:00Z"
+     * @param conditions this is the list of conditions
+     * @return the filter
+     * @throws IllegalArgumentException if a condition can't be parsed
+     */
+    public static AuditLogFilter parse(String conditions) {
+        List<AuditLogFilter> filters = new ArrayList<>();
+        for (String condition : conditions.split(",")) {
+            if (condition.trim().isEmpty()) {
+                continue;
+            }
+            int equals = condition.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Audit log filter condition without '=' : " + condition);
+            }
+            boolean negated = condition.charAt(equals - 1) == '!';
+            String group = condition.substring(0, negated ? equals - 1 : equals).trim();
+            List<AuditLogFilter> alternatives = new ArrayList<>();
+            for (String value : condition.substring(equals + 1).split("\\|")) {
+                alternatives.add(parseValue(group, value));
+            }
+            AuditLogFilter filter = or(alternatives.toArray(new AuditLogFilter[0]));
+            filters.add(negated ? not(filter) : filter);
+        }
+        if (filters.isEmpty()) {
+            throw new IllegalArgumentException("Empty audit log filter");
+        }
+        return and(filters.toArray(new AuditLogFilter[0]));
+    }
+
+    private static AuditLogFilter parseValue(String group, String value) {
+        int range = value.indexOf("..");
+        if (group.equals(S3LogParser.TIMESTAMP_GROUP)) {
+            if (range < 0) {
+                throw new IllegalArgumentException("Expected a range of instants for the timestamp : " + value);
+            }
+            try {
+                String from = value.substring(0, range).trim();
+                String to = value.substring(range + 2).trim();
+                return timestampBetween(from.isEmpty() ? Long.MIN_VALUE + 1 : Instant.parse(from).toEpochMilli(),
+                        to.isEmpty() ? Long.MAX_VALUE : Instant.parse(to).toEpochMilli());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Expected a range of ISO-8601 instants for the timestamp : " + value, e);
+            }
+        }
+        if (range >= 0 && NUMERIC_GROUPS.contains(group)) {
+            try {
+                String min = value.substring(0, range).trim();
+                String max = value.substring(range + 2).trim();
+                return between(group, min.isEmpty() ? 0 : Long.parseLong(min),
+                        max.isEmpty() ? Long.MAX_VALUE : Long.parseLong(max));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a range of numbers for " + group + " : " + value, e);
+            }
+        }
+        if (value.endsWith("*")) {
+            return prefix(group, value.substring(0, value.length() - 1));
+        }
+        return equalTo(group, value);
+    }
+
+    private static int fieldOf(String group) {
+        int field = S3LogParser.AWS_LOG_REGEXP_GROUPS.indexOf(group);
+        if (field < 0) {
+            throw new IllegalArgumentException("Unknown audit log field : " + group);
+        }
+        return field;
+    }
+
+    /**
+     * Equality or prefix of the characters of a group.
+     */
+    private static final class Chars extends AuditLogFilter {
+        private final int field;
+        private final String value;
+        private final boolean prefix;
+
+        private Chars(int field, String value, boolean prefix) {
+            this.field = field;
+            this.value = value;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int getLastField() {
+            return field;
+        }
+
+        @Override
+        boolean test(CharSequence line, S3LogTokenizer tokenizer, S3TimestampDecoder timestampDecoder) {
+            int start = tokenizer.start(field);
+            int length = tokenizer.end(field) - start;
+            if (prefix ? length < value.length() : length != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (line.charAt(start + i) != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return S3LogParser.AWS_LOG_REGEXP_GROUPS.get(field) + "=" + value + (prefix ? "*" : "");
+        }
+    }
+
+    /**
+     * Range of a numeric group, the digits are read in place.
+     */
+    private static final class NumberRange extends AuditLogFilter {
+        private final int field;
+        private final long min;
+        private final long max;
+
+        private NumberRange(int field, long min, long max) {
+            this.field = field;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public int getLastField() {
+            return field;
+        }
+
+        @Override
+        boolean test(CharSequence line, S3LogTokenizer tokenizer, S3TimestampDecoder timestampDecoder) {
+            int start = tokenizer.start(field);
+            int end = tokenizer.end(field);
+            // longer values can't be read as a long, like AvroAuditLogSink.parseLong
+            if (start == end || end - start > 18) {
+                return false;
+            }
+            long number = 0;
+            for (int i = start; i < end; i++) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return number >= min && number <= max;
+        }
+
+        @Override
+        public String toString() {
+            return S3LogParser.AWS_LOG_REGEXP_GROUPS.get(field) + "=" + min + ".." + max;
+        }
+    }
+
+    /**
+     * Time window, the timestamp is decoded in place.
+     */
+    private static final class TimestampRange extends AuditLogFilter {
+        private final long fromMillis;
+        private final long toMillis;
+
+        private TimestampRange(long fromMillis, long toMillis) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        @Override
+        public int getLastField() {
+            return S3LogTokenizer.TIMESTAMP;
+        }
+
+        @Override
+        boolean test(CharSequence line, S3LogTokenizer tokenizer, S3TimestampDecoder timestampDecoder) {
+            long timestampMillis = timestampDecoder.decode(line, tokenizer.start(S3LogTokenizer.TIMESTAMP),
+                    tokenizer.end(S3LogTokenizer.TIMESTAMP));
+            return timestampMillis != S3TimestampDecoder.INVALID && timestampMillis >= fromMillis && timestampMillis < toMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "timestamp=" + Instant.ofEpochMilli(fromMillis) + ".." + Instant.ofEpochMilli(toMillis);
+        }
+    }
+
+    /**
+     * AND or OR of filters, ordered by the last field they need.
+     */
+    private static final class Combination extends AuditLogFilter {
+        private final AuditLogFilter[] filters;
+        private final boolean and;
+        private final int lastField;
+
+        private Combination(AuditLogFilter[] filters, boolean and) {
+            if (filters.length == 0) {
+                throw new IllegalArgumentException("No audit log filter to combine");
+            }
+            this.filters = filters.clone();
+            Arrays.sort(this.filters, Comparator.comparingInt(AuditLogFilter::getLastField));
+            this.and = and;
+            this.lastField = this.filters[this.filters.length - 1].getLastField();
+        }
+
+        @Override
+        public int getLastField() {
+            return lastField;
+        }
+
+        @Override
+        boolean test(CharSequence line, S3LogTokenizer tokenizer, S3TimestampDecoder timestampDecoder) {
+            for (AuditLogFilter filter : filters) {
+                if (filter.test(line, tokenizer, timestampDecoder) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(and ? "and(" : "or(");
+            for (int i = 0; i < filters.length; i++) {
+                builder.append(i == 0 ? "" : ", ").append(filters[i]);
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private static final class Not extends AuditLogFilter {
+        private final AuditLogFilter filter;
+
+        private Not(AuditLogFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public int getLastField() {
+            return filter.getLastField();
+        }
+
+        @Override
+        boolean test(CharSequence line, S3LogTokenizer tokenizer, S3TimestampDecoder timestampDecoder) {
+            return !filter.test(line, tokenizer, timestampDecoder);
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + filter + ")";
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuditLogFollower class keeps running and ingests the audit log files of a directory as they arrive or grow,
+ * instead of a single batch run: every run of {@link IncrementalAuditLogIngest} appends the new audit logs to the
+ * outputs and records them in its manifest, which is the durable checkpoint, so a restart goes on from where the
+ * last finished run stopped without parsing anything twice or skipping anything.
+ *
+ * The directory is watched with a {@link WatchService} and a run starts as soon as files are created or modified
+ * and have been quiet for a moment; when the file system can't be watched, the directory is polled.
+ * Either way a run starts at least every poll interval, to pick up files whose settle time has passed:
+ * a file still being written is only parsed up to its last complete line, see
+ * {@link IncrementalAuditLogIngest#setSettleMillis(long)}.
+ *
+ * The report, sketch and spans files of the output options cover the audit logs of the current roll period
+ * and are written when the period ends and when the follower stops. With a roll interval, the avro and csv files
+ * are rolled at the end of every period, together with the report, sketch and spans files, into files named after
+ * the start of the period, e.g. 'data-20211018-120000.avro'. A crash loses the report, sketch and spans of the
+ * period, not the avro and csv files, and a run which failed half way is counted again in them when it is retried.
+ */
+public class AuditLogFollower {
+
+    private final Logger LOG = Logger.getLogger(AuditLogFollower.class);
+
+    /**
+     * Poll interval when none is given.
+     */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000;
+
+    /**
+     * How long the directory must be quiet after a change before a run starts, so a file copied in many writes
+     * is parsed in one run.
+     */
+    static final long QUIET_MILLIS = 200;
+
+    private static final DateTimeFormatter ROLL_SUFFIX_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final IncrementalAuditLogIngest incrementalAuditLogIngest;
+    private final String auditLogsDirectoryPath;
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private long rollIntervalMillis;
+
+    private volatile boolean stopped;
+    private volatile WatchService watchService;
+    private AuditLogAggregator auditLogAggregator;
+    private SpanCorrelator spanCorrelator;
+    private long periodStart;
+    private volatile long runs;
+    private volatile long parsedAuditLogs;
+
+    /**
+     * @param incrementalAuditLogIngest this is the ingest of every run, with its outputs and manifest
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files to follow
+     */
+    public AuditLogFollower(IncrementalAuditLogIngest incrementalAuditLogIngest, String auditLogsDirectoryPath) {
+        this.incrementalAuditLogIngest = incrementalAuditLogIngest;
+        this.auditLogsDirectoryPath = auditLogsDirectoryPath;
+    }
+
+    /**
+     * @param pollIntervalMillis this is the longest time between two runs
+     * @return this
+     */
+    public AuditLogFollower setPollIntervalMillis(long pollIntervalMillis) {
+        if (pollIntervalMillis < 1) {
+            throw new IllegalArgumentException("Poll interval must be at least 1 millisecond : " + pollIntervalMillis);
+        }
+        this.pollIntervalMillis = pollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @param rollIntervalMillis this is the length of a roll period, 0 to never roll the outputs, the default
+     * @return this
+     */
+    public AuditLogFollower setRollIntervalMillis(long rollIntervalMillis) {
+        this.rollIntervalMillis = rollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * follow method ingests the directory until {@link #stop()} is called
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long follow() throws IOException {
+        watchService = createWatchService();
+        periodStart = System.currentTimeMillis();
+        openSideOutputs();
+        try {
+            while (!stopped) {
+                if (rollIntervalMillis > 0 && System.currentTimeMillis() - periodStart >= rollIntervalMillis) {
+                    roll();
+                }
+                ingest();
+                waitForChanges();
+            }
+        } finally {
+            closeSideOutputs();
+            if (watchService != null) {
+                watchService.close();
+            }
+        }
+        LOG.info("Stopped following '" + auditLogsDirectoryPath + "' after " + runs + " runs, "
+                + parsedAuditLogs + " parsed audit logs");
+        return parsedAuditLogs;
+    }
+
+    /**
+     * stop method makes {@link #follow()} return after the current run; it can be called from any thread
+     */
+    public void stop() {
+        stopped = true;
+        WatchService currentWatchService = watchService;
+        if (currentWatchService != null) {
+            try {
+                currentWatchService.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the watch service", e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of finished runs
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    private WatchService createWatchService() {
+        try {
+            WatchService newWatchService = FileSystems.getDefault().newWatchService();
+            new File(auditLogsDirectoryPath).toPath().register(newWatchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            return newWatchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Can't watch '" + auditLogsDirectoryPath + "', polling it every " + pollIntervalMillis + " ms", e);
+            return null;
+        }
+    }
+
+    /**
+     * ingest method runs the ingest once; a failed run is logged and retried by the next one,
+     * the manifest makes sure the outputs have nothing of it
+     */
+    private void ingest() throws IOException {
+        try {
+            long count = incrementalAuditLogIngest.ingest(auditLogsDirectoryPath, auditLogAggregator, spanCorrelator);
+            parsedAuditLogs += count;
+            if (auditLogAggregator != null && count > 0) {
+                auditLogAggregator.compact();
+            }
+            if (spanCorrelator != null) {
+                spanCorrelator.flush();
+            }
+            runs++;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            LOG.error("Failed to ingest '" + auditLogsDirectoryPath + "', retrying in " + pollIntervalMillis + " ms", e);
+        }
+    }
+
+    /**
+     * waitForChanges method waits until files of the directory changed and have been quiet for a moment,
+     * or for the poll interval
+     */
+    private void waitForChanges() {
+        try {
+            if (watchService == null) {
+                Thread.sleep(pollIntervalMillis);
+                return;
+            }
+            long deadline = System.currentTimeMillis() + pollIntervalMillis;
+            WatchKey watchKey = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            while (watchKey != null) {
+                watchKey.pollEvents();
+                watchKey.reset();
+                long quiet = Math.min(QUIET_MILLIS, deadline - System.currentTimeMillis());
+                watchKey = quiet > 0 ? watchService.poll(quiet, TimeUnit.MILLISECONDS) : null;
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+    }
+
+    /**
+     * roll method writes the report, sketch and spans files of the period, rolls them and the outputs
+     * and starts a new period
+     */
+    private void roll() throws IOException {
+        String suffix = ROLL_SUFFIX_FORMAT.format(Instant.ofEpochMilli(periodStart));
+        closeSideOutputs();
+        OutputOptions outputOptions = incrementalAuditLogIngest.getOutputOptions();
+        for (File sideOutput : new File[] {outputOptions.getReportFile(), outputOptions.getSketchFile(),
+                outputOptions.getSpansFile()}) {
+            if (sideOutput != null && sideOutput.exists()) {
+                Files.move(sideOutput.toPath(), IncrementalAuditLogIngest.rolledFile(sideOutput, suffix).toPath());
+            }
+        }
+        incrementalAuditLogIngest.rollOutputs(suffix);
+        periodStart = System.currentTimeMillis();
+        openSideOutputs();
+    }
+
+    private void openSideOutputs() throws IOException {
+        OutputOptions outputOptions = incrementalAuditLogIngest.getOutputOptions();
+        auditLogAggregator = AuditLogAggregator.create(outputOptions);
+        spanCorrelator = IncrementalAuditLogIngest.createSpanCorrelator(outputOptions);
+    }
+
+    private void closeSideOutputs() throws IOException {
+        AuditLogAggregator closedAuditLogAggregator = auditLogAggregator;
+        SpanCorrelator closedSpanCorrelator = spanCorrelator;
+        auditLogAggregator = null;
+        spanCorrelator = null;
+        try {
+            if (closedAuditLogAggregator != null) {
+                closedAuditLogAggregator.close();
+            }
+        } finally {
+            if (closedSpanCorrelator != null) {
+                closedSpanCorrelator.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * AuditLogGenerator class writes synthetic S3 server access logs with S3A audit referrer headers,
+ * to test and benchmark merging and parsing at any volume without real logs.
+ *
+ * Every line follows the grammar of {@link S3LogParser#LOG_ENTRY_PATTERN}, except the malformed lines
+ * asked for with {@link #setMalformedRate(double)}. Buckets, requesters, keys and remote ips are drawn from pools
+ * of configurable size, a configurable share of the requests fail with an error code, and every file is sorted
+ * by timestamp like the files S3 delivers, with overlapping time ranges between files.
+ * The output only depends on the options and the seed: the same seed always gives the same files.
+ * A generator is not thread safe.
+ *
+ * Usage: AuditLogGenerator directory [-files N] [-size bytes[k|m|g]] [-spread sigma] [-seed N] [-buckets N]
+ *                          [-requesters N] [-keys N] [-ips N] [-errorRate rate] [-malformedRate rate]
+ */
+public class AuditLogGenerator {
+
+    private static final Logger LOG = Logger.getLogger(AuditLogGenerator.class);
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    /**
+     * Operations, with the S3A audit operation, the http method and how often they happen.
+     */
+    private static final String[][] OPERATIONS = {
+            {"REST.GET.OBJECT", "op_open", "GET", "40"},
+            {"REST.HEAD.OBJECT", "op_get_file_status", "HEAD", "25"},
+            {"REST.PUT.OBJECT", "op_create", "PUT", "15"},
+            {"REST.GET.BUCKET", "op_list_status", "GET", "12"},
+            {"REST.DELETE.OBJECT", "op_delete", "DELETE", "5"},
+            {"REST.COPY.OBJECT", "op_rename", "PUT", "3"}
+    };
+
+    private static final int OPERATION_WEIGHTS = 100;
+
+    private static final String[][] ERRORS = {
+            {"403", "AccessDenied"},
+            {"404", "NoSuchKey"},
+            {"500", "InternalError"},
+            {"503", "SlowDown"}
+    };
+
+    private static final String[] USER_AGENTS = {
+            "Hadoop 3.3.6, aws-sdk-java/1.12.367 Linux/5.10 OpenJDK_64-Bit_Server_VM/11.0.20",
+            "Hadoop 3.4.0-SNAPSHOT, java/1.8.0_282 vendor/AdoptOpenJDK",
+            "Hadoop 3.3.4, aws-sdk-java/1.12.262 Linux/5.15 OpenJDK_64-Bit_Server_VM/17.0.8"
+    };
+
+    private static final String[] CYPHERS = {"ECDHE-RSA-AES128-GCM-SHA256", "TLS_AES_128_GCM_SHA256"};
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Time of the first audit log, 13/May/2021:11:00:00 +0000.
+     */
+    private static final long START_EPOCH_SECOND = 1620903600L;
+
+    private long seed = 42;
+    private int files = 10;
+    private long totalBytes = 10 * 1024 * 1024;
+    private double fileSizeSpread = 0.5;
+    private int buckets = 3;
+    private int requesters = 20;
+    private int keys = 10000;
+    private int remoteIps = 50;
+    private double errorRate = 0.01;
+    private double malformedRate = 0;
+
+    /**
+     * Canonical user id of the owner, S3A file system id of every bucket and S3A process id of every requester,
+     * derived from the seed when generating starts.
+     */
+    private String[] owners;
+    private String[] fileSystemIds;
+    private String[] processIds;
+
+    private long lastEpochSecond = Long.MIN_VALUE;
+    private String lastTimestamp;
+
+    /**
+     * @param seed seed of all the random choices, the same seed gives the same audit logs
+     * @return this generator
+     */
+    public AuditLogGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param files number of audit log files written by {@link #writeAuditLogFiles(File)}
+     * @return this generator
+     */
+    public AuditLogGenerator setFiles(int files) {
+        this.files = files;
+        return this;
+    }
+
+    /**
+     * @param totalBytes approximate number of bytes of all the files together
+     * @return this generator
+     */
+    public AuditLogGenerator setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+        return this;
+    }
+
+    /**
+     * @param fileSizeSpread sigma of the log-normal distribution of the file sizes, 0 for files of the same size
+     * @return this generator
+     */
+    public AuditLogGenerator setFileSizeSpread(double fileSizeSpread) {
+        this.fileSizeSpread = fileSizeSpread;
+        return this;
+    }
+
+    /**
+     * @param buckets number of distinct buckets
+     * @return this generator
+     */
+    public AuditLogGenerator setBuckets(int buckets) {
+        this.buckets = buckets;
+        return this;
+    }
+
+    /**
+     * @param requesters number of distinct requesters, every requester is also the principal of its S3A referrer
+     * @return this generator
+     */
+    public AuditLogGenerator setRequesters(int requesters) {
+        this.requesters = requesters;
+        return this;
+    }
+
+    /**
+     * @param keys number of distinct object keys
+     * @return this generator
+     */
+    public AuditLogGenerator setKeys(int keys) {
+        this.keys = keys;
+        return this;
+    }
+
+    /**
+     * @param remoteIps number of distinct remote ips
+     * @return this generator
+     */
+    public AuditLogGenerator setRemoteIps(int remoteIps) {
+        this.remoteIps = remoteIps;
+        return this;
+    }
+
+    /**
+     * @param errorRate share of the requests which fail with an error code, between 0 and 1
+     * @return this generator
+     */
+    public AuditLogGenerator setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param malformedRate share of the lines which don't follow the S3 log grammar, between 0 and 1
+     * @return this generator
+     */
+    public AuditLogGenerator setMalformedRate(double malformedRate) {
+        this.malformedRate = malformedRate;
+        return this;
+    }
+
+    /**
+     * auditLogs method generates audit logs in memory, e.g. as input of benchmarks
+     * @param count number of audit logs
+     * @return the audit logs, sorted by timestamp
+     */
+    public String[] auditLogs(int count) {
+        preparePools();
+        Random random = new Random(seed);
+        String[] auditLogs = new String[count];
+        StringBuilder line = new StringBuilder(1024);
+        long epochSecond = START_EPOCH_SECOND;
+        for (int i = 0; i < count; i++) {
+            epochSecond += random.nextInt(3) == 0 ? 1 : 0;
+            line.setLength(0);
+            appendAuditLog(line, random, epochSecond);
+            auditLogs[i] = line.toString();
+        }
+        return auditLogs;
+    }
+
+    /**
+     * writeAuditLogFiles method writes the audit log files into a directory
+     * @param directory this is the directory, it is created if it doesn't exist
+     * @return number of bytes written
+     * @throws IOException
+     */
+    public long writeAuditLogFiles(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create the directory " + directory);
+        }
+        preparePools();
+        long[] fileSizes = fileSizes();
+        long bytes = 0;
+        for (int i = 0; i < files; i++) {
+            File auditLogFile = new File(directory, String.format("%s-%05d.log", "auditLogFile", i));
+            bytes += writeAuditLogFile(auditLogFile, fileSizes[i], new Random(seed * 1_000_003L + i));
+        }
+        LOG.info("Generated " + files + " audit log files with " + bytes + " bytes into " + directory);
+        return bytes;
+    }
+
+    private void preparePools() {
+        Random random = new Random(~seed);
+        owners = new String[buckets];
+        fileSystemIds = new String[buckets];
+        for (int i = 0; i < buckets; i++) {
+            owners[i] = hex(random, 64);
+            fileSystemIds[i] = uuid(random);
+        }
+        processIds = new String[requesters];
+        for (int i = 0; i < requesters; i++) {
+            processIds[i] = uuid(random);
+        }
+    }
+
+    /**
+     * fileSizes method spreads the total number of bytes over the files with a log-normal distribution
+     * @return the size of every file
+     */
+    private long[] fileSizes() {
+        Random random = new Random(seed);
+        double[] weights = new double[files];
+        double sum = 0;
+        for (int i = 0; i < files; i++) {
+            weights[i] = Math.exp(fileSizeSpread * random.nextGaussian());
+            sum += weights[i];
+        }
+        long[] fileSizes = new long[files];
+        for (int i = 0; i < files; i++) {
+            fileSizes[i] = (long) (totalBytes * weights[i] / sum);
+        }
+        return fileSizes;
+    }
+
+    private long writeAuditLogFile(File auditLogFile, long size, Random random) throws IOException {
+        long bytes = 0;
+        // files start within the same hour, so their time ranges overlap like those of concurrent writers
+        long epochSecond = START_EPOCH_SECOND + random.nextInt(3600);
+        StringBuilder line = new StringBuilder(1024);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(auditLogFile), StandardCharsets.US_ASCII), 1024 * 1024)) {
+            while (bytes < size) {
+                epochSecond += random.nextInt(3) == 0 ? 1 : 0;
+                line.setLength(0);
+                appendAuditLog(line, random, epochSecond);
+                line.append('\n');
+                writer.append(line);
+                bytes += line.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * appendAuditLog method appends a single audit log, without a line separator
+     */
+    private void appendAuditLog(StringBuilder line, Random random, long epochSecond) {
+        int bucket = random.nextInt(buckets);
+        int requester = random.nextInt(requesters);
+        int key = random.nextInt(keys);
+        String[] operation = operation(random.nextInt(OPERATION_WEIGHTS));
+        String[] error = random.nextDouble() < errorRate ? ERRORS[random.nextInt(ERRORS.length)] : null;
+        String bucketName = "bucket-" + bucket;
+        String keyName = "warehouse/table-" + (key % 97) + "/part-" + key + ".parquet";
+        String spanId = uuid(random) + "-" + (100_000_000 + random.nextInt(100_000_000));
+        if (epochSecond != lastEpochSecond) {
+            lastTimestamp = TIMESTAMP_FORMATTER.format(Instant.ofEpochSecond(epochSecond));
+            lastEpochSecond = epochSecond;
+        }
+
+        line.append(owners[bucket]).append(' ');
+        line.append(bucketName).append(' ');
+        line.append('[').append(lastTimestamp).append("] ");
+        int ip = random.nextInt(remoteIps);
+        line.append("10.").append(ip >> 16 & 255).append('.').append(ip >> 8 & 255).append('.').append(ip & 255).append(' ');
+        line.append("arn:aws:iam::152813717700:user/user-").append(requester).append(' ');
+        line.append(hex(random, 16).toUpperCase(Locale.ROOT)).append(' ');
+        line.append(operation[0]).append(' ');
+        line.append(operation[0].endsWith("BUCKET") ? "-" : keyName).append(' ');
+        line.append('"').append(operation[2]).append(" /").append(keyName).append(" HTTP/1.1\" ");
+        line.append(error == null ? "200" : error[0]).append(' ');
+        line.append(error == null ? "-" : error[1]).append(' ');
+        int objectSize = random.nextInt(64 * 1024 * 1024);
+        line.append(error == null && operation[2].equals("GET") ? String.valueOf(objectSize) : "-").append(' ');
+        line.append(operation[2].equals("HEAD") || operation[0].endsWith("BUCKET") ? "-" : String.valueOf(objectSize)).append(' ');
+        int totalTime = 1 + random.nextInt(500);
+        line.append(totalTime).append(' ');
+        line.append(random.nextInt(totalTime)).append(' ');
+        long t0 = epochSecond * 1000 - random.nextInt(5000);
+        line.append("\"https://audit.example.org/hadoop/1/").append(operation[1]).append('/').append(spanId).append("/?op=")
+                .append(operation[1]).append("&p1=").append(keyName).append("&pr=user-").append(requester)
+                .append("&ps=").append(processIds[requester])
+                .append("&id=").append(spanId).append("&t0=").append(t0).append("&fs=").append(fileSystemIds[bucket])
+                .append("&t1=").append(t0 + 1)
+                .append("&ts=").append(epochSecond * 1000).append("\" ");
+        line.append('"').append(USER_AGENTS[requester % USER_AGENTS.length]).append("\" ");
+        line.append("- ");
+        line.append(hex(random, 56)).append("= ");
+        line.append("SigV4 ");
+        line.append(CYPHERS[bucket % CYPHERS.length]).append(' ');
+        line.append("AuthHeader ");
+        line.append(bucketName).append(".s3.eu-west-2.amazonaws.com ");
+        line.append("TLSv1.2");
+
+        if (malformedRate > 0 && random.nextDouble() < malformedRate) {
+            // cut the line inside the quoted request uri, so its quote is never closed
+            line.setLength(line.indexOf(" HTTP/1.1\""));
+        }
+    }
+
+    private static String[] operation(int weight) {
+        for (String[] operation : OPERATIONS) {
+            weight -= Integer.parseInt(operation[3]);
+            if (weight < 0) {
+                return operation;
+            }
+        }
+        return OPERATIONS[0];
+    }
+
+    private static String uuid(Random random) {
+        return hex(random, 8) + "-" + hex(random, 4) + "-" + hex(random, 4) + "-" + hex(random, 4) + "-" + hex(random, 12);
+    }
+
+    private static String hex(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = HEX[random.nextInt(16)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * parseSize method parses a number of bytes with an optional k, m or g suffix
+     * @param size this is the size, e.g. 512m
+     * @return the number of bytes
+     */
+    static long parseSize(String size) {
+        String lower = size.toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (lower.endsWith("k")) {
+            unit = 1024;
+        } else if (lower.endsWith("m")) {
+            unit = 1024 * 1024;
+        } else if (lower.endsWith("g")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) * unit;
+    }
+
+    public static void main(String[] args) throws IOException {
+        AuditLogGenerator auditLogGenerator = new AuditLogGenerator();
+        String directory = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-files") && i + 1 < args.length) {
+                auditLogGenerator.setFiles(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-size") && i + 1 < args.length) {
+                auditLogGenerator.setTotalBytes(parseSize(args[++i]));
+            } else if (args[i].equals("-spread") && i + 1 < args.length) {
+                auditLogGenerator.setFileSizeSpread(Double.parseDouble(args[++i]));
+            } else if (args[i].equals("-seed") && i + 1 < args.length) {
+                auditLogGenerator.setSeed(Long.parseLong(args[++i]));
+            } else if (args[i].equals("-buckets") && i + 1 < args.length) {
+                auditLogGenerator.setBuckets(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-requesters") && i + 1 < args.length) {
+                auditLogGenerator.setRequesters(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-keys") && i + 1 < args.length) {
+                auditLogGenerator.setKeys(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-ips") && i + 1 < args.length) {
+                auditLogGenerator.setRemoteIps(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-errorRate") && i + 1 < args.length) {
+                auditLogGenerator.setErrorRate(Double.parseDouble(args[++i]));
+            } else if (args[i].equals("-malformedRate") && i + 1 < args.length) {
+                auditLogGenerator.setMalformedRate(Double.parseDouble(args[++i]));
+            } else {
+                directory = args[i];
+            }
+        }
+        if (directory == null) {
+            System.err.println("Usage: AuditLogGenerator directory [-files N] [-size bytes[k|m|g]] [-spread sigma] [-seed N]"
+                    + " [-buckets N] [-requesters N] [-keys N] [-ips N] [-errorRate rate] [-malformedRate rate]");
+            System.exit(1);
+        }
+        auditLogGenerator.writeAuditLogFiles(new File(directory));
+    }
+}
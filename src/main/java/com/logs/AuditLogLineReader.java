@@ -0,0 +1,248 @@
+package com.logs;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * AuditLogLineReader class reads the lines of a range of an audit log file as bytes, without a {@link java.io.Reader}:
+ * the range is memory-mapped, or read into a direct buffer, one window at a time, and lines are found by scanning
+ * eight bytes at a time for a newline, checking on the way whether all bytes of the line are ASCII.
+ *
+ * S3 server access logs are nearly always ASCII, so a line is handed out as an {@link AsciiLine} over the bytes of
+ * the window and only the fields which are materialized are copied into strings. A line with any other byte is
+ * decoded as UTF-8, the encoding S3 writes its logs in.
+ * Lines end with "\n" or "\r\n", the last line of the range doesn't need a newline.
+ * A line crossing the end of a window is read again at the start of the next window, and the window grows
+ * for a line longer than the window.
+ *
+ * A reader is not thread safe, every thread needs its own.
+ */
+public class AuditLogLineReader implements Closeable {
+
+    /**
+     * Default size of a mapped window, a whole range of {@link ParallelAuditLogParser} at once.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final long NEWLINES = 0x0a0a0a0a0a0a0a0aL;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final File file;
+    private final FileChannel fileChannel;
+    private final long end;
+    private final boolean map;
+    private int windowSize;
+
+    private ByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+    /**
+     * Index in the window of the start of the next line.
+     */
+    private int position;
+
+    private int lineOffset;
+    private int lineLength;
+    private boolean lineAscii;
+    private String decodedLine;
+    private final AsciiLine asciiLine = new AsciiLine();
+    private byte[] copyBuffer;
+
+    /**
+     * @param file this is the audit log file
+     * @param start this is the offset of the first line of the range, it must start a line
+     * @param end this is the end offset (exclusive) of the range, clipped to the size of the file
+     * @param windowSize this is the number of bytes mapped or read at once
+     * @param map whether windows are memory-mapped instead of read into a direct buffer;
+     *            mapping suits large ranges, a small read buffer suits many files read at the same time
+     * @throws IOException
+     */
+    public AuditLogLineReader(File file, long start, long end, int windowSize, boolean map) throws IOException {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1 : " + windowSize);
+        }
+        this.file = file;
+        this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.end = Math.min(end, fileChannel.size());
+        this.map = map;
+        this.windowSize = windowSize;
+        this.windowStart = start;
+    }
+
+    /**
+     * nextLine method moves to the next line of the range
+     * @return false at the end of the range
+     * @throws IOException
+     */
+    public boolean nextLine() throws IOException {
+        decodedLine = null;
+        if (window == null) {
+            if (windowStart >= end) {
+                return false;
+            }
+            load(windowStart);
+        }
+        while (true) {
+            if (windowStart + position >= end) {
+                return false;
+            }
+            if (scan()) {
+                return true;
+            }
+            if (windowStart + windowLimit >= end) {
+                // the last line of the range doesn't end with a newline
+                setLine(position, windowLimit);
+                position = windowLimit;
+                return true;
+            }
+            if (position == 0) {
+                // the line is longer than the window
+                windowSize = (int) Math.min(Integer.MAX_VALUE - 8, windowSize * 2L);
+            }
+            load(windowStart + position);
+        }
+    }
+
+    /**
+     * scan method looks for the newline ending the line which starts at {@link #position}, eight bytes at a time
+     * with the "has zero byte" bit trick on the bytes xor-ed with newlines, and sets the line if it finds it
+     * @return false if the window ends before a newline
+     */
+    private boolean scan() {
+        int index = position;
+        long highBits = 0;
+        while (index + 8 <= windowLimit) {
+            long word = window.getLong(index);
+            long newlines = word ^ NEWLINES;
+            long found = (newlines - ONES) & ~newlines & HIGH_BITS;
+            if (found != 0) {
+                // the lowest marked byte is the first newline, bytes after it belong to the next line
+                int bytes = Long.numberOfTrailingZeros(found) >>> 3;
+                highBits |= word & HIGH_BITS & ((1L << (bytes * 8)) - 1);
+                return newline(index + bytes, highBits == 0);
+            }
+            highBits |= word & HIGH_BITS;
+            index += 8;
+        }
+        while (index < windowLimit) {
+            byte b = window.get(index);
+            if (b == '\n') {
+                return newline(index, highBits == 0);
+            }
+            highBits |= b & 0x80;
+            index++;
+        }
+        return false;
+    }
+
+    private boolean newline(int newline, boolean ascii) {
+        int lineEnd = newline > position && window.get(newline - 1) == '\r' ? newline - 1 : newline;
+        lineOffset = position;
+        lineLength = lineEnd - position;
+        lineAscii = ascii;
+        position = newline + 1;
+        return true;
+    }
+
+    private void setLine(int start, int lineEnd) {
+        boolean ascii = true;
+        for (int i = start; i < lineEnd && ascii; i++) {
+            ascii = window.get(i) >= 0;
+        }
+        lineOffset = start;
+        lineLength = lineEnd - start;
+        lineAscii = ascii;
+    }
+
+    /**
+     * load method maps or reads the window starting at an offset of the file
+     */
+    private void load(long start) throws IOException {
+        int size = (int) Math.min(windowSize, end - start);
+        if (map) {
+            window = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        } else {
+            if (window == null || window.capacity() < size) {
+                window = ByteBuffer.allocateDirect(Math.max(size, windowSize));
+            }
+            window.clear();
+            window.limit(size);
+            while (window.hasRemaining()) {
+                if (fileChannel.read(window, start + window.position()) < 0) {
+                    throw new EOFException("Audit log file " + file + " truncated while reading at offset "
+                            + (start + window.position()));
+                }
+            }
+        }
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = start;
+        windowLimit = size;
+        position = 0;
+    }
+
+    /**
+     * @return the current line without its line separator; an ASCII line is only valid until the next line
+     */
+    public CharSequence getLine() {
+        if (lineAscii) {
+            asciiLine.set(window, lineOffset, lineLength);
+            return asciiLine;
+        }
+        if (decodedLine == null) {
+            byte[] bytes = new byte[lineLength];
+            window.position(lineOffset);
+            window.get(bytes);
+            decodedLine = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return decodedLine;
+    }
+
+    /**
+     * @return whether all bytes of the current line are ASCII
+     */
+    public boolean isAscii() {
+        return lineAscii;
+    }
+
+    /**
+     * @return the number of bytes of the current line, without its line separator
+     */
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * @return the offset in the file of the start of the next line
+     */
+    public long getPosition() {
+        return windowStart + position;
+    }
+
+    /**
+     * writeLine method copies the bytes of the current line, without its line separator, as they are
+     * @param outputStream this is where the bytes are written
+     * @throws IOException
+     */
+    public void writeLine(OutputStream outputStream) throws IOException {
+        if (copyBuffer == null || copyBuffer.length < lineLength) {
+            copyBuffer = new byte[Math.max(lineLength, 4096)];
+        }
+        window.position(lineOffset);
+        window.get(copyBuffer, 0, lineLength);
+        outputStream.write(copyBuffer, 0, lineLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+}
@@ -0,0 +1,154 @@
+package com.logs;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * AuditLogManifest class records which audit log files have already been ingested, and up to which offset,
+ * together with the length of every output file after the last successful ingest.
+ * It is stored as a json file next to the outputs and replaced atomically on every save.
+ */
+public class AuditLogManifest {
+
+    /**
+     * What is known about a single ingested audit log file.
+     */
+    public static class Entry {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final Long crc32c;
+
+        /**
+         * @param path canonical path of the audit log file
+         * @param size number of bytes of the file which have been ingested
+         * @param lastModified modification time of the file when it was ingested
+         * @param crc32c checksum of the ingested bytes, or null when content hashing is off
+         */
+        public Entry(String path, long size, long lastModified, Long crc32c) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc32c = crc32c;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public Long getCrc32c() {
+            return crc32c;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Long> outputLengths = new LinkedHashMap<>();
+
+    /**
+     * load method reads a manifest file
+     * @param manifestFile this is the manifest file
+     * @return the manifest, empty if the file doesn't exist
+     * @throws IOException
+     */
+    public static AuditLogManifest load(File manifestFile) throws IOException {
+        AuditLogManifest manifest = new AuditLogManifest();
+        if (!manifestFile.exists()) {
+            return manifest;
+        }
+        JsonNode root = new ObjectMapper().readTree(manifestFile);
+        Iterator<Map.Entry<String, JsonNode>> outputs = root.path("outputs").fields();
+        while (outputs.hasNext()) {
+            Map.Entry<String, JsonNode> output = outputs.next();
+            manifest.outputLengths.put(output.getKey(), output.getValue().asLong());
+        }
+        for (JsonNode file : root.path("files")) {
+            JsonNode crc32c = file.get("crc32c");
+            manifest.put(new Entry(file.get("path").asText(), file.get("size").asLong(),
+                    file.get("lastModified").asLong(), crc32c == null || crc32c.isNull() ? null : crc32c.asLong()));
+        }
+        return manifest;
+    }
+
+    /**
+     * save method writes the manifest into a temporary file, forces it to the disk and then moves it over the
+     * manifest file, so a crash never leaves a half written manifest
+     * @param manifestFile this is the manifest file
+     * @throws IOException
+     */
+    public void save(File manifestFile) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode outputs = root.putObject("outputs");
+        for (Map.Entry<String, Long> output : outputLengths.entrySet()) {
+            outputs.put(output.getKey(), output.getValue());
+        }
+        ArrayNode files = root.putArray("files");
+        for (Entry entry : entries.values()) {
+            ObjectNode file = files.addObject();
+            file.put("path", entry.path);
+            file.put("size", entry.size);
+            file.put("lastModified", entry.lastModified);
+            if (entry.crc32c != null) {
+                file.put("crc32c", entry.crc32c);
+            }
+        }
+        File parent = manifestFile.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile(manifestFile.getName(), ".tmp", parent);
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile)) {
+                objectMapper.writerWithDefaultPrettyPrinter().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                        .writeValue(fileOutputStream, root);
+                fileOutputStream.getChannel().force(true);
+            }
+            Files.move(temporaryFile.toPath(), manifestFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    /**
+     * @param path canonical path of the audit log file
+     * @return the entry of the file, or null if it has never been ingested
+     */
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public void put(Entry entry) {
+        entries.put(entry.path, entry);
+    }
+
+    /**
+     * @param outputName name of the output file
+     * @return length of the output file after the last successful ingest, 0 if unknown
+     */
+    public long getOutputLength(String outputName) {
+        Long length = outputLengths.get(outputName);
+        return length == null ? 0 : length;
+    }
+
+    public void setOutputLength(String outputName, long length) {
+        outputLengths.put(outputName, length);
+    }
+}
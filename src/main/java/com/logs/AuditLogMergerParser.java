@@ -2,32 +2,214 @@ package com.logs;
 
 import org.apache.log4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * AuditLogMergerParser class will merge all audit logs into single file called 'AuditLogFile'
- * and also parse each and every audit log in it into key-value pairs
+ * AuditLogMergerParser class will parse each and every audit log of a directory of audit log files into key-value pairs
  * and finally convert the key-value pairs into csv file
  * and also into avro file to run queries on avro data using hive and spark to analyze the logs
+ *
+ * Usage: AuditLogMergerParser [auditLogsDirectoryPath] [-threads N] [-unordered] [-merge] [-sorted] [-incremental [-hash]]
+ *                             [-codec null|deflate|snappy|zstd] [-syncInterval bytes] [-index] [-parquet [-rowGroupSize bytes]]
+ *                             [-metrics] [-progress seconds] [-deadLetter file] [-fields field,field,...]
+ *                             [-filter condition,condition,...] [-report file [-groupBy field,field,...]...]
+ *                             [-sketch file [-sketchFields field,field,...]] [-spans file [-spanIdle seconds]]
+ *                             [-follow [-poll seconds] [-settle seconds] [-roll minutes]]
+ * By default every file is parsed on its own by {@link ParallelAuditLogParser}, without writing a merged file.
+ * -threads sets the number of parsing threads and
+ * -unordered lets them write the parsed audit logs in the order they are parsed.
+ * -merge first merges all audit logs into single file called 'AuditLogFile' and parses that file.
+ * -sorted merges the audit log files in timestamp order instead of appending them, it implies -merge.
+ * -incremental only parses files which are new or changed since the last run and appends to the outputs,
+ * see {@link IncrementalAuditLogIngest}; -hash also keeps checksums of the ingested files to detect changes.
+ * A file whose ingested part has changed is skipped with a warning, its audit logs are already in the outputs.
+ * -codec and -syncInterval set the compression codec and block size of the avro file, see {@link OutputOptions}.
+ * -index also writes the timestamps and bloom filters of every block of the avro file into 'data.avro.idx', so
+ * {@link AvroIndexedReader} finds audit logs by time, bucket, requester, key or requestid without a full scan.
+ * -parquet also writes the parsed audit logs into 'data.parquet', with row groups of -rowGroupSize bytes;
+ * a parquet file can't be appended to, so it can't be used with -incremental or -follow.
+ * -metrics measures every stage of the run and exposes the measures as JMX MBeans, see {@link PipelineMetrics};
+ * -progress also logs a progress line every given number of seconds, it implies -metrics.
+ * -deadLetter writes the lines which can't be parsed into the given file with their {@link RejectReason}.
+ * -fields only parses and writes the given groups and referrer keys, e.g. -fields bucket,timestamp,op,http,
+ * see {@link FieldProjection}; with -report, -sketch or -spans it has to keep the fields they are computed from,
+ * see {@link OutputOptions#checkProjection()}.
+ * -filter only parses the audit logs meeting all the conditions, e.g. -filter bucket=bucket-london,http!=200..299,
+ * see {@link AuditLogFilter#parse(String)}.
+ * -report also writes counts, bytes and latencies of the parsed audit logs by bucket, verb and http status,
+ * by 'pr' and 'op' and by error code into the given json file; every -groupBy replaces these with its own fields,
+ * see {@link AuditLogAggregator}.
+ * -sketch saves the top values by requests and bytes sent and the distinct counts of remoteip, key, requester and
+ * useragent into the given file, or of the -sketchFields; sketch files of days are merged into weeks and months
+ * by {@link AuditLogSketches}. With -report the top values are also written into the report.
+ * -spans writes a summary of every S3A operation into the given json file: the requests with the same referrer 'id',
+ * their bytes, errors and wall time; a span is written once it got no request for -spanIdle seconds,
+ * see {@link SpanCorrelator}.
+ * -follow keeps running and ingests new and grown files as they arrive, like -incremental on every change,
+ * until the process is stopped, see {@link AuditLogFollower}; the directory is also looked at every -poll seconds,
+ * the last line of a file is only parsed without a newline once the file is -settle seconds old, and the outputs
+ * are rolled every -roll minutes.
  */
 public class AuditLogMergerParser {
 
     private static Logger LOG = Logger.getLogger(AuditLogMergerParser.class);
+
+    /**
+     * Settle time of -follow when none is given.
+     */
+    private static final long DEFAULT_SETTLE_SECONDS = 30;
     
     public static void main(String args[]) throws IOException {
         long startTime = System.currentTimeMillis();
 
-        //executes the code in Merger class to get a file containing all audit logs
-        Merger merger = new Merger();
         String auditLogsDirectoryPath = "/Users/sravani.gadey/Downloads/del";
-        merger.mergeFiles(auditLogsDirectoryPath);
+        int threads = 1;
+        boolean ordered = true;
+        boolean merge = false;
+        boolean timestampOrder = false;
+        boolean incremental = false;
+        boolean contentHash = false;
+        boolean metrics = false;
+        long progressSeconds = 0;
+        boolean follow = false;
+        long pollSeconds = AuditLogFollower.DEFAULT_POLL_INTERVAL_MILLIS / 1000;
+        long settleSeconds = DEFAULT_SETTLE_SECONDS;
+        long rollMinutes = 0;
+        AuditLogFilter filter = null;
+        List<Aggregation> aggregations = new ArrayList<>();
+        OutputOptions outputOptions = new OutputOptions();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-unordered")) {
+                ordered = false;
+            } else if (args[i].equals("-merge")) {
+                merge = true;
+            } else if (args[i].equals("-sorted")) {
+                merge = true;
+                timestampOrder = true;
+            } else if (args[i].equals("-incremental")) {
+                incremental = true;
+            } else if (args[i].equals("-hash")) {
+                contentHash = true;
+            } else if (args[i].equals("-codec") && i + 1 < args.length) {
+                outputOptions.setAvroCodec(args[++i]);
+            } else if (args[i].equals("-syncInterval") && i + 1 < args.length) {
+                outputOptions.setAvroSyncInterval(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-index")) {
+                outputOptions.setWriteAvroIndex(true);
+            } else if (args[i].equals("-parquet")) {
+                outputOptions.setWriteParquetFile(true);
+            } else if (args[i].equals("-rowGroupSize") && i + 1 < args.length) {
+                outputOptions.setParquetRowGroupSize(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-deadLetter") && i + 1 < args.length) {
+                outputOptions.setDeadLetterFile(new File(args[++i]));
+            } else if (args[i].equals("-fields") && i + 1 < args.length) {
+                outputOptions.setProjection(FieldProjection.parse(args[++i]));
+            } else if (args[i].equals("-filter") && i + 1 < args.length) {
+                filter = AuditLogFilter.parse(args[++i]);
+            } else if (args[i].equals("-report") && i + 1 < args.length) {
+                outputOptions.setReportFile(new File(args[++i]));
+            } else if (args[i].equals("-groupBy") && i + 1 < args.length) {
+                aggregations.add(Aggregation.parse(args[++i]));
+            } else if (args[i].equals("-sketch") && i + 1 < args.length) {
+                outputOptions.setSketchFile(new File(args[++i]));
+            } else if (args[i].equals("-sketchFields") && i + 1 < args.length) {
+                outputOptions.setSketchFields(Arrays.asList(args[++i].split(",")));
+            } else if (args[i].equals("-spans") && i + 1 < args.length) {
+                outputOptions.setSpansFile(new File(args[++i]));
+            } else if (args[i].equals("-spanIdle") && i + 1 < args.length) {
+                outputOptions.setSpanIdleTimeoutMillis(Long.parseLong(args[++i]) * 1000);
+            } else if (args[i].equals("-follow")) {
+                follow = true;
+            } else if (args[i].equals("-poll") && i + 1 < args.length) {
+                pollSeconds = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-settle") && i + 1 < args.length) {
+                settleSeconds = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-roll") && i + 1 < args.length) {
+                rollMinutes = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-metrics")) {
+                metrics = true;
+            } else if (args[i].equals("-progress") && i + 1 < args.length) {
+                metrics = true;
+                progressSeconds = Long.parseLong(args[++i]);
+            } else {
+                auditLogsDirectoryPath = args[i];
+            }
+        }
+
+        if (!aggregations.isEmpty()) {
+            outputOptions.setAggregations(aggregations);
+        }
+        if (outputOptions.isWriteParquetFile() && (incremental || follow)) {
+            throw new IllegalArgumentException("-parquet can't be used with -incremental or -follow, "
+                    + "a parquet file can't be appended to");
+        }
+        // fails before any file is read when -fields leaves out what -report, -sketch or -spans need
+        outputOptions.checkProjection();
 
+        PipelineMetrics pipelineMetrics = null;
+        if (metrics) {
+            pipelineMetrics = new PipelineMetrics();
+            pipelineMetrics.registerMBeans();
+            if (progressSeconds > 0) {
+                pipelineMetrics.startProgressReporter(progressSeconds * 1000);
+            }
+        }
 
         //executes the code in S3LogParser class, which will parse the audit logs
-        //and convert the key-value pairs into csv file and also avro file
-        S3LogParser s3LogParser = new S3LogParser();
-        String auditLogsFilePath = "AuditLogFile";
-        s3LogParser.parseWholeAuditLog(auditLogsFilePath);
+        //and convert the key-value pairs into csv file and also avro file while streaming through the audit logs
+        S3LogParser s3LogParser = new S3LogParser(S3LogParser.ParsingMode.TOKENIZER, true, pipelineMetrics,
+                outputOptions.getProjection(), filter);
+        ParallelAuditLogParser parallelAuditLogParser = new ParallelAuditLogParser(s3LogParser, threads, ordered);
+        long parsedAuditLogs;
+        try {
+            if (follow) {
+                IncrementalAuditLogIngest incrementalAuditLogIngest = new IncrementalAuditLogIngest(
+                        parallelAuditLogParser, new File("."), contentHash, outputOptions)
+                        .setSettleMillis(settleSeconds * 1000);
+                AuditLogFollower auditLogFollower = new AuditLogFollower(incrementalAuditLogIngest, auditLogsDirectoryPath)
+                        .setPollIntervalMillis(pollSeconds * 1000)
+                        .setRollIntervalMillis(rollMinutes * 60 * 1000);
+                Thread mainThread = Thread.currentThread();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    // lets the current run finish and the report, sketch and spans files be written
+                    auditLogFollower.stop();
+                    try {
+                        mainThread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+                parsedAuditLogs = auditLogFollower.follow();
+            } else if (incremental) {
+                parsedAuditLogs = new IncrementalAuditLogIngest(parallelAuditLogParser, new File("."), contentHash, outputOptions)
+                        .ingest(auditLogsDirectoryPath);
+            } else if (merge) {
+                //executes the code in Merger class to get a file containing all audit logs
+                Merger merger = new Merger(pipelineMetrics);
+                merger.mergeFiles(auditLogsDirectoryPath, timestampOrder);
+                String auditLogsFilePath = "AuditLogFile";
+                parsedAuditLogs = parallelAuditLogParser.streamWholeAuditLog(auditLogsFilePath, outputOptions);
+            } else {
+                parsedAuditLogs = parallelAuditLogParser.streamAuditLogDirectory(auditLogsDirectoryPath, outputOptions);
+            }
+        } finally {
+            if (pipelineMetrics != null) {
+                pipelineMetrics.close();
+            }
+        }
+        LOG.info("Number of parsed audit logs : " + parsedAuditLogs);
+        if (!s3LogParser.getRejectCounts().isEmpty()) {
+            LOG.info("Number of rejected audit logs : " + s3LogParser.getRejectCounts());
+        }
+        if (filter != null) {
+            LOG.info("Number of audit logs skipped by the filter " + filter + " : " + s3LogParser.getFilteredCount());
+        }
 
         //calculates the time required for the whole process of merging, parsing and converting into csv file and avro file
         long timeTaken = System.currentTimeMillis() - startTime;
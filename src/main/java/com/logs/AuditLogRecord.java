@@ -0,0 +1,87 @@
+package com.logs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AuditLogRecord class holds the key-value pairs of a single parsed audit log,
+ * i.e, the groups of the log entry and the key-value pairs of its referrer header,
+ * and its timestamp decoded into milliseconds since the epoch
+ * and the length of the line it was parsed from
+ */
+public class AuditLogRecord {
+
+    private final Map<String, String> auditLogMap;
+    private final Map<String, String> referrerHeaderMap;
+    private final long timestampMillis;
+    private final int lineLength;
+
+    /**
+     * The timestamp is decoded from the 'timestamp' group of the audit log.
+     */
+    public AuditLogRecord(Map<String, String> auditLogMap, Map<String, String> referrerHeaderMap) {
+        this(auditLogMap, referrerHeaderMap, new S3TimestampDecoder().decode(auditLogMap.get(S3LogParser.TIMESTAMP_GROUP)));
+    }
+
+    /**
+     * @param auditLogMap key-value pairs of the audit log except referrer header
+     * @param referrerHeaderMap key-value pairs of only referrer header
+     * @param timestampMillis the decoded 'timestamp' group, or {@link S3TimestampDecoder#INVALID}
+     */
+    public AuditLogRecord(Map<String, String> auditLogMap, Map<String, String> referrerHeaderMap, long timestampMillis) {
+        this(auditLogMap, referrerHeaderMap, timestampMillis, 0);
+    }
+
+    /**
+     * @param auditLogMap key-value pairs of the audit log except referrer header
+     * @param referrerHeaderMap key-value pairs of only referrer header
+     * @param timestampMillis the decoded 'timestamp' group, or {@link S3TimestampDecoder#INVALID}
+     * @param lineLength length of the audit log line, without its line terminator, or 0 if it is not known
+     */
+    public AuditLogRecord(Map<String, String> auditLogMap, Map<String, String> referrerHeaderMap, long timestampMillis,
+                          int lineLength) {
+        this.auditLogMap = auditLogMap;
+        this.referrerHeaderMap = referrerHeaderMap;
+        this.timestampMillis = timestampMillis;
+        this.lineLength = lineLength;
+    }
+
+    /**
+     * @return key-value pairs of the audit log except referrer header
+     */
+    public Map<String, String> getAuditLogMap() {
+        return auditLogMap;
+    }
+
+    /**
+     * @return key-value pairs of only referrer header
+     */
+    public Map<String, String> getReferrerHeaderMap() {
+        return referrerHeaderMap;
+    }
+
+    /**
+     * @return the timestamp in milliseconds since the epoch, or {@link S3TimestampDecoder#INVALID} if the audit log has no valid timestamp
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return length of the audit log line the record was parsed from, in bytes for an ASCII line,
+     * or 0 if it is not known
+     */
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * getEntireAuditLogMap method combines the key-value pairs of the audit log and its referrer header
+     * @return a new map which contains key-value pairs of entire audit log including key-value pairs of referrer header
+     */
+    public Map<String, String> getEntireAuditLogMap() {
+        Map<String, String> entireAuditLogMap = new HashMap<>(auditLogMap);
+        entireAuditLogMap.putAll(referrerHeaderMap);
+        return entireAuditLogMap;
+    }
+}
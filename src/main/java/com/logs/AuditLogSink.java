@@ -0,0 +1,43 @@
+package com.logs;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * AuditLogSink is the destination of parsed audit logs.
+ * Records are written one by one as they are parsed, so a sink must not need the whole log to do its work.
+ */
+public interface AuditLogSink extends Closeable {
+
+    /**
+     * write method receives a single parsed audit log
+     * @param auditLogRecord this is the parsed audit log
+     * @throws IOException
+     */
+    void write(AuditLogRecord auditLogRecord) throws IOException;
+
+    /**
+     * reject method receives a line which didn't give a parsed audit log; by default it is dropped
+     * @param singleAuditLog this is the rejected line
+     * @param rejectReason this is why the line was rejected
+     * @throws IOException
+     */
+    default void reject(String singleAuditLog, RejectReason rejectReason) throws IOException {
+    }
+
+    /**
+     * flush method hands everything written so far over to the output, e.g. writes the buffered data into the file;
+     * it doesn't force the data to the disk. By default there is nothing to flush
+     * @throws IOException
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * close method flushes and releases whatever the sink has open; by default there is nothing to close
+     * @throws IOException
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,190 @@
+package com.logs;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AuditLogSketches class saves and combines the {@link FieldSketch}es of runs, so the top values and distinct counts
+ * of weeks and months are computed from the sketch files of days without parsing the audit logs again.
+ *
+ * A sketch file holds a magic number, a version and the sketches one after the other, in the binary format of
+ * {@link FieldSketch#write(java.io.DataOutput)}; a sketch file takes a few hundred KB whatever the number of audit logs.
+ *
+ * Usage: AuditLogSketches output.sketch input.sketch... [-report file] [-top N]
+ * writes the sketches of all the input files merged field by field into the output file, and their top values
+ * and distinct counts into the json report file.
+ */
+public final class AuditLogSketches {
+
+    private static final Logger LOG = Logger.getLogger(AuditLogSketches.class);
+
+    /**
+     * Number of top values of every field written into the reports when none is given.
+     */
+    public static final int DEFAULT_TOP = 100;
+
+    private static final int MAGIC = 0x534b5448;
+    private static final int VERSION = 1;
+
+    private AuditLogSketches() {
+    }
+
+    /**
+     * write method saves sketches into a sketch file
+     * @param sketchFile this is the sketch file, it is replaced if it exists
+     * @param sketches these are the sketches
+     * @throws IOException
+     */
+    public static void write(File sketchFile, List<FieldSketch> sketches) throws IOException {
+        try (DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sketchFile)))) {
+            dataOutput.writeInt(MAGIC);
+            dataOutput.writeInt(VERSION);
+            dataOutput.writeInt(sketches.size());
+            for (FieldSketch sketch : sketches) {
+                sketch.write(dataOutput);
+            }
+        }
+    }
+
+    /**
+     * read method loads the sketches of a sketch file
+     * @param sketchFile this is the sketch file
+     * @return the sketches, in the order they were written
+     * @throws IOException if the file can't be read or is not a sketch file
+     */
+    public static List<FieldSketch> read(File sketchFile) throws IOException {
+        try (DataInputStream dataInput = new DataInputStream(new BufferedInputStream(new FileInputStream(sketchFile)))) {
+            if (dataInput.readInt() != MAGIC) {
+                throw new IOException(sketchFile + " is not a sketch file");
+            }
+            int version = dataInput.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of sketch file " + sketchFile);
+            }
+            int count = dataInput.readInt();
+            List<FieldSketch> sketches = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                sketches.add(FieldSketch.read(dataInput));
+            }
+            return sketches;
+        }
+    }
+
+    /**
+     * merge method adds sketches to the sketches of the same fields
+     * @param sketches these are the sketches merged into, the sketches of new fields are appended
+     * @param others these are the sketches to add, they are not changed unless appended
+     */
+    public static void merge(List<FieldSketch> sketches, List<FieldSketch> others) {
+        for (FieldSketch other : others) {
+            FieldSketch sketch = null;
+            for (FieldSketch candidate : sketches) {
+                if (candidate.getField().equals(other.getField())) {
+                    sketch = candidate;
+                    break;
+                }
+            }
+            if (sketch == null) {
+                sketches.add(other);
+            } else {
+                sketch.merge(other);
+            }
+        }
+    }
+
+    /**
+     * writeJson method writes the top values and distinct count of every sketch as a json array field
+     * @param jsonGenerator this is where the array is written
+     * @param sketches these are the sketches
+     * @param top this is the number of top values written for every field
+     * @throws IOException
+     */
+    static void writeJson(JsonGenerator jsonGenerator, List<FieldSketch> sketches, int top) throws IOException {
+        jsonGenerator.writeArrayFieldStart("sketches");
+        for (FieldSketch sketch : sketches) {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("field", sketch.getField());
+            jsonGenerator.writeNumberField("requests", sketch.getTopByRequests().getTotal());
+            jsonGenerator.writeNumberField("bytessent", sketch.getTopByBytesSent().getTotal());
+            jsonGenerator.writeNumberField("distinct", sketch.getDistinct().estimate());
+            writeCounters(jsonGenerator, "topByRequests", sketch.getTopByRequests().top(top));
+            writeCounters(jsonGenerator, "topByBytesSent", sketch.getTopByBytesSent().top(top));
+            jsonGenerator.writeEndObject();
+        }
+        jsonGenerator.writeEndArray();
+    }
+
+    private static void writeCounters(JsonGenerator jsonGenerator, String name, List<SpaceSaving.Counter> counters)
+            throws IOException {
+        jsonGenerator.writeArrayFieldStart(name);
+        for (SpaceSaving.Counter counter : counters) {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("value", counter.getValue());
+            jsonGenerator.writeNumberField("count", counter.getCount());
+            jsonGenerator.writeNumberField("error", counter.getError());
+            jsonGenerator.writeEndObject();
+        }
+        jsonGenerator.writeEndArray();
+    }
+
+    /**
+     * writeReport method writes the top values and distinct count of every sketch into a json file
+     * @param jsonFile this is the report file, it is replaced if it exists
+     * @param sketches these are the sketches
+     * @param top this is the number of top values written for every field
+     * @throws IOException
+     */
+    public static void writeReport(File jsonFile, List<FieldSketch> sketches, int top) throws IOException {
+        try (JsonGenerator jsonGenerator = new ObjectMapper().getFactory().createGenerator(jsonFile, JsonEncoding.UTF8)) {
+            jsonGenerator.writeStartObject();
+            writeJson(jsonGenerator, sketches, top);
+            jsonGenerator.writeEndObject();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File output = null;
+        List<File> inputs = new ArrayList<>();
+        File reportFile = null;
+        int top = DEFAULT_TOP;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-report") && i + 1 < args.length) {
+                reportFile = new File(args[++i]);
+            } else if (args[i].equals("-top") && i + 1 < args.length) {
+                top = Integer.parseInt(args[++i]);
+            } else if (output == null) {
+                output = new File(args[i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+        if (output == null || inputs.isEmpty()) {
+            System.err.println("Usage: AuditLogSketches output.sketch input.sketch... [-report file] [-top N]");
+            System.exit(1);
+        }
+
+        List<FieldSketch> sketches = new ArrayList<>();
+        for (File input : inputs) {
+            merge(sketches, read(input));
+        }
+        write(output, sketches);
+        LOG.info("Successfully merged " + inputs.size() + " sketch files into " + output);
+        if (reportFile != null) {
+            writeReport(reportFile, sketches, top);
+            LOG.info("Successfully written the report into " + reportFile);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.logs;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableFileInput;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AvroAuditLogSink class serializes parsed audit logs into an avro file as they arrive,
+ * either into a new file or appended to an existing avro file
+ *
+ * The schema is loaded once from the classpath and the position of every log group in it is resolved up front,
+ * so writing a record is a loop over fixed slots of a single reused {@link GenericData.Record}.
+ * The decoded timestamp is written into 'timestampMillis', a long column with the timestamp-millis logical type.
+ * The blocks of the file are compressed with the configured codec.
+ * With a {@link FieldProjection} the file only has the projected columns, see {@link #projectSchema(FieldProjection)}.
+ *
+ * With {@link OutputOptions#setWriteAvroIndex(boolean)} the bytes written into the file are counted, so every time
+ * the writer writes a block its offsets are known, and the block is appended to the {@link AvroBlockIndex} of the
+ * file with the timestamps and the values of the indexed fields of its audit logs.
+ */
+public class AvroAuditLogSink implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(AvroAuditLogSink.class);
+
+    /**
+     * Schema of the avro file, see schema.avsc.
+     */
+    public static final Schema SCHEMA = loadSchema();
+
+    /**
+     * Groups which are written as long values; "-" or anything which isn't a number is written as null.
+     */
+    private static final List<String> LONG_VALUES = Arrays.asList("turnaroundtime", "bytessent", "objectsize", "totaltime");
+
+    private static final List<String> GROUPS = S3LogParser.AWS_LOG_REGEXP_GROUPS;
+
+    /**
+     * Whether every group of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS} is a long value.
+     */
+    private static final boolean[] GROUP_IS_LONG = new boolean[GROUPS.size()];
+
+    static {
+        for (int i = 0; i < GROUPS.size(); i++) {
+            GROUP_IS_LONG[i] = LONG_VALUES.contains(GROUPS.get(i));
+        }
+    }
+
+    /**
+     * Position in the schema of the file of every group of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS},
+     * -1 if it isn't in the schema.
+     */
+    private final int[] groupPositions = new int[GROUPS.size()];
+
+    private final int referrerMapPosition;
+
+    private final int timestampMillisPosition;
+
+    private final DataFileWriter<GenericRecord> dataFileWriter;
+
+    private final CountingOutputStream avroOutput;
+
+    /**
+     * Index of the blocks, null if the file isn't indexed.
+     */
+    private final AvroBlockIndexWriter blockIndexWriter;
+
+    /**
+     * Offset of the block being filled.
+     */
+    private long blockStart;
+
+    /**
+     * Record reused for every audit log, the writer serializes it before the next one is filled.
+     */
+    private final GenericData.Record genericRecord;
+
+    public AvroAuditLogSink(File avroFile) throws IOException {
+        this(avroFile, false);
+    }
+
+    /**
+     * @param avroFile this is the avro file to write
+     * @param append whether records are appended to the file when it already has data, instead of replacing it
+     * @throws IOException
+     */
+    public AvroAuditLogSink(File avroFile, boolean append) throws IOException {
+        this(avroFile, append, new OutputOptions());
+    }
+
+    /**
+     * @param avroFile this is the avro file to write
+     * @param append whether records are appended to the file when it already has data, instead of replacing it;
+     *               appended blocks use the codec of the existing file
+     * @param outputOptions codec, sync interval and projection of the avro file
+     * @throws IOException if appending to a file written with another projection
+     */
+    public AvroAuditLogSink(File avroFile, boolean append, OutputOptions outputOptions) throws IOException {
+        Schema schema = projectSchema(outputOptions.getProjection());
+        for (int i = 0; i < GROUPS.size(); i++) {
+            Schema.Field field = schema.getField(GROUPS.get(i));
+            groupPositions[i] = field == null ? -1 : field.pos();
+        }
+        Schema.Field referrerMap = schema.getField("referrerMap");
+        referrerMapPosition = referrerMap == null ? -1 : referrerMap.pos();
+        Schema.Field timestampMillis = schema.getField("timestampMillis");
+        timestampMillisPosition = timestampMillis == null ? -1 : timestampMillis.pos();
+        genericRecord = new GenericData.Record(schema);
+
+        DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<GenericRecord>(schema);
+        dataFileWriter = new DataFileWriter<GenericRecord>(datumWriter);
+        dataFileWriter.setSyncInterval(outputOptions.getAvroSyncInterval());
+        // every block reaches the stream as soon as it is written, so the counted bytes are its end
+        dataFileWriter.setFlushOnEveryBlock(true);
+        boolean appending = append && avroFile.length() > 0;
+        if (appending) {
+            try (DataFileReader<GenericRecord> dataFileReader = new DataFileReader<>(avroFile, new GenericDatumReader<>())) {
+                if (!dataFileReader.getSchema().equals(schema)) {
+                    throw new IOException("Avro file " + avroFile + " was written with other columns than "
+                            + outputOptions.getProjection());
+                }
+            }
+            avroOutput = new CountingOutputStream(new FileOutputStream(avroFile, true), avroFile.length());
+            try (SeekableFileInput seekableFileInput = new SeekableFileInput(avroFile)) {
+                dataFileWriter.appendTo(seekableFileInput, avroOutput);
+            }
+        } else {
+            avroOutput = new CountingOutputStream(new FileOutputStream(avroFile), 0);
+            dataFileWriter.setCodec(outputOptions.getAvroCodec());
+            dataFileWriter.create(schema, avroOutput);
+        }
+
+        if (outputOptions.isWriteAvroIndex()) {
+            // the header is written, the first block starts after it
+            dataFileWriter.flush();
+            blockStart = avroOutput.position;
+            List<String> indexedFields = new ArrayList<>();
+            for (String field : AvroBlockIndex.DEFAULT_FIELDS) {
+                if (schema.getField(field) != null) {
+                    indexedFields.add(field);
+                }
+            }
+            blockIndexWriter = new AvroBlockIndexWriter(AvroBlockIndex.indexFile(avroFile), indexedFields,
+                    blockStart, appending);
+        } else {
+            blockIndexWriter = null;
+        }
+    }
+
+    /**
+     * Output stream which counts the bytes written into the avro file.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long position;
+
+        private CountingOutputStream(OutputStream outputStream, long position) {
+            super(outputStream);
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            position += length;
+        }
+    }
+
+    /**
+     * projectSchema method keeps the columns of {@link #SCHEMA} which hold projected fields:
+     * the projected groups, 'timestampMillis' if the timestamp is projected and 'referrerMap' if a referrer key is
+     * @param projection this is the projection
+     * @return the projected schema, {@link #SCHEMA} itself for {@link FieldProjection#ALL}
+     */
+    public static Schema projectSchema(FieldProjection projection) {
+        if (projection.isAll()) {
+            return SCHEMA;
+        }
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : SCHEMA.getFields()) {
+            String name = field.name();
+            boolean projected = name.equals("referrerMap") ? projection.hasReferrerHeaderKeys()
+                    : name.equals("timestampMillis") ? projection.getGroups().contains(S3LogParser.TIMESTAMP_GROUP)
+                    : projection.getGroups().contains(name);
+            if (projected) {
+                fields.add(new Schema.Field(field, field.schema()));
+            }
+        }
+        return Schema.createRecord(SCHEMA.getName(), SCHEMA.getDoc(), SCHEMA.getNamespace(), false, fields);
+    }
+
+    private static Schema loadSchema() {
+        try (InputStream inputStream = AvroAuditLogSink.class.getResourceAsStream("schema.avsc")) {
+            if (inputStream == null) {
+                throw new IllegalStateException("schema.avsc is not on the classpath");
+            }
+            return new Schema.Parser().parse(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        Map<String, String> auditLogMap = auditLogRecord.getAuditLogMap();
+        for (int i = 0; i < groupPositions.length; i++) {
+            int position = groupPositions[i];
+            if (position < 0) {
+                continue;
+            }
+            String value = auditLogMap.get(GROUPS.get(i));
+            if (value != null) {
+                value = value.trim();
+            }
+            genericRecord.put(position, GROUP_IS_LONG[i] ? parseLong(value) : value);
+        }
+        if (referrerMapPosition >= 0) {
+            genericRecord.put(referrerMapPosition, auditLogRecord.getReferrerHeaderMap());
+        }
+        if (timestampMillisPosition >= 0) {
+            genericRecord.put(timestampMillisPosition, timestampMillis(auditLogRecord));
+        }
+        dataFileWriter.append(genericRecord);
+        if (blockIndexWriter != null) {
+            // a full block is written with the audit log just appended
+            blockIndexWriter.add(auditLogRecord);
+            indexWrittenBlock();
+        }
+    }
+
+    /**
+     * indexWrittenBlock method appends the block to the index if the writer wrote it into the file
+     * @throws IOException
+     */
+    private void indexWrittenBlock() throws IOException {
+        if (avroOutput.position != blockStart) {
+            blockIndexWriter.endBlock(blockStart, avroOutput.position);
+            blockStart = avroOutput.position;
+        }
+    }
+
+    /**
+     * @return the decoded timestamp of the audit log, or null if it has no valid timestamp
+     */
+    static Long timestampMillis(AuditLogRecord auditLogRecord) {
+        long timestampMillis = auditLogRecord.getTimestampMillis();
+        return timestampMillis == S3TimestampDecoder.INVALID ? null : timestampMillis;
+    }
+
+    /**
+     * parseLong method parses a natural number without throwing exceptions
+     * @param value this is the value of a long group
+     * @return the number, or null for "-", an empty value, anything which isn't a number or doesn't fit in a long
+     */
+    static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        int length = value.length();
+        if (length == 0 || length > 18) {
+            // 18 digits always fit in a long, longer values are outside what S3 logs
+            return null;
+        }
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * flush method writes the current block, so the file ends on a block boundary
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        dataFileWriter.flush();
+        if (blockIndexWriter != null) {
+            indexWrittenBlock();
+            blockIndexWriter.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataFileWriter.close();
+        if (blockIndexWriter != null) {
+            indexWrittenBlock();
+            blockIndexWriter.close();
+        }
+        LOG.info("Data successfully serialized and converted into Avro file");
+    }
+}
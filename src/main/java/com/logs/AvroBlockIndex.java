@@ -0,0 +1,210 @@
+package com.logs;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * AvroBlockIndex class is the sidecar index of an avro file written by {@link AvroAuditLogSink}: for every block of
+ * the file it holds the offset of the block, the number of audit logs, their smallest and largest timestamp and a
+ * {@link BloomFilter} of the values of the indexed fields, by default bucket, requester, key and requestid.
+ * {@link AvroIndexedReader} uses it to only read the blocks which may have the audit logs looked for.
+ *
+ * The index of 'data.avro' is 'data.avro.idx', see {@link #indexFile(File)}. It holds a magic number, a version,
+ * the indexed fields and then the blocks one after the other, appended as the avro file grows; a block takes about
+ * 5 bytes per indexed value, around 1% of the size of the block. Blocks missing from the index, e.g. after a crash,
+ * are found by the reader from the gaps between the indexed blocks.
+ */
+public class AvroBlockIndex {
+
+    /**
+     * Fields indexed when none are given.
+     */
+    public static final List<String> DEFAULT_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            S3LogParser.BUCKET_GROUP, S3LogParser.REQUESTER_GROUP, S3LogParser.KEY_GROUP, S3LogParser.REQUESTID_GROUP));
+
+    static final int MAGIC = 0x41494458;
+    static final int VERSION = 1;
+
+    /**
+     * What is known about a single block of the avro file.
+     */
+    public static final class Block {
+        private final long offset;
+        private final long end;
+        private final long records;
+        private final long minTimestampMillis;
+        private final long maxTimestampMillis;
+        private final BloomFilter bloomFilter;
+
+        /**
+         * @param offset offset of the block in the avro file, right after the sync marker before it
+         * @param end offset of the next block, right after the sync marker of this block
+         * @param records number of audit logs of the block
+         * @param minTimestampMillis smallest timestamp of the block, Long.MAX_VALUE if it has none
+         * @param maxTimestampMillis largest timestamp of the block, Long.MIN_VALUE if it has none
+         * @param bloomFilter filter of the values of the indexed fields, see {@link #mightContain(int, CharSequence)}
+         */
+        public Block(long offset, long end, long records, long minTimestampMillis, long maxTimestampMillis,
+                     BloomFilter bloomFilter) {
+            this.offset = offset;
+            this.end = end;
+            this.records = records;
+            this.minTimestampMillis = minTimestampMillis;
+            this.maxTimestampMillis = maxTimestampMillis;
+            this.bloomFilter = bloomFilter;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getMinTimestampMillis() {
+            return minTimestampMillis;
+        }
+
+        public long getMaxTimestampMillis() {
+            return maxTimestampMillis;
+        }
+
+        /**
+         * @param fromMillis this is the start of the time range, inclusive
+         * @param toMillis this is the end of the time range, exclusive
+         * @return whether an audit log of the block may have a timestamp in the range
+         */
+        public boolean overlaps(long fromMillis, long toMillis) {
+            return minTimestampMillis < toMillis && maxTimestampMillis >= fromMillis;
+        }
+
+        /**
+         * @param field this is the index of the field in {@link #getFields()}
+         * @param value this is the value
+         * @return false if no audit log of the block has the value, true if one may have it
+         */
+        public boolean mightContain(int field, CharSequence value) {
+            return bloomFilter.mightContain(hash(field, value));
+        }
+
+        void write(DataOutput dataOutput) throws IOException {
+            dataOutput.writeLong(offset);
+            dataOutput.writeLong(end);
+            dataOutput.writeLong(records);
+            dataOutput.writeLong(minTimestampMillis);
+            dataOutput.writeLong(maxTimestampMillis);
+            bloomFilter.write(dataOutput);
+        }
+
+        static Block read(DataInput dataInput) throws IOException {
+            return new Block(dataInput.readLong(), dataInput.readLong(), dataInput.readLong(), dataInput.readLong(),
+                    dataInput.readLong(), BloomFilter.read(dataInput));
+        }
+    }
+
+    private final List<String> fields;
+    private final List<Block> blocks;
+
+    /**
+     * @param fields these are the indexed fields
+     * @param blocks these are the blocks, in the order of the avro file
+     */
+    public AvroBlockIndex(List<String> fields, List<Block> blocks) {
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+    }
+
+    /**
+     * @param avroFile this is the avro file
+     * @return the index file of the avro file, its name with '.idx' added
+     */
+    public static File indexFile(File avroFile) {
+        return new File(avroFile.getParentFile(), avroFile.getName() + ".idx");
+    }
+
+    /**
+     * hash method hashes a value of an indexed field, values of other fields hash differently
+     * @param field this is the index of the field
+     * @param value this is the value
+     * @return the hash added to the bloom filter
+     */
+    static long hash(int field, CharSequence value) {
+        return HyperLogLog.hash(value) ^ ((field + 1) * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * writeHeader method writes the magic number, the version and the indexed fields of an index file
+     * @param dataOutput this is where the header is written
+     * @param fields these are the indexed fields
+     * @throws IOException
+     */
+    static void writeHeader(DataOutput dataOutput, List<String> fields) throws IOException {
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeInt(VERSION);
+        dataOutput.writeInt(fields.size());
+        for (String field : fields) {
+            dataOutput.writeUTF(field);
+        }
+    }
+
+    /**
+     * read method loads an index file; a block cut short at the end of the file, e.g. by a crash, is left out
+     * @param indexFile this is the index file
+     * @return the index
+     * @throws IOException if the file can't be read or is not an index file
+     */
+    public static AvroBlockIndex read(File indexFile) throws IOException {
+        try (DataInputStream dataInput = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (dataInput.readInt() != MAGIC) {
+                throw new IOException(indexFile + " is not an avro index file");
+            }
+            int version = dataInput.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of avro index file " + indexFile);
+            }
+            int count = dataInput.readInt();
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                fields.add(dataInput.readUTF());
+            }
+            List<Block> blocks = new ArrayList<>();
+            try {
+                while (true) {
+                    blocks.add(Block.read(dataInput));
+                }
+            } catch (EOFException e) {
+                // the end of the file, or a block which was only partly written
+            }
+            return new AvroBlockIndex(fields, blocks);
+        }
+    }
+
+    /**
+     * @return the indexed fields
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the blocks, in the order of the avro file
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+}
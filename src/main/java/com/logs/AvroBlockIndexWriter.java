@@ -0,0 +1,140 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AvroBlockIndexWriter class builds the {@link AvroBlockIndex} of an avro file while it is written: the audit logs of
+ * the current block are added one by one, and when the block is written into the avro file, its timestamps and
+ * a bloom filter sized for its distinct values are appended to the index file.
+ *
+ * Not thread safe, it is fed by {@link AvroAuditLogSink} on its thread.
+ */
+class AvroBlockIndexWriter implements Closeable {
+
+    private final Logger LOG = Logger.getLogger(AvroBlockIndexWriter.class);
+
+    private final File indexFile;
+    private final List<String> fields;
+    private final DataOutputStream dataOutput;
+
+    private long records;
+    private long minTimestampMillis = Long.MAX_VALUE;
+    private long maxTimestampMillis = Long.MIN_VALUE;
+    private long[] hashes = new long[1024];
+    private int hashCount;
+    private long blocks;
+
+    /**
+     * @param indexFile this is the index file
+     * @param fields these are the fields to index
+     * @param avroLength this is the length of the avro file before the first block to index
+     * @param append whether the blocks of an existing index are kept, those up to the length of the avro file,
+     *               instead of replacing the index; an index of other fields is always replaced
+     * @throws IOException
+     */
+    AvroBlockIndexWriter(File indexFile, List<String> fields, long avroLength, boolean append) throws IOException {
+        this.indexFile = indexFile;
+        this.fields = new ArrayList<>(fields);
+        List<AvroBlockIndex.Block> keptBlocks = new ArrayList<>();
+        if (append && indexFile.length() > 0) {
+            try {
+                AvroBlockIndex avroBlockIndex = AvroBlockIndex.read(indexFile);
+                if (avroBlockIndex.getFields().equals(fields)) {
+                    for (AvroBlockIndex.Block block : avroBlockIndex.getBlocks()) {
+                        // blocks past the length were written by a run which didn't finish and are truncated
+                        if (block.getEnd() <= avroLength) {
+                            keptBlocks.add(block);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Replacing the unreadable avro index file " + indexFile, e);
+            }
+        }
+        dataOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+        AvroBlockIndex.writeHeader(dataOutput, fields);
+        for (AvroBlockIndex.Block block : keptBlocks) {
+            block.write(dataOutput);
+        }
+    }
+
+    /**
+     * add method adds an audit log to the current block
+     * @param auditLogRecord this is the parsed audit log
+     */
+    void add(AuditLogRecord auditLogRecord) {
+        records++;
+        long timestampMillis = auditLogRecord.getTimestampMillis();
+        if (timestampMillis != S3TimestampDecoder.INVALID) {
+            minTimestampMillis = Math.min(minTimestampMillis, timestampMillis);
+            maxTimestampMillis = Math.max(maxTimestampMillis, timestampMillis);
+        }
+        Map<String, String> auditLogMap = auditLogRecord.getAuditLogMap();
+        for (int i = 0; i < fields.size(); i++) {
+            String value = auditLogMap.get(fields.get(i));
+            if (value == null) {
+                continue;
+            }
+            // the values written into the avro file
+            value = value.trim();
+            if (value.isEmpty() || value.equals("-")) {
+                continue;
+            }
+            if (hashCount == hashes.length) {
+                hashes = Arrays.copyOf(hashes, hashCount * 2);
+            }
+            hashes[hashCount++] = AvroBlockIndex.hash(i, value);
+        }
+    }
+
+    /**
+     * endBlock method appends the current block to the index and starts the next one
+     * @param offset this is the offset of the block in the avro file
+     * @param end this is the offset of the next block
+     * @throws IOException
+     */
+    void endBlock(long offset, long end) throws IOException {
+        if (records == 0) {
+            return;
+        }
+        Arrays.sort(hashes, 0, hashCount);
+        int distinct = 0;
+        for (int i = 0; i < hashCount; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        BloomFilter bloomFilter = BloomFilter.forValues(distinct);
+        for (int i = 0; i < distinct; i++) {
+            bloomFilter.add(hashes[i]);
+        }
+        new AvroBlockIndex.Block(offset, end, records, minTimestampMillis, maxTimestampMillis, bloomFilter)
+                .write(dataOutput);
+        blocks++;
+        records = 0;
+        minTimestampMillis = Long.MAX_VALUE;
+        maxTimestampMillis = Long.MIN_VALUE;
+        hashCount = 0;
+    }
+
+    void flush() throws IOException {
+        dataOutput.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataOutput.close();
+        LOG.info("Successfully indexed " + blocks + " avro blocks into " + indexFile);
+    }
+}
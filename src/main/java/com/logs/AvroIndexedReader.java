@@ -0,0 +1,243 @@
+package com.logs;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * AvroIndexedReader class finds the audit logs of an avro file written by {@link AvroAuditLogSink} with given values
+ * and timestamps, e.g. all requests for a bucket between 10:00 and 10:05, without reading the whole file:
+ * the {@link AvroBlockIndex} of the file tells which blocks may have such audit logs, by their timestamps and the
+ * bloom filters of the indexed fields, and the reader seeks straight to them. Only the audit logs of those blocks
+ * are decoded and checked, so a lookup costs a few blocks instead of the whole file.
+ *
+ * Blocks which aren't in the index, e.g. written after the index was lost or by a run which crashed, are always read.
+ * Without an index file every block is read.
+ *
+ * Usage: AvroIndexedReader data.avro [-from time] [-to time] [field=value]...
+ * prints the audit logs of the avro file with all the values whose timestamp is in the range as json, one per line;
+ * the times are ISO-8601 instants, e.g. -from 2021-05-13T10:00:00Z -to 2021-05-13T10:05:00Z.
+ *
+ * A reader is not thread safe.
+ */
+public class AvroIndexedReader implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(AvroIndexedReader.class);
+
+    private final DataFileReader<GenericRecord> dataFileReader;
+    private final long avroLength;
+    /**
+     * Offset of the first block, right after the header.
+     */
+    private final long firstBlock;
+    private final AvroBlockIndex avroBlockIndex;
+    private long blocksRead;
+
+    /**
+     * @param avroFile this is the avro file, its index is {@link AvroBlockIndex#indexFile(File)}
+     * @throws IOException
+     */
+    public AvroIndexedReader(File avroFile) throws IOException {
+        this.dataFileReader = new DataFileReader<>(avroFile, new GenericDatumReader<>());
+        this.avroLength = avroFile.length();
+        this.firstBlock = dataFileReader.previousSync();
+        File indexFile = AvroBlockIndex.indexFile(avroFile);
+        AvroBlockIndex index = null;
+        if (indexFile.exists()) {
+            try {
+                index = AvroBlockIndex.read(indexFile);
+            } catch (IOException e) {
+                LOG.warn("Reading every block of " + avroFile + ", its index can't be read", e);
+            }
+        } else {
+            LOG.warn("Reading every block of " + avroFile + ", it has no index");
+        }
+        this.avroBlockIndex = index == null
+                ? new AvroBlockIndex(Collections.emptyList(), Collections.emptyList()) : index;
+    }
+
+    /**
+     * @return the index of the file, without blocks if the file has no index
+     */
+    public AvroBlockIndex getIndex() {
+        return avroBlockIndex;
+    }
+
+    /**
+     * @return the schema of the avro file
+     */
+    public Schema getSchema() {
+        return dataFileReader.getSchema();
+    }
+
+    /**
+     * @return the number of blocks read so far, indexed or not
+     */
+    public long getBlocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * find method reads the audit logs with the given values whose timestamp is in the given range
+     * @param fromMillis this is the start of the time range, inclusive; Long.MIN_VALUE for no start
+     * @param toMillis this is the end of the time range, exclusive; Long.MAX_VALUE for no end
+     * @param values these are the values the audit logs must have, by field, e.g. bucket and requestid;
+     *               indexed fields skip blocks, the others are only checked on the audit logs read
+     * @param consumer this is given every audit log found, in the order of the file
+     * @return the number of audit logs found
+     * @throws IOException
+     * @throws IllegalArgumentException if a field is not a column of the file
+     */
+    public long find(long fromMillis, long toMillis, Map<String, String> values, Consumer<GenericRecord> consumer)
+            throws IOException {
+        Schema schema = dataFileReader.getSchema();
+        boolean timeRange = fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+        int timestampPosition = -1;
+        if (timeRange) {
+            Schema.Field timestampMillis = schema.getField("timestampMillis");
+            if (timestampMillis == null) {
+                throw new IllegalArgumentException("Unknown audit log field : timestampMillis");
+            }
+            timestampPosition = timestampMillis.pos();
+        }
+        Map<Integer, String> columnValues = new LinkedHashMap<>();
+        Map<Integer, String> indexedValues = new LinkedHashMap<>();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            Schema.Field field = schema.getField(value.getKey());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown audit log field : " + value.getKey());
+            }
+            // values are written trimmed
+            String trimmed = value.getValue().trim();
+            columnValues.put(field.pos(), trimmed);
+            int indexedField = avroBlockIndex.getFields().indexOf(value.getKey());
+            if (indexedField >= 0) {
+                indexedValues.put(indexedField, trimmed);
+            }
+        }
+
+        long found = 0;
+        for (long[] range : candidateRanges(timeRange, fromMillis, toMillis, indexedValues)) {
+            // a block belongs to the range of the sync marker before it, see DataFileReader#pastSync(long)
+            dataFileReader.sync(Math.max(0, range[0] - DataFileConstants.SYNC_SIZE));
+            long block = -1;
+            while (dataFileReader.hasNext() && !dataFileReader.pastSync(range[1] - DataFileConstants.SYNC_SIZE)) {
+                // next() moves previousSync() to the next block after the last audit log of a block
+                if (dataFileReader.previousSync() != block) {
+                    block = dataFileReader.previousSync();
+                    blocksRead++;
+                }
+                GenericRecord genericRecord = dataFileReader.next();
+                if (matches(genericRecord, timestampPosition, fromMillis, toMillis, columnValues)) {
+                    consumer.accept(genericRecord);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * candidateRanges method lists the ranges of the file to read: the indexed blocks which may have audit logs
+     * with the values and timestamps, merged with their neighbours, and the gaps between indexed blocks
+     * @return the ranges, each from the offset of its first block to the end of its last block
+     */
+    private List<long[]> candidateRanges(boolean timeRange, long fromMillis, long toMillis,
+                                         Map<Integer, String> indexedValues) {
+        List<long[]> ranges = new ArrayList<>();
+        long indexedEnd = firstBlock;
+        for (AvroBlockIndex.Block block : avroBlockIndex.getBlocks()) {
+            if (block.getOffset() > indexedEnd) {
+                addRange(ranges, indexedEnd, block.getOffset());
+            }
+            boolean candidate = !timeRange || block.overlaps(fromMillis, toMillis);
+            for (Map.Entry<Integer, String> indexedValue : indexedValues.entrySet()) {
+                candidate = candidate && block.mightContain(indexedValue.getKey(), indexedValue.getValue());
+            }
+            if (candidate) {
+                addRange(ranges, block.getOffset(), block.getEnd());
+            }
+            indexedEnd = Math.max(indexedEnd, block.getEnd());
+        }
+        if (indexedEnd < avroLength) {
+            addRange(ranges, indexedEnd, avroLength);
+        }
+        return ranges;
+    }
+
+    private static void addRange(List<long[]> ranges, long start, long end) {
+        long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[1] == start) {
+            last[1] = end;
+        } else {
+            ranges.add(new long[] {start, end});
+        }
+    }
+
+    private static boolean matches(GenericRecord genericRecord, int timestampPosition, long fromMillis, long toMillis,
+                                   Map<Integer, String> columnValues) {
+        if (timestampPosition >= 0) {
+            Object timestampMillis = genericRecord.get(timestampPosition);
+            if (!(timestampMillis instanceof Long)
+                    || (Long) timestampMillis < fromMillis || (Long) timestampMillis >= toMillis) {
+                return false;
+            }
+        }
+        for (Map.Entry<Integer, String> columnValue : columnValues.entrySet()) {
+            Object value = genericRecord.get(columnValue.getKey());
+            if (value == null || !value.toString().equals(columnValue.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataFileReader.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: AvroIndexedReader data.avro [-from time] [-to time] [field=value]...");
+            System.exit(1);
+        }
+        long fromMillis = Long.MIN_VALUE;
+        long toMillis = Long.MAX_VALUE;
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-from") && i + 1 < args.length) {
+                fromMillis = Instant.parse(args[++i]).toEpochMilli();
+            } else if (args[i].equals("-to") && i + 1 < args.length) {
+                toMillis = Instant.parse(args[++i]).toEpochMilli();
+            } else {
+                int equals = args[i].indexOf('=');
+                if (equals < 1) {
+                    throw new IllegalArgumentException("Invalid value, expected field=value : " + args[i]);
+                }
+                values.put(args[i].substring(0, equals), args[i].substring(equals + 1));
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        try (AvroIndexedReader avroIndexedReader = new AvroIndexedReader(new File(args[0]))) {
+            long found = avroIndexedReader.find(fromMillis, toMillis, values, System.out::println);
+            LOG.info("Found " + found + " audit logs in " + avroIndexedReader.getBlocksRead() + " of "
+                    + avroIndexedReader.getIndex().getBlocks().size() + " indexed blocks in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+        }
+    }
+}
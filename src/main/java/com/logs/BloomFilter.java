@@ -0,0 +1,106 @@
+package com.logs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * BloomFilter class tells whether a value may be in a set, with no false negatives and a small rate of false
+ * positives: 10 bits per value and 7 probes give about 1% false positives.
+ * see Bloom, "Space/time trade-offs in hash coding with allowable errors"
+ *
+ * Values are added by their 64 bits hash, e.g. {@link HyperLogLog#hash(CharSequence)}; the probes are derived
+ * from its two halves, see Kirsch and Mitzenmacher, "Less hashing, same performance: building a better Bloom filter".
+ *
+ * A BloomFilter is not thread safe.
+ */
+public class BloomFilter {
+
+    /**
+     * Bits per value of a filter sized by {@link #forValues(int)}.
+     */
+    public static final int BITS_PER_VALUE = 10;
+
+    /**
+     * Number of bits probed per value, the best number for {@link #BITS_PER_VALUE}.
+     */
+    public static final int PROBES = 7;
+
+    private final long[] words;
+    private final long bits;
+
+    /**
+     * @param words number of 64 bits words of the filter, at least 1
+     */
+    public BloomFilter(int words) {
+        if (words < 1) {
+            throw new IllegalArgumentException("Bloom filter must have at least 1 word : " + words);
+        }
+        this.words = new long[words];
+        this.bits = words * 64L;
+    }
+
+    /**
+     * forValues method creates a filter sized for a number of distinct values
+     * @param values this is the number of distinct values which will be added
+     * @return the empty filter
+     */
+    public static BloomFilter forValues(int values) {
+        return new BloomFilter((int) Math.max(1, ((long) values * BITS_PER_VALUE + 63) / 64));
+    }
+
+    /**
+     * add method adds a value to the filter
+     * @param hash this is the 64 bits hash of the value
+     */
+    public void add(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        for (int i = 0; i < PROBES; i++) {
+            long bit = ((low + i * high) & 0x7fffffffL) % bits;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param hash this is the 64 bits hash of the value
+     * @return false if the value was never added, true if it may have been added
+     */
+    public boolean mightContain(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        for (int i = 0; i < PROBES; i++) {
+            long bit = ((low + i * high) & 0x7fffffffL) % bits;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * write method serializes the filter
+     * @param dataOutput this is where the filter is written
+     * @throws IOException
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(words.length);
+        for (long word : words) {
+            dataOutput.writeLong(word);
+        }
+    }
+
+    /**
+     * read method deserializes a filter written by {@link #write(DataOutput)}
+     * @param dataInput this is where the filter is read from
+     * @return the filter
+     * @throws IOException
+     */
+    public static BloomFilter read(DataInput dataInput) throws IOException {
+        BloomFilter bloomFilter = new BloomFilter(dataInput.readInt());
+        for (int i = 0; i < bloomFilter.words.length; i++) {
+            bloomFilter.words[i] = dataInput.readLong();
+        }
+        return bloomFilter;
+    }
+}
@@ -0,0 +1,109 @@
+package com.logs;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CsvAuditLogSink class writes parsed audit logs into a csv file, one row per audit log,
+ * in which all key-value pairs of all audit logs are displayed as a table.
+ * The columns are the groups of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}
+ * followed by {@link S3LogParser#REFERRER_HEADER_KEYS}; other referrer keys are not written.
+ * With a {@link FieldProjection} only the projected groups and referrer keys are columns.
+ * When appending to a csv file which already has rows, the header is not written again.
+ */
+public class CsvAuditLogSink implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(CsvAuditLogSink.class);
+
+    /**
+     * Schema of the csv file, built once from the known groups and referrer keys.
+     */
+    public static final CsvSchema CSV_SCHEMA = buildCsvSchema();
+
+    private final CsvGenerator csvGenerator;
+    private final List<String> auditLogColumns;
+    private final List<String> referrerHeaderColumns;
+
+    public CsvAuditLogSink(File csvFile) throws IOException {
+        this(csvFile, false);
+    }
+
+    /**
+     * @param csvFile this is the csv file to write
+     * @param append whether rows are appended to the file when it already has data, instead of replacing it
+     * @throws IOException
+     */
+    public CsvAuditLogSink(File csvFile, boolean append) throws IOException {
+        this(csvFile, append, FieldProjection.ALL);
+    }
+
+    /**
+     * @param csvFile this is the csv file to write
+     * @param append whether rows are appended to the file when it already has data, instead of replacing it
+     * @param projection this is the projection of the columns
+     * @throws IOException
+     */
+    public CsvAuditLogSink(File csvFile, boolean append, FieldProjection projection) throws IOException {
+        auditLogColumns = projection.getGroups();
+        referrerHeaderColumns = projection.getReferrerHeaderKeys();
+        CsvSchema csvSchema = projection.isAll() ? CSV_SCHEMA : buildCsvSchema(auditLogColumns, referrerHeaderColumns);
+        boolean appending = append && csvFile.length() > 0;
+        CsvMapper csvMapper = new CsvMapper();
+        csvGenerator = csvMapper.getFactory().createGenerator(new FileOutputStream(csvFile, appending), JsonEncoding.UTF8);
+        csvGenerator.setSchema(appending ? csvSchema.withoutHeader() : csvSchema);
+        csvGenerator.enable(JsonGenerator.Feature.IGNORE_UNKNOWN);
+    }
+
+    private static CsvSchema buildCsvSchema() {
+        return buildCsvSchema(S3LogParser.AWS_LOG_REGEXP_GROUPS, S3LogParser.REFERRER_HEADER_KEYS);
+    }
+
+    private static CsvSchema buildCsvSchema(List<String> auditLogColumns, List<String> referrerHeaderColumns) {
+        CsvSchema.Builder csvSchemaBuilder = CsvSchema.builder();
+        for (String column : auditLogColumns) {
+            csvSchemaBuilder.addColumn(column);
+        }
+        for (String column : referrerHeaderColumns) {
+            csvSchemaBuilder.addColumn(column);
+        }
+        return csvSchemaBuilder.build().withHeader();
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        csvGenerator.writeStartObject();
+        writeColumns(auditLogColumns, auditLogRecord.getAuditLogMap());
+        writeColumns(referrerHeaderColumns, auditLogRecord.getReferrerHeaderMap());
+        csvGenerator.writeEndObject();
+    }
+
+    private void writeColumns(List<String> columns, Map<String, String> values) throws IOException {
+        for (String column : columns) {
+            String value = values.get(column);
+            if (value != null) {
+                csvGenerator.writeStringField(column, value);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        csvGenerator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        csvGenerator.close();
+        LOG.info("Successfully written into CSV file");
+    }
+}
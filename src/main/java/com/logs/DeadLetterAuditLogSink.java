@@ -0,0 +1,62 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DeadLetterAuditLogSink class writes the rejected lines into a dead-letter file, one line per rejected line
+ * prefixed by its {@link RejectReason} and a tab, e.g. "TRUNCATED\t&lt;line&gt;", so they can be looked at or replayed
+ * later. Parsed audit logs are ignored.
+ * Lines are written in UTF-8, the charset {@link AuditLogLineReader} decodes lines which aren't ASCII with.
+ */
+public class DeadLetterAuditLogSink implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(DeadLetterAuditLogSink.class);
+
+    private final File deadLetterFile;
+    private final BufferedWriter bufferedWriter;
+    private long count;
+
+    /**
+     * @param deadLetterFile this is the dead-letter file
+     * @param append whether rejected lines are appended to the file instead of replacing it
+     * @throws IOException
+     */
+    public DeadLetterAuditLogSink(File deadLetterFile, boolean append) throws IOException {
+        this.deadLetterFile = deadLetterFile;
+        bufferedWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(deadLetterFile, append), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) {
+    }
+
+    @Override
+    public void reject(String singleAuditLog, RejectReason rejectReason) throws IOException {
+        bufferedWriter.write(rejectReason.name());
+        bufferedWriter.write('\t');
+        bufferedWriter.write(singleAuditLog);
+        bufferedWriter.write('\n');
+        count++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        bufferedWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        bufferedWriter.close();
+        if (count > 0) {
+            LOG.info("Rejected audit logs written into '" + deadLetterFile + "' : " + count);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.logs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * FieldProjection class holds the fields a job needs out of every audit log: groups of
+ * {@link S3LogParser#AWS_LOG_REGEXP_GROUPS} and keys of {@link S3LogParser#REFERRER_HEADER_KEYS}.
+ *
+ * Given to {@link S3LogParser}, only the projected fields are turned into strings; the referrer header is only parsed
+ * when a referrer key is projected and the timestamp only decoded when the timestamp is projected.
+ * Given to the sinks through {@link OutputOptions#setProjection(FieldProjection)}, the avro, parquet and csv files
+ * only have the projected columns.
+ *
+ * The tokenizer still finds the separators of every field, so a line is checked against the whole S3 log grammar
+ * and a projection doesn't change which lines are parsed, in any {@link S3LogParser.ParsingMode}.
+ * Referrer keys other than the known ones are only kept by {@link #ALL}.
+ */
+public final class FieldProjection {
+
+    /**
+     * Projection of every field, the default.
+     */
+    public static final FieldProjection ALL = new FieldProjection(S3LogParser.AWS_LOG_REGEXP_GROUPS,
+            S3LogParser.REFERRER_HEADER_KEYS, true);
+
+    private final List<String> groups;
+    private final List<String> referrerHeaderKeys;
+    private final boolean[] groupMask = new boolean[S3LogParser.AWS_LOG_REGEXP_GROUPS.size()];
+    private final boolean[] referrerHeaderKeyMask = new boolean[S3LogParser.REFERRER_HEADER_KEYS.size()];
+    private final boolean all;
+
+    private FieldProjection(List<String> groups, List<String> referrerHeaderKeys, boolean all) {
+        this.groups = Collections.unmodifiableList(new ArrayList<>(groups));
+        this.referrerHeaderKeys = Collections.unmodifiableList(new ArrayList<>(referrerHeaderKeys));
+        this.all = all;
+        for (String group : groups) {
+            groupMask[S3LogParser.AWS_LOG_REGEXP_GROUPS.indexOf(group)] = true;
+        }
+        for (String key : referrerHeaderKeys) {
+            referrerHeaderKeyMask[S3LogParser.REFERRER_HEADER_KEYS.indexOf(key)] = true;
+        }
+    }
+
+    /**
+     * of method builds a projection from field names
+     * @param fields names of groups of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}
+     *               and of keys of {@link S3LogParser#REFERRER_HEADER_KEYS}, in any order
+     * @return the projection, with the fields in the order of the audit log
+     * @throws IllegalArgumentException if a name is neither a group nor a known referrer key
+     */
+    public static FieldProjection of(String... fields) {
+        return of(Arrays.asList(fields));
+    }
+
+    /**
+     * of method builds a projection from field names
+     * @param fields names of groups and of known referrer keys, in any order
+     * @return the projection, with the fields in the order of the audit log
+     * @throws IllegalArgumentException if a name is neither a group nor a known referrer key
+     */
+    public static FieldProjection of(List<String> fields) {
+        for (String field : fields) {
+            if (!S3LogParser.AWS_LOG_REGEXP_GROUPS.contains(field) && !S3LogParser.REFERRER_HEADER_KEYS.contains(field)) {
+                throw new IllegalArgumentException("Unknown audit log field : " + field);
+            }
+        }
+        List<String> groups = new ArrayList<>();
+        for (String group : S3LogParser.AWS_LOG_REGEXP_GROUPS) {
+            if (fields.contains(group)) {
+                groups.add(group);
+            }
+        }
+        List<String> referrerHeaderKeys = new ArrayList<>();
+        for (String key : S3LogParser.REFERRER_HEADER_KEYS) {
+            if (fields.contains(key)) {
+                referrerHeaderKeys.add(key);
+            }
+        }
+        return new FieldProjection(groups, referrerHeaderKeys, false);
+    }
+
+    /**
+     * parse method builds a projection from a comma separated list of field names, e.g. "bucket,timestamp,http,op"
+     * @param fields this is the list of field names
+     * @return the projection
+     * @throws IllegalArgumentException if a name is neither a group nor a known referrer key
+     */
+    public static FieldProjection parse(String fields) {
+        List<String> names = new ArrayList<>();
+        for (String name : fields.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return of(names);
+    }
+
+    /**
+     * @return true if this projection keeps every field, including unknown referrer keys
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * @return the projected groups, in the order of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}
+     */
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the projected referrer keys, in the order of {@link S3LogParser#REFERRER_HEADER_KEYS}
+     */
+    public List<String> getReferrerHeaderKeys() {
+        return referrerHeaderKeys;
+    }
+
+    /**
+     * @param field index of a group in {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}
+     * @return true if the group is projected
+     */
+    public boolean containsGroup(int field) {
+        return groupMask[field];
+    }
+
+    /**
+     * @param keyIndex index of a key in {@link S3LogParser#REFERRER_HEADER_KEYS}
+     * @return true if the referrer key is projected
+     */
+    public boolean containsReferrerHeaderKey(int keyIndex) {
+        return referrerHeaderKeyMask[keyIndex];
+    }
+
+    /**
+     * checkContains method checks that the projection keeps the fields a consumer of the parsed audit logs reads,
+     * as the fields left out are parsed as missing values
+     * @param fields names of groups and of known referrer keys
+     * @param consumer what reads the fields, for the error message, e.g. "the report"
+     * @throws IllegalArgumentException if a field is not projected
+     */
+    public void checkContains(Collection<String> fields, String consumer) {
+        if (all) {
+            return;
+        }
+        Set<String> missing = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (!groups.contains(field) && !referrerHeaderKeys.contains(field)) {
+                missing.add(field);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("The fields " + this + " leave out fields needed by " + consumer
+                    + " : " + String.join(",", missing));
+        }
+    }
+
+    /**
+     * @return true if the referrer header has to be parsed
+     */
+    public boolean hasReferrerHeaderKeys() {
+        return all || !referrerHeaderKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return all ? "all fields" : String.join(",", groups) + (referrerHeaderKeys.isEmpty() || groups.isEmpty() ? "" : ",")
+                + String.join(",", referrerHeaderKeys);
+    }
+}
@@ -0,0 +1,158 @@
+package com.logs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FieldSketch class summarizes the values of one field of the audit logs in bounded memory, however many audit logs
+ * and distinct values there are: the values with the most requests and the most bytes sent, see {@link SpaceSaving},
+ * and the number of distinct values, see {@link HyperLogLog}.
+ *
+ * Sketches of the same field are merged, so the sketches of the parsing threads give the sketch of a run,
+ * and the saved sketches of days give the sketch of a week or a month, see {@link AuditLogSketches}.
+ * A FieldSketch is not thread safe.
+ */
+public final class FieldSketch {
+
+    /**
+     * Fields sketched when none is given: who sends the requests and which keys they touch.
+     */
+    public static final List<String> DEFAULT_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            S3LogParser.REMOTEIP_GROUP, S3LogParser.KEY_GROUP, S3LogParser.REQUESTER_GROUP, S3LogParser.USERAGENT_GROUP));
+
+    private final String field;
+    /**
+     * Index of the field in {@link S3LogParser#REFERRER_HEADER_KEYS}, -1 for the groups of the audit log.
+     */
+    private final int referrerKeyIndex;
+    private final SpaceSaving topByRequests;
+    private final SpaceSaving topByBytesSent;
+    private final HyperLogLog distinct;
+
+    /**
+     * @param field name of a group of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}
+     *              or of a key of {@link S3LogParser#REFERRER_HEADER_KEYS}
+     * @throws IllegalArgumentException if the name is neither a group nor a known referrer key
+     */
+    public FieldSketch(String field) {
+        this(field, new SpaceSaving(), new SpaceSaving(), new HyperLogLog());
+    }
+
+    private FieldSketch(String field, SpaceSaving topByRequests, SpaceSaving topByBytesSent, HyperLogLog distinct) {
+        this.field = checkField(field);
+        this.referrerKeyIndex = S3LogParser.AWS_LOG_REGEXP_GROUPS.contains(field)
+                ? -1 : S3LogParser.REFERRER_HEADER_KEYS.indexOf(field);
+        this.topByRequests = topByRequests;
+        this.topByBytesSent = topByBytesSent;
+        this.distinct = distinct;
+    }
+
+    /**
+     * checkField method checks the name of a field to sketch
+     * @param field this is the name of the field
+     * @return the name
+     * @throws IllegalArgumentException if the name is neither a group nor a known referrer key
+     */
+    static String checkField(String field) {
+        if (!S3LogParser.AWS_LOG_REGEXP_GROUPS.contains(field) && !S3LogParser.REFERRER_HEADER_KEYS.contains(field)) {
+            throw new IllegalArgumentException("Unknown audit log field : " + field);
+        }
+        return field;
+    }
+
+    /**
+     * @return the name of the sketched field
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return the values with the most requests
+     */
+    public SpaceSaving getTopByRequests() {
+        return topByRequests;
+    }
+
+    /**
+     * @return the values with the most bytes sent
+     */
+    public SpaceSaving getTopByBytesSent() {
+        return topByBytesSent;
+    }
+
+    /**
+     * @return the distinct values
+     */
+    public HyperLogLog getDistinct() {
+        return distinct;
+    }
+
+    /**
+     * add method counts the value of the field of an audit log; audit logs without the field or with "-" are skipped
+     * @param auditLogRecord this is the parsed audit log
+     */
+    public void add(AuditLogRecord auditLogRecord) {
+        Map<String, String> auditLogMap = auditLogRecord.getAuditLogMap();
+        String value;
+        if (referrerKeyIndex < 0) {
+            value = auditLogMap.get(field);
+        } else if (auditLogRecord.getReferrerHeaderMap() instanceof ReferrerHeader) {
+            value = ((ReferrerHeader) auditLogRecord.getReferrerHeaderMap()).get(referrerKeyIndex);
+        } else {
+            value = auditLogRecord.getReferrerHeaderMap().get(field);
+        }
+        if (value == null || value.equals("-")) {
+            return;
+        }
+        topByRequests.add(value, 1);
+        topByBytesSent.add(value, AggregationTable.parseNatural(auditLogMap.get(S3LogParser.BYTESSENT_GROUP)));
+        distinct.add(value);
+    }
+
+    /**
+     * merge method adds the values of another sketch of the same field to this one
+     * @param other this is the other sketch, it is not changed
+     * @throws IllegalArgumentException if the other sketch is of another field
+     */
+    public void merge(FieldSketch other) {
+        if (!field.equals(other.field)) {
+            throw new IllegalArgumentException("Can't merge the sketch of " + other.field + " into the sketch of " + field);
+        }
+        topByRequests.merge(other.topByRequests);
+        topByBytesSent.merge(other.topByBytesSent);
+        distinct.merge(other.distinct);
+    }
+
+    /**
+     * write method serializes the sketch
+     * @param dataOutput this is where the sketch is written
+     * @throws IOException
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeUTF(field);
+        topByRequests.write(dataOutput);
+        topByBytesSent.write(dataOutput);
+        distinct.write(dataOutput);
+    }
+
+    /**
+     * read method deserializes a sketch written by {@link #write(DataOutput)}
+     * @param dataInput this is where the sketch is read from
+     * @return the sketch
+     * @throws IOException
+     */
+    public static FieldSketch read(DataInput dataInput) throws IOException {
+        String field = dataInput.readUTF();
+        try {
+            return new FieldSketch(field, SpaceSaving.read(dataInput), SpaceSaving.read(dataInput), HyperLogLog.read(dataInput));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid sketch of " + field, e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.logs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog class estimates the number of distinct values of a field in a fixed amount of memory:
+ * 2^precision registers of one byte, so 16 KB and a standard error of about 0.8% with the default precision.
+ * see Flajolet et al., "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm"
+ *
+ * Values are hashed into 64 bits, so no large range correction is needed; small cardinalities are counted
+ * with linear counting. Sketches of the same precision are merged by keeping the largest register,
+ * so sketches of threads, days or weeks combine into the sketch of their union.
+ *
+ * A HyperLogLog is not thread safe.
+ */
+public class HyperLogLog {
+
+    /**
+     * Default precision, 16384 registers.
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision number of bits of the hash which choose the register, between 4 and 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18 : " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * add method counts a value
+     * @param value this is the value, null is not counted
+     */
+    public void add(CharSequence value) {
+        if (value != null) {
+            addHash(hash(value));
+        }
+    }
+
+    /**
+     * addHash method counts a value by its 64 bit hash
+     * @param hash this is the hash of the value, which must be well mixed
+     */
+    public void addHash(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        // the remaining bits, with a guard bit so the rank is at most 64 - precision + 1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * merge method adds the values of another sketch to this one
+     * @param other this is the other sketch, it is not changed
+     * @throws IllegalArgumentException if the other sketch has another precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can't merge a HyperLogLog of precision " + other.precision
+                    + " into one of precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct values counted
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * (double) m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * hash method hashes the characters of a value into 64 well mixed bits: FNV-1a followed by the
+     * finalizer of MurmurHash3
+     * @param value this is the value
+     * @return the hash
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * write method serializes the sketch
+     * @param dataOutput this is where the sketch is written
+     * @throws IOException
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeByte(precision);
+        dataOutput.write(registers);
+    }
+
+    /**
+     * read method deserializes a sketch written by {@link #write(DataOutput)}
+     * @param dataInput this is where the sketch is read from
+     * @return the sketch
+     * @throws IOException
+     */
+    public static HyperLogLog read(DataInput dataInput) throws IOException {
+        HyperLogLog hyperLogLog = new HyperLogLog(dataInput.readByte());
+        dataInput.readFully(hyperLogLog.registers);
+        return hyperLogLog;
+    }
+}
@@ -0,0 +1,376 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * IncrementalAuditLogIngest class parses only the audit log files of a directory which are new or have changed
+ * since the last run, and appends the parsed audit logs to 'data.avro' and 'CsvLogs.csv' instead of rewriting them.
+ *
+ * What has been ingested is kept in an {@link AuditLogManifest} next to the outputs.
+ * A file which only grew is parsed from where the last run stopped. The outputs are only ever appended to, so a file
+ * whose ingested part has changed is never parsed again, as that would write its audit logs twice: it is skipped
+ * with a warning and only what is appended to it afterwards is parsed. That is a file which became smaller, and
+ * without content hashing a file with the same size and a new modification time, which is taken as touched.
+ * With content hashing a checksum of the ingested bytes is kept too, so a grown file whose ingested part was
+ * rewritten is skipped as well instead of being parsed from the old offset, at the cost of reading the ingested
+ * bytes again. To ingest a rewritten file, the outputs and the manifest have to be removed and everything parsed again.
+ *
+ * The manifest also records the length of the outputs and of the dead letter file after every successful run;
+ * if a run fails half way, the next run truncates them back to those lengths before appending, so nothing is
+ * written twice. The outputs are forced to the disk before the manifest is saved, so after a crash the manifest
+ * never records more than the outputs hold.
+ * A parquet file can't be appended to, so {@link OutputOptions#isWriteParquetFile()} is not used.
+ * A report file of the output options only covers the audit logs ingested by the run.
+ *
+ * With a settle time, as used by {@link AuditLogFollower}, a file which was modified within the settle time is
+ * only parsed up to its last newline, so a file still being written is never parsed from the middle of a line;
+ * once it settled, its last line is parsed even without a newline.
+ * {@link #rollOutputs(String)} moves the outputs aside, so the next run starts new ones.
+ */
+public class IncrementalAuditLogIngest {
+
+    private final Logger LOG = Logger.getLogger(IncrementalAuditLogIngest.class);
+
+    public static final String MANIFEST_FILE_NAME = "AuditLogManifest.json";
+    public static final String AVRO_FILE_NAME = "data.avro";
+    public static final String CSV_FILE_NAME = "CsvLogs.csv";
+
+    private final ParallelAuditLogParser parallelAuditLogParser;
+    private final File outputDirectory;
+    private final boolean contentHash;
+    private final OutputOptions outputOptions;
+    private long settleMillis = -1;
+
+    public IncrementalAuditLogIngest(ParallelAuditLogParser parallelAuditLogParser, File outputDirectory, boolean contentHash) {
+        this(parallelAuditLogParser, outputDirectory, contentHash, new OutputOptions());
+    }
+
+    public IncrementalAuditLogIngest(ParallelAuditLogParser parallelAuditLogParser, File outputDirectory, boolean contentHash,
+                                     OutputOptions outputOptions) {
+        this.parallelAuditLogParser = parallelAuditLogParser;
+        this.outputDirectory = outputDirectory;
+        this.contentHash = contentHash;
+        this.outputOptions = outputOptions;
+    }
+
+    /**
+     * @param settleMillis this is how long a file must not be modified before its last line is parsed without
+     *                     a newline; negative to always parse whole files, the default
+     * @return this
+     */
+    public IncrementalAuditLogIngest setSettleMillis(long settleMillis) {
+        this.settleMillis = settleMillis;
+        return this;
+    }
+
+    public OutputOptions getOutputOptions() {
+        return outputOptions;
+    }
+
+    /**
+     * ingest method parses the new data of a directory of audit log files and appends it to the outputs
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long ingest(String auditLogsDirectoryPath) throws IOException {
+        return ingest(auditLogsDirectoryPath, true, null, null);
+    }
+
+    /**
+     * ingest method parses the new data of a directory of audit log files and appends it to the outputs,
+     * aggregating it into the given aggregator and writing it into the given sink instead of the report, sketch
+     * and spans files of the output options, so they can cover more than one run
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files
+     * @param auditLogAggregator this is where the new audit logs are aggregated, it is not closed; null for none
+     * @param auditLogSink this is where the new audit logs are also written, it is not closed and gets no rejected
+     *                     lines; null for none
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long ingest(String auditLogsDirectoryPath, AuditLogAggregator auditLogAggregator, AuditLogSink auditLogSink)
+            throws IOException {
+        return ingest(auditLogsDirectoryPath, false, auditLogAggregator, auditLogSink);
+    }
+
+    private long ingest(String auditLogsDirectoryPath, boolean ownSideOutputs, AuditLogAggregator auditLogAggregator,
+                        AuditLogSink auditLogSink) throws IOException {
+        File manifestFile = new File(outputDirectory, MANIFEST_FILE_NAME);
+        File avroFile = new File(outputDirectory, AVRO_FILE_NAME);
+        File csvFile = new File(outputDirectory, CSV_FILE_NAME);
+        File deadLetterFile = outputOptions.getDeadLetterFile();
+        AuditLogManifest manifest = AuditLogManifest.load(manifestFile);
+        recoverOutput(manifest, avroFile);
+        recoverOutput(manifest, csvFile);
+        if (deadLetterFile != null) {
+            recoverOutput(manifest, deadLetterFile);
+        }
+
+        List<ParallelAuditLogParser.FileRange> fileRanges = new ArrayList<>();
+        List<AuditLogManifest.Entry> updatedEntries = new ArrayList<>();
+        for (File auditLogFile : ParallelAuditLogParser.listAuditLogFiles(auditLogsDirectoryPath)) {
+            String path = auditLogFile.getCanonicalPath();
+            long size = auditLogFile.length();
+            long lastModified = auditLogFile.lastModified();
+            AuditLogManifest.Entry entry = manifest.get(path);
+            long start = startOffset(auditLogFile, entry, size, lastModified);
+            long end = start < size && settleMillis >= 0 && System.currentTimeMillis() - lastModified < settleMillis
+                    ? lastLineEnd(auditLogFile, start, size) : size;
+            if (start < end) {
+                fileRanges.add(new ParallelAuditLogParser.FileRange(auditLogFile, start, end));
+            }
+            if (entry == null || start < end || entry.getSize() != end || entry.getLastModified() != lastModified) {
+                updatedEntries.add(new AuditLogManifest.Entry(path, end, lastModified,
+                        contentHash ? crc32c(auditLogFile, end) : null));
+            }
+        }
+        LOG.info("Files with new audit logs : " + fileRanges.size());
+        if (fileRanges.isEmpty() && updatedEntries.isEmpty()) {
+            return 0;
+        }
+
+        long count = 0;
+        if (!fileRanges.isEmpty()) {
+            PipelineMetrics pipelineMetrics = parallelAuditLogParser.getPipelineMetrics();
+            List<AuditLogSink> sinks = new ArrayList<>();
+            sinks.add(MeteredAuditLogSink.meter(new AvroAuditLogSink(avroFile, true, outputOptions),
+                    pipelineMetrics, PipelineMetrics.Stage.AVRO_WRITE));
+            sinks.add(MeteredAuditLogSink.meter(new CsvAuditLogSink(csvFile, true, outputOptions.getProjection()),
+                    pipelineMetrics, PipelineMetrics.Stage.CSV_WRITE));
+            if (ownSideOutputs) {
+                // the spans of the new audit logs only, like the report
+                auditLogAggregator = AuditLogAggregator.create(outputOptions);
+                auditLogSink = createSpanCorrelator(outputOptions);
+            }
+            if (auditLogSink != null) {
+                // a given sink is not closed with the others, only the parsed audit logs are written into it
+                sinks.add(ownSideOutputs ? auditLogSink : auditLogSink::write);
+            }
+            if (deadLetterFile != null) {
+                sinks.add(new DeadLetterAuditLogSink(deadLetterFile, true));
+            }
+            try (AuditLogSink multiAuditLogSink = new MultiAuditLogSink(sinks)) {
+                count = parallelAuditLogParser.parseFileRanges(fileRanges, multiAuditLogSink, auditLogAggregator);
+            } finally {
+                if (ownSideOutputs && auditLogAggregator != null) {
+                    auditLogAggregator.close();
+                }
+            }
+        }
+        for (AuditLogManifest.Entry entry : updatedEntries) {
+            manifest.put(entry);
+        }
+        force(avroFile);
+        force(csvFile);
+        manifest.setOutputLength(AVRO_FILE_NAME, avroFile.length());
+        manifest.setOutputLength(CSV_FILE_NAME, csvFile.length());
+        if (deadLetterFile != null) {
+            force(deadLetterFile);
+            manifest.setOutputLength(deadLetterFile.getName(), deadLetterFile.length());
+        }
+        manifest.save(manifestFile);
+        LOG.info("Successfully ingested " + count + " new audit logs from the directory '" + auditLogsDirectoryPath + "'");
+        return count;
+    }
+
+    /**
+     * createSpanCorrelator method creates the span correlator of the output options
+     * @param outputOptions this is where the spans file and the idle timeout are set
+     * @return the span correlator, or null if no spans file is set
+     * @throws IOException
+     * @throws IllegalArgumentException if the projection leaves out a field of the spans
+     */
+    static SpanCorrelator createSpanCorrelator(OutputOptions outputOptions) throws IOException {
+        if (outputOptions.getSpansFile() == null) {
+            return null;
+        }
+        outputOptions.checkProjection();
+        return new SpanCorrelator(outputOptions.getSpansFile(), outputOptions.getSpanIdleTimeoutMillis(),
+                SpanCorrelator.DEFAULT_MAX_OPEN_SPANS);
+    }
+
+    /**
+     * rollOutputs method renames the avro and csv files, e.g. 'data.avro' to 'data-suffix.avro' together with its
+     * {@link AvroBlockIndex}, so the next run
+     * writes new ones; the manifest is saved after the renames, a crash in between only logs a warning on the next run
+     * @param suffix this is added to the names of the outputs, e.g. the start time of the data they hold
+     * @return the renamed files
+     * @throws IOException
+     */
+    public List<File> rollOutputs(String suffix) throws IOException {
+        File manifestFile = new File(outputDirectory, MANIFEST_FILE_NAME);
+        AuditLogManifest manifest = AuditLogManifest.load(manifestFile);
+        List<File> rolledFiles = new ArrayList<>();
+        for (String outputName : new String[] {AVRO_FILE_NAME, CSV_FILE_NAME}) {
+            File outputFile = new File(outputDirectory, outputName);
+            recoverOutput(manifest, outputFile);
+            if (outputFile.length() > 0) {
+                File rolledFile = rolledFile(outputFile, suffix);
+                Files.move(outputFile.toPath(), rolledFile.toPath());
+                rolledFiles.add(rolledFile);
+                File indexFile = AvroBlockIndex.indexFile(outputFile);
+                if (indexFile.exists()) {
+                    Files.move(indexFile.toPath(), AvroBlockIndex.indexFile(rolledFile).toPath());
+                }
+            }
+            manifest.setOutputLength(outputName, 0);
+        }
+        manifest.save(manifestFile);
+        LOG.info("Rolled the outputs into " + rolledFiles);
+        return rolledFiles;
+    }
+
+    /**
+     * rolledFile method names a rolled file after the file and the suffix, adding a number if the name is taken
+     * @param file this is the file to roll, e.g. 'data.avro'
+     * @param suffix this is the suffix, e.g. '20211018-120000'
+     * @return the rolled file, e.g. 'data-20211018-120000.avro'
+     */
+    static File rolledFile(File file, String suffix) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        File rolledFile = new File(file.getParentFile(), base + "-" + suffix + extension);
+        for (int i = 1; rolledFile.exists(); i++) {
+            rolledFile = new File(file.getParentFile(), base + "-" + suffix + "-" + i + extension);
+        }
+        return rolledFile;
+    }
+
+    /**
+     * lastLineEnd method finds the end of the last complete line of a range of a file
+     * @param file this is the file to read
+     * @param start this is the start of the range, it starts a line
+     * @param end this is the end of the range
+     * @return the offset after the last newline of the range, start if the range has none
+     * @throws IOException
+     */
+    static long lastLineEnd(File file, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = end;
+            while (position > start) {
+                int length = (int) Math.min(buffer.capacity(), position - start);
+                buffer.clear();
+                buffer.limit(length);
+                while (buffer.hasRemaining()) {
+                    if (fileChannel.read(buffer, position - length + buffer.position()) < 0) {
+                        return start;
+                    }
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return position - length + i + 1;
+                    }
+                }
+                position -= length;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * startOffset method decides from where a file has to be parsed
+     * @return 0 for a new file, the ingested size for a file which only grew, the size of the file if it is unchanged
+     * or its ingested part has changed, so it is skipped
+     * @throws IOException
+     */
+    private long startOffset(File auditLogFile, AuditLogManifest.Entry entry, long size, long lastModified) throws IOException {
+        if (entry == null) {
+            return 0;
+        }
+        if (size == entry.getSize() && lastModified == entry.getLastModified()) {
+            return size;
+        }
+        if (size < entry.getSize()) {
+            LOG.warn("File became smaller since it was ingested, skipping it as its audit logs are in the outputs : "
+                    + auditLogFile);
+            return size;
+        }
+        if (contentHash && entry.getCrc32c() != null) {
+            if (crc32c(auditLogFile, entry.getSize()) != entry.getCrc32c()) {
+                LOG.warn("Ingested part of the file has changed, skipping it as its audit logs are in the outputs : "
+                        + auditLogFile);
+                return size;
+            }
+            return entry.getSize();
+        }
+        if (size == entry.getSize()) {
+            LOG.warn("File was modified but has the same size since it was ingested, skipping it as touched : "
+                    + auditLogFile);
+            return size;
+        }
+        return entry.getSize();
+    }
+
+    /**
+     * recoverOutput method truncates an output file which is longer than recorded in the manifest,
+     * i.e, which has data of a run that didn't finish
+     * @throws IOException
+     */
+    private void recoverOutput(AuditLogManifest manifest, File outputFile) throws IOException {
+        long recordedLength = manifest.getOutputLength(outputFile.getName());
+        if (!outputFile.exists() || outputFile.length() <= recordedLength) {
+            if (outputFile.length() < recordedLength) {
+                LOG.warn("Output file is shorter than recorded in the manifest : " + outputFile);
+            }
+            return;
+        }
+        LOG.warn("Truncating " + outputFile + " to " + recordedLength + " bytes, dropping data of an unfinished run");
+        try (FileChannel fileChannel = FileChannel.open(outputFile.toPath(), StandardOpenOption.WRITE)) {
+            fileChannel.truncate(recordedLength);
+        }
+    }
+
+    /**
+     * force method writes whatever the operating system still holds of an output file to the disk
+     * @param outputFile this is the output file, nothing happens if it doesn't exist
+     * @throws IOException
+     */
+    private static void force(File outputFile) throws IOException {
+        if (!outputFile.exists()) {
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(outputFile.toPath(), StandardOpenOption.WRITE)) {
+            fileChannel.force(true);
+        }
+    }
+
+    /**
+     * crc32c method computes the checksum of the first bytes of a file
+     * @param file this is the file to read
+     * @param length number of bytes to read
+     * @return the checksum
+     * @throws IOException
+     */
+    static long crc32c(File file, long length) throws IOException {
+        CRC32C crc32c = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                int read = fileChannel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                crc32c.update(buffer);
+                position += read;
+            }
+        }
+        return crc32c.getValue();
+    }
+}
@@ -0,0 +1,37 @@
+package com.logs;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * JsonAuditLogSink class writes the key-value pairs of entire audit logs into a json file
+ * as a single array, one element at a time
+ */
+public class JsonAuditLogSink implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(JsonAuditLogSink.class);
+
+    private final JsonGenerator jsonGenerator;
+
+    public JsonAuditLogSink(File jsonFile) throws IOException {
+        jsonGenerator = new ObjectMapper().getFactory().createGenerator(jsonFile, JsonEncoding.UTF8);
+        jsonGenerator.writeStartArray();
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        jsonGenerator.writeObject(auditLogRecord.getEntireAuditLogMap());
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonGenerator.writeEndArray();
+        jsonGenerator.close();
+        LOG.info("Successfully written into JSON file");
+    }
+}
@@ -0,0 +1,74 @@
+package com.logs;
+
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram class counts natural numbers, like the 'totaltime' in milliseconds of audit logs,
+ * in the log-linear buckets of {@link StageMetrics}: 8 linear buckets per power of two, so a percentile is within
+ * 1/16 of its value. The buckets grow with the largest value seen, so a histogram of small values stays small.
+ *
+ * Histograms of different threads are merged by adding their buckets, see {@link #merge(LatencyHistogram)}.
+ * A LatencyHistogram is not thread safe.
+ */
+public class LatencyHistogram {
+
+    private long[] counts = new long[0];
+    private long count;
+
+    /**
+     * add method counts a value
+     * @param value this is the value, negative values are not counted
+     */
+    public void add(long value) {
+        if (value < 0) {
+            return;
+        }
+        int bucket = StageMetrics.bucket(value);
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length * 2));
+        }
+        counts[bucket]++;
+        count++;
+    }
+
+    /**
+     * merge method adds the counts of another histogram to this one
+     * @param other this is the other histogram, it is not changed
+     */
+    public void merge(LatencyHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+    }
+
+    /**
+     * @return number of values counted
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * percentile method finds a percentile of the values
+     * @param fraction this is the percentile between 0 and 1, e.g. 0.99
+     * @return the middle of the bucket holding the percentile, -1 if no value was counted
+     */
+    public long percentile(double fraction) {
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return (StageMetrics.lowerBound(i) + StageMetrics.lowerBound(i + 1) - 1) / 2;
+            }
+        }
+        return StageMetrics.lowerBound(counts.length - 1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.logs;
+
+/**
+ * LongIntHashMap class maps long keys to dense int ids without boxing: the first key added gets 0, the next 1 and so on.
+ * It is an open addressing table with linear probing which doubles when it is half full.
+ *
+ * A LongIntHashMap is not thread safe.
+ */
+final class LongIntHashMap {
+
+    private long[] keys;
+    /**
+     * Id of the key in the same slot plus one, 0 for an empty slot.
+     */
+    private int[] ids;
+    private int mask;
+    private int size;
+
+    LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of keys expected, the table grows beyond it
+     */
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * get method finds the id of a key
+     * @param key this is the key
+     * @return the id of the key, or -1 if it was never added
+     */
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int id = ids[slot];
+            if (id == 0) {
+                return -1;
+            }
+            if (keys[slot] == key) {
+                return id - 1;
+            }
+        }
+    }
+
+    /**
+     * getOrAdd method finds the id of a key, adding the key with the next id if it was never added
+     * @param key this is the key
+     * @return the id of the key
+     */
+    int getOrAdd(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int id = ids[slot];
+            if (id == 0) {
+                keys[slot] = key;
+                ids[slot] = ++size;
+                if (size * 2 > keys.length) {
+                    grow();
+                }
+                return size - 1;
+            }
+            if (keys[slot] == key) {
+                return id - 1;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new long[oldKeys.length * 2];
+        ids = new int[oldIds.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldIds[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (ids[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+}
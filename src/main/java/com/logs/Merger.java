@@ -3,39 +3,295 @@ package com.logs;
 import org.apache.log4j.Logger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Merger class will merge all the audit logs present in a directory of multiple audit log files into a single audit log file
+ *
+ * The files are appended byte for byte with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * so nothing is decoded; a newline is only added after a file which doesn't end with one.
+ *
+ * {@link #mergeFiles(String, boolean)} can instead merge the files in timestamp order: S3 delivers every
+ * log object sorted by time, so a k-way merge on the timestamp of the head line of every file gives a globally
+ * time ordered file while only holding a small read-ahead buffer per file. Lines are read and written as bytes by
+ * {@link AuditLogLineReader}, only the timestamp of a line is looked at.
+ *
+ * With {@link PipelineMetrics} the bytes of every appended file and the lines of a timestamp ordered merge
+ * are counted in the merge stage.
  */
 
 public class Merger {
 
     private final Logger LOG = Logger.getLogger(Merger.class);
 
+    private static final byte NEWLINE = '\n';
+
+    /**
+     * Size of the read-ahead buffer of every file in a timestamp ordered merge.
+     */
+    static final int READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of files read at the same time in a timestamp ordered merge;
+     * with more files they are merged in several passes through temporary files.
+     */
+    static final int MAX_OPEN_FILES = 256;
+
+    private final StageMetrics mergeMetrics;
+
+    public Merger() {
+        this(null);
+    }
+
+    /**
+     * @param pipelineMetrics metrics of the stages, or null to measure nothing
+     */
+    public Merger(PipelineMetrics pipelineMetrics) {
+        this.mergeMetrics = pipelineMetrics == null ? null : pipelineMetrics.stage(PipelineMetrics.Stage.MERGE);
+    }
+
+    /**
+     * mergeFiles method merges all audit log files of a directory into 'AuditLogFile'
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files
+     * @param timestampOrder whether the audit logs are merged in timestamp order instead of appending the files
+     * @throws IOException
+     */
+    public void mergeFiles(String auditLogsDirectoryPath, boolean timestampOrder) throws IOException {
+        if (!timestampOrder) {
+            mergeFiles(auditLogsDirectoryPath);
+            return;
+        }
+        File auditLogFilesDirectory = new File(auditLogsDirectoryPath);
+        String[] auditLogFileNames = auditLogFilesDirectory.list();
+        LOG.info("Files to be merged in timestamp order : " + Arrays.toString(auditLogFileNames));
+        if(auditLogFileNames != null && auditLogFileNames.length != 0) {
+            List<File> auditLogFiles = new ArrayList<>();
+            for (String singleFileName : auditLogFileNames) {
+                auditLogFiles.add(new File(auditLogFilesDirectory, singleFileName));
+            }
+            mergeInTimestampOrder(auditLogFiles, new File("AuditLogFile"));
+            LOG.info("Successfully merged all files from the directory '" + auditLogFilesDirectory.getName() + "' in timestamp order");
+        }
+    }
+
     public void mergeFiles(String auditLogsDirectoryPath) throws IOException {
         File auditLogFilesDirectory = new File(auditLogsDirectoryPath);
         String[] auditLogFileNames = auditLogFilesDirectory.list();
         LOG.info("Files to be merged : " + Arrays.toString(auditLogFileNames));
 
-        //Read each audit log file present in directory and writes each and every audit log in it into a single audit log file
+        //Read each audit log file present in directory and appends all of its bytes into a single audit log file
         if(auditLogFileNames != null && auditLogFileNames.length != 0) {
             File auditLogFile = new File("AuditLogFile");
-            try (PrintWriter printWriter = new PrintWriter(auditLogFile)) {
+            try (FileChannel auditLogFileChannel = FileChannel.open(auditLogFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
                 for (String singleFileName : auditLogFileNames) {
                     File file = new File(auditLogFilesDirectory, singleFileName);
-                    try (FileReader fileReader = new FileReader(file);
-                         BufferedReader bufferedReader = new BufferedReader(fileReader)) {
-                        String singleLine = bufferedReader.readLine();
-                        while (singleLine != null) {
-                            printWriter.println(singleLine);
-                            singleLine = bufferedReader.readLine();
-                        }
-                        printWriter.flush();
-                    }
-                    LOG.info("Successfully merged all files from the directory '" + auditLogFilesDirectory.getName() + "'");
+                    appendFile(file, auditLogFileChannel);
+                }
+            }
+            LOG.info("Successfully merged all files from the directory '" + auditLogFilesDirectory.getName() + "'");
+        }
+    }
+
+    /**
+     * appendFile method appends all bytes of a single audit log file to the merged audit log file,
+     * followed by a newline if the file doesn't end with one
+     * @param file this is the audit log file to append
+     * @param auditLogFileChannel this is the channel of the merged audit log file
+     * @throws IOException
+     */
+    void appendFile(File file, FileChannel auditLogFileChannel) throws IOException {
+        long startNanos = mergeMetrics == null ? 0 : System.nanoTime();
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = fileChannel.transferTo(position, size - position, auditLogFileChannel);
+                if (transferred <= 0) {
+                    // the channel refused to transfer any more, copy the rest through a buffer
+                    position += copy(fileChannel, position, size, auditLogFileChannel);
+                    break;
+                }
+                position += transferred;
+            }
+            if (size > 0 && !endsWithNewline(fileChannel, size)) {
+                auditLogFileChannel.write(ByteBuffer.wrap(new byte[] {NEWLINE}));
+            }
+            if (mergeMetrics != null) {
+                mergeMetrics.recordBatch(0, size, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private static long copy(FileChannel fileChannel, long position, long size, FileChannel auditLogFileChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        long copied = 0;
+        while (position + copied < size) {
+            buffer.clear();
+            int read = fileChannel.read(buffer, position + copied);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                auditLogFileChannel.write(buffer);
+            }
+            copied += read;
+        }
+        return copied;
+    }
+
+    private static boolean endsWithNewline(FileChannel fileChannel, long size) throws IOException {
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        if (fileChannel.read(lastByte, size - 1) != 1) {
+            return false;
+        }
+        return lastByte.get(0) == NEWLINE;
+    }
+
+    /**
+     * Head line of a file in a timestamp ordered merge.
+     */
+    private static final class MergeCursor {
+        private final AuditLogLineReader lineReader;
+        private final int fileIndex;
+        private final S3TimestampDecoder timestampDecoder = new S3TimestampDecoder();
+        private long timestamp = Long.MIN_VALUE;
+
+        MergeCursor(AuditLogLineReader lineReader, int fileIndex) {
+            this.lineReader = lineReader;
+            this.fileIndex = fileIndex;
+        }
+
+        /**
+         * Reads the next line; a line without a valid timestamp keeps the timestamp of the line before it,
+         * so it stays next to its neighbours.
+         * @return false at the end of the file
+         */
+        boolean advance() throws IOException {
+            if (!lineReader.nextLine()) {
+                return false;
+            }
+            long lineTimestamp = timestampMillis(lineReader.getLine(), timestampDecoder);
+            if (lineTimestamp != Long.MIN_VALUE) {
+                timestamp = lineTimestamp;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * mergeInTimestampOrder method merges the audit logs of the files into a single file ordered by timestamp,
+     * audit logs with the same timestamp keep the order of the files.
+     * Every file is expected to be sorted by timestamp, as S3 writes them.
+     * With more than {@link #MAX_OPEN_FILES} files, temporary files are written into the directory of the merged file
+     * and deleted once it is written.
+     * @param auditLogFiles these are the audit log files to merge
+     * @param mergedFile this is the merged audit log file
+     * @throws IOException
+     */
+    void mergeInTimestampOrder(List<File> auditLogFiles, File mergedFile) throws IOException {
+        if (auditLogFiles.size() <= MAX_OPEN_FILES) {
+            kWayMerge(auditLogFiles, mergedFile);
+            return;
+        }
+        // too many files to keep open: merge groups of them into temporary files, then merge those;
+        // they are as big as the merged file together, so they are written next to it rather than into java.io.tmpdir
+        List<File> temporaryFiles = new ArrayList<>();
+        try {
+            for (int start = 0; start < auditLogFiles.size(); start += MAX_OPEN_FILES) {
+                List<File> group = auditLogFiles.subList(start, Math.min(start + MAX_OPEN_FILES, auditLogFiles.size()));
+                File temporaryFile = Files.createTempFile(mergedFile.getAbsoluteFile().getParentFile().toPath(),
+                        "AuditLogMerge", ".tmp").toFile();
+                temporaryFiles.add(temporaryFile);
+                kWayMerge(group, temporaryFile);
+            }
+            mergeInTimestampOrder(temporaryFiles, mergedFile);
+        } finally {
+            for (File temporaryFile : temporaryFiles) {
+                temporaryFile.delete();
+            }
+        }
+    }
+
+    private void kWayMerge(List<File> auditLogFiles, File mergedFile) throws IOException {
+        PriorityQueue<MergeCursor> heap = new PriorityQueue<>(Math.max(1, auditLogFiles.size()), (a, b) -> {
+            int compare = Long.compare(a.timestamp, b.timestamp);
+            return compare != 0 ? compare : Integer.compare(a.fileIndex, b.fileIndex);
+        });
+        List<AuditLogLineReader> lineReaders = new ArrayList<>();
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(mergedFile), 1024 * 1024)) {
+            for (int i = 0; i < auditLogFiles.size(); i++) {
+                AuditLogLineReader lineReader = new AuditLogLineReader(auditLogFiles.get(i), 0, Long.MAX_VALUE,
+                        READ_AHEAD_BUFFER_SIZE, false);
+                lineReaders.add(lineReader);
+                MergeCursor mergeCursor = new MergeCursor(lineReader, i);
+                if (mergeCursor.advance()) {
+                    heap.add(mergeCursor);
+                }
+            }
+            int lines = 0;
+            while (!heap.isEmpty()) {
+                long startNanos = mergeMetrics == null ? 0 : PipelineMetrics.startNanos(lines++);
+                MergeCursor mergeCursor = heap.poll();
+                int length = mergeCursor.lineReader.getLineLength();
+                mergeCursor.lineReader.writeLine(outputStream);
+                outputStream.write(NEWLINE);
+                if (mergeCursor.advance()) {
+                    heap.add(mergeCursor);
                 }
+                if (mergeMetrics != null) {
+                    mergeMetrics.record(length + 1, startNanos, false);
+                }
+            }
+        } finally {
+            for (AuditLogLineReader lineReader : lineReaders) {
+                lineReader.close();
+            }
+        }
+    }
+
+    /**
+     * timestampMillis method finds the timestamp of an audit log, the third entry of the log
+     * @param singleAuditLog this is a single audit log
+     * @return the timestamp in milliseconds since the epoch, or Long.MIN_VALUE if the log has no valid timestamp
+     */
+    static long timestampMillis(CharSequence singleAuditLog) {
+        return timestampMillis(singleAuditLog, new S3TimestampDecoder());
+    }
+
+    /**
+     * timestampMillis method finds the timestamp of an audit log with a decoder which is reused for the lines of a file
+     * @param singleAuditLog this is a single audit log
+     * @param timestampDecoder this is the decoder, it caches the minute of the line before
+     * @return the timestamp in milliseconds since the epoch, or Long.MIN_VALUE if the log has no valid timestamp
+     */
+    static long timestampMillis(CharSequence singleAuditLog, S3TimestampDecoder timestampDecoder) {
+        int firstSpace = indexOf(singleAuditLog, ' ', 0);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(singleAuditLog, ' ', firstSpace + 1);
+        if (secondSpace < 0 || secondSpace + 1 >= singleAuditLog.length() || singleAuditLog.charAt(secondSpace + 1) != '[') {
+            return Long.MIN_VALUE;
+        }
+        int close = indexOf(singleAuditLog, ']', secondSpace);
+        if (close < 0) {
+            return Long.MIN_VALUE;
+        }
+        return timestampDecoder.decode(singleAuditLog, secondSpace + 2, close);
+    }
+
+    private static int indexOf(CharSequence chars, char c, int from) {
+        for (int i = from; i < chars.length(); i++) {
+            if (chars.charAt(i) == c) {
+                return i;
             }
         }
+        return -1;
     }
 }
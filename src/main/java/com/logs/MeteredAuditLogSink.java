@@ -0,0 +1,58 @@
+package com.logs;
+
+import java.io.IOException;
+
+/**
+ * MeteredAuditLogSink class counts the audit logs written to another sink and the time spent writing them,
+ * as the {@link StageMetrics} of a stage of {@link PipelineMetrics}; the bytes of a stage are the lengths of the
+ * audit log lines written, see {@link AuditLogRecord#getLineLength()}.
+ * Sinks are only called from a single thread, so the sample counter is a plain field.
+ */
+public class MeteredAuditLogSink implements AuditLogSink {
+
+    private final AuditLogSink auditLogSink;
+    private final StageMetrics stageMetrics;
+    private int count;
+
+    public MeteredAuditLogSink(AuditLogSink auditLogSink, StageMetrics stageMetrics) {
+        this.auditLogSink = auditLogSink;
+        this.stageMetrics = stageMetrics;
+    }
+
+    /**
+     * meter method wraps a sink when there are metrics to report to
+     * @param auditLogSink this is the sink
+     * @param pipelineMetrics these are the metrics, or null
+     * @param stage this is the stage of the sink
+     * @return the metered sink, or the sink itself without metrics
+     */
+    public static AuditLogSink meter(AuditLogSink auditLogSink, PipelineMetrics pipelineMetrics, PipelineMetrics.Stage stage) {
+        return pipelineMetrics == null ? auditLogSink : new MeteredAuditLogSink(auditLogSink, pipelineMetrics.stage(stage));
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        long startNanos = PipelineMetrics.startNanos(count++);
+        auditLogSink.write(auditLogRecord);
+        stageMetrics.record(auditLogRecord.getLineLength(), startNanos, false);
+    }
+
+    @Override
+    public void reject(String singleAuditLog, RejectReason rejectReason) throws IOException {
+        auditLogSink.reject(singleAuditLog, rejectReason);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long startNanos = System.nanoTime();
+        auditLogSink.flush();
+        stageMetrics.addTime(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        long startNanos = System.nanoTime();
+        auditLogSink.close();
+        stageMetrics.addTime(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,66 @@
+package com.logs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MultiAuditLogSink class writes every parsed audit log to several sinks, in the given order
+ */
+public class MultiAuditLogSink implements AuditLogSink {
+
+    private final List<AuditLogSink> sinks;
+
+    public MultiAuditLogSink(AuditLogSink... sinks) {
+        this(Arrays.asList(sinks));
+    }
+
+    public MultiAuditLogSink(List<AuditLogSink> sinks) {
+        this.sinks = new ArrayList<>(sinks);
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        for (AuditLogSink sink : sinks) {
+            sink.write(auditLogRecord);
+        }
+    }
+
+    @Override
+    public void reject(String singleAuditLog, RejectReason rejectReason) throws IOException {
+        for (AuditLogSink sink : sinks) {
+            sink.reject(singleAuditLog, rejectReason);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (AuditLogSink sink : sinks) {
+            sink.flush();
+        }
+    }
+
+    /**
+     * close method closes every sink even if some of them fail, and rethrows the first failure
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (AuditLogSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
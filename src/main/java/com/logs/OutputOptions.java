@@ -0,0 +1,265 @@
+package com.logs;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OutputOptions class holds how the parsed audit logs are written into the output files
+ */
+public class OutputOptions {
+
+    private boolean writeJsonFile = false;
+    private CodecFactory avroCodec = CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL);
+    private int avroSyncInterval = DataFileConstants.DEFAULT_SYNC_INTERVAL;
+    private boolean writeAvroIndex = false;
+    private boolean writeParquetFile = false;
+    private int parquetRowGroupSize = ParquetWriter.DEFAULT_BLOCK_SIZE;
+    private CompressionCodecName parquetCodec = CompressionCodecName.SNAPPY;
+    private File deadLetterFile = null;
+    private FieldProjection projection = FieldProjection.ALL;
+    private File reportFile = null;
+    private List<Aggregation> aggregations = Aggregation.DEFAULT_AGGREGATIONS;
+    private File sketchFile = null;
+    private List<String> sketchFields = FieldSketch.DEFAULT_FIELDS;
+    private File spansFile = null;
+    private long spanIdleTimeoutMillis = SpanCorrelator.DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    public boolean isWriteJsonFile() {
+        return writeJsonFile;
+    }
+
+    /**
+     * @param writeJsonFile whether the key-value pairs are also written into 'Json.json'
+     * @return these options
+     */
+    public OutputOptions setWriteJsonFile(boolean writeJsonFile) {
+        this.writeJsonFile = writeJsonFile;
+        return this;
+    }
+
+    public CodecFactory getAvroCodec() {
+        return avroCodec;
+    }
+
+    /**
+     * @param avroCodec compression codec of the blocks of the avro file
+     * @return these options
+     */
+    public OutputOptions setAvroCodec(CodecFactory avroCodec) {
+        this.avroCodec = avroCodec;
+        return this;
+    }
+
+    /**
+     * setAvroCodec method sets the codec of the avro file by name
+     * @param avroCodecName one of null, deflate, snappy, zstd, bzip2 or xz
+     * @return these options
+     */
+    public OutputOptions setAvroCodec(String avroCodecName) {
+        String name = avroCodecName.equals("zstd") ? DataFileConstants.ZSTANDARD_CODEC : avroCodecName;
+        return setAvroCodec(CodecFactory.fromString(name));
+    }
+
+    public int getAvroSyncInterval() {
+        return avroSyncInterval;
+    }
+
+    /**
+     * @param avroSyncInterval approximate number of uncompressed bytes of a block of the avro file
+     * @return these options
+     */
+    public OutputOptions setAvroSyncInterval(int avroSyncInterval) {
+        this.avroSyncInterval = avroSyncInterval;
+        return this;
+    }
+
+    public boolean isWriteAvroIndex() {
+        return writeAvroIndex;
+    }
+
+    /**
+     * @param writeAvroIndex whether the timestamps and a bloom filter of every block of the avro file are also
+     *                       written into a sidecar index, see {@link AvroBlockIndex}
+     * @return these options
+     */
+    public OutputOptions setWriteAvroIndex(boolean writeAvroIndex) {
+        this.writeAvroIndex = writeAvroIndex;
+        return this;
+    }
+
+    public boolean isWriteParquetFile() {
+        return writeParquetFile;
+    }
+
+    /**
+     * @param writeParquetFile whether the parsed audit logs are also written into 'data.parquet'
+     * @return these options
+     */
+    public OutputOptions setWriteParquetFile(boolean writeParquetFile) {
+        this.writeParquetFile = writeParquetFile;
+        return this;
+    }
+
+    public int getParquetRowGroupSize() {
+        return parquetRowGroupSize;
+    }
+
+    /**
+     * @param parquetRowGroupSize approximate number of bytes of a row group of the parquet file
+     * @return these options
+     */
+    public OutputOptions setParquetRowGroupSize(int parquetRowGroupSize) {
+        this.parquetRowGroupSize = parquetRowGroupSize;
+        return this;
+    }
+
+    public CompressionCodecName getParquetCodec() {
+        return parquetCodec;
+    }
+
+    /**
+     * @param parquetCodec compression codec of the pages of the parquet file
+     * @return these options
+     */
+    public OutputOptions setParquetCodec(CompressionCodecName parquetCodec) {
+        this.parquetCodec = parquetCodec;
+        return this;
+    }
+
+    public FieldProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * @param projection the fields written into the avro, parquet and csv files, the other columns are left out
+     * @return these options
+     */
+    public OutputOptions setProjection(FieldProjection projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * @param reportFile the json file the aggregations are written into, see {@link AuditLogAggregator}, or null for none
+     * @return these options
+     */
+    public OutputOptions setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+        return this;
+    }
+
+    public List<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    /**
+     * @param aggregations the reports written into the report file
+     * @return these options
+     */
+    public OutputOptions setAggregations(List<Aggregation> aggregations) {
+        this.aggregations = aggregations;
+        return this;
+    }
+
+    public File getSketchFile() {
+        return sketchFile;
+    }
+
+    /**
+     * @param sketchFile the file the sketches of the fields are saved into, see {@link AuditLogSketches}, or null for none
+     * @return these options
+     */
+    public OutputOptions setSketchFile(File sketchFile) {
+        this.sketchFile = sketchFile;
+        return this;
+    }
+
+    public List<String> getSketchFields() {
+        return sketchFields;
+    }
+
+    /**
+     * @param sketchFields the fields whose top values and distinct count are sketched, see {@link FieldSketch}
+     * @return these options
+     */
+    public OutputOptions setSketchFields(List<String> sketchFields) {
+        this.sketchFields = sketchFields;
+        return this;
+    }
+
+    public File getSpansFile() {
+        return spansFile;
+    }
+
+    /**
+     * @param spansFile the json file a summary of every S3A operation span is written into, see {@link SpanCorrelator},
+     *                  or null for none
+     * @return these options
+     */
+    public OutputOptions setSpansFile(File spansFile) {
+        this.spansFile = spansFile;
+        return this;
+    }
+
+    public long getSpanIdleTimeoutMillis() {
+        return spanIdleTimeoutMillis;
+    }
+
+    /**
+     * @param spanIdleTimeoutMillis how long a span gets no request before its summary is written
+     * @return these options
+     */
+    public OutputOptions setSpanIdleTimeoutMillis(long spanIdleTimeoutMillis) {
+        this.spanIdleTimeoutMillis = spanIdleTimeoutMillis;
+        return this;
+    }
+
+    public File getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+    /**
+     * @param deadLetterFile file into which the rejected lines are written with their reason, or null to drop them
+     * @return these options
+     */
+    public OutputOptions setDeadLetterFile(File deadLetterFile) {
+        this.deadLetterFile = deadLetterFile;
+        return this;
+    }
+
+    /**
+     * checkProjection method checks that the projection keeps the fields the report, sketch and spans files are
+     * computed from: the fields of the aggregations and {@link AggregationTable#MEASURES}, the fields to sketch and
+     * 'bytessent', and {@link SpanCorrelator#FIELDS}
+     * @return these options
+     * @throws IllegalArgumentException if one of these files is set and the projection leaves out a field it needs
+     */
+    public OutputOptions checkProjection() {
+        if (reportFile != null) {
+            List<String> fields = new ArrayList<>(AggregationTable.MEASURES);
+            for (Aggregation aggregation : aggregations) {
+                fields.addAll(aggregation.getFields());
+            }
+            projection.checkContains(fields, "the report");
+        }
+        if (sketchFile != null) {
+            List<String> fields = new ArrayList<>(sketchFields);
+            fields.add(S3LogParser.BYTESSENT_GROUP);
+            projection.checkContains(fields, "the sketches");
+        }
+        if (spansFile != null) {
+            projection.checkContains(SpanCorrelator.FIELDS, "the spans");
+        }
+        return this;
+    }
+}
@@ -0,0 +1,510 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParallelAuditLogParser class parses a merged audit log file, or all the files of a directory of audit logs
+ * without merging them, on several threads.
+ * The files are split into byte ranges which end on a newline, every range is parsed by a
+ * {@link S3LogParser} on a thread pool and the parsed audit logs are handed over to the sink
+ * from the calling thread, so sinks don't need to be thread safe.
+ *
+ * In ordered mode the audit logs reach the sink in the same order as in the files.
+ * In unordered mode every range is written as soon as it is parsed, which avoids waiting
+ * on a slow range but mixes the order of the ranges.
+ * Only a bounded number of ranges is in flight at any time, two per thread, so memory use doesn't depend on the size
+ * of the file. With a sink, every range in flight keeps its parsed audit logs until the calling thread writes them,
+ * and a parsed audit log with its two maps takes about three times the bytes of its line. The ranges are then made
+ * smaller with more threads, so at most {@link #MAX_IN_FLIGHT_BYTES} of the files are in flight, about 200 MB of
+ * parsed audit logs with any number of threads, plus a line for every range whose last line goes past its size.
+ * With {@link PipelineMetrics} every range read is timed, and the number of ranges in flight is the queue depth
+ * of the read stage.
+ * With an {@link AuditLogAggregator} the audit logs are aggregated on the parsing threads, each into its own tables;
+ * when there is no sink they are not even kept until the calling thread gets the range.
+ */
+public class ParallelAuditLogParser {
+
+    private final Logger LOG = Logger.getLogger(ParallelAuditLogParser.class);
+
+    /**
+     * Default size of a range of the file parsed by a single task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Most bytes of the files whose parsed audit logs are kept in flight for the sink.
+     */
+    public static final int MAX_IN_FLIGHT_BYTES = 64 * 1024 * 1024;
+
+    private final S3LogParser s3LogParser;
+    private final int threads;
+    private final boolean ordered;
+    private final int chunkSize;
+
+    public ParallelAuditLogParser(S3LogParser s3LogParser, int threads, boolean ordered) {
+        this(s3LogParser, threads, ordered, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelAuditLogParser(S3LogParser s3LogParser, int threads, boolean ordered, int chunkSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1 : " + threads);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1 : " + chunkSize);
+        }
+        this.s3LogParser = s3LogParser;
+        this.threads = threads;
+        this.ordered = ordered;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the metrics of the parser, or null if nothing is measured
+     */
+    public PipelineMetrics getPipelineMetrics() {
+        return s3LogParser.getPipelineMetrics();
+    }
+
+    /**
+     * parseWholeAuditLog method will parse every audit log in merged audit log file on the thread pool
+     * and write them to the sink
+     * @param auditLogsFilePath this is the path of audit log file
+     * @param auditLogSink this is where the parsed audit logs are written, it is not closed by this method
+     * @return it returns the number of audit logs written to the sink
+     * @throws IOException
+     */
+    public long parseWholeAuditLog(String auditLogsFilePath, AuditLogSink auditLogSink) throws IOException {
+        File auditLogFile = new File(auditLogsFilePath);
+        if (auditLogFile.isDirectory() || auditLogFile.length() == 0 || !auditLogFile.isFile()) {
+            return s3LogParser.parseWholeAuditLog(auditLogsFilePath, auditLogSink);
+        }
+        LOG.info("File to be parsed with " + threads + " threads : " + auditLogFile.getAbsolutePath());
+        long count = parseFiles(Collections.singletonList(auditLogFile), auditLogSink, null);
+        LOG.info("Successfully parsed all logs from merged file");
+        return count;
+    }
+
+    /**
+     * streamWholeAuditLog method will parse every audit log in merged audit log file on the thread pool
+     * and converts the audit log data into avro file, csv file and optionally json file
+     * @param auditLogsFilePath this is the path of audit log file
+     * @param outputOptions how the files are written
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long streamWholeAuditLog(String auditLogsFilePath, OutputOptions outputOptions) throws IOException {
+        File auditLogFile = new File(auditLogsFilePath);
+        if (auditLogFile.isDirectory() || auditLogFile.length() == 0 || !auditLogFile.isFile()) {
+            return s3LogParser.parseWholeAuditLog(auditLogsFilePath, auditLogRecord -> { });
+        }
+        try (AuditLogAggregator auditLogAggregator = AuditLogAggregator.create(outputOptions);
+             AuditLogSink auditLogSink = s3LogParser.createFileSinks(outputOptions)) {
+            LOG.info("File to be parsed with " + threads + " threads : " + auditLogFile.getAbsolutePath());
+            long count = parseFiles(Collections.singletonList(auditLogFile), auditLogSink, auditLogAggregator);
+            LOG.info("Successfully parsed all logs from merged file");
+            return count;
+        }
+    }
+
+    /**
+     * parseAuditLogDirectory method will parse every audit log of every file in a directory of audit log files
+     * without merging them first, in the order in which {@link Merger} would merge them
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files
+     * @param auditLogSink this is where the parsed audit logs are written, it is not closed by this method
+     * @return it returns the number of audit logs written to the sink
+     * @throws IOException
+     */
+    public long parseAuditLogDirectory(String auditLogsDirectoryPath, AuditLogSink auditLogSink) throws IOException {
+        List<File> auditLogFiles = listAuditLogFiles(auditLogsDirectoryPath);
+        long count = parseFiles(auditLogFiles, auditLogSink, null);
+        LOG.info("Successfully parsed all logs from the directory '" + auditLogsDirectoryPath + "'");
+        return count;
+    }
+
+    /**
+     * streamAuditLogDirectory method will parse every audit log of every file in a directory of audit log files
+     * and converts the audit log data into avro file, csv file and optionally json file, without writing a merged file
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files
+     * @param outputOptions how the files are written
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long streamAuditLogDirectory(String auditLogsDirectoryPath, OutputOptions outputOptions) throws IOException {
+        List<File> auditLogFiles = listAuditLogFiles(auditLogsDirectoryPath);
+        if (auditLogFiles.isEmpty()) {
+            return 0;
+        }
+        try (AuditLogAggregator auditLogAggregator = AuditLogAggregator.create(outputOptions);
+             AuditLogSink auditLogSink = s3LogParser.createFileSinks(outputOptions)) {
+            long count = parseFiles(auditLogFiles, auditLogSink, auditLogAggregator);
+            LOG.info("Successfully parsed all logs from the directory '" + auditLogsDirectoryPath + "'");
+            return count;
+        }
+    }
+
+    /**
+     * listAuditLogFiles method lists the non empty files of a directory in the order of {@link File#list()}
+     * @param auditLogsDirectoryPath this is the path of the directory of audit log files
+     * @return the audit log files, empty if the path is not a directory
+     */
+    static List<File> listAuditLogFiles(String auditLogsDirectoryPath) {
+        File auditLogFilesDirectory = new File(auditLogsDirectoryPath);
+        String[] auditLogFileNames = auditLogFilesDirectory.list();
+        List<File> auditLogFiles = new ArrayList<>();
+        if (auditLogFileNames != null) {
+            for (String singleFileName : auditLogFileNames) {
+                File file = new File(auditLogFilesDirectory, singleFileName);
+                if (file.isFile() && file.length() != 0) {
+                    auditLogFiles.add(file);
+                }
+            }
+        }
+        return auditLogFiles;
+    }
+
+    /**
+     * parseFiles method parses all the files on the thread pool and writes them to the sink
+     */
+    private long parseFiles(List<File> auditLogFiles, AuditLogSink auditLogSink, AuditLogAggregator auditLogAggregator)
+            throws IOException {
+        List<FileRange> fileRanges = new ArrayList<>();
+        for (File auditLogFile : auditLogFiles) {
+            fileRanges.add(new FileRange(auditLogFile, 0, Long.MAX_VALUE));
+        }
+        return parseFileRanges(fileRanges, auditLogSink, auditLogAggregator);
+    }
+
+    /**
+     * parseFileRanges method parses the given ranges of audit log files on the thread pool and writes them to the sink,
+     * in the order of the list in ordered mode
+     * @param fileRanges these are the ranges to parse, each of them must start at the beginning of a line
+     * @param auditLogSink this is where the parsed audit logs are written, it is not closed by this method
+     * @return it returns the number of audit logs written to the sink
+     * @throws IOException
+     */
+    public long parseFileRanges(List<FileRange> fileRanges, AuditLogSink auditLogSink) throws IOException {
+        return parseFileRanges(fileRanges, auditLogSink, null);
+    }
+
+    /**
+     * parseFileRanges method parses the given ranges of audit log files on the thread pool, aggregates them on the
+     * parsing threads and writes them to the sink, in the order of the list in ordered mode
+     * @param fileRanges these are the ranges to parse, each of them must start at the beginning of a line
+     * @param auditLogSink this is where the parsed audit logs and the rejected lines are written, it is not closed
+     *                     by this method; null to only aggregate
+     * @param auditLogAggregator this is where the parsed audit logs are aggregated, it is not closed by this method;
+     *                           null to aggregate nothing
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long parseFileRanges(List<FileRange> fileRanges, AuditLogSink auditLogSink, AuditLogAggregator auditLogAggregator)
+            throws IOException {
+        if (fileRanges.isEmpty()) {
+            return 0;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try (ChunkIterator chunks = new ChunkIterator(fileRanges, chunkSize(auditLogSink != null))) {
+            return ordered
+                    ? parseOrdered(chunks, executorService, auditLogSink, auditLogAggregator)
+                    : parseUnordered(chunks, executorService, auditLogSink, auditLogAggregator);
+        } finally {
+            executorService.shutdownNow();
+            setQueueDepth(0);
+        }
+    }
+
+    private long parseOrdered(ChunkIterator chunks, ExecutorService executorService, AuditLogSink auditLogSink,
+                              AuditLogAggregator auditLogAggregator) throws IOException {
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        long count = 0;
+        while (chunks.hasNext() || !inFlight.isEmpty()) {
+            while (chunks.hasNext() && inFlight.size() < maxInFlight()) {
+                inFlight.add(executorService.submit(parseChunkTask(chunks.next(), auditLogSink != null, auditLogAggregator)));
+            }
+            setQueueDepth(inFlight.size());
+            count += writeAll(await(inFlight.poll()), auditLogSink);
+        }
+        return count;
+    }
+
+    private long parseUnordered(ChunkIterator chunks, ExecutorService executorService, AuditLogSink auditLogSink,
+                                AuditLogAggregator auditLogAggregator) throws IOException {
+        CompletionService<ParsedChunk> completionService = new ExecutorCompletionService<>(executorService);
+        long count = 0;
+        int inFlight = 0;
+        while (chunks.hasNext() || inFlight > 0) {
+            while (chunks.hasNext() && inFlight < maxInFlight()) {
+                completionService.submit(parseChunkTask(chunks.next(), auditLogSink != null, auditLogAggregator));
+                inFlight++;
+            }
+            setQueueDepth(inFlight);
+            try {
+                Future<ParsedChunk> done = completionService.take();
+                inFlight--;
+                count += writeAll(await(done), auditLogSink);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing audit logs");
+            }
+        }
+        return count;
+    }
+
+    private void setQueueDepth(int queueDepth) {
+        PipelineMetrics pipelineMetrics = s3LogParser.getPipelineMetrics();
+        if (pipelineMetrics != null) {
+            pipelineMetrics.stage(PipelineMetrics.Stage.READ).setQueueDepth(queueDepth);
+        }
+    }
+
+    /**
+     * Ranges parsed ahead of the sink; two per thread keeps every thread busy while the sink writes.
+     */
+    private int maxInFlight() {
+        return threads * 2;
+    }
+
+    /**
+     * Size of the ranges; when their parsed audit logs are kept for the sink, small enough for all the ranges in flight
+     * to have at most {@link #MAX_IN_FLIGHT_BYTES}.
+     */
+    private int chunkSize(boolean keep) {
+        return keep ? Math.max(1, Math.min(chunkSize, MAX_IN_FLIGHT_BYTES / maxInFlight())) : chunkSize;
+    }
+
+    private static long writeAll(ParsedChunk parsedChunk, AuditLogSink auditLogSink) throws IOException {
+        if (auditLogSink == null) {
+            return parsedChunk.count;
+        }
+        for (AuditLogRecord auditLogRecord : parsedChunk.auditLogRecords) {
+            auditLogSink.write(auditLogRecord);
+        }
+        for (int i = 0; i < parsedChunk.rejectedLines.size(); i++) {
+            auditLogSink.reject(parsedChunk.rejectedLines.get(i), parsedChunk.rejectReasons.get(i));
+        }
+        return parsedChunk.count;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing audit logs");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A range of an audit log file to parse. The end is clipped to the size of the file,
+     * so Long.MAX_VALUE means up to the end of the file.
+     */
+    public static final class FileRange {
+        private final File file;
+        private final long start;
+        private final long end;
+
+        public FileRange(File file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * A part of a {@link FileRange} parsed by a single task, which starts at the beginning of a line
+     * and ends after a newline or at the end of the range.
+     */
+    private static final class Chunk {
+        private final File file;
+        private final long start;
+        private final long end;
+
+        Chunk(File file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * The parsed audit logs and the rejected lines of a {@link Chunk}, kept until the calling thread hands them over
+     * to the sink, and aggregated on the parsing thread.
+     */
+    private static final class ParsedChunk implements AuditLogSink {
+        private final List<AuditLogRecord> auditLogRecords = new ArrayList<>();
+        private final List<String> rejectedLines = new ArrayList<>();
+        private final List<RejectReason> rejectReasons = new ArrayList<>();
+        private final boolean keep;
+        private final AuditLogAggregator auditLogAggregator;
+        private long count;
+
+        ParsedChunk(boolean keep, AuditLogAggregator auditLogAggregator) {
+            this.keep = keep;
+            this.auditLogAggregator = auditLogAggregator;
+        }
+
+        @Override
+        public void write(AuditLogRecord auditLogRecord) {
+            count++;
+            if (keep) {
+                auditLogRecords.add(auditLogRecord);
+            }
+            if (auditLogAggregator != null) {
+                auditLogAggregator.write(auditLogRecord);
+            }
+        }
+
+        @Override
+        public void reject(String singleAuditLog, RejectReason rejectReason) {
+            if (keep) {
+                rejectedLines.add(singleAuditLog);
+                rejectReasons.add(rejectReason);
+            }
+        }
+    }
+
+    /**
+     * ChunkIterator splits the files into ranges lazily, so only the ranges in flight are known at any time.
+     */
+    private final class ChunkIterator implements Closeable {
+        private final Iterator<FileRange> fileRanges;
+        private final int chunkSize;
+        private File file;
+        private FileChannel fileChannel;
+        private long size;
+        private long start;
+
+        ChunkIterator(List<FileRange> fileRanges, int chunkSize) {
+            this.fileRanges = fileRanges.iterator();
+            this.chunkSize = chunkSize;
+        }
+
+        boolean hasNext() throws IOException {
+            while (fileChannel == null || start >= size) {
+                close();
+                if (!fileRanges.hasNext()) {
+                    return false;
+                }
+                FileRange fileRange = fileRanges.next();
+                file = fileRange.file;
+                fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                size = Math.min(fileRange.end, fileChannel.size());
+                start = fileRange.start;
+            }
+            return true;
+        }
+
+        Chunk next() throws IOException {
+            long end = chunkEnd(fileChannel, start, size, chunkSize);
+            Chunk chunk = new Chunk(file, start, end);
+            start = end;
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileChannel != null) {
+                fileChannel.close();
+                fileChannel = null;
+            }
+        }
+    }
+
+    /**
+     * chunkEnd method finds the end of the range starting at the given offset:
+     * the offset after the first newline at or after start + chunkSize, or the end of the file
+     * @return the end offset (exclusive) of the range
+     * @throws IOException
+     */
+    static long chunkEnd(FileChannel fileChannel, long start, long size, int chunkSize) throws IOException {
+        long position = start + chunkSize;
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = fileChannel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Task which reads the range with its own channel and parses every audit log in it.
+     * @param keep whether the parsed audit logs and the rejected lines are kept for the sink
+     * @param auditLogAggregator where the parsed audit logs are aggregated, or null
+     */
+    private Callable<ParsedChunk> parseChunkTask(Chunk chunk, boolean keep, AuditLogAggregator auditLogAggregator) {
+        return () -> {
+            PipelineMetrics pipelineMetrics = s3LogParser.getPipelineMetrics();
+            int lines = 0;
+            ParsedChunk parsedChunk = new ParsedChunk(keep, auditLogAggregator);
+            long readNanos = 0;
+            try (AuditLogLineReader lineReader = new AuditLogLineReader(chunk.file, chunk.start, chunk.end,
+                    AuditLogLineReader.DEFAULT_WINDOW_SIZE, true)) {
+                // the range is mapped by the first line and its pages are faulted in while the newlines are searched,
+                // so the read time is the time spent in nextLine(), without the tokenizing and the sinks
+                while (true) {
+                    long startNanos = pipelineMetrics == null ? 0 : System.nanoTime();
+                    boolean hasLine = lineReader.nextLine();
+                    if (pipelineMetrics != null) {
+                        readNanos += System.nanoTime() - startNanos;
+                    }
+                    if (!hasLine) {
+                        break;
+                    }
+                    lines++;
+                    AuditLogRecord auditLogRecord = s3LogParser.parseAuditLogRecord(lineReader.getLine(), parsedChunk);
+                    if (auditLogRecord != null) {
+                        parsedChunk.write(auditLogRecord);
+                    }
+                }
+                if (lineReader.getPosition() < chunk.end) {
+                    throw new EOFException("Audit log file " + chunk.file + " truncated while parsing at offset "
+                            + lineReader.getPosition());
+                }
+                if (pipelineMetrics != null) {
+                    pipelineMetrics.stage(PipelineMetrics.Stage.READ).recordBatch(lines, chunk.end - chunk.start, readNanos);
+                }
+            }
+            return parsedChunk;
+        };
+    }
+}
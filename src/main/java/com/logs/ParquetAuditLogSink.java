@@ -0,0 +1,182 @@
+package com.logs;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.log4j.Logger;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalOutputFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * ParquetAuditLogSink class writes parsed audit logs into a columnar parquet file on the local filesystem,
+ * so hive and spark only read the columns a query needs.
+ *
+ * The schema is derived from the avro schema: the same columns, with the known keys of
+ * {@link S3LogParser#REFERRER_HEADER_KEYS} as columns of their own and 'referrerMap' keeping only the other referrer keys.
+ * Dictionary encoding is only used for the low cardinality columns of {@link #DICTIONARY_COLUMNS},
+ * the other columns are plain encoded.
+ * With a {@link FieldProjection} only the projected columns are written, and 'referrerMap' only by {@link FieldProjection#ALL}.
+ */
+public class ParquetAuditLogSink implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(ParquetAuditLogSink.class);
+
+    /**
+     * Columns with few distinct values, which are dictionary encoded.
+     */
+    public static final List<String> DICTIONARY_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "verb", "http", "sigv", "cypher", "tls", "op"));
+
+    /**
+     * Schema of the parquet file, as an avro schema.
+     */
+    public static final Schema SCHEMA = deriveSchema(AvroAuditLogSink.SCHEMA, FieldProjection.ALL);
+
+    private static final List<String> GROUPS = S3LogParser.AWS_LOG_REGEXP_GROUPS;
+    private static final List<String> REFERRER_HEADER_KEYS = S3LogParser.REFERRER_HEADER_KEYS;
+    private static final Set<String> REFERRER_HEADER_KEY_SET = new HashSet<>(REFERRER_HEADER_KEYS);
+
+    /**
+     * Positions in the schema of the file, -1 for the columns which are not projected.
+     */
+    private final int[] groupPositions = new int[GROUPS.size()];
+    private final boolean[] groupIsLong = new boolean[GROUPS.size()];
+    private final int[] referrerHeaderKeyPositions = new int[REFERRER_HEADER_KEYS.size()];
+    private final int referrerMapPosition;
+    private final int timestampMillisPosition;
+
+    private final ParquetWriter<GenericRecord> parquetWriter;
+
+    /**
+     * Record reused for every audit log, the writer shreds it into its columns before the next one is filled.
+     */
+    private final GenericData.Record genericRecord;
+
+    /**
+     * @param parquetFile this is the parquet file to write, it is replaced if it exists
+     * @param outputOptions row group size, compression codec and projection of the parquet file
+     * @throws IOException
+     */
+    public ParquetAuditLogSink(File parquetFile, OutputOptions outputOptions) throws IOException {
+        FieldProjection projection = outputOptions.getProjection();
+        Schema schema = projection.isAll() ? SCHEMA
+                : deriveSchema(AvroAuditLogSink.projectSchema(projection), projection);
+        for (int i = 0; i < GROUPS.size(); i++) {
+            Schema.Field field = schema.getField(GROUPS.get(i));
+            groupPositions[i] = field == null ? -1 : field.pos();
+            groupIsLong[i] = field != null && isLong(field.schema());
+        }
+        for (int i = 0; i < REFERRER_HEADER_KEYS.size(); i++) {
+            Schema.Field field = schema.getField(REFERRER_HEADER_KEYS.get(i));
+            referrerHeaderKeyPositions[i] = field == null ? -1 : field.pos();
+        }
+        Schema.Field referrerMap = schema.getField("referrerMap");
+        referrerMapPosition = referrerMap == null ? -1 : referrerMap.pos();
+        Schema.Field timestampMillis = schema.getField("timestampMillis");
+        timestampMillisPosition = timestampMillis == null ? -1 : timestampMillis.pos();
+        genericRecord = new GenericData.Record(schema);
+
+        AvroParquetWriter.Builder<GenericRecord> builder = AvroParquetWriter
+                .<GenericRecord>builder(new LocalOutputFile(parquetFile.toPath()))
+                .withSchema(schema)
+                .withDataModel(GenericData.get())
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .withRowGroupSize((long) outputOptions.getParquetRowGroupSize())
+                .withCompressionCodec(outputOptions.getParquetCodec())
+                .withDictionaryEncoding(false);
+        for (String column : DICTIONARY_COLUMNS) {
+            if (schema.getField(column) != null) {
+                builder = builder.withDictionaryEncoding(column, true);
+            }
+        }
+        parquetWriter = builder.build();
+    }
+
+    /**
+     * deriveSchema method derives the schema of the parquet file from the avro schema
+     * @param avroSchema this is the schema of the avro file
+     * @param projection this is the projection of the referrer keys
+     * @return the schema with a nullable string column for every projected referrer key
+     */
+    static Schema deriveSchema(Schema avroSchema, FieldProjection projection) {
+        List<Schema.Field> fields = new ArrayList<>();
+        Schema.Field referrerMap = null;
+        for (Schema.Field field : avroSchema.getFields()) {
+            if (field.name().equals("referrerMap")) {
+                referrerMap = field;
+                continue;
+            }
+            fields.add(new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultVal()));
+        }
+        Schema nullableString = Schema.createUnion(Schema.create(Schema.Type.NULL), Schema.create(Schema.Type.STRING));
+        for (String key : projection.getReferrerHeaderKeys()) {
+            fields.add(new Schema.Field(key, nullableString, "referrer header key " + key, Schema.Field.NULL_DEFAULT_VALUE));
+        }
+        if (referrerMap != null && projection.isAll()) {
+            fields.add(new Schema.Field(referrerMap.name(), referrerMap.schema(),
+                    "referrer header keys without a column of their own", referrerMap.defaultVal()));
+        }
+        return Schema.createRecord(avroSchema.getName(), avroSchema.getDoc(), avroSchema.getNamespace(), false, fields);
+    }
+
+    private static boolean isLong(Schema schema) {
+        if (schema.getType() == Schema.Type.UNION) {
+            for (Schema type : schema.getTypes()) {
+                if (type.getType() == Schema.Type.LONG) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return schema.getType() == Schema.Type.LONG;
+    }
+
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        Map<String, String> auditLogMap = auditLogRecord.getAuditLogMap();
+        for (int i = 0; i < groupPositions.length; i++) {
+            int position = groupPositions[i];
+            if (position < 0) {
+                continue;
+            }
+            String value = auditLogMap.get(GROUPS.get(i));
+            if (value != null) {
+                value = value.trim();
+            }
+            genericRecord.put(position, groupIsLong[i] ? AvroAuditLogSink.parseLong(value) : value);
+        }
+        Map<String, String> referrerHeaderMap = auditLogRecord.getReferrerHeaderMap();
+        for (int i = 0; i < referrerHeaderKeyPositions.length; i++) {
+            if (referrerHeaderKeyPositions[i] >= 0) {
+                genericRecord.put(referrerHeaderKeyPositions[i], referrerHeaderMap.get(REFERRER_HEADER_KEYS.get(i)));
+            }
+        }
+        if (referrerMapPosition >= 0) {
+            Map<String, String> otherReferrerKeys = Collections.emptyMap();
+            if (referrerHeaderMap instanceof ReferrerHeader) {
+                otherReferrerKeys = ((ReferrerHeader) referrerHeaderMap).getOtherKeys();
+            } else if (!REFERRER_HEADER_KEY_SET.containsAll(referrerHeaderMap.keySet())) {
+                otherReferrerKeys = new HashMap<>(referrerHeaderMap);
+                otherReferrerKeys.keySet().removeAll(REFERRER_HEADER_KEY_SET);
+            }
+            genericRecord.put(referrerMapPosition, otherReferrerKeys);
+        }
+        if (timestampMillisPosition >= 0) {
+            genericRecord.put(timestampMillisPosition, AvroAuditLogSink.timestampMillis(auditLogRecord));
+        }
+        parquetWriter.write(genericRecord);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parquetWriter.close();
+        LOG.info("Data successfully converted into Parquet file");
+    }
+}
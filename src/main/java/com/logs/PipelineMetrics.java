@@ -0,0 +1,193 @@
+package com.logs;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PipelineMetrics class holds the {@link StageMetrics} of every stage of merging, parsing and writing audit logs,
+ * so a long run shows where its time goes while it is running.
+ *
+ * The metrics are exposed as JMX MBeans named 'com.logs:type=PipelineMetrics,stage=&lt;stage&gt;'
+ * and, when a progress interval is set, logged as a single progress line at that interval.
+ * Nothing is measured unless a PipelineMetrics is given to {@link S3LogParser} and {@link Merger}.
+ */
+public class PipelineMetrics implements Closeable {
+
+    private final Logger LOG = Logger.getLogger(PipelineMetrics.class);
+
+    /**
+     * Stages of the pipeline, in the order in which an audit log goes through them.
+     */
+    public enum Stage {
+        /**
+         * Merging the audit log files into a single file; the appending merge copies bytes without reading lines,
+         * so it only counts bytes.
+         */
+        MERGE("merge"),
+        /**
+         * Reading the lines of the audit log files, i.e. finding their newlines; for mapped files it includes
+         * faulting in their pages, which happens while the newlines are searched.
+         */
+        READ("read"),
+        /**
+         * Splitting an audit log into its groups, with the tokenizer or the regular expression.
+         */
+        TOKENIZE("tokenize"),
+        /**
+         * Parsing the referrer header.
+         */
+        REFERRER("referrer"),
+        AVRO_WRITE("avro"),
+        JSON_WRITE("json"),
+        CSV_WRITE("csv"),
+        PARQUET_WRITE("parquet");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * One audit log in this many is timed in the stages which time single audit logs, a power of two.
+     */
+    public static final int SAMPLE_INTERVAL = 16;
+
+    private final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+    private final long startNanos = System.nanoTime();
+    private final List<ObjectName> objectNames = new ArrayList<>();
+    private ScheduledExecutorService progressReporter;
+
+    public PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = new StageMetrics(stage);
+        }
+    }
+
+    /**
+     * @param stage this is the stage
+     * @return the metrics of the stage
+     */
+    public StageMetrics stage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * startNanos method decides whether an audit log is timed
+     * @param count this is a counter incremented for every audit log of the stage
+     * @return {@link System#nanoTime()} if the audit log is timed, otherwise 0
+     */
+    public static long startNanos(int count) {
+        return (count & (SAMPLE_INTERVAL - 1)) == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * registerMBeans method registers the metrics of every stage with the platform MBean server,
+     * replacing the MBeans of an earlier run in the same JVM
+     */
+    public void registerMBeans() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (StageMetrics stageMetrics : stages) {
+            try {
+                ObjectName objectName = new ObjectName("com.logs:type=PipelineMetrics,stage=" + stageMetrics.getStage().getLabel());
+                if (mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.unregisterMBean(objectName);
+                }
+                mBeanServer.registerMBean(stageMetrics, objectName);
+                objectNames.add(objectName);
+            } catch (JMException e) {
+                LOG.warn("Metrics of stage '" + stageMetrics.getStage().getLabel() + "' not registered with JMX", e);
+            }
+        }
+    }
+
+    /**
+     * startProgressReporter method logs {@link #progressLine()} at a fixed interval from a daemon thread
+     * @param intervalMillis this is the interval between two progress lines
+     */
+    public synchronized void startProgressReporter(long intervalMillis) {
+        if (progressReporter != null) {
+            return;
+        }
+        progressReporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-log-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progressReporter.scheduleAtFixedRate(() -> LOG.info(progressLine()), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * progressLine method describes every stage which has seen audit logs so far, e.g.
+     * "Progress after 30 s : read 1200000 records 40000/s 12.5 MB/s p50 0.3 us p99 1.1 us | tokenize ..."
+     * @return the progress line
+     */
+    public String progressLine() {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "Progress after %d s :",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos)));
+        String separator = " ";
+        for (StageMetrics stageMetrics : stages) {
+            long records = stageMetrics.getRecords();
+            long bytes = stageMetrics.getBytes();
+            if (records == 0 && bytes == 0) {
+                continue;
+            }
+            line.append(separator).append(stageMetrics.getStage().getLabel());
+            line.append(String.format(Locale.ROOT, " %d records %.0f/s", records, stageMetrics.getRecordsPerSecond()));
+            if (bytes > 0) {
+                line.append(String.format(Locale.ROOT, " %.1f MB/s", stageMetrics.getBytesPerSecond() / (1024 * 1024)));
+            }
+            if (records > 0) {
+                line.append(String.format(Locale.ROOT, " p50 %.1f us p99 %.1f us total %d ms",
+                        stageMetrics.getP50LatencyNanos() / 1000.0, stageMetrics.getP99LatencyNanos() / 1000.0,
+                        stageMetrics.getTotalTimeMillis()));
+            }
+            if (stageMetrics.getMalformedRecords() > 0) {
+                line.append(" malformed ").append(stageMetrics.getMalformedRecords());
+            }
+            if (stageMetrics.getQueueDepth() > 0) {
+                line.append(" queue ").append(stageMetrics.getQueueDepth());
+            }
+            separator = " | ";
+        }
+        return line.toString();
+    }
+
+    /**
+     * close method stops the progress reporter, logs a last progress line and unregisters the MBeans
+     */
+    @Override
+    public synchronized void close() {
+        if (progressReporter != null) {
+            progressReporter.shutdownNow();
+            progressReporter = null;
+        }
+        LOG.info(progressLine());
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : objectNames) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.debug("Metrics MBean '" + objectName + "' already unregistered", e);
+            }
+        }
+        objectNames.clear();
+    }
+}
@@ -0,0 +1,337 @@
+package com.logs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * ReferrerHeader class holds the key-value pairs of the http referrer header of a single audit log,
+ * which is nearly always an S3A audit url like
+ * {@code "https://audit.example.org/hadoop/1/op_create/<span-id>/?op=op_create&pr=alice&..."}.
+ *
+ * The keys of {@link S3LogParser#REFERRER_HEADER_KEYS} have a fixed slot each, which only records where the value is
+ * in the header; other keys go to an overflow map. Values are only cut out of the header and percent-decoded
+ * when they are read, except the ones canonicalized by the parser.
+ * The path segments of the url, e.g. [hadoop, 1, op_create, span-id], are also split when they are first read.
+ * With a {@link FieldProjection} the keys which are not projected are skipped.
+ *
+ * A ReferrerHeader is a {@link Map}, so it can be used wherever the referrer header map was used before.
+ */
+public class ReferrerHeader extends AbstractMap<String, String> {
+
+    private static final String[] KEYS = S3LogParser.REFERRER_HEADER_KEYS.toArray(new String[0]);
+
+    private static final ReferrerHeader EMPTY = new ReferrerHeader("");
+
+    private final String header;
+
+    /**
+     * Start and end offset in the header of the value of every known key, -1 if the key is absent.
+     */
+    private final int[] offsets = new int[KEYS.length * 2];
+
+    /**
+     * Value of every known key, filled when the value is read or when the parser canonicalizes it.
+     */
+    private final String[] values = new String[KEYS.length];
+
+    private Map<String, String> otherKeys;
+    private List<String> pathSegments;
+    private Set<Map.Entry<String, String>> entrySet;
+
+    private ReferrerHeader(String header) {
+        this.header = header;
+        Arrays.fill(offsets, -1);
+    }
+
+    /**
+     * @return an empty referrer header
+     */
+    public static ReferrerHeader empty() {
+        return EMPTY;
+    }
+
+    /**
+     * parse method splits the query of a referrer header into key-value pairs
+     * @param referrerHeader this is the quoted http referrer header of a particular audit log
+     * @param valueDictionaries dictionary of every known key whose values are canonicalized, null entries or a null array for none
+     * @param keyDictionary dictionary for the other keys, or null
+     * @return the parsed referrer header
+     */
+    static ReferrerHeader parse(String referrerHeader, StringDictionary[] valueDictionaries, StringDictionary keyDictionary) {
+        return parse(referrerHeader, valueDictionaries, keyDictionary, FieldProjection.ALL);
+    }
+
+    /**
+     * parse method splits the query of a referrer header into the key-value pairs of a projection
+     * @param referrerHeader this is the quoted http referrer header of a particular audit log
+     * @param valueDictionaries dictionary of every known key whose values are canonicalized, null entries or a null array for none
+     * @param keyDictionary dictionary for the other keys, or null
+     * @param projection the known keys to keep; other keys are only kept by {@link FieldProjection#ALL}
+     * @return the parsed referrer header
+     */
+    static ReferrerHeader parse(String referrerHeader, StringDictionary[] valueDictionaries, StringDictionary keyDictionary,
+                                FieldProjection projection) {
+        ReferrerHeader parsed = new ReferrerHeader(referrerHeader);
+        // the query is scanned in place, between the '?' and the closing quote
+        int start = referrerHeader.indexOf('?') + 1;
+        int endOfReferrer = referrerHeader.length() - 1;
+        while (start < endOfReferrer) {
+            int equals = referrerHeader.indexOf('=', start);
+            // no match : break
+            if (equals == -1 || equals >= endOfReferrer) {
+                break;
+            }
+            int end = referrerHeader.indexOf('&', equals);
+            // or end of string
+            if (end == -1 || end > endOfReferrer) {
+                end = endOfReferrer;
+            }
+            int keyIndex = keyIndex(referrerHeader, start, equals);
+            if (keyIndex >= 0 ? !projection.containsReferrerHeaderKey(keyIndex) : !projection.isAll()) {
+                start = end + 1;
+                continue;
+            }
+            if (keyIndex >= 0) {
+                parsed.offsets[keyIndex * 2] = equals + 1;
+                parsed.offsets[keyIndex * 2 + 1] = end;
+                parsed.values[keyIndex] = null;
+                StringDictionary dictionary = valueDictionaries == null ? null : valueDictionaries[keyIndex];
+                if (dictionary != null && !hasEscape(referrerHeader, equals + 1, end)) {
+                    parsed.values[keyIndex] = dictionary.intern(referrerHeader, equals + 1, end);
+                }
+            } else {
+                String key = keyDictionary != null
+                        ? keyDictionary.intern(referrerHeader, start, equals)
+                        : referrerHeader.substring(start, equals);
+                if (parsed.otherKeys == null) {
+                    parsed.otherKeys = new HashMap<>();
+                }
+                parsed.otherKeys.put(key, percentDecode(referrerHeader, equals + 1, end));
+            }
+            start = end + 1;
+        }
+        return parsed;
+    }
+
+    /**
+     * keyIndex method finds a known referrer header key without creating a string
+     * @return index of the key in {@link S3LogParser#REFERRER_HEADER_KEYS}, or -1 if it is not a known key
+     */
+    static int keyIndex(CharSequence chars, int start, int end) {
+        if (end - start != 2) {
+            return -1;
+        }
+        char first = chars.charAt(start);
+        char second = chars.charAt(start + 1);
+        for (int i = 0; i < KEYS.length; i++) {
+            if (KEYS[i].charAt(0) == first && KEYS[i].charAt(1) == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasEscape(String chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars.charAt(i) == '%') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * percentDecode method decodes the %XX escapes of a value as UTF-8,
+     * a value without a valid escape is returned as it is
+     * @return the decoded value
+     */
+    static String percentDecode(String chars, int start, int end) {
+        if (!hasEscape(chars, start, end)) {
+            return chars.substring(start, end);
+        }
+        StringBuilder decoded = new StringBuilder(end - start);
+        // consecutive escapes are collected first, as a character may take several bytes in UTF-8
+        byte[] bytes = null;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c == '%' && i + 2 < end && hexValue(chars.charAt(i + 1)) >= 0 && hexValue(chars.charAt(i + 2)) >= 0) {
+                if (bytes == null) {
+                    bytes = new byte[(end - i) / 3];
+                }
+                bytes[count++] = (byte) (hexValue(chars.charAt(i + 1)) * 16 + hexValue(chars.charAt(i + 2)));
+                i += 2;
+            } else {
+                if (count > 0) {
+                    decoded.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+                    count = 0;
+                }
+                decoded.append(c);
+            }
+        }
+        if (count > 0) {
+            decoded.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+        }
+        return decoded.toString();
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * @param keyIndex index of the key in {@link S3LogParser#REFERRER_HEADER_KEYS}
+     * @return the percent-decoded value of the key, or null if the header doesn't have it
+     */
+    public String get(int keyIndex) {
+        String value = values[keyIndex];
+        if (value == null && offsets[keyIndex * 2] >= 0) {
+            value = percentDecode(header, offsets[keyIndex * 2], offsets[keyIndex * 2 + 1]);
+            values[keyIndex] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (key instanceof String) {
+            String name = (String) key;
+            int keyIndex = keyIndex(name, 0, name.length());
+            if (keyIndex >= 0) {
+                return get(keyIndex);
+            }
+        }
+        return otherKeys == null ? null : otherKeys.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key instanceof String) {
+            String name = (String) key;
+            int keyIndex = keyIndex(name, 0, name.length());
+            if (keyIndex >= 0) {
+                return offsets[keyIndex * 2] >= 0;
+            }
+        }
+        return otherKeys != null && otherKeys.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        int size = otherKeys == null ? 0 : otherKeys.size();
+        for (int i = 0; i < KEYS.length; i++) {
+            if (offsets[i * 2] >= 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the keys which are not in {@link S3LogParser#REFERRER_HEADER_KEYS} with their values
+     */
+    public Map<String, String> getOtherKeys() {
+        return otherKeys == null ? Collections.emptyMap() : Collections.unmodifiableMap(otherKeys);
+    }
+
+    /**
+     * getPathSegments method splits the path of the referrer url, e.g. [hadoop, 1, op_create, span-id]
+     * @return the non-empty path segments, an empty list if the header is not a url
+     */
+    public List<String> getPathSegments() {
+        if (pathSegments == null) {
+            pathSegments = splitPath();
+        }
+        return pathSegments;
+    }
+
+    private List<String> splitPath() {
+        int scheme = header.indexOf("://");
+        if (scheme < 0) {
+            return Collections.emptyList();
+        }
+        int end = header.indexOf('?', scheme);
+        if (end < 0) {
+            end = header.endsWith("\"") ? header.length() - 1 : header.length();
+        }
+        int start = header.indexOf('/', scheme + 3);
+        List<String> segments = new ArrayList<>();
+        while (start >= 0 && start < end) {
+            int next = header.indexOf('/', start + 1);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            if (next > start + 1) {
+                segments.add(percentDecode(header, start + 1, next));
+            }
+            start = next;
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return ReferrerHeader.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Iterates over the known keys in the order of {@link S3LogParser#REFERRER_HEADER_KEYS}, then over the other keys.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private int nextKeyIndex = nextKnownKey(0);
+        private Iterator<Map.Entry<String, String>> otherKeysIterator;
+
+        private int nextKnownKey(int from) {
+            while (from < KEYS.length && offsets[from * 2] < 0) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextKeyIndex < KEYS.length) {
+                return true;
+            }
+            if (otherKeysIterator == null) {
+                otherKeysIterator = getOtherKeys().entrySet().iterator();
+            }
+            return otherKeysIterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextKeyIndex < KEYS.length) {
+                int keyIndex = nextKeyIndex;
+                nextKeyIndex = nextKnownKey(keyIndex + 1);
+                return new AbstractMap.SimpleImmutableEntry<>(KEYS[keyIndex], get(keyIndex));
+            }
+            return otherKeysIterator.next();
+        }
+    }
+}
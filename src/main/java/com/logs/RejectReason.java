@@ -0,0 +1,29 @@
+package com.logs;
+
+/**
+ * RejectReason tells why a line of an audit log file didn't give a parsed audit log.
+ * Rejected lines are counted per reason by {@link S3LogParser} and handed over to
+ * {@link AuditLogSink#reject(String, RejectReason)}, see {@link DeadLetterAuditLogSink}.
+ */
+public enum RejectReason {
+    /**
+     * The line is empty.
+     */
+    EMPTY,
+    /**
+     * The line ends before its last field, e.g. a file cut while it was written.
+     */
+    TRUNCATED,
+    /**
+     * The third entry is not a timestamp in square braces.
+     */
+    BAD_TIMESTAMP,
+    /**
+     * A quoted or numeric entry doesn't follow the S3 log grammar, or the line holds a line terminator.
+     */
+    BAD_FIELD,
+    /**
+     * The line is a valid S3 log entry without a referrer header, so it is not an S3A audit log.
+     */
+    NO_REFERRER
+}
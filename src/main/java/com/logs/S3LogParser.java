@@ -2,19 +2,12 @@ package com.logs;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
-import org.apache.avro.Schema;
-import org.apache.avro.file.DataFileWriter;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericDatumWriter;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.*;
 import org.apache.log4j.Logger;
 
 /**
@@ -25,15 +18,211 @@ import org.apache.log4j.Logger;
  * explicitly and names each group in the process.
  * All group names are included in {@link #AWS_LOG_REGEXP_GROUPS} in the order
  * within the log entries.
+ *
+ * By default the log entries are split by {@link S3LogTokenizer}, which follows the
+ * same grammar in a single pass; the regexp is kept as a fallback and to validate the tokenizer,
+ * see {@link ParsingMode}.
+ *
+ * Values which repeat on almost every log entry, like the bucket, the user agent or the 'pr' of the referrer header,
+ * are canonicalized with a bounded {@link StringDictionary} per field, see {@link #INTERNED_GROUPS}
+ * and {@link #INTERNED_REFERRER_HEADER_KEYS}; parsed audit logs kept in memory then share these strings.
+ *
+ * A line which doesn't give a parsed audit log is rejected once, with a {@link RejectReason} found by the tokenizer
+ * on its way through the line: rejections are counted per reason, handed over to
+ * {@link AuditLogSink#reject(String, RejectReason)} and logged at most once every {@link #REJECT_LOG_INTERVAL_SECONDS},
+ * so a file full of junk costs no more to go through than a clean one.
+ *
+ * A {@link FieldProjection} limits parsing to the fields a job needs: the tokenizer still checks the whole line,
+ * but only their strings are created.
+ * An {@link AuditLogFilter} is evaluated on the characters of a line before it is parsed: the tokenizer only scans the
+ * fields the filter needs, and a line which doesn't pass is skipped without scanning the rest of it. Skipped lines
+ * are counted, see {@link #getFilteredCount()}, but not rejected.
+ *
+ * Files are read as bytes by {@link AuditLogLineReader}: ASCII lines are parsed as {@link AsciiLine}s over the mapped
+ * bytes, so only the fields which are kept are copied into strings.
+ *
+ * When it is given {@link PipelineMetrics}, the parser counts and times the reading, tokenizing and
+ * referrer header stages, and the sinks it creates count and time their writes.
+ *
+ * An S3LogParser is thread safe: its configuration is immutable and every thread
+ * gets its own tokenizer and dictionaries, so a single instance can be shared by the threads of
+ * {@link ParallelAuditLogParser}.
  */
 
 public class S3LogParser {
 
+    /**
+     * How a single audit log is split into its groups.
+     */
+    public enum ParsingMode {
+        /**
+         * Use the hand-written {@link S3LogTokenizer}.
+         */
+        TOKENIZER,
+        /**
+         * Use {@link #LOG_ENTRY_PATTERN}.
+         */
+        REGEX,
+        /**
+         * Use both, log any difference and return the result of the regexp.
+         */
+        VALIDATE
+    }
+
     public S3LogParser() {
+        this(ParsingMode.TOKENIZER);
+    }
+
+    public S3LogParser(ParsingMode parsingMode) {
+        this(parsingMode, true);
+    }
+
+    /**
+     * @param parsingMode how a single audit log is split into its groups
+     * @param internValues whether values of low cardinality fields are canonicalized
+     */
+    public S3LogParser(ParsingMode parsingMode, boolean internValues) {
+        this(parsingMode, internValues, null);
+    }
+
+    /**
+     * @param parsingMode how a single audit log is split into its groups
+     * @param internValues whether values of low cardinality fields are canonicalized
+     * @param pipelineMetrics metrics of the stages, or null to measure nothing
+     */
+    public S3LogParser(ParsingMode parsingMode, boolean internValues, PipelineMetrics pipelineMetrics) {
+        this(parsingMode, internValues, pipelineMetrics, FieldProjection.ALL);
+    }
+
+    /**
+     * @param parsingMode how a single audit log is split into its groups
+     * @param internValues whether values of low cardinality fields are canonicalized
+     * @param pipelineMetrics metrics of the stages, or null to measure nothing
+     * @param projection the fields kept out of every audit log
+     */
+    public S3LogParser(ParsingMode parsingMode, boolean internValues, PipelineMetrics pipelineMetrics,
+                       FieldProjection projection) {
+        this(parsingMode, internValues, pipelineMetrics, projection, null);
+    }
+
+    /**
+     * @param parsingMode how a single audit log is split into its groups
+     * @param internValues whether values of low cardinality fields are canonicalized
+     * @param pipelineMetrics metrics of the stages, or null to measure nothing
+     * @param projection the fields kept out of every audit log
+     * @param filter the condition an audit log must meet to be parsed, or null to parse every audit log
+     */
+    public S3LogParser(ParsingMode parsingMode, boolean internValues, PipelineMetrics pipelineMetrics,
+                       FieldProjection projection, AuditLogFilter filter) {
+        this.parsingMode = parsingMode;
+        this.projection = projection;
+        this.filter = filter;
+        this.internValues = internValues;
+        this.pipelineMetrics = pipelineMetrics;
+        for (int i = 0; i < rejectCounts.length; i++) {
+            rejectCounts[i] = new LongAdder();
+        }
     }
 
     private final Logger LOG = Logger.getLogger(S3LogParser.class);
 
+    private final ParsingMode parsingMode;
+
+    private final boolean internValues;
+
+    private final PipelineMetrics pipelineMetrics;
+
+    private final FieldProjection projection;
+
+    private final AuditLogFilter filter;
+
+    private final LongAdder filteredCount = new LongAdder();
+
+    /**
+     * Rejected lines are logged at most once in this many seconds.
+     */
+    public static final long REJECT_LOG_INTERVAL_SECONDS = 10;
+
+    private final LongAdder[] rejectCounts = new LongAdder[RejectReason.values().length];
+
+    private final AtomicLong nextRejectLogNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Tokenizers keep the offsets of the last parsed log and dictionaries are not thread safe, so every thread gets its own.
+     */
+    private final ThreadLocal<ParserState> parserStates = ThreadLocal.withInitial(ParserState::new);
+
+    /**
+     * Tokenizer and dictionaries of a single thread.
+     */
+    private static final class ParserState {
+        private final S3LogTokenizer tokenizer = new S3LogTokenizer();
+        private final StringDictionary[] groupDictionaries = new StringDictionary[S3LogTokenizer.FIELD_COUNT];
+        private final StringDictionary[] referrerValueDictionaries = new StringDictionary[REFERRER_HEADER_KEYS_ARRAY.length];
+        private final StringDictionary referrerKeyDictionary = new StringDictionary(64);
+        private final S3TimestampDecoder timestampDecoder = new S3TimestampDecoder();
+        private final int[] sampleCounts = new int[PipelineMetrics.Stage.values().length];
+        private RejectReason rejectReason;
+        /**
+         * Whether the last audit log didn't pass the filter.
+         */
+        private boolean filtered;
+        /**
+         * Whether the last parsed audit log has a referrer header, and the header if a referrer key is projected.
+         */
+        private boolean hasReferrer;
+        private String referrer;
+
+        private ParserState() {
+            for (int field = 0; field < GROUPS.length; field++) {
+                if (INTERNED_GROUPS.contains(GROUPS[field])) {
+                    groupDictionaries[field] = new StringDictionary();
+                }
+            }
+            for (int i = 0; i < REFERRER_HEADER_KEYS_ARRAY.length; i++) {
+                if (INTERNED_REFERRER_HEADER_KEYS.contains(REFERRER_HEADER_KEYS_ARRAY[i])) {
+                    referrerValueDictionaries[i] = new StringDictionary();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the fields kept out of every audit log
+     */
+    public FieldProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return the condition an audit log must meet to be parsed, or null if every audit log is parsed
+     */
+    public AuditLogFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return number of well formed lines skipped so far because they didn't pass the filter
+     */
+    public long getFilteredCount() {
+        return filteredCount.sum();
+    }
+
+    /**
+     * @return the metrics of the stages, or null if nothing is measured
+     */
+    public PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
+    /**
+     * startNanos method decides whether the current thread times an audit log in a stage
+     * @return {@link System#nanoTime()} if the audit log is timed, otherwise 0
+     */
+    private long startNanos(PipelineMetrics.Stage stage) {
+        return PipelineMetrics.startNanos(parserStates.get().sampleCounts[stage.ordinal()]++);
+    }
+
     /**
      * Simple entry: anything up to a space.
      * {@value}.
@@ -296,6 +485,33 @@ public class S3LogParser {
     public static final List<String> AWS_LOG_REGEXP_GROUPS =
             Collections.unmodifiableList(Arrays.asList(GROUPS));
 
+    /**
+     * Keys of the S3A audit referrer header, in the order of the csv columns.
+     */
+    private static final String[] REFERRER_HEADER_KEYS_ARRAY = {
+            "op", "p1", "p2", "pr", "ps", "id", "t0", "t1", "ts", "fs", "ji", "cm", "ta"
+    };
+
+    /**
+     * Ordered list of the known referrer header keys.
+     */
+    public static final List<String> REFERRER_HEADER_KEYS =
+            Collections.unmodifiableList(Arrays.asList(REFERRER_HEADER_KEYS_ARRAY));
+
+    /**
+     * Groups whose values repeat on most log entries and are canonicalized while parsing.
+     */
+    public static final Set<String> INTERNED_GROUPS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            OWNER_GROUP, BUCKET_GROUP, REMOTEIP_GROUP, REQUESTER_GROUP, VERB_GROUP, HTTP_GROUP, AWSERRORCODE_GROUP,
+            USERAGENT_GROUP, VERSION_GROUP, SIGV_GROUP, CYPHER_GROUP, AUTH_GROUP, ENDPOINT_GROUP, TLS_GROUP, TAIL_GROUP)));
+
+    /**
+     * Referrer header keys whose values repeat on most log entries and are canonicalized while parsing;
+     * the keys themselves are always canonicalized.
+     */
+    public static final Set<String> INTERNED_REFERRER_HEADER_KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "op", "pr", "ps", "fs", "ji", "cm", "ta")));
+
     /**
      * And the actual compiled pattern.
      */
@@ -304,147 +520,368 @@ public class S3LogParser {
 
     /**
      * parseAuditLog method helps in parsing the audit log into key-value pairs using regular expression
-     * @param singleAuditLog this is single audit log from merged audit log file
-     * @return it returns a map i.e, auditLogMap which contains key-value pairs of a single audit log
+     * @param singleAuditLog this is single audit log from merged audit log file, a string or a line of
+     *                       {@link AuditLogLineReader} which is only read during the call
+     * @return it returns a map i.e, auditLogMap which contains key-value pairs of a single audit log,
+     * empty if the audit log is rejected or doesn't pass the filter
      */
-    public Map<String, String> parseAuditLog(String singleAuditLog){
+    public Map<String, String> parseAuditLog(CharSequence singleAuditLog){
         Map<String, String> auditLogMap = new HashMap<>();
+        final ParserState parserState = parserStates.get();
+        parserState.filtered = false;
         if(singleAuditLog == null || singleAuditLog.length() == 0) {
-            LOG.info("This is an empty string or null string, expected a valid string to parse");
+            parserState.rejectReason = RejectReason.EMPTY;
+            countReject(singleAuditLog, RejectReason.EMPTY);
             return auditLogMap;
         }
-        final Matcher matcher = LOG_ENTRY_PATTERN.matcher(singleAuditLog);
-        matcher.matches();
-        for(String key : AWS_LOG_REGEXP_GROUPS) {
-            try {
-                final String value = matcher.group(key);
-                auditLogMap.put(key, value);
-            } catch (IllegalStateException e) {
-                LOG.info(e);
+        final long startNanos = pipelineMetrics == null ? 0 : startNanos(PipelineMetrics.Stage.TOKENIZE);
+        RejectReason rejectReason = filter == null ? null : applyFilter(singleAuditLog, parserState);
+        if (rejectReason != null || parserState.filtered) {
+            parserState.rejectReason = rejectReason;
+            if (rejectReason != null) {
+                countReject(singleAuditLog, rejectReason);
+            }
+            if (pipelineMetrics != null) {
+                pipelineMetrics.stage(PipelineMetrics.Stage.TOKENIZE)
+                        .record(singleAuditLog.length(), startNanos, rejectReason != null);
             }
+            return auditLogMap;
+        }
+        switch (parsingMode) {
+            case REGEX:
+                rejectReason = parseAuditLogWithRegex(singleAuditLog, auditLogMap);
+                break;
+            case VALIDATE:
+                Map<String, String> tokenizedAuditLogMap = new HashMap<>();
+                parseAuditLogWithTokenizer(singleAuditLog, tokenizedAuditLogMap);
+                rejectReason = parseAuditLogWithRegex(singleAuditLog, auditLogMap);
+                if (!tokenizedAuditLogMap.equals(auditLogMap)) {
+                    LOG.warn("Tokenizer and regular expression disagree on audit log : " + singleAuditLog);
+                }
+                break;
+            default:
+                rejectReason = parseAuditLogWithTokenizer(singleAuditLog, auditLogMap);
+                break;
+        }
+        parserState.rejectReason = rejectReason;
+        if (rejectReason != null) {
+            countReject(singleAuditLog, rejectReason);
+        }
+        if (pipelineMetrics != null) {
+            pipelineMetrics.stage(PipelineMetrics.Stage.TOKENIZE)
+                    .record(singleAuditLog.length(), startNanos, rejectReason != null);
         }
-        LOG.info("Parsed audit log successfully");
         return auditLogMap;
     }
 
+    /**
+     * applyFilter method scans the audit log up to the last field of the filter and evaluates the filter on it,
+     * setting {@link ParserState#filtered} if the audit log doesn't pass
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @param parserState this is the state of the current thread
+     * @return why the log doesn't match the grammar up to the last field of the filter, or null if it matches
+     */
+    private RejectReason applyFilter(CharSequence singleAuditLog, ParserState parserState) {
+        final S3LogTokenizer tokenizer = parserState.tokenizer;
+        if (!tokenizer.tokenize(singleAuditLog, filter.getLastField())) {
+            return tokenizer.getRejectReason();
+        }
+        if (!filter.test(singleAuditLog, tokenizer, parserState.timestampDecoder)) {
+            parserState.filtered = true;
+            filteredCount.increment();
+        }
+        return null;
+    }
+
+    /**
+     * parseAuditLogWithTokenizer method splits the audit log using {@link S3LogTokenizer};
+     * the whole line is scanned, so it matches exactly when {@link #LOG_ENTRY_PATTERN} matches,
+     * but only the projected fields are turned into strings
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @param auditLogMap map to which the projected key-value pairs are added, it is left empty if the log doesn't match
+     * @return why the log doesn't match, or null if it matches
+     */
+    private RejectReason parseAuditLogWithTokenizer(CharSequence singleAuditLog, Map<String, String> auditLogMap) {
+        final ParserState parserState = parserStates.get();
+        final S3LogTokenizer tokenizer = parserState.tokenizer;
+        // the filter already scanned the whole line
+        final boolean tokenized = filter != null && filter.getLastField() == S3LogTokenizer.TAIL;
+        if (!tokenized && !tokenizer.tokenize(singleAuditLog)) {
+            return tokenizer.getRejectReason();
+        }
+        for (int field = 0; field < GROUPS.length; field++) {
+            if (!projection.containsGroup(field)) {
+                continue;
+            }
+            StringDictionary dictionary = parserState.groupDictionaries[field];
+            auditLogMap.put(GROUPS[field], internValues && dictionary != null
+                    ? dictionary.intern(singleAuditLog, tokenizer.start(field), tokenizer.end(field))
+                    : tokenizer.value(field));
+        }
+        final int referrerStart = tokenizer.start(S3LogTokenizer.REFERRER);
+        final int referrerEnd = tokenizer.end(S3LogTokenizer.REFERRER);
+        parserState.hasReferrer = referrerEnd - referrerStart != 1 || singleAuditLog.charAt(referrerStart) != '-';
+        parserState.referrer = null;
+        if (parserState.hasReferrer && projection.hasReferrerHeaderKeys()) {
+            parserState.referrer = projection.containsGroup(S3LogTokenizer.REFERRER)
+                    ? auditLogMap.get(REFERRER_GROUP) : tokenizer.value(S3LogTokenizer.REFERRER);
+        }
+        return null;
+    }
+
+    /**
+     * parseAuditLogWithRegex method splits the audit log using {@link #LOG_ENTRY_PATTERN}
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @param auditLogMap map to which the key-value pairs are added, it is left empty if the log doesn't match
+     * @return why the log doesn't match, or null if it matches
+     */
+    private RejectReason parseAuditLogWithRegex(CharSequence singleAuditLog, Map<String, String> auditLogMap) {
+        final Matcher matcher = LOG_ENTRY_PATTERN.matcher(singleAuditLog);
+        final ParserState parserState = parserStates.get();
+        if (!matcher.matches()) {
+            // the tokenizer follows the same grammar and knows where it failed
+            parserState.tokenizer.tokenize(singleAuditLog);
+            RejectReason rejectReason = parserState.tokenizer.getRejectReason();
+            return rejectReason != null ? rejectReason : RejectReason.BAD_FIELD;
+        }
+        final StringDictionary[] groupDictionaries = parserState.groupDictionaries;
+        for (int field = 0; field < GROUPS.length; field++) {
+            if (!projection.containsGroup(field)) {
+                continue;
+            }
+            final String key = GROUPS[field];
+            final int start = matcher.start(key);
+            final StringDictionary dictionary = groupDictionaries[field];
+            final String value = start >= 0 && internValues && dictionary != null
+                    ? dictionary.intern(singleAuditLog, start, matcher.end(key))
+                    : matcher.group(key);
+            auditLogMap.put(key, value);
+        }
+        final String referrer = matcher.group(REFERRER_GROUP);
+        parserState.hasReferrer = !referrer.equals("-");
+        parserState.referrer = parserState.hasReferrer && projection.hasReferrerHeaderKeys() ? referrer : null;
+        return null;
+    }
+
+    /**
+     * countReject method counts a rejected line and logs it if no line was logged
+     * during the last {@link #REJECT_LOG_INTERVAL_SECONDS}
+     */
+    private void countReject(CharSequence singleAuditLog, RejectReason rejectReason) {
+        rejectCounts[rejectReason.ordinal()].increment();
+        long now = System.nanoTime();
+        long next = nextRejectLogNanos.get();
+        if (now - next >= 0 && nextRejectLogNanos.compareAndSet(next, now + TimeUnit.SECONDS.toNanos(REJECT_LOG_INTERVAL_SECONDS))) {
+            String line = singleAuditLog == null || singleAuditLog.length() <= 200 ? String.valueOf(singleAuditLog)
+                    : singleAuditLog.subSequence(0, 200) + "...";
+            LOG.warn("Rejected audit log (" + rejectReason + "), " + getRejectCounts()
+                    + " rejected so far, logging at most one every " + REJECT_LOG_INTERVAL_SECONDS + " s : " + line);
+        }
+    }
+
+    /**
+     * @param rejectReason this is the reason
+     * @return number of lines rejected for the reason so far
+     */
+    public long getRejectCount(RejectReason rejectReason) {
+        return rejectCounts[rejectReason.ordinal()].sum();
+    }
+
+    /**
+     * @return number of lines rejected so far for every reason which rejected any
+     */
+    public Map<RejectReason, Long> getRejectCounts() {
+        Map<RejectReason, Long> counts = new EnumMap<>(RejectReason.class);
+        for (RejectReason rejectReason : RejectReason.values()) {
+            long count = getRejectCount(rejectReason);
+            if (count > 0) {
+                counts.put(rejectReason, count);
+            }
+        }
+        return counts;
+    }
+
     /**
      * parseReferrerHeader method helps in parsing the http referrer header which is one of the key-value pair of audit log
      * @param referrerHeader this is the http referrer header of a particular audit log
-     * @return it returns a map i.e, auditLogMap which contains key-value pairs of audit log as well as referrer header present in it
+     * @return it returns a map of the key-value pairs of the referrer header, with fixed slots for the known keys
      */
-    public Map<String, String> parseReferrerHeader(String referrerHeader) {
-         Map<String, String> referrerHeaderMap = new HashMap<>();
+    public ReferrerHeader parseReferrerHeader(String referrerHeader) {
          if( referrerHeader == null || referrerHeader.length() == 0) {
              LOG.info("This is an empty string or null string, expected a valid string to parse");
-             return referrerHeaderMap;
+             return ReferrerHeader.empty();
          }
-         int indexOfQuestionMark = referrerHeader.indexOf("?");
-         String httpReferrer = referrerHeader.substring(indexOfQuestionMark + 1, referrerHeader.length() - 1);
-         int lengthOfReferrer = httpReferrer.length();
-         int start = 0;
-         while (start < lengthOfReferrer) {
-             int equals = httpReferrer.indexOf("=", start);
-             // no match : break
-             if (equals == -1) {
-                 break;
-             }
-             String key = httpReferrer.substring(start, equals);
-             int end = httpReferrer.indexOf("&", equals);
-             // or end of string
-             if (end == -1) {
-                 end = lengthOfReferrer;
-             }
-             String value = httpReferrer.substring(equals + 1, end);
-             referrerHeaderMap.put(key, value);
-             start = end + 1;
+         final long startNanos = pipelineMetrics == null ? 0 : startNanos(PipelineMetrics.Stage.REFERRER);
+         final ParserState parserState = parserStates.get();
+         ReferrerHeader referrerHeaderMap = internValues
+                 ? ReferrerHeader.parse(referrerHeader, parserState.referrerValueDictionaries, parserState.referrerKeyDictionary,
+                         projection)
+                 : ReferrerHeader.parse(referrerHeader, null, null, projection);
+         if (pipelineMetrics != null) {
+             pipelineMetrics.stage(PipelineMetrics.Stage.REFERRER).record(referrerHeader.length(), startNanos, false);
          }
-         LOG.info("Parsed referrer header successfully");
          return referrerHeaderMap;
     }
 
     /**
-     * convertJsonToCsvFile method converts the json file into csv file
-     * in which all key-value pairs of all audit logs are displayed as a table
-     * @throws IOException
-     */
-    private void convertJsonToCsvFile() throws IOException {
-         JsonNode jsonTree = new ObjectMapper().readTree(new File("Json.json"));
-         JsonNode jsonTreeFields = new ObjectMapper().readTree(new File("JsonFields.json"));
-
-         CsvSchema.Builder csvSchemaBuilder = CsvSchema.builder();
-         JsonNode firstObject = jsonTreeFields.elements().next();
-         firstObject.fieldNames().forEachRemaining(fieldName -> {csvSchemaBuilder.addColumn(fieldName);} );
-         CsvSchema csvSchema = csvSchemaBuilder.build().withHeader();
+     * parseAuditLogRecord method parses a single audit log and its referrer header
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @return the parsed audit log with its decoded timestamp, or null if the audit log is rejected
+     * or doesn't pass the filter
+     */
+    public AuditLogRecord parseAuditLogRecord(CharSequence singleAuditLog) {
+        //parse audit log except referrer header
+        Map<String, String> auditLogMap = parseAuditLog(singleAuditLog);
+        final ParserState parserState = parserStates.get();
+        if (parserState.rejectReason != null || parserState.filtered) {
+            return null;
+        }
+        if (!parserState.hasReferrer) {
+            parserState.rejectReason = RejectReason.NO_REFERRER;
+            countReject(singleAuditLog, RejectReason.NO_REFERRER);
+            return null;
+        }
 
-         File csvFile = new File("CsvLogs.csv");
-         CsvMapper csvMapper = new CsvMapper();
-         csvMapper.writerFor(JsonNode.class)
-                .with(csvSchema)
-                .writeValue(csvFile, jsonTree);
-         LOG.info("Successfully converted into CSV file");
+        //parse only referrer header, if any of its keys is projected
+        ReferrerHeader referrerHeaderMap = parserState.referrer == null
+                ? ReferrerHeader.empty() : parseReferrerHeader(parserState.referrer);
+        long timestampMillis = parserState.timestampDecoder.decode(auditLogMap.get(TIMESTAMP_GROUP));
+        return new AuditLogRecord(auditLogMap, referrerHeaderMap, timestampMillis, singleAuditLog.length());
     }
 
     /**
-     * convertToAvroFile method converts list of maps into avro file by serializing
-     * @param referrerHeaderList this is a list of maps which contains key-value pairs of only referrer header
-     * @param auditLogList this is a list of maps which contains key-value pairs of audit log except referrer header
+     * parseAuditLogRecord method parses a single audit log and its referrer header,
+     * and hands over the audit log to the sink if it is rejected
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @param auditLogSink this is where a rejected audit log goes
+     * @return the parsed audit log with its decoded timestamp, or null if the audit log is rejected
+     * or doesn't pass the filter
      * @throws IOException
      */
-    private void convertToAvroFile(List<HashMap<String, String>> referrerHeaderList, List<HashMap<String, String>> auditLogList) throws IOException {
-
-        //Instantiating the Schema.Parser class.
-        Schema schema = new Schema.Parser().parse(new File("src/main/java/com/logs/schema.avsc"));
-
-        DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<GenericRecord>(schema);
-
-        DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<GenericRecord>(datumWriter);
-        File avroFile = new File("data.avro");
-        dataFileWriter.create(schema, avroFile);
-
-        ArrayList<String> longValues = new ArrayList<>(Arrays.asList("turnaroundtime", "bytessent", "objectsize", "totaltime"));
-        int count = 0;
-
-        //Insert data according to schema
-        for(Map<String,String> auditLogMap : auditLogList) {
-            //Instantiating the GenericRecord class
-            GenericRecord genericRecord = new GenericData.Record(schema);
-
-            for (Map.Entry<String,String> entry : auditLogMap.entrySet()) {
-                String key = entry.getKey();
-                String value = entry.getValue().trim();
+    public AuditLogRecord parseAuditLogRecord(CharSequence singleAuditLog, AuditLogSink auditLogSink) throws IOException {
+        AuditLogRecord auditLogRecord = parseAuditLogRecord(singleAuditLog);
+        if (auditLogRecord == null && parserStates.get().rejectReason != null) {
+            auditLogSink.reject(singleAuditLog == null ? "" : singleAuditLog.toString(), parserStates.get().rejectReason);
+        }
+        return auditLogRecord;
+    }
 
-                //if value == '-' and key is not in arraylist then put '-' or else '-1'
-                //if key is in arraylist of long values then parse the long value
-                //while parsing do it in try-catch block, in catch block need to log exception and set value as '-1'
-                try {
-                    if(longValues.contains(key)) {
-                        if(value.equals("-")) {
-                            genericRecord.put(key, null);
-                        }
-                        else {
-                            genericRecord.put(key, Long.parseLong(value));
-                        }
+    /**
+     * parseWholeAuditLog method will parse every audit log in merged audit log file
+     * and write each of them to the sink as soon as it is parsed, so memory use doesn't depend on the size of the file
+     * @param auditLogsFilePath this is the path of audit log file
+     * @param auditLogSink this is where the parsed audit logs are written, it is not closed by this method
+     * @return it returns the number of audit logs written to the sink
+     * @throws IOException
+     */
+    public long parseWholeAuditLog(String auditLogsFilePath, AuditLogSink auditLogSink) throws IOException {
+        File auditLogFile = new File(auditLogsFilePath);
+        long count = 0;
+        if(auditLogFile.isDirectory()) {
+            LOG.info("This is a directory, expected a file to parse.");
+            return count;
+        }
+        LOG.info("File to be parsed : " + auditLogFile.getAbsolutePath());
+        if (auditLogFile.length() != 0 && auditLogFile.isFile()) {
+            StageMetrics readMetrics = pipelineMetrics == null ? null : pipelineMetrics.stage(PipelineMetrics.Stage.READ);
+            int lines = 0;
+            try (AuditLogLineReader lineReader = new AuditLogLineReader(auditLogFile, 0, Long.MAX_VALUE,
+                    AuditLogLineReader.DEFAULT_WINDOW_SIZE, true)) {
+                //reads single audit log from merged audit log file, parse it and hand it over to the sink
+                while (true) {
+                    long startNanos = readMetrics == null ? 0 : PipelineMetrics.startNanos(lines++);
+                    if (!lineReader.nextLine()) {
+                        break;
                     }
-                    else {
-                        genericRecord.put(key, value);
+                    if (readMetrics != null) {
+                        readMetrics.record(lineReader.getLineLength() + 1, startNanos, false);
+                    }
+                    AuditLogRecord auditLogRecord = parseAuditLogRecord(lineReader.getLine(), auditLogSink);
+                    if (auditLogRecord != null) {
+                        auditLogSink.write(auditLogRecord);
+                        count++;
                     }
-                }
-                catch (Exception e) {
-                    genericRecord.put(key, null);
                 }
             }
-            genericRecord.put("referrerMap", referrerHeaderList.get(count));
-            dataFileWriter.append(genericRecord);
-            count += 1;
+            LOG.info("Successfully parsed all logs from merged file");
         }
-        dataFileWriter.close();
+        return count;
+    }
 
-        LOG.info("Data successfully serialized and converted into Avro file");
+    /**
+     * streamWholeAuditLog method will parse every audit log in merged audit log file
+     * and converts the audit log data into avro file and csv file while reading it.
+     * Unlike {@link #parseWholeAuditLog(String)} nothing is kept in memory, so this works for files of any size.
+     * @param auditLogsFilePath this is the path of audit log file
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long streamWholeAuditLog(String auditLogsFilePath) throws IOException {
+        return streamWholeAuditLog(auditLogsFilePath, false);
+    }
+
+    /**
+     * streamWholeAuditLog method will parse every audit log in merged audit log file
+     * and converts the audit log data into avro file, csv file and optionally json file while reading it.
+     * @param auditLogsFilePath this is the path of audit log file
+     * @param writeJsonFile whether the key-value pairs are also written into 'Json.json'
+     * @return it returns the number of parsed audit logs
+     * @throws IOException
+     */
+    public long streamWholeAuditLog(String auditLogsFilePath, boolean writeJsonFile) throws IOException {
+        File auditLogFile = new File(auditLogsFilePath);
+        if (auditLogFile.isDirectory() || auditLogFile.length() == 0 || !auditLogFile.isFile()) {
+            return parseWholeAuditLog(auditLogsFilePath, auditLogRecord -> { });
+        }
+        try (AuditLogSink auditLogSink = createFileSinks(writeJsonFile)) {
+            return parseWholeAuditLog(auditLogsFilePath, auditLogSink);
+        }
+    }
+
+    /**
+     * createFileSinks method creates the sinks which write 'data.avro', 'CsvLogs.csv' and optionally 'Json.json'
+     * @param writeJsonFile whether the key-value pairs are also written into 'Json.json'
+     * @return a single sink writing to all the files
+     * @throws IOException
+     */
+    public AuditLogSink createFileSinks(boolean writeJsonFile) throws IOException {
+        return createFileSinks(new OutputOptions().setWriteJsonFile(writeJsonFile));
+    }
+
+    /**
+     * createFileSinks method creates the sinks which write 'data.avro', 'CsvLogs.csv'
+     * and optionally 'Json.json', 'data.parquet', the span summaries and the dead-letter file
+     * @param outputOptions how the files are written, its projection should be the projection of this parser
+     * @return a single sink writing to all the files
+     * @throws IOException
+     */
+    public AuditLogSink createFileSinks(OutputOptions outputOptions) throws IOException {
+        List<AuditLogSink> sinks = new ArrayList<>();
+        sinks.add(MeteredAuditLogSink.meter(new AvroAuditLogSink(new File("data.avro"), false, outputOptions),
+                pipelineMetrics, PipelineMetrics.Stage.AVRO_WRITE));
+        sinks.add(MeteredAuditLogSink.meter(new CsvAuditLogSink(new File("CsvLogs.csv"), false, outputOptions.getProjection()),
+                pipelineMetrics, PipelineMetrics.Stage.CSV_WRITE));
+        if (outputOptions.isWriteJsonFile()) {
+            sinks.add(MeteredAuditLogSink.meter(new JsonAuditLogSink(new File("Json.json")),
+                    pipelineMetrics, PipelineMetrics.Stage.JSON_WRITE));
+        }
+        if (outputOptions.isWriteParquetFile()) {
+            sinks.add(MeteredAuditLogSink.meter(new ParquetAuditLogSink(new File("data.parquet"), outputOptions),
+                    pipelineMetrics, PipelineMetrics.Stage.PARQUET_WRITE));
+        }
+        if (outputOptions.getSpansFile() != null) {
+            sinks.add(IncrementalAuditLogIngest.createSpanCorrelator(outputOptions));
+        }
+        if (outputOptions.getDeadLetterFile() != null) {
+            sinks.add(new DeadLetterAuditLogSink(outputOptions.getDeadLetterFile(), false));
+        }
+        return new MultiAuditLogSink(sinks);
     }
 
     /**
      * parseWholeAuditLog method will parse every audit log in merged audit log file into key-value pairs
-     * and also converts the audit log data into csv file and avro file
+     * and also converts the audit log data into csv file and avro file.
+     * All audit logs are returned in a list, so this is meant for small files; see {@link #streamWholeAuditLog(String)}
      * @param auditLogsFilePath this is the path of audit log file
      * @return it returns a list of maps which contains key-value pairs of entire audit log including key-value pairs of referrer header
      * @throws IOException
@@ -452,56 +889,16 @@ public class S3LogParser {
     public List<HashMap<String, String>> parseWholeAuditLog(String auditLogsFilePath) throws IOException {
         File auditLogFile = new File(auditLogsFilePath);
         List<HashMap<String, String>> entireAuditLogList = new ArrayList<>();
-        List<HashMap<String, String>> referrerHeaderList = new ArrayList<>();
-        List<HashMap<String, String>> auditLogList = new ArrayList<>();
-        if(auditLogFile.isDirectory()) {
-            LOG.info("This is a directory, expected a file to parse.");
+        if (auditLogFile.isDirectory() || auditLogFile.length() == 0 || !auditLogFile.isFile()) {
+            parseWholeAuditLog(auditLogsFilePath, auditLogRecord -> { });
             return entireAuditLogList;
         }
-
-            LOG.info("File to be parsed : " + auditLogFile.getAbsolutePath());
-
-            if (auditLogFile.length() != 0 && auditLogFile.isFile()) {
-                File jsonFile = new File("Json.json");
-                BufferedReader bufferedReader = new BufferedReader(new FileReader(auditLogFile));
-                String singleAuditLog;
-                ObjectMapper objectMapper = new ObjectMapper();
-
-                //reads single audit log from merged audit log file and parse it
-                while ((singleAuditLog = bufferedReader.readLine()) != null) {
-                    //parse audit log except referrer header
-                    Map<String, String> auditLogMap = parseAuditLog(singleAuditLog);
-
-                    String referrerHeader = auditLogMap.get("referrer");
-                    if (referrerHeader == null || referrerHeader.equals("-")) {
-                        //LOG.info("Log didn't parsed : " + referrerHeader);
-                        continue;
-                    }
-
-                    //parse only referrer header
-                    Map<String, String> referrerHeaderMap = parseReferrerHeader(referrerHeader);
-                    Map<String, String> entireAuditLogMap = new HashMap<>();
-                    entireAuditLogMap.putAll(auditLogMap);
-                    entireAuditLogMap.putAll(referrerHeaderMap);
-
-                    //adds every single map containing key-value pairs of single audit log into a list except referrer header key-value pairs
-                    //also adds every single map containing key-value pairs of referrer header into a list
-                    //and adds every single map containing key-value pairs of entire audit log into a list including referrer header key-value pairs
-                    auditLogList.add((HashMap<String, String>) auditLogMap);
-                    referrerHeaderList.add((HashMap<String, String>) referrerHeaderMap);
-                    entireAuditLogList.add((HashMap<String, String>) entireAuditLogMap);
-                }
-                LOG.info("Successfully parsed all logs from merged file");
-
-                //this method is used to convert the list of maps into avro file for querying using hive and spark
-                convertToAvroFile(referrerHeaderList, auditLogList);
-
-                //adds list into json file which helps to convert key-value pairs into csv file
-                objectMapper.writeValue(jsonFile, entireAuditLogList);
-
-                //this method is used to convert the obtained json file into csv file
-                convertJsonToCsvFile();
-            }
+        try (AuditLogSink auditLogSink = new MultiAuditLogSink(
+                new AvroAuditLogSink(new File("data.avro"), false, new OutputOptions().setProjection(projection)),
+                new CsvAuditLogSink(new File("CsvLogs.csv"), false, projection),
+                auditLogRecord -> entireAuditLogList.add((HashMap<String, String>) auditLogRecord.getEntireAuditLogMap()))) {
+            parseWholeAuditLog(auditLogsFilePath, auditLogSink);
+        }
         return entireAuditLogList;
     }
 }
@@ -0,0 +1,334 @@
+package com.logs;
+
+/**
+ * S3LogTokenizer class splits a single S3 server access log entry into its fields
+ * in a single pass over the characters, without a regular expression.
+ * see https://docs.aws.amazon.com/AmazonS3/latest/userguide/LogFormat.html
+ *
+ * The grammar is exactly the one of {@link S3LogParser#LOG_ENTRY_PATTERN}:
+ * space separated simple entries, a {@code [...]} timestamp, {@code "..."} quoted
+ * entries which may also be "-", numeric entries and a trailing {@code tail}.
+ * Only the start and end offset of every field are recorded; strings are created
+ * when {@link #value(int)} is called.
+ * When a line doesn't match, {@link #getRejectReason()} tells why, without going through the line again.
+ * {@link #tokenize(CharSequence, int)} stops after a given field, so the rest of a line is not even scanned
+ * when only the first fields are needed.
+ * Field indexes follow the order of {@link S3LogParser#AWS_LOG_REGEXP_GROUPS}.
+ *
+ * An instance can be reused for any number of lines but it is not thread safe.
+ */
+public class S3LogTokenizer {
+
+    public static final int OWNER = 0;
+    public static final int BUCKET = 1;
+    public static final int TIMESTAMP = 2;
+    public static final int REMOTEIP = 3;
+    public static final int REQUESTER = 4;
+    public static final int REQUESTID = 5;
+    public static final int VERB = 6;
+    public static final int KEY = 7;
+    public static final int REQUESTURI = 8;
+    public static final int HTTP = 9;
+    public static final int AWSERRORCODE = 10;
+    public static final int BYTESSENT = 11;
+    public static final int OBJECTSIZE = 12;
+    public static final int TOTALTIME = 13;
+    public static final int TURNAROUNDTIME = 14;
+    public static final int REFERRER = 15;
+    public static final int USERAGENT = 16;
+    public static final int VERSION = 17;
+    public static final int HOSTID = 18;
+    public static final int SIGV = 19;
+    public static final int CYPHER = 20;
+    public static final int AUTH = 21;
+    public static final int ENDPOINT = 22;
+    public static final int TLS = 23;
+    public static final int TAIL = 24;
+
+    /**
+     * Number of fields in a log entry.
+     */
+    public static final int FIELD_COUNT = 25;
+
+    /**
+     * Kinds of entry, matching the patterns used to build the regexp.
+     */
+    private static final byte SIMPLE = 0;
+    private static final byte DATETIME = 1;
+    private static final byte NUMBER = 2;
+    private static final byte QUOTED = 3;
+
+    /**
+     * Kind of every field before {@link #TLS}, which is a simple entry without a trailing space.
+     */
+    private static final byte[] KINDS = {
+            SIMPLE,   // owner
+            SIMPLE,   // bucket
+            DATETIME, // timestamp
+            SIMPLE,   // remoteip
+            SIMPLE,   // requester
+            SIMPLE,   // requestid
+            SIMPLE,   // verb
+            SIMPLE,   // key
+            QUOTED,   // requesturi
+            NUMBER,   // http
+            SIMPLE,   // awserrorcode
+            SIMPLE,   // bytessent
+            SIMPLE,   // objectsize
+            SIMPLE,   // totaltime
+            SIMPLE,   // turnaroundtime
+            QUOTED,   // referrer
+            QUOTED,   // useragent
+            SIMPLE,   // version
+            SIMPLE,   // hostid
+            SIMPLE,   // sigv
+            SIMPLE,   // cypher
+            SIMPLE,   // auth
+            SIMPLE    // endpoint
+    };
+
+    private final int[] starts = new int[FIELD_COUNT];
+    private final int[] ends = new int[FIELD_COUNT];
+    private CharSequence line;
+    private RejectReason rejectReason;
+
+    /**
+     * tokenize method scans a single audit log and records the offsets of every field
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @return true if the audit log matches the S3 log grammar, false otherwise
+     */
+    public boolean tokenize(CharSequence singleAuditLog) {
+        return tokenize(singleAuditLog, TAIL);
+    }
+
+    /**
+     * tokenize method scans a single audit log up to a field and records the offsets of the fields before it
+     * @param singleAuditLog this is single audit log from merged audit log file
+     * @param lastField index of the last field to scan, the offsets of later fields are not set
+     * @return true if the audit log matches the S3 log grammar up to the last field, false otherwise
+     */
+    public boolean tokenize(CharSequence singleAuditLog, int lastField) {
+        line = null;
+        rejectReason = null;
+        if (singleAuditLog == null || singleAuditLog.length() == 0) {
+            rejectReason = RejectReason.EMPTY;
+            return false;
+        }
+        final int length = singleAuditLog.length();
+        int pos = 0;
+        for (int field = OWNER; field < TIMESTAMP; field++) {
+            pos = simple(singleAuditLog, field, pos, length);
+            if (pos < 0) {
+                return false;
+            }
+            if (field == lastField) {
+                line = singleAuditLog;
+                return true;
+            }
+        }
+
+        // The timestamp is the only entry where the regexp can backtrack: "(.*?)" is lazy,
+        // so a later "] " is only used when the rest of the line did not match after the first one.
+        if (pos >= length || singleAuditLog.charAt(pos) != '[') {
+            rejectReason = pos >= length ? RejectReason.TRUNCATED : RejectReason.BAD_TIMESTAMP;
+            return false;
+        }
+        starts[TIMESTAMP] = pos;
+        int close = pos + 1;
+        while (true) {
+            close = nextTimestampEnd(singleAuditLog, close, length);
+            if (close < 0) {
+                // keep the reason of the last try after a timestamp, if there was one
+                if (rejectReason == null) {
+                    rejectReason = close == -1 ? RejectReason.TRUNCATED : RejectReason.BAD_TIMESTAMP;
+                }
+                return false;
+            }
+            ends[TIMESTAMP] = close + 1;
+            if (lastField == TIMESTAMP || tokenizeAfterTimestamp(singleAuditLog, close + 2, length, lastField)) {
+                line = singleAuditLog;
+                rejectReason = null;
+                return true;
+            }
+            close++;
+        }
+    }
+
+    /**
+     * Finds the next ']' followed by a space, stopping at line terminators like the regexp '.' does.
+     * @return the offset of the ']', -1 if the line ends before it or -2 if a line terminator comes before it
+     */
+    private static int nextTimestampEnd(CharSequence s, int pos, int length) {
+        for (; pos < length; pos++) {
+            char c = s.charAt(pos);
+            if (c == ']') {
+                if (pos + 1 < length && s.charAt(pos + 1) == ' ') {
+                    return pos;
+                }
+            } else if (isLineTerminator(c)) {
+                return -2;
+            }
+        }
+        return -1;
+    }
+
+    private boolean tokenizeAfterTimestamp(CharSequence s, int pos, int length, int lastField) {
+        for (int field = REMOTEIP; field < TLS; field++) {
+            switch (KINDS[field]) {
+                case NUMBER:
+                    pos = number(s, field, pos, length);
+                    break;
+                case QUOTED:
+                    pos = quoted(s, field, pos, length);
+                    break;
+                default:
+                    pos = simple(s, field, pos, length);
+                    break;
+            }
+            if (pos < 0) {
+                return false;
+            }
+            if (field == lastField) {
+                return true;
+            }
+        }
+
+        // tls has no trailing space, everything after it is the tail
+        int start = pos;
+        while (pos < length && s.charAt(pos) != ' ') {
+            pos++;
+        }
+        starts[TLS] = start;
+        ends[TLS] = pos;
+        for (int i = pos; i < length; i++) {
+            if (isLineTerminator(s.charAt(i))) {
+                rejectReason = RejectReason.BAD_FIELD;
+                return false;
+            }
+        }
+        starts[TAIL] = pos;
+        ends[TAIL] = length;
+        return true;
+    }
+
+    /**
+     * Simple entry: anything up to a space, then the space.
+     * @return offset after the trailing space or -1 if there is no space
+     */
+    private int simple(CharSequence s, int field, int pos, int length) {
+        int start = pos;
+        while (pos < length && s.charAt(pos) != ' ') {
+            pos++;
+        }
+        if (pos >= length) {
+            return reject(RejectReason.TRUNCATED);
+        }
+        starts[field] = start;
+        ends[field] = pos;
+        return pos + 1;
+    }
+
+    /**
+     * A natural number or "-", then a space.
+     * @return offset after the trailing space or -1 if the entry doesn't match
+     */
+    private int number(CharSequence s, int field, int pos, int length) {
+        int start = pos;
+        if (pos < length && s.charAt(pos) == '-') {
+            pos++;
+        } else {
+            while (pos < length && isDigit(s.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (pos >= length || s.charAt(pos) != ' ') {
+            return reject(pos >= length ? RejectReason.TRUNCATED : RejectReason.BAD_FIELD);
+        }
+        starts[field] = start;
+        ends[field] = pos;
+        return pos + 1;
+    }
+
+    /**
+     * A quoted entry without inner quotes or "-", then a space.
+     * @return offset after the trailing space or -1 if the entry doesn't match
+     */
+    private int quoted(CharSequence s, int field, int pos, int length) {
+        int start = pos;
+        if (pos >= length) {
+            return reject(RejectReason.TRUNCATED);
+        }
+        char c = s.charAt(pos);
+        if (c == '-') {
+            pos++;
+        } else if (c == '"') {
+            pos++;
+            while (pos < length && s.charAt(pos) != '"') {
+                pos++;
+            }
+            if (pos >= length) {
+                return reject(RejectReason.TRUNCATED);
+            }
+            pos++;
+        } else {
+            return reject(RejectReason.BAD_FIELD);
+        }
+        if (pos >= length || s.charAt(pos) != ' ') {
+            return reject(pos >= length ? RejectReason.TRUNCATED : RejectReason.BAD_FIELD);
+        }
+        starts[field] = start;
+        ends[field] = pos;
+        return pos + 1;
+    }
+
+    private int reject(RejectReason reason) {
+        rejectReason = reason;
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Line terminators which are not matched by '.' in a {@link java.util.regex.Pattern}.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * @param field index of the field
+     * @return start offset of the field in the last tokenized audit log
+     */
+    public int start(int field) {
+        return starts[field];
+    }
+
+    /**
+     * @param field index of the field
+     * @return end offset (exclusive) of the field in the last tokenized audit log
+     */
+    public int end(int field) {
+        return ends[field];
+    }
+
+    /**
+     * @return why the last audit log didn't match, or null if it matched
+     */
+    public RejectReason getRejectReason() {
+        return rejectReason;
+    }
+
+    /**
+     * value method creates the string of a field of the last successfully tokenized audit log
+     * @param field index of the field
+     * @return the value of the field
+     */
+    public String value(int field) {
+        if (line == null) {
+            throw new IllegalStateException("No audit log has been tokenized successfully");
+        }
+        return line.subSequence(starts[field], ends[field]).toString();
+    }
+}
@@ -0,0 +1,174 @@
+package com.logs;
+
+import java.time.LocalDate;
+
+/**
+ * S3TimestampDecoder class decodes the timestamp of an S3 server access log, e.g. [13/May/2021:11:26:06 +0000],
+ * into milliseconds since the epoch without a date parser.
+ *
+ * The timestamp has a fixed layout, 'dd/MMM/yyyy:HH:mm:ss Z', so every part is read from its offset.
+ * Consecutive audit logs almost always fall in the same minute, so the decoder keeps the last decoded
+ * day, hour, minute and offset and only the seconds are decoded while they don't change.
+ * Timestamps are validated like {@code DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH)} does,
+ * including its clamping of days beyond the end of the month.
+ *
+ * A decoder is not thread safe, every thread needs its own.
+ */
+public class S3TimestampDecoder {
+
+    /**
+     * Returned for a value which is not a valid timestamp.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Length of a timestamp without the square braces, e.g. 13/May/2021:11:26:06 +0000.
+     */
+    static final int LENGTH = 26;
+
+    /**
+     * Length of the part which is the same for a whole minute, e.g. 13/May/2021:11:26.
+     */
+    private static final int MINUTE_LENGTH = 17;
+
+    private static final int SECOND_OFFSET = 18;
+    private static final int ZONE_OFFSET = 21;
+
+    private static final String[] MONTHS = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private final char[] cachedMinute = new char[MINUTE_LENGTH];
+    private final char[] cachedZone = new char[LENGTH - ZONE_OFFSET];
+    private boolean cached;
+    private long cachedMinuteMillis;
+
+    /**
+     * decode method decodes a timestamp
+     * @param timestamp this is the timestamp group of an audit log, with or without the square braces; it may be null
+     * @return the timestamp in milliseconds since the epoch, or {@link #INVALID}
+     */
+    public long decode(CharSequence timestamp) {
+        return timestamp == null ? INVALID : decode(timestamp, 0, timestamp.length());
+    }
+
+    /**
+     * decode method decodes a timestamp from a range of characters
+     * @param chars this is the sequence holding the timestamp, e.g. a single audit log
+     * @param start start offset of the timestamp
+     * @param end end offset (exclusive) of the timestamp
+     * @return the timestamp in milliseconds since the epoch, or {@link #INVALID}
+     */
+    public long decode(CharSequence chars, int start, int end) {
+        if (end - start == LENGTH + 2 && chars.charAt(start) == '[' && chars.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+        if (end - start != LENGTH) {
+            return INVALID;
+        }
+        int second = twoDigits(chars, start + SECOND_OFFSET);
+        if (second < 0 || second > 59 || chars.charAt(start + MINUTE_LENGTH) != ':'
+                || chars.charAt(start + ZONE_OFFSET - 1) != ' ') {
+            return INVALID;
+        }
+        if (!cached || !sameMinute(chars, start)) {
+            long minuteMillis = decodeMinute(chars, start);
+            if (minuteMillis == INVALID) {
+                return INVALID;
+            }
+            for (int i = 0; i < MINUTE_LENGTH; i++) {
+                cachedMinute[i] = chars.charAt(start + i);
+            }
+            for (int i = 0; i < cachedZone.length; i++) {
+                cachedZone[i] = chars.charAt(start + ZONE_OFFSET + i);
+            }
+            cachedMinuteMillis = minuteMillis;
+            cached = true;
+        }
+        return cachedMinuteMillis + second * 1000L;
+    }
+
+    private boolean sameMinute(CharSequence chars, int start) {
+        for (int i = MINUTE_LENGTH - 1; i >= 0; i--) {
+            if (cachedMinute[i] != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < cachedZone.length; i++) {
+            if (cachedZone[i] != chars.charAt(start + ZONE_OFFSET + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * decodeMinute method decodes everything except the seconds
+     * @return the start of the minute in milliseconds since the epoch, or {@link #INVALID}
+     */
+    private static long decodeMinute(CharSequence chars, int start) {
+        if (chars.charAt(start + 2) != '/' || chars.charAt(start + 6) != '/' || chars.charAt(start + 11) != ':'
+                || chars.charAt(start + 14) != ':') {
+            return INVALID;
+        }
+        int day = twoDigits(chars, start);
+        int month = month(chars, start + 3);
+        int yearHigh = twoDigits(chars, start + 7);
+        int yearLow = twoDigits(chars, start + 9);
+        int hour = twoDigits(chars, start + 12);
+        int minute = twoDigits(chars, start + 15);
+        if (day < 1 || day > 31 || month < 0 || yearHigh < 0 || yearLow < 0 || yearHigh + yearLow == 0
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return INVALID;
+        }
+        int offsetSeconds = zoneOffsetSeconds(chars, start + ZONE_OFFSET);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return INVALID;
+        }
+        LocalDate firstOfMonth = LocalDate.of(yearHigh * 100 + yearLow, month + 1, 1);
+        long epochDay = firstOfMonth.toEpochDay() + Math.min(day, firstOfMonth.lengthOfMonth()) - 1;
+        return ((epochDay * 24 + hour) * 60 + minute) * 60_000L - offsetSeconds * 1000L;
+    }
+
+    /**
+     * @return the offset of a '+HHMM' zone in seconds, or Integer.MIN_VALUE if it isn't valid
+     */
+    private static int zoneOffsetSeconds(CharSequence chars, int pos) {
+        char sign = chars.charAt(pos);
+        int hours = twoDigits(chars, pos + 1);
+        int minutes = twoDigits(chars, pos + 3);
+        if ((sign != '+' && sign != '-') || hours < 0 || hours > 18 || minutes < 0 || minutes > 59
+                || (hours == 18 && minutes > 0)) {
+            return Integer.MIN_VALUE;
+        }
+        int seconds = hours * 3600 + minutes * 60;
+        return sign == '-' ? -seconds : seconds;
+    }
+
+    /**
+     * @return the index of a three letter English month, or -1
+     */
+    private static int month(CharSequence chars, int pos) {
+        for (int i = 0; i < MONTHS.length; i++) {
+            String month = MONTHS[i];
+            if (month.charAt(0) == chars.charAt(pos) && month.charAt(1) == chars.charAt(pos + 1)
+                    && month.charAt(2) == chars.charAt(pos + 2)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the value of two digits, or -1 if they are not digits
+     */
+    private static int twoDigits(CharSequence chars, int pos) {
+        int tens = chars.charAt(pos) - '0';
+        int units = chars.charAt(pos + 1) - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+            return -1;
+        }
+        return tens * 10 + units;
+    }
+}
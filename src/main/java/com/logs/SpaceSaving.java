@@ -0,0 +1,255 @@
+package com.logs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpaceSaving class finds the values of a field with the largest weights, e.g. the remote ips with the most requests
+ * or the most bytes sent, keeping at most a fixed number of counters.
+ * see Metwally et al., "Efficient computation of frequent and top-k elements in data streams"
+ *
+ * When all counters are taken, a new value replaces the value with the smallest counter and inherits its weight as
+ * its error; so a counter is never below the true weight of its value and never above it by more than its error,
+ * which is at most total weight / capacity. With a capacity of ten times the number of values wanted,
+ * the top values and their order are nearly always exact on skewed fields like these.
+ * The counters are a min-heap indexed by a hash map, so every update costs O(log capacity).
+ *
+ * Sketches are merged as mergeable summaries (Agarwal et al.): a value missing from a full sketch is counted with
+ * the smallest counter of that sketch, then the largest counters are kept.
+ *
+ * A SpaceSaving is not thread safe.
+ */
+public class SpaceSaving {
+
+    /**
+     * Default number of counters.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * A value with its counter, which is at most error above its true weight.
+     */
+    public static final class Counter {
+        private final String value;
+        private long count;
+        private long error;
+        private int heapIndex;
+
+        private Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return an upper bound of the weight of the value
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return how much the count may be above the true weight of the value
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return value + "=" + count + (error > 0 ? " (+-" + error + ")" : "");
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    public SpaceSaving() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of counters kept
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Space saving capacity must be at least 1 : " + capacity);
+        }
+        this.capacity = capacity;
+        this.heap = new Counter[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the sum of the weights of all values added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * add method adds a weight to a value
+     * @param value this is the value, null is not counted
+     * @param weight this is the weight, e.g. 1 for a request or the bytes sent; weights below 1 are not counted
+     */
+    public void add(String value, long weight) {
+        if (value == null || weight < 1) {
+            return;
+        }
+        total += weight;
+        Counter counter = counters.get(value);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.heapIndex);
+        } else if (size < capacity) {
+            counter = new Counter(value, weight, 0);
+            counters.put(value, counter);
+            heap[size] = counter;
+            counter.heapIndex = size;
+            siftUp(size++);
+        } else {
+            Counter smallest = heap[0];
+            counters.remove(smallest.value);
+            counter = new Counter(value, smallest.count + weight, smallest.count);
+            counters.put(value, counter);
+            heap[0] = counter;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * merge method adds the values of another sketch to this one
+     * @param other this is the other sketch, it is not changed
+     */
+    public void merge(SpaceSaving other) {
+        long thisMin = size == capacity ? heap[0].count : 0;
+        long otherMin = other.size == other.capacity ? other.heap[0].count : 0;
+        Map<String, Counter> merged = new HashMap<>();
+        for (Counter counter : counters.values()) {
+            Counter otherCounter = other.counters.get(counter.value);
+            merged.put(counter.value, otherCounter == null
+                    ? new Counter(counter.value, counter.count + otherMin, counter.error + otherMin)
+                    : new Counter(counter.value, counter.count + otherCounter.count, counter.error + otherCounter.error));
+        }
+        for (Counter otherCounter : other.counters.values()) {
+            if (!merged.containsKey(otherCounter.value)) {
+                merged.put(otherCounter.value, new Counter(otherCounter.value, otherCounter.count + thisMin,
+                        otherCounter.error + thisMin));
+            }
+        }
+        List<Counter> largest = new ArrayList<>(merged.values());
+        largest.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+        counters.clear();
+        size = 0;
+        for (Counter counter : largest.subList(0, Math.min(capacity, largest.size()))) {
+            counters.put(counter.value, counter);
+            heap[size] = counter;
+            counter.heapIndex = size;
+            siftUp(size++);
+        }
+        total += other.total;
+    }
+
+    /**
+     * top method lists the values with the largest counters
+     * @param n this is the number of values wanted
+     * @return at most n counters, the largest first
+     */
+    public List<Counter> top(int n) {
+        List<Counter> top = new ArrayList<>(counters.values());
+        top.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed()
+                .thenComparing(counter -> counter.value));
+        return new ArrayList<>(top.subList(0, Math.min(n, top.size())));
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].heapIndex = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    /**
+     * write method serializes the sketch
+     * @param dataOutput this is where the sketch is written
+     * @throws IOException
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(capacity);
+        dataOutput.writeLong(total);
+        dataOutput.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            dataOutput.writeUTF(heap[i].value);
+            dataOutput.writeLong(heap[i].count);
+            dataOutput.writeLong(heap[i].error);
+        }
+    }
+
+    /**
+     * read method deserializes a sketch written by {@link #write(DataOutput)}
+     * @param dataInput this is where the sketch is read from
+     * @return the sketch
+     * @throws IOException
+     */
+    public static SpaceSaving read(DataInput dataInput) throws IOException {
+        SpaceSaving spaceSaving = new SpaceSaving(dataInput.readInt());
+        spaceSaving.total = dataInput.readLong();
+        int size = dataInput.readInt();
+        if (size > spaceSaving.capacity) {
+            throw new IOException("Space saving sketch with " + size + " counters for a capacity of " + spaceSaving.capacity);
+        }
+        for (int i = 0; i < size; i++) {
+            Counter counter = new Counter(dataInput.readUTF(), dataInput.readLong(), dataInput.readLong());
+            spaceSaving.counters.put(counter.value, counter);
+            spaceSaving.heap[i] = counter;
+            counter.heapIndex = i;
+        }
+        spaceSaving.size = size;
+        return spaceSaving;
+    }
+}
@@ -0,0 +1,273 @@
+package com.logs;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpanCorrelator class links the S3 requests of the same Hadoop operation: the S3A auditor gives every operation,
+ * e.g. a rename or the open of a file, a span id which is the 'id' key of the referrer header of all its requests.
+ * Audit logs are grouped by span id while they stream by, and every span is written into a json file as a single
+ * summary: its file system, principal, operation and paths, its number of requests, bytes sent and errors,
+ * and the time from its first to its last request.
+ *
+ * The time of a request is its 'ts' referrer key, the milliseconds at which S3A issued it, or its timestamp when
+ * 'ts' is missing; it gives the first and last request and the wall time of a span. Whether a span is idle is only
+ * decided by the timestamps of the audit logs, the clock of S3, as 'ts' comes from the clocks of many hosts:
+ * a span is closed and written once the newest timestamp seen has moved more than the idle timeout past the newest
+ * timestamp seen when the span last got a request, or the first timestamp seen if it got its requests before any.
+ * When more spans than the limit are open, the least recently updated ones are closed early, so memory stays
+ * bounded on any input.
+ * Requests of a closed span which still come give a new summary of the same span, so the idle timeout should be
+ * longer than the disorder of the input; files merged in timestamp order have the least disorder.
+ * Audit logs without a span id are only counted.
+ *
+ * A SpanCorrelator is not thread safe, it is fed on the calling thread like the other file sinks.
+ */
+public class SpanCorrelator implements AuditLogSink {
+
+    private final Logger LOG = Logger.getLogger(SpanCorrelator.class);
+
+    /**
+     * Idle timeout when none is given, long enough for the requests of slow operations like a large rename.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * Maximum number of open spans when none is given.
+     */
+    public static final int DEFAULT_MAX_OPEN_SPANS = 100_000;
+
+    /**
+     * Groups and referrer keys read from every audit log.
+     */
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            S3LogParser.TIMESTAMP_GROUP, S3LogParser.HTTP_GROUP, S3LogParser.BYTESSENT_GROUP,
+            "op", "p1", "p2", "pr", "id", "ts", "fs"));
+
+    /**
+     * Newest timestamp while no audit log with a valid timestamp has been seen.
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Requests of one span, accumulated until the span is closed.
+     */
+    private static final class Span {
+        private final String id;
+        private String fileSystemId;
+        private String principal;
+        private String operation;
+        private String path1;
+        private String path2;
+        private long requests;
+        private long bytesSent;
+        private long errors;
+        private long firstTime = Long.MAX_VALUE;
+        private long lastTime = Long.MIN_VALUE;
+        /**
+         * Newest timestamp seen when the span last got a request, {@link #NO_TIME} while no timestamp has been seen.
+         */
+        private long lastSeen = NO_TIME;
+
+        private Span(String id) {
+            this.id = id;
+        }
+    }
+
+    private final File spansFile;
+    private final long idleTimeoutMillis;
+    private final int maxOpenSpans;
+    private final JsonGenerator jsonGenerator;
+    private final S3TimestampDecoder timestampDecoder = new S3TimestampDecoder();
+
+    /**
+     * Open spans by id, the least recently updated first.
+     */
+    private final LinkedHashMap<String, Span> openSpans = new LinkedHashMap<>(16, 0.75f, true);
+    private long newestTime = NO_TIME;
+    private long spans;
+    private long spansClosedEarly;
+    private long withoutSpanId;
+
+    /**
+     * @param spansFile this is the json file the span summaries are written into
+     * @throws IOException
+     */
+    public SpanCorrelator(File spansFile) throws IOException {
+        this(spansFile, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_OPEN_SPANS);
+    }
+
+    /**
+     * @param spansFile this is the json file the span summaries are written into
+     * @param idleTimeoutMillis this is how long a span gets no request before it is closed
+     * @param maxOpenSpans this is the maximum number of open spans
+     * @throws IOException
+     */
+    public SpanCorrelator(File spansFile, long idleTimeoutMillis, int maxOpenSpans) throws IOException {
+        if (idleTimeoutMillis < 0 || maxOpenSpans < 1) {
+            throw new IllegalArgumentException("Invalid idle timeout " + idleTimeoutMillis
+                    + " or maximum number of open spans " + maxOpenSpans);
+        }
+        this.spansFile = spansFile;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxOpenSpans = maxOpenSpans;
+        jsonGenerator = new ObjectMapper().getFactory().createGenerator(spansFile, JsonEncoding.UTF8);
+        jsonGenerator.writeStartArray();
+    }
+
+    /**
+     * write method adds an audit log to its span and closes the spans which became idle
+     * @param auditLogRecord this is the parsed audit log
+     * @throws IOException
+     */
+    @Override
+    public void write(AuditLogRecord auditLogRecord) throws IOException {
+        Map<String, String> auditLogMap = auditLogRecord.getAuditLogMap();
+        Map<String, String> referrerHeaderMap = auditLogRecord.getReferrerHeaderMap();
+        long timestamp = timestampDecoder.decode(auditLogMap.get(S3LogParser.TIMESTAMP_GROUP));
+        if (timestamp != S3TimestampDecoder.INVALID && timestamp > newestTime) {
+            if (newestTime == NO_TIME) {
+                startClock(timestamp);
+            }
+            newestTime = timestamp;
+        }
+        String id = referrerHeaderMap.get("id");
+        if (id == null || id.isEmpty()) {
+            withoutSpanId++;
+            return;
+        }
+        long time = AggregationTable.parseNatural(referrerHeaderMap.get("ts"));
+        if (time < 0) {
+            time = timestamp;
+        }
+
+        Span span = openSpans.get(id);
+        if (span == null) {
+            span = new Span(id);
+            span.fileSystemId = referrerHeaderMap.get("fs");
+            span.principal = referrerHeaderMap.get("pr");
+            span.operation = referrerHeaderMap.get("op");
+            openSpans.put(id, span);
+        }
+        if (span.path1 == null) {
+            span.path1 = referrerHeaderMap.get("p1");
+        }
+        if (span.path2 == null) {
+            span.path2 = referrerHeaderMap.get("p2");
+        }
+        span.requests++;
+        long bytesSent = AggregationTable.parseNatural(auditLogMap.get(S3LogParser.BYTESSENT_GROUP));
+        if (bytesSent > 0) {
+            span.bytesSent += bytesSent;
+        }
+        if (AggregationTable.parseNatural(auditLogMap.get(S3LogParser.HTTP_GROUP)) >= 400) {
+            span.errors++;
+        }
+        if (time != S3TimestampDecoder.INVALID) {
+            span.firstTime = Math.min(span.firstTime, time);
+            span.lastTime = Math.max(span.lastTime, time);
+        }
+        span.lastSeen = newestTime;
+
+        closeIdleSpans();
+    }
+
+    /**
+     * startClock method makes the spans which got their requests before the first valid timestamp last seen at it,
+     * so they become idle like the others
+     * @param timestamp this is the first valid timestamp
+     */
+    private void startClock(long timestamp) {
+        for (Span span : openSpans.values()) {
+            span.lastSeen = timestamp;
+        }
+    }
+
+    /**
+     * closeIdleSpans method writes and forgets the spans which got no request for the idle timeout, and the least
+     * recently updated spans beyond the maximum number of open spans; the map is in update order, so only the first
+     * spans are looked at
+     */
+    private void closeIdleSpans() throws IOException {
+        Iterator<Span> iterator = openSpans.values().iterator();
+        while (iterator.hasNext()) {
+            Span span = iterator.next();
+            // a span without a timestamp yet can only be open while no timestamp has been seen, so none is idle
+            boolean idle = span.lastSeen != NO_TIME && newestTime - span.lastSeen > idleTimeoutMillis;
+            if (!idle && openSpans.size() <= maxOpenSpans) {
+                break;
+            }
+            if (!idle) {
+                spansClosedEarly++;
+            }
+            iterator.remove();
+            writeSpan(span);
+        }
+    }
+
+    private void writeSpan(Span span) throws IOException {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeStringField("id", span.id);
+        jsonGenerator.writeStringField("fs", span.fileSystemId);
+        jsonGenerator.writeStringField("pr", span.principal);
+        jsonGenerator.writeStringField("op", span.operation);
+        jsonGenerator.writeStringField("p1", span.path1);
+        jsonGenerator.writeStringField("p2", span.path2);
+        jsonGenerator.writeNumberField("requests", span.requests);
+        jsonGenerator.writeNumberField("bytessent", span.bytesSent);
+        jsonGenerator.writeNumberField("errors", span.errors);
+        if (span.firstTime <= span.lastTime) {
+            jsonGenerator.writeNumberField("first", span.firstTime);
+            jsonGenerator.writeNumberField("last", span.lastTime);
+            jsonGenerator.writeNumberField("wallTime", span.lastTime - span.firstTime);
+        }
+        jsonGenerator.writeEndObject();
+        spans++;
+    }
+
+    /**
+     * @return the number of spans currently open
+     */
+    public int getOpenSpans() {
+        return openSpans.size();
+    }
+
+    /**
+     * @return the number of span summaries written so far
+     */
+    public long getSpans() {
+        return spans;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        jsonGenerator.flush();
+    }
+
+    /**
+     * close method writes the spans which are still open and closes the json file
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        for (Span span : openSpans.values()) {
+            writeSpan(span);
+        }
+        openSpans.clear();
+        jsonGenerator.writeEndArray();
+        jsonGenerator.close();
+        LOG.info("Successfully written " + spans + " spans into '" + spansFile + "', " + spansClosedEarly
+                + " of them closed early, " + withoutSpanId + " audit logs without span id");
+    }
+}
@@ -0,0 +1,223 @@
+package com.logs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StageMetrics class counts the audit logs, bytes and malformed lines of a single stage of the pipeline
+ * and keeps a histogram of the time spent on every audit log.
+ *
+ * Counters are {@link LongAdder}s, so the parsing threads don't contend on them.
+ * Reading the clock costs about as much as a small stage itself, so only one audit log in
+ * {@link PipelineMetrics#SAMPLE_INTERVAL} is timed; the total time of the stage is estimated from the timed ones.
+ * Stages which work on whole ranges of a file, like reading, time every range and record
+ * the mean time of its audit logs.
+ *
+ * The histogram has 8 linear buckets per power of two nanoseconds, so a percentile is within 1/16 of its value.
+ */
+public class StageMetrics implements StageMetricsMBean {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private final PipelineMetrics.Stage stage;
+    private final long createdNanos = System.nanoTime();
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder malformedRecords = new LongAdder();
+    private final LongAdder timedRecords = new LongAdder();
+    private final LongAdder timedNanos = new LongAdder();
+    private final LongAdder untimedNanos = new LongAdder();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(64 * SUB_BUCKETS);
+    private volatile int queueDepth;
+
+    StageMetrics(PipelineMetrics.Stage stage) {
+        this.stage = stage;
+    }
+
+    public PipelineMetrics.Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * record method counts a single audit log
+     * @param byteCount number of bytes of the audit log
+     * @param startNanos {@link System#nanoTime()} when the stage started on the audit log, or 0 if it is not timed
+     * @param malformed whether the audit log didn't follow the S3 log format
+     */
+    public void record(long byteCount, long startNanos, boolean malformed) {
+        records.increment();
+        if (byteCount > 0) {
+            bytes.add(byteCount);
+        }
+        if (malformed) {
+            malformedRecords.increment();
+        }
+        if (startNanos != 0) {
+            long nanos = System.nanoTime() - startNanos;
+            timedRecords.increment();
+            timedNanos.add(nanos);
+            latencyHistogram.incrementAndGet(bucket(nanos));
+        }
+    }
+
+    /**
+     * recordBatch method counts audit logs which went through the stage together, e.g. a range read from a file
+     * @param recordCount number of audit logs
+     * @param byteCount number of bytes of the audit logs
+     * @param nanos time spent on all of them
+     */
+    public void recordBatch(long recordCount, long byteCount, long nanos) {
+        records.add(recordCount);
+        bytes.add(byteCount);
+        if (recordCount > 0) {
+            timedRecords.add(recordCount);
+            timedNanos.add(nanos);
+            latencyHistogram.addAndGet(bucket(nanos / recordCount), recordCount);
+        } else {
+            untimedNanos.add(nanos);
+        }
+    }
+
+    /**
+     * addTime method adds time which is not spent on a particular audit log, like flushing or closing a file
+     * @param nanos the time spent
+     */
+    public void addTime(long nanos) {
+        untimedNanos.add(nanos);
+    }
+
+    /**
+     * @param queueDepth number of ranges of audit logs waiting in front of the next stage
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    @Override
+    public long getRecords() {
+        return records.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getMalformedRecords() {
+        return malformedRecords.sum();
+    }
+
+    /**
+     * @return time spent in the stage in nanoseconds, estimated from the timed audit logs
+     */
+    public long getTotalTimeNanos() {
+        long timed = timedRecords.sum();
+        long estimated = timed == 0 ? 0 : (long) ((double) timedNanos.sum() * getRecords() / timed);
+        return estimated + untimedNanos.sum();
+    }
+
+    @Override
+    public long getTotalTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getTotalTimeNanos());
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return perSecond(getRecords());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    private double perSecond(long count) {
+        long elapsedNanos = System.nanoTime() - createdNanos;
+        return elapsedNanos <= 0 ? 0 : count * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public long getMeanLatencyNanos() {
+        long timed = timedRecords.sum();
+        return timed == 0 ? 0 : timedNanos.sum() / timed;
+    }
+
+    @Override
+    public long getP50LatencyNanos() {
+        return percentileNanos(0.5);
+    }
+
+    @Override
+    public long getP90LatencyNanos() {
+        return percentileNanos(0.9);
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return percentileNanos(0.99);
+    }
+
+    @Override
+    public long getP999LatencyNanos() {
+        return percentileNanos(0.999);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * percentileNanos method finds a percentile of the time spent on an audit log
+     * @param fraction this is the percentile between 0 and 1, e.g. 0.99
+     * @return the middle of the histogram bucket holding the percentile, 0 if no audit log was timed
+     */
+    public long percentileNanos(double fraction) {
+        long[] counts = new long[latencyHistogram.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = latencyHistogram.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return (lowerBound(i) + lowerBound(i + 1)) / 2;
+            }
+        }
+        return lowerBound(counts.length - 1);
+    }
+
+    /**
+     * @return index of the histogram bucket of a time in nanoseconds
+     */
+    static int bucket(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * @return the smallest time in nanoseconds of a histogram bucket
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int mantissa = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + mantissa) << (exponent - SUB_BUCKET_BITS);
+    }
+}
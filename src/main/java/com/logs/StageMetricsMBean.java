@@ -0,0 +1,52 @@
+package com.logs;
+
+/**
+ * StageMetricsMBean is the JMX view of the metrics of a single stage of the pipeline, see {@link PipelineMetrics}
+ */
+public interface StageMetricsMBean {
+
+    /**
+     * @return number of audit logs which went through the stage
+     */
+    long getRecords();
+
+    /**
+     * @return number of audit log bytes which went through the stage, 0 for the stages which don't see bytes
+     */
+    long getBytes();
+
+    /**
+     * @return number of audit logs which didn't follow the S3 log format
+     */
+    long getMalformedRecords();
+
+    /**
+     * @return time spent in the stage, estimated from the sampled audit logs
+     */
+    long getTotalTimeMillis();
+
+    /**
+     * @return audit logs per second since the metrics were created
+     */
+    double getRecordsPerSecond();
+
+    /**
+     * @return audit log bytes per second since the metrics were created
+     */
+    double getBytesPerSecond();
+
+    long getMeanLatencyNanos();
+
+    long getP50LatencyNanos();
+
+    long getP90LatencyNanos();
+
+    long getP99LatencyNanos();
+
+    long getP999LatencyNanos();
+
+    /**
+     * @return number of ranges of audit logs waiting in front of the next stage, 0 if the stage is not pipelined
+     */
+    int getQueueDepth();
+}
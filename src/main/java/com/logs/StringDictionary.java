@@ -0,0 +1,121 @@
+package com.logs;
+
+/**
+ * StringDictionary class canonicalizes the values of a single field, so a value which repeats on every audit log,
+ * like the bucket, the user agent or the 'pr' of the referrer header, is kept in memory only once.
+ *
+ * Values are looked up straight from a range of characters; a string is only created when the value is not
+ * in the dictionary yet. The dictionary is bounded: it is a two-way set associative table of
+ * {@link #DEFAULT_CAPACITY} values where a new value pushes out the older of its set.
+ * A field which turns out to have many distinct values is evicted: when less than half of the lookups
+ * of a sample hit, the table is dropped and from then on every lookup just creates the string.
+ *
+ * A StringDictionary is not thread safe, every thread needs its own.
+ */
+public class StringDictionary {
+
+    /**
+     * Number of values kept, a power of two.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Values longer than this are never kept, hashing them would cost more than it saves.
+     */
+    public static final int MAX_VALUE_LENGTH = 256;
+
+    /**
+     * Number of lookups after which the hit rate is checked.
+     */
+    static final int SAMPLE_SIZE = 4096;
+
+    private String[] table;
+    private final int mask;
+    private int lookups;
+    private int hits;
+
+    public StringDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of values kept, it is rounded up to a power of two
+     */
+    public StringDictionary(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        table = new String[size];
+        mask = size - 2;
+    }
+
+    /**
+     * intern method returns the canonical string of a range of characters
+     * @param chars this is the sequence holding the value, e.g. a single audit log
+     * @param start start offset of the value
+     * @param end end offset (exclusive) of the value
+     * @return a string equal to the range, the same instance as the last time if the value is in the dictionary
+     */
+    public String intern(CharSequence chars, int start, int end) {
+        if (lookups == SAMPLE_SIZE) {
+            if (hits < SAMPLE_SIZE / 2) {
+                table = null;
+            }
+            lookups = 0;
+            hits = 0;
+        }
+        String[] table = this.table;
+        if (table == null || end - start > MAX_VALUE_LENGTH) {
+            return chars.subSequence(start, end).toString();
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        int set = (hash ^ (hash >>> 16)) & mask;
+        lookups++;
+        String first = table[set];
+        if (first != null && matches(first, hash, chars, start, end)) {
+            hits++;
+            return first;
+        }
+        String second = table[set + 1];
+        if (second != null && matches(second, hash, chars, start, end)) {
+            hits++;
+            table[set + 1] = first;
+            table[set] = second;
+            return second;
+        }
+        String value = chars.subSequence(start, end).toString();
+        table[set + 1] = first;
+        table[set] = value;
+        return value;
+    }
+
+    /**
+     * intern method returns the canonical string of a value
+     * @param value this is the value, it may be null
+     * @return a string equal to the value, the same instance as the last time if the value is in the dictionary
+     */
+    public String intern(String value) {
+        return value == null ? null : intern(value, 0, value.length());
+    }
+
+    /**
+     * @return true if the field had too many distinct values and its dictionary was dropped
+     */
+    public boolean isEvicted() {
+        return table == null;
+    }
+
+    private static boolean matches(String value, int hash, CharSequence chars, int start, int end) {
+        int length = end - start;
+        if (value.length() != length || value.hashCode() != hash) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+package com.logs;
+
+import java.io.File;
+
+/**
+ * AuditLogFixtures class holds the sample audit log shared by the tests and the clean up of their sample directories
+ */
+final class AuditLogFixtures {
+
+    /**
+     * A real log entry.
+     * This is derived from a real log entry on a test run.
+     * If this needs to be updated, please do it from a real log.
+     * Splitting this up across lines has a tendency to break things, so
+     * be careful making changes.
+     */
+    static final String SAMPLE_LOG_ENTRY =
+            "183c9826b45486e485693808f38e2c4071004bf5dfd4c3ab210f0a21a4000000"
+                    + " bucket-london"
+                    + " [13/May/2021:11:26:06 +0000]"
+                    + " 109.157.171.174"
+                    + " arn:aws:iam::152813717700:user/dev"
+                    + " M7ZB7C4RTKXJKTM9"
+                    + " REST.PUT.OBJECT"
+                    + " fork-0001/test/testParseBrokenCSVFile"
+                    + " \"PUT /fork-0001/test/testParseBrokenCSVFile HTTP/1.1\""
+                    + " 200"
+                    + " -"
+                    + " -"
+                    + " 794"
+                    + " 55"
+                    + " 17"
+                    + " \"https://audit.example.org/hadoop/1/op_create/"
+                    + "e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278/"
+                    + "?op=op_create"
+                    + "&p1=fork-0001/test/testParseBrokenCSVFile"
+                    + "&pr=alice"
+                    + "&ps=2eac5a04-2153-48db-896a-09bc9a2fd132"
+                    + "&id=e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278&t0=154"
+                    + "&fs=e8ede3c7-8506-4a43-8268-fe8fcbb510a4&t1=156&"
+                    + "ts=1620905165700\""
+                    + " \"Hadoop 3.4.0-SNAPSHOT, java/1.8.0_282 vendor/AdoptOpenJDK\""
+                    + " -"
+                    + " TrIqtEYGWAwvu0h1N9WJKyoqM0TyHUaY+ZZBwP2yNf2qQp1Z/0="
+                    + " SigV4"
+                    + " ECDHE-RSA-AES128-GCM-SHA256"
+                    + " AuthHeader"
+                    + " bucket-london.s3.eu-west-2.amazonaws.com"
+                    + " TLSv1.2";
+
+    /**
+     * Request id of {@link #SAMPLE_LOG_ENTRY}.
+     */
+    static final String SAMPLE_REQUEST_ID = "M7ZB7C4RTKXJKTM9";
+
+    private AuditLogFixtures() {
+    }
+
+    /**
+     * sampleLogEntry method builds the sample audit log with another request id, so every line of a file is unique
+     * @param requestId this is the request id
+     * @return the audit log
+     */
+    static String sampleLogEntry(String requestId) {
+        return SAMPLE_LOG_ENTRY.replace(SAMPLE_REQUEST_ID, requestId);
+    }
+
+    /**
+     * deleteDirectory method deletes a sample directory with everything in it
+     * @param directory this is the directory, nothing happens if it doesn't exist
+     */
+    static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,197 @@
+package com.logs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static org.junit.Assert.*;
+
+/**
+ * TestAuditLogAggregator will implement different tests on AuditLogAggregator and AggregationTable class methods
+ */
+public class TestAuditLogAggregator {
+
+    /**
+     * sample directory and report file to test
+     */
+    private final File auditLogsDirectory = new File("aggregatorDirectory");
+    private final File reportFile = new File("samplereport.json");
+
+    private AuditLogRecord sampleRecord(String bucket, String http, String bytesSent, String totalTime, String pr) {
+        Map<String, String> auditLogMap = new HashMap<>();
+        for (String group : S3LogParser.AWS_LOG_REGEXP_GROUPS) {
+            auditLogMap.put(group, "-");
+        }
+        auditLogMap.put("bucket", bucket);
+        auditLogMap.put("http", http);
+        auditLogMap.put("bytessent", bytesSent);
+        auditLogMap.put("totaltime", totalTime);
+        Map<String, String> referrerHeaderMap = new HashMap<>();
+        referrerHeaderMap.put("pr", pr);
+        return new AuditLogRecord(auditLogMap, referrerHeaderMap);
+    }
+
+    private Map<List<String>, Integer> groupsByKey(AggregationTable aggregationTable) {
+        Map<List<String>, Integer> groups = new HashMap<>();
+        for (int group = 0; group < aggregationTable.size(); group++) {
+            String[] key = new String[aggregationTable.getAggregation().getFields().size()];
+            for (int field = 0; field < key.length; field++) {
+                key[field] = aggregationTable.getValue(group, field);
+            }
+            groups.put(Arrays.asList(key), group);
+        }
+        return groups;
+    }
+
+    /**
+     * addTest() will test add() method of AggregationTable
+     * by adding sample audit logs of a few groups, some without numeric values
+     * and checks if the count, sum, min, max and percentiles of every group are right
+     */
+    @Test
+    public void addTest() {
+        AggregationTable aggregationTable = new AggregationTable(Aggregation.of("bucket", "http", "pr"));
+        for (int i = 1; i <= 100; i++) {
+            aggregationTable.add(sampleRecord("bucket-london", "200", String.valueOf(i), String.valueOf(i), "alice"));
+        }
+        aggregationTable.add(sampleRecord("bucket-london", "404", "-", "5", "alice"));
+        aggregationTable.add(sampleRecord("bucket-london", "404", "-", "-", null));
+        aggregationTable.add(sampleRecord("bucket-paris", "200", "7", "3", "bob"));
+
+        Map<List<String>, Integer> groups = groupsByKey(aggregationTable);
+        assertEquals("the expected and actual results should be same", 4, aggregationTable.size());
+        int ok = groups.get(Arrays.asList("bucket-london", "200", "alice"));
+        int bytesSent = AggregationTable.MEASURES.indexOf("bytessent");
+        assertEquals("the expected and actual results should be same", 100, aggregationTable.getCount(ok));
+        assertEquals("the expected and actual results should be same", 5050, aggregationTable.getSum(ok, bytesSent));
+        assertEquals("the expected and actual results should be same", 1, aggregationTable.getMin(ok, bytesSent));
+        assertEquals("the expected and actual results should be same", 100, aggregationTable.getMax(ok, bytesSent));
+        assertEquals("the p50 should be about 50", 50, aggregationTable.getHistogram(ok, 0).percentile(0.5), 50 / 16.0);
+        assertEquals("the p99 should be about 99", 99, aggregationTable.getHistogram(ok, 0).percentile(0.99), 99 / 16.0);
+
+        int notFound = groups.get(Arrays.asList("bucket-london", "404", "alice"));
+        assertEquals("'-' should not be counted", -1, aggregationTable.getSum(notFound, bytesSent));
+        assertEquals("the expected and actual results should be same", 5, aggregationTable.getHistogram(notFound, 0).percentile(0.5));
+        int withoutPrincipal = groups.get(Arrays.asList("bucket-london", "404", null));
+        assertNull("an audit log without any total time should have no histogram",
+                aggregationTable.getHistogram(withoutPrincipal, 0));
+        try {
+            Aggregation.parse("bucket,nosuchfield");
+            fail("an unknown field should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("the expected and actual results should be same", e.getMessage().contains("nosuchfield"));
+        }
+    }
+
+    /**
+     * parseFileRangesTest() will test aggregating the audit logs on the parsing threads
+     * by parsing generated audit logs on several threads without a sink and on a single thread
+     * and checks if the merged tables are the same and if the report file has every group
+     * @throws IOException
+     */
+    @Test
+    public void parseFileRangesTest() throws IOException {
+        new AuditLogGenerator().setSeed(11).setFiles(4).setTotalBytes(1024 * 1024).setErrorRate(0.1).setMalformedRate(0.01)
+                .writeAuditLogFiles(auditLogsDirectory);
+        List<Aggregation> aggregations = Arrays.asList(Aggregation.of("bucket", "verb", "http"), Aggregation.of("pr", "op"),
+                Aggregation.of("requestid"));
+        S3LogParser s3LogParser = new S3LogParser();
+        ParallelAuditLogParser parallelAuditLogParser = new ParallelAuditLogParser(s3LogParser, 4, false, 64 * 1024);
+        List<ParallelAuditLogParser.FileRange> fileRanges = new ArrayList<>();
+        for (File file : ParallelAuditLogParser.listAuditLogFiles(auditLogsDirectory.getPath())) {
+            fileRanges.add(new ParallelAuditLogParser.FileRange(file, 0, Long.MAX_VALUE));
+        }
+        long count;
+        try (AuditLogAggregator parallelAggregator = new AuditLogAggregator(aggregations, reportFile)) {
+            count = parallelAuditLogParser.parseFileRanges(fileRanges, null, parallelAggregator);
+
+            AuditLogAggregator singleAggregator = new AuditLogAggregator(aggregations);
+            long singleCount = new ParallelAuditLogParser(s3LogParser, 1, true).parseFileRanges(fileRanges, singleAggregator);
+            assertEquals("the expected and actual results should be same", singleCount, count);
+
+            List<AggregationTable> parallelResults = parallelAggregator.getResults();
+            List<AggregationTable> singleResults = singleAggregator.getResults();
+            for (int i = 0; i < aggregations.size(); i++) {
+                AggregationTable parallel = parallelResults.get(i);
+                AggregationTable single = singleResults.get(i);
+                assertEquals("the expected and actual results should be same", single.size(), parallel.size());
+                Map<List<String>, Integer> parallelGroups = groupsByKey(parallel);
+                long total = 0;
+                for (Map.Entry<List<String>, Integer> entry : groupsByKey(single).entrySet()) {
+                    int group = parallelGroups.get(entry.getKey());
+                    assertEquals("the expected and actual results should be same",
+                            single.getCount(entry.getValue()), parallel.getCount(group));
+                    for (int measure = 0; measure < AggregationTable.MEASURES.size(); measure++) {
+                        assertEquals("the expected and actual results should be same",
+                                single.getSum(entry.getValue(), measure), parallel.getSum(group, measure));
+                        assertEquals("the expected and actual results should be same",
+                                single.getMax(entry.getValue(), measure), parallel.getMax(group, measure));
+                    }
+                    total += parallel.getCount(group);
+                }
+                assertEquals("every audit log should be in a group", count, total);
+            }
+            assertEquals("every request should have its own group", count, parallelResults.get(2).size());
+        }
+
+        JsonNode report = new ObjectMapper().readTree(reportFile);
+        JsonNode byBucket = report.get("aggregations").get(0);
+        assertEquals("the expected and actual results should be same", "bucket", byBucket.get("groupBy").get(0).asText());
+        long total = 0;
+        long previous = Long.MAX_VALUE;
+        for (JsonNode group : byBucket.get("groups")) {
+            assertTrue("the largest groups should be first", group.get("count").asLong() <= previous);
+            previous = group.get("count").asLong();
+            total += previous;
+        }
+        assertEquals("every audit log should be in the report", count, total);
+        assertTrue("the latency percentiles should be in the report",
+                byBucket.get("groups").get(0).get("totaltime").has("p99"));
+    }
+
+    /**
+     * createWithProjectionTest() will test create() method of AuditLogAggregator
+     * by passing projections which leave out fields of the reports and of the sketches, and one which keeps them
+     * and checks if only the projection which keeps them is accepted
+     */
+    @Test
+    public void createWithProjectionTest() {
+        OutputOptions outputOptions = new OutputOptions().setProjection(FieldProjection.parse("bucket"))
+                .setReportFile(reportFile);
+        try {
+            AuditLogAggregator.create(outputOptions);
+            fail("a projection without the fields of the reports should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("the missing fields should be named : " + e.getMessage(), e.getMessage().contains("verb,http"));
+        }
+        outputOptions.setAggregations(Arrays.asList(Aggregation.of("bucket")))
+                .setProjection(FieldProjection.parse("bucket,bytessent,objectsize,totaltime,turnaroundtime"));
+        assertNotNull("the result of create should be not null", AuditLogAggregator.create(outputOptions));
+        outputOptions.setSketchFile(new File("sample.sketch"));
+        try {
+            AuditLogAggregator.create(outputOptions);
+            fail("a projection without the fields to sketch should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("the missing fields should be named : " + e.getMessage(), e.getMessage().contains("remoteip"));
+        }
+    }
+
+    /**
+     * delete the sample directory and report file after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(auditLogsDirectory);
+        reportFile.delete();
+    }
+}
@@ -0,0 +1,134 @@
+package com.logs;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.logs.AuditLogFixtures.SAMPLE_LOG_ENTRY;
+import static org.junit.Assert.*;
+
+/**
+ * TestAuditLogFilter will implement different tests on AuditLogFilter class methods
+ */
+public class TestAuditLogFilter {
+
+    private boolean passes(AuditLogFilter filter, String singleAuditLog) {
+        return new S3LogParser(S3LogParser.ParsingMode.TOKENIZER, true, null, FieldProjection.ALL, filter)
+                .parseAuditLogRecord(singleAuditLog) != null;
+    }
+
+    /**
+     * filterTest() will test the filters built by every factory method
+     * by passing the sample audit log through parsers with these filters
+     * and checks if the audit log is kept only by the filters it meets
+     */
+    @Test
+    public void filterTest() {
+        long timestampMillis = 1620905166000L;
+        assertTrue("the bucket should match", passes(AuditLogFilter.equalTo("bucket", "bucket-london"), SAMPLE_LOG_ENTRY));
+        assertFalse("the bucket should not match", passes(AuditLogFilter.equalTo("bucket", "bucket-londo"), SAMPLE_LOG_ENTRY));
+        assertTrue("the prefix should match", passes(AuditLogFilter.prefix("verb", "REST.PUT."), SAMPLE_LOG_ENTRY));
+        assertFalse("the prefix should not match", passes(AuditLogFilter.prefix("verb", "REST.GET."), SAMPLE_LOG_ENTRY));
+        assertTrue("200 should be in the range", passes(AuditLogFilter.between("http", 200, 299), SAMPLE_LOG_ENTRY));
+        assertFalse("'-' should not be in any range", passes(AuditLogFilter.between("bytessent", 0, Long.MAX_VALUE), SAMPLE_LOG_ENTRY));
+        assertTrue("794 should be in the range", passes(AuditLogFilter.between("objectsize", 794, 794), SAMPLE_LOG_ENTRY));
+        assertTrue("the timestamp should be in the window",
+                passes(AuditLogFilter.timestampBetween(timestampMillis, timestampMillis + 1), SAMPLE_LOG_ENTRY));
+        assertFalse("the end of the window should be exclusive",
+                passes(AuditLogFilter.timestampBetween(timestampMillis - 1000, timestampMillis), SAMPLE_LOG_ENTRY));
+        assertTrue("both conditions should hold", passes(AuditLogFilter.and(AuditLogFilter.between("http", 200, 200),
+                AuditLogFilter.equalTo("bucket", "bucket-london")), SAMPLE_LOG_ENTRY));
+        assertFalse("one condition should not hold", passes(AuditLogFilter.and(AuditLogFilter.between("http", 200, 200),
+                AuditLogFilter.equalTo("bucket", "other")), SAMPLE_LOG_ENTRY));
+        assertTrue("one condition should hold", passes(AuditLogFilter.or(AuditLogFilter.equalTo("bucket", "other"),
+                AuditLogFilter.equalTo("tls", "TLSv1.2")), SAMPLE_LOG_ENTRY));
+        assertFalse("the condition should be negated", passes(AuditLogFilter.not(AuditLogFilter.between("http", 200, 299)),
+                SAMPLE_LOG_ENTRY));
+        try {
+            AuditLogFilter.between("bucket", 0, 1);
+            fail("a range on a field which is not numeric should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("the expected and actual results should be same", e.getMessage().contains("bucket"));
+        }
+    }
+
+    /**
+     * parseTest() will test parse() method
+     * by parsing conditions in the command line syntax
+     * and checks if the sample audit log is kept only by the conditions it meets
+     */
+    @Test
+    public void parseTest() {
+        assertTrue("the conditions should hold", passes(AuditLogFilter.parse(
+                "bucket=bucket-london,verb=REST.GET.*|REST.PUT.OBJECT,http=200..,"
+                        + "timestamp=2021-05-13T11:00:00Z..2021-05-13T12:00:00Z"), SAMPLE_LOG_ENTRY));
+        assertFalse("the status should not be outside 2xx", passes(AuditLogFilter.parse("http!=200..299"), SAMPLE_LOG_ENTRY));
+        assertFalse("the timestamp should not be in the window", passes(AuditLogFilter.parse(
+                "timestamp=..2021-05-13T11:26:06Z"), SAMPLE_LOG_ENTRY));
+        assertEquals("the expected and actual results should be same", "and(bucket=b*, not(http=500..599))",
+                AuditLogFilter.parse("http!=500..599,bucket=b*").toString());
+        for (String conditions : new String[] {"nosuchfield=1", "bucket", "timestamp=yesterday", "http=a..b", ""}) {
+            try {
+                AuditLogFilter.parse(conditions);
+                fail("the conditions should be rejected : " + conditions);
+            } catch (IllegalArgumentException e) {
+                assertNotNull("the expected and actual results should be same", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * parseAuditLogRecordTest() will test the filter of parseAuditLogRecord() method
+     * by passing generated audit logs with malformed lines through parsers with and without a filter
+     * and checks if the filter keeps the same audit logs as filtering the parsed audit logs,
+     * and if skipped lines are counted but not rejected
+     * @throws IOException
+     */
+    @Test
+    public void parseAuditLogRecordTest() throws IOException {
+        String[] auditLogs = new AuditLogGenerator().setSeed(7).setErrorRate(0.2).setMalformedRate(0.05).auditLogs(5000);
+        AuditLogFilter filter = AuditLogFilter.parse("verb=REST.PUT.*|REST.HEAD.OBJECT,http!=200..299");
+        for (S3LogParser.ParsingMode parsingMode : S3LogParser.ParsingMode.values()) {
+            S3LogParser filteringParser = new S3LogParser(parsingMode, true, null, FieldProjection.ALL, filter);
+            S3LogParser s3LogParser = new S3LogParser(parsingMode);
+            List<String> rejected = new ArrayList<>();
+            AuditLogSink rejectSink = new AuditLogSink() {
+                @Override
+                public void write(AuditLogRecord auditLogRecord) {
+                }
+
+                @Override
+                public void reject(String singleAuditLog, RejectReason rejectReason) {
+                    rejected.add(singleAuditLog);
+                }
+            };
+            int kept = 0;
+            for (String auditLog : auditLogs) {
+                AuditLogRecord expected = s3LogParser.parseAuditLogRecord(auditLog);
+                AuditLogRecord actual = filteringParser.parseAuditLogRecord(auditLog, rejectSink);
+                String verb = expected == null ? null : expected.getAuditLogMap().get("verb");
+                String http = expected == null ? null : expected.getAuditLogMap().get("http");
+                boolean meetsFilter = expected != null && (verb.startsWith("REST.PUT.") || verb.equals("REST.HEAD.OBJECT"))
+                        && !http.startsWith("2");
+                assertEquals("the filter should keep the same audit logs : " + auditLog, meetsFilter, actual != null);
+                if (actual != null) {
+                    assertEquals("the expected and actual results should be same", expected.getEntireAuditLogMap(),
+                            actual.getEntireAuditLogMap());
+                    kept++;
+                }
+            }
+            assertTrue("some audit logs should be kept", kept > 0);
+            assertTrue("some audit logs should be skipped", filteringParser.getFilteredCount() > 0);
+            long rejectCount = 0;
+            for (long count : filteringParser.getRejectCounts().values()) {
+                rejectCount += count;
+            }
+            assertEquals("every rejected line should go to the sink", rejectCount, rejected.size());
+            assertTrue("skipped lines should not be rejected",
+                    rejectCount + filteringParser.getFilteredCount() + kept <= auditLogs.length);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.logs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static org.junit.Assert.*;
+
+/**
+ * TestAuditLogFollower will implement different tests on AuditLogFollower class methods
+ */
+public class TestAuditLogFollower {
+
+    /**
+     * sample directories and files to test
+     */
+    private final File inputDirectory = new File("followInputDirectory");
+    private final File outputDirectory = new File("followOutputDirectory");
+    private final File reportFile = new File(outputDirectory, "report.json");
+
+    /**
+     * creates the sample directories before each test
+     */
+    @Before
+    public void setUp() {
+        inputDirectory.mkdir();
+        outputDirectory.mkdir();
+    }
+
+    private void waitFor(AuditLogFollower auditLogFollower, long runs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (auditLogFollower.getRuns() < runs) {
+            assertTrue("the follower should keep running", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * followTest() will test follow() and stop() methods of AuditLogFollower
+     * by adding audit log files to the directory while it is followed
+     * and checks if every file is ingested once and the report covers all of them when the follower stops
+     * @throws Exception
+     */
+    @Test
+    public void followTest() throws Exception {
+        OutputOptions outputOptions = new OutputOptions().setReportFile(reportFile)
+                .setAggregations(Collections.singletonList(Aggregation.parse("bucket")));
+        IncrementalAuditLogIngest incrementalAuditLogIngest = new IncrementalAuditLogIngest(
+                new ParallelAuditLogParser(new S3LogParser(), 2, true), outputDirectory, false, outputOptions)
+                .setSettleMillis(0);
+        AuditLogFollower auditLogFollower = new AuditLogFollower(incrementalAuditLogIngest, inputDirectory.getPath())
+                .setPollIntervalMillis(50);
+        AuditLogGenerator auditLogGenerator = new AuditLogGenerator().setSeed(7).setFiles(1).setTotalBytes(20_000);
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> follow = executorService.submit(auditLogFollower::follow);
+            waitFor(auditLogFollower, 1);
+            File firstDirectory = new File(inputDirectory, "first");
+            firstDirectory.mkdir();
+            auditLogGenerator.writeAuditLogFiles(firstDirectory);
+            File firstFile = firstDirectory.listFiles()[0];
+            Files.move(firstFile.toPath(), new File(inputDirectory, "first.log").toPath());
+            firstDirectory.delete();
+            long firstLines = Files.readAllLines(new File(inputDirectory, "first.log").toPath()).size();
+            long runs = auditLogFollower.getRuns();
+            waitFor(auditLogFollower, runs + 2);
+
+            File secondDirectory = new File(inputDirectory, "second");
+            secondDirectory.mkdir();
+            auditLogGenerator.setSeed(8).writeAuditLogFiles(secondDirectory);
+            File secondFile = secondDirectory.listFiles()[0];
+            Files.move(secondFile.toPath(), new File(inputDirectory, "second.log").toPath());
+            secondDirectory.delete();
+            long secondLines = Files.readAllLines(new File(inputDirectory, "second.log").toPath()).size();
+            runs = auditLogFollower.getRuns();
+            waitFor(auditLogFollower, runs + 2);
+
+            auditLogFollower.stop();
+            assertEquals("every audit log should be parsed once", firstLines + secondLines, (long) follow.get());
+            JsonNode groups = new ObjectMapper().readTree(reportFile).get("aggregations").get(0).get("groups");
+            long reported = 0;
+            for (JsonNode group : groups) {
+                reported += group.get("count").asLong();
+            }
+            assertEquals("the report should cover every run", firstLines + secondLines, reported);
+        } finally {
+            auditLogFollower.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * delete all the sample directories and files after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(inputDirectory);
+        deleteDirectory(outputDirectory);
+    }
+}
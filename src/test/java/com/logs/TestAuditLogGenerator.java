@@ -0,0 +1,117 @@
+package com.logs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static org.junit.Assert.*;
+
+/**
+ * TestAuditLogGenerator will implement different tests on AuditLogGenerator class methods
+ */
+public class TestAuditLogGenerator {
+
+    /**
+     * sample directories to test
+     */
+    private final File firstDirectory = new File("generatedDirectory1");
+    private final File secondDirectory = new File("generatedDirectory2");
+
+    /**
+     * writeAuditLogFilesTest() will test writeAuditLogFiles() method
+     * by generating the same files twice with the same seed
+     * and checks if the files are the same, have the asked size and are sorted by timestamp
+     * @throws IOException
+     */
+    @Test
+    public void writeAuditLogFilesTest() throws IOException {
+        long bytes = new AuditLogGenerator().setSeed(7).setFiles(5).setTotalBytes(200 * 1024).writeAuditLogFiles(firstDirectory);
+        new AuditLogGenerator().setSeed(7).setFiles(5).setTotalBytes(200 * 1024).writeAuditLogFiles(secondDirectory);
+
+        String[] fileNames = firstDirectory.list();
+        Arrays.sort(fileNames);
+        assertEquals("the expected and actual results should be same", 5, fileNames.length);
+        long totalLength = 0;
+        for (String fileName : fileNames) {
+            File file = new File(firstDirectory, fileName);
+            assertArrayEquals("the same seed should give the same file", Files.readAllBytes(file.toPath()),
+                    Files.readAllBytes(new File(secondDirectory, fileName).toPath()));
+            totalLength += file.length();
+            long timestamp = Long.MIN_VALUE;
+            for (String line : Files.readAllLines(file.toPath())) {
+                assertTrue("every line should follow the S3 log grammar : " + line,
+                        S3LogParser.LOG_ENTRY_PATTERN.matcher(line).matches());
+                long lineTimestamp = Merger.timestampMillis(line);
+                assertTrue("every file should be sorted by timestamp", lineTimestamp >= timestamp);
+                timestamp = lineTimestamp;
+            }
+        }
+        assertEquals("the expected and actual results should be same", bytes, totalLength);
+        assertTrue("the files should have about the asked size", bytes >= 199 * 1024 && bytes < 210 * 1024);
+    }
+
+    /**
+     * auditLogsTest() will test auditLogs() method
+     * with malformed lines, errors and a small number of buckets
+     * and checks if the rates and cardinalities are respected and every well formed line can be parsed
+     */
+    @Test
+    public void auditLogsTest() {
+        String[] auditLogs = new AuditLogGenerator().setSeed(3).setMalformedRate(0.1).setErrorRate(0.2).setBuckets(2)
+                .auditLogs(5000);
+        assertArrayEquals("the same seed should give the same audit logs", auditLogs,
+                new AuditLogGenerator().setSeed(3).setMalformedRate(0.1).setErrorRate(0.2).setBuckets(2).auditLogs(5000));
+        assertFalse("another seed should give other audit logs", Arrays.equals(auditLogs,
+                new AuditLogGenerator().setSeed(4).setMalformedRate(0.1).setErrorRate(0.2).setBuckets(2).auditLogs(5000)));
+
+        S3LogParser s3LogParser = new S3LogParser();
+        int malformed = 0;
+        int errors = 0;
+        List<String> buckets = Arrays.asList("bucket-0", "bucket-1");
+        for (String auditLog : auditLogs) {
+            AuditLogRecord auditLogRecord = s3LogParser.parseAuditLogRecord(auditLog);
+            if (auditLogRecord == null) {
+                malformed++;
+                continue;
+            }
+            assertTrue("the bucket should be one of the pool", buckets.contains(auditLogRecord.getAuditLogMap().get("bucket")));
+            assertNotEquals("the timestamp should be valid", S3TimestampDecoder.INVALID, auditLogRecord.getTimestampMillis());
+            assertEquals("the principal should be the requester",
+                    auditLogRecord.getAuditLogMap().get("requester").replace("arn:aws:iam::152813717700:user/", ""),
+                    auditLogRecord.getReferrerHeaderMap().get("pr"));
+            if (!auditLogRecord.getAuditLogMap().get("awserrorcode").equals("-")) {
+                errors++;
+            }
+        }
+        assertTrue("about 10% of the lines should be malformed : " + malformed, malformed > 400 && malformed < 600);
+        assertTrue("about 20% of the requests should fail : " + errors, errors > 800 && errors < 1000);
+    }
+
+    /**
+     * parseSizeTest() will test parseSize() method
+     * by passing sizes with and without a unit
+     * and checks if they are converted into bytes
+     */
+    @Test
+    public void parseSizeTest() {
+        assertEquals("the expected and actual results should be same", 1000, AuditLogGenerator.parseSize("1000"));
+        assertEquals("the expected and actual results should be same", 10 * 1024, AuditLogGenerator.parseSize("10k"));
+        assertEquals("the expected and actual results should be same", 512L * 1024 * 1024, AuditLogGenerator.parseSize("512M"));
+        assertEquals("the expected and actual results should be same", 2L * 1024 * 1024 * 1024, AuditLogGenerator.parseSize("2g"));
+    }
+
+    /**
+     * delete the sample directories after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(firstDirectory);
+        deleteDirectory(secondDirectory);
+    }
+}
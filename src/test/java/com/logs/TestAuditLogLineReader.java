@@ -0,0 +1,116 @@
+package com.logs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestAuditLogLineReader will implement different tests on AuditLogLineReader class methods
+ */
+public class TestAuditLogLineReader {
+
+    /**
+     * sample audit log file to test
+     */
+    private final File sampleFile = new File("samplelines.log");
+
+    /**
+     * lines of the sample file: CRLF, empty lines, a non ASCII key, a line longer than the windows
+     * and a last line without newline
+     */
+    private final String content = "first line of the log\r\n"
+            + "\n"
+            + "key/caf\u00e9/\u65e5\u672c.txt ascii after\n"
+            + "a line which is much longer than the tiny windows used in the test, "
+            + "so the reader has to grow its window\n"
+            + "x\r\n"
+            + "last line without newline";
+
+    private final List<String> expectedLines = Arrays.asList("first line of the log", "",
+            "key/caf\u00e9/\u65e5\u672c.txt ascii after",
+            "a line which is much longer than the tiny windows used in the test, so the reader has to grow its window",
+            "x", "last line without newline");
+
+    private void writeSampleFile() throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(sampleFile)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private List<String> readLines(long start, long end, int windowSize, boolean map) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (AuditLogLineReader lineReader = new AuditLogLineReader(sampleFile, start, end, windowSize, map)) {
+            while (lineReader.nextLine()) {
+                String line = lineReader.getLine().toString();
+                assertEquals("the expected and actual results should be same",
+                        line.getBytes(StandardCharsets.UTF_8).length, lineReader.getLineLength());
+                assertEquals("the expected and actual results should be same",
+                        line.chars().allMatch(c -> c < 0x80), lineReader.isAscii());
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * nextLineTest() will test nextLine() and getLine() methods of AuditLogLineReader
+     * by reading a sample file with mapped and read windows of many sizes
+     * and checks if the lines, their lengths and whether they are ASCII are the same for every window size
+     * @throws IOException
+     */
+    @Test
+    public void nextLineTest() throws IOException {
+        writeSampleFile();
+        for (int windowSize : new int[] {1, 3, 8, 13, 64, AuditLogLineReader.DEFAULT_WINDOW_SIZE}) {
+            assertEquals("the expected and actual results should be same", expectedLines,
+                    readLines(0, Long.MAX_VALUE, windowSize, true));
+            assertEquals("the expected and actual results should be same", expectedLines,
+                    readLines(0, Long.MAX_VALUE, windowSize, false));
+        }
+    }
+
+    /**
+     * rangeTest() will test getPosition() and writeLine() methods of AuditLogLineReader
+     * by reading the sample file in two ranges split at a line start and copying the lines
+     * and checks if the ranges give all lines once and the copied bytes are the bytes of the file without separators
+     * @throws IOException
+     */
+    @Test
+    public void rangeTest() throws IOException {
+        writeSampleFile();
+        long split = content.indexOf("\n\n") + 2;
+        List<String> lines = new ArrayList<>();
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (AuditLogLineReader lineReader = new AuditLogLineReader(sampleFile, 0, split, 5, false)) {
+            while (lineReader.nextLine()) {
+                lines.add(lineReader.getLine().toString());
+                lineReader.writeLine(copy);
+                copy.write('\n');
+            }
+            assertEquals("the expected and actual results should be same", split, lineReader.getPosition());
+        }
+        lines.addAll(readLines(split, sampleFile.length(), 16, true));
+        assertEquals("the expected and actual results should be same", expectedLines, lines);
+        assertEquals("the expected and actual results should be same", "first line of the log\n\n",
+                new String(copy.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * delete the sample file after each test
+     */
+    @After
+    public void tearDown() {
+        sampleFile.delete();
+    }
+}
@@ -0,0 +1,163 @@
+package com.logs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static org.junit.Assert.*;
+
+/**
+ * TestAuditLogSketches will implement different tests on SpaceSaving, HyperLogLog, FieldSketch
+ * and AuditLogSketches class methods
+ */
+public class TestAuditLogSketches {
+
+    /**
+     * sample directory and sketch files to test
+     */
+    private final File auditLogsDirectory = new File("sketchDirectory");
+    private final File sketchFile = new File("sample.sketch");
+    private final File mergedSketchFile = new File("merged.sketch");
+
+    /**
+     * spaceSavingTest() will test add() and merge() methods of SpaceSaving
+     * by adding a skewed stream of values, on its own and split into two merged sketches,
+     * and checks if the top values are found and their true counts are within the error bounds
+     */
+    @Test
+    public void spaceSavingTest() {
+        Random random = new Random(5);
+        Map<String, Long> exact = new HashMap<>();
+        SpaceSaving single = new SpaceSaving(100);
+        SpaceSaving first = new SpaceSaving(100);
+        SpaceSaving second = new SpaceSaving(100);
+        for (int i = 0; i < 100000; i++) {
+            // about 1 in 4 values is one of 10 heavy hitters, the others are spread over 10000 values
+            String value = random.nextInt(4) == 0 ? "heavy-" + random.nextInt(10) : "value-" + random.nextInt(10000);
+            exact.merge(value, 1L, Long::sum);
+            single.add(value, 1);
+            (i % 2 == 0 ? first : second).add(value, 1);
+        }
+        first.merge(second);
+        assertEquals("the expected and actual results should be same", 100000, single.getTotal());
+        assertEquals("the expected and actual results should be same", 100000, first.getTotal());
+        for (SpaceSaving sketch : new SpaceSaving[] {single, first}) {
+            Set<String> top = new HashSet<>();
+            for (SpaceSaving.Counter counter : sketch.top(10)) {
+                top.add(counter.getValue());
+                long count = exact.get(counter.getValue());
+                assertTrue("the count should not be below the true count", counter.getCount() >= count);
+                assertTrue("the count should be at most the error above the true count",
+                        counter.getCount() - counter.getError() <= count);
+            }
+            for (int i = 0; i < 10; i++) {
+                assertTrue("every heavy hitter should be in the top values", top.contains("heavy-" + i));
+            }
+        }
+    }
+
+    /**
+     * hyperLogLogTest() will test estimate() and merge() methods of HyperLogLog
+     * by counting small and large numbers of distinct values, some of them repeated and in two merged sketches,
+     * and checks if the estimates are within a few percents
+     */
+    @Test
+    public void hyperLogLogTest() {
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            small.add("key-" + (i % 100));
+        }
+        assertEquals("the expected and actual results should be same", 100, small.estimate());
+
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (int i = 0; i < 200000; i++) {
+            first.add("key-" + i);
+            second.add("key-" + (i + 100000));
+        }
+        assertEquals("the estimate should be within 3%", 200000, first.estimate(), 6000);
+        first.merge(second);
+        assertEquals("the estimate should be within 3%", 300000, first.estimate(), 9000);
+        try {
+            first.merge(new HyperLogLog(10));
+            fail("sketches of different precisions should not be merged");
+        } catch (IllegalArgumentException e) {
+            assertTrue("the expected and actual results should be same", e.getMessage().contains("precision"));
+        }
+    }
+
+    /**
+     * sketchFileTest() will test sketching the audit logs on the parsing threads and AuditLogSketches
+     * by parsing generated audit logs on several threads into a sketch file, reading it back and merging it with itself,
+     * and checks if the top remote ips and the distinct keys match the exact counts
+     * @throws IOException
+     */
+    @Test
+    public void sketchFileTest() throws IOException {
+        new AuditLogGenerator().setSeed(3).setFiles(4).setTotalBytes(1024 * 1024).writeAuditLogFiles(auditLogsDirectory);
+        List<ParallelAuditLogParser.FileRange> fileRanges = new ArrayList<>();
+        for (File file : ParallelAuditLogParser.listAuditLogFiles(auditLogsDirectory.getPath())) {
+            fileRanges.add(new ParallelAuditLogParser.FileRange(file, 0, Long.MAX_VALUE));
+        }
+        Map<String, Long> requestsByIp = new HashMap<>();
+        Set<String> keys = new HashSet<>();
+        long count = new ParallelAuditLogParser(new S3LogParser(), 1, true).parseFileRanges(fileRanges, new AuditLogSink() {
+            @Override
+            public void write(AuditLogRecord auditLogRecord) {
+                requestsByIp.merge(auditLogRecord.getAuditLogMap().get("remoteip"), 1L, Long::sum);
+                if (!auditLogRecord.getAuditLogMap().get("key").equals("-")) {
+                    keys.add(auditLogRecord.getAuditLogMap().get("key"));
+                }
+            }
+        });
+        OutputOptions outputOptions = new OutputOptions().setSketchFile(sketchFile);
+        try (AuditLogAggregator aggregator = AuditLogAggregator.create(outputOptions)) {
+            assertTrue("no aggregation should be computed without a report file", aggregator.getAggregations().isEmpty());
+            new ParallelAuditLogParser(new S3LogParser(), 4, false, 64 * 1024).parseFileRanges(fileRanges, null, aggregator);
+        }
+
+        List<FieldSketch> sketches = AuditLogSketches.read(sketchFile);
+        assertEquals("the expected and actual results should be same", FieldSketch.DEFAULT_FIELDS.size(), sketches.size());
+        FieldSketch byIp = sketches.get(FieldSketch.DEFAULT_FIELDS.indexOf("remoteip"));
+        assertEquals("the expected and actual results should be same", count, byIp.getTopByRequests().getTotal());
+        List<Long> counts = new ArrayList<>(requestsByIp.values());
+        counts.sort(Collections.reverseOrder());
+        List<SpaceSaving.Counter> top = byIp.getTopByRequests().top(5);
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals("the expected and actual results should be same", counts.get(i).longValue(), top.get(i).getCount());
+            assertEquals("the expected and actual results should be same",
+                    requestsByIp.get(top.get(i).getValue()).longValue(), top.get(i).getCount());
+        }
+        FieldSketch byKey = sketches.get(FieldSketch.DEFAULT_FIELDS.indexOf("key"));
+        assertEquals("the estimate should be within 3%", keys.size(), byKey.getDistinct().estimate(), keys.size() * 0.03);
+
+        AuditLogSketches.main(new String[] {mergedSketchFile.getPath(), sketchFile.getPath(), sketchFile.getPath()});
+        List<FieldSketch> merged = AuditLogSketches.read(mergedSketchFile);
+        FieldSketch mergedByIp = merged.get(FieldSketch.DEFAULT_FIELDS.indexOf("remoteip"));
+        assertEquals("the expected and actual results should be same", 2 * top.get(0).getCount(),
+                mergedByIp.getTopByRequests().top(1).get(0).getCount());
+        assertEquals("merging a sketch with itself should not change the distinct count", byKey.getDistinct().estimate(),
+                merged.get(FieldSketch.DEFAULT_FIELDS.indexOf("key")).getDistinct().estimate());
+    }
+
+    /**
+     * delete the sample directory and sketch files after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(auditLogsDirectory);
+        sketchFile.delete();
+        mergedSketchFile.delete();
+    }
+}
@@ -0,0 +1,137 @@
+package com.logs;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestAvroAuditLogSink will implement different tests on AvroAuditLogSink class methods
+ */
+public class TestAvroAuditLogSink {
+
+    private final File avroFile = new File("sampleavrosink.avro");
+
+    private AuditLogRecord sampleRecord(String requestId, String bytesSent) {
+        Map<String, String> auditLogMap = new HashMap<>();
+        for (String group : S3LogParser.AWS_LOG_REGEXP_GROUPS) {
+            auditLogMap.put(group, "-");
+        }
+        auditLogMap.put("bucket", "bucket-london");
+        auditLogMap.put("requestid", requestId);
+        auditLogMap.put("bytessent", bytesSent);
+        auditLogMap.put("totaltime", "55");
+        auditLogMap.put("timestamp", bytesSent.equals("-") ? "-" : "[13/May/2021:11:26:06 +0000]");
+        auditLogMap.put("tail", " -");
+        Map<String, String> referrerHeaderMap = new HashMap<>();
+        referrerHeaderMap.put("op", "op_create");
+        return new AuditLogRecord(auditLogMap, referrerHeaderMap);
+    }
+
+    /**
+     * writeTest() will test write() method with every supported codec
+     * and checks if the records read back have the right values and types
+     * @throws IOException
+     */
+    @Test
+    public void writeTest() throws IOException {
+        for (String codec : new String[] {"null", "deflate", "snappy", "zstd"}) {
+            OutputOptions outputOptions = new OutputOptions().setAvroCodec(codec).setAvroSyncInterval(1024);
+            try (AvroAuditLogSink avroAuditLogSink = new AvroAuditLogSink(avroFile, false, outputOptions)) {
+                for (int i = 0; i < 100; i++) {
+                    avroAuditLogSink.write(sampleRecord("REQUEST" + i, i % 2 == 0 ? String.valueOf(i) : "-"));
+                }
+            }
+            try (DataFileReader<GenericRecord> dataFileReader =
+                         new DataFileReader<>(avroFile, new GenericDatumReader<GenericRecord>())) {
+                assertEquals("the codec should be written into the file", codec.equals("zstd") ? "zstandard" : codec,
+                        dataFileReader.getMetaString("avro.codec"));
+                int count = 0;
+                for (GenericRecord genericRecord : dataFileReader) {
+                    assertEquals("the expected and actual results should be same", "REQUEST" + count,
+                            genericRecord.get("requestid").toString());
+                    assertEquals("the expected and actual results should be same", count % 2 == 0 ? (long) count : null,
+                            genericRecord.get("bytessent"));
+                    assertEquals("the expected and actual results should be same", 55L, genericRecord.get("totaltime"));
+                    assertNull("'-' should be written as null for long values", genericRecord.get("objectsize"));
+                    assertEquals("string values should be trimmed", "-", genericRecord.get("tail").toString());
+                    assertEquals("the timestamp should be decoded", count % 2 == 0 ? 1620905166000L : null,
+                            genericRecord.get("timestampMillis"));
+                    assertEquals("the expected and actual results should be same", "op_create",
+                            ((Map<?, ?>) genericRecord.get("referrerMap")).values().iterator().next().toString());
+                    count++;
+                }
+                assertEquals("every record should be written", 100, count);
+                assertEquals("the timestamp should have the timestamp-millis logical type", "timestamp-millis",
+                        dataFileReader.getSchema().getField("timestampMillis").schema().getTypes().get(0)
+                                .getLogicalType().getName());
+            }
+        }
+    }
+
+    /**
+     * writeProjectionTest() will test write() method with a field projection
+     * by writing the sample records and appending to the file with another projection
+     * and checks if only the projected columns are in the file and appending with other columns fails
+     * @throws IOException
+     */
+    @Test
+    public void writeProjectionTest() throws IOException {
+        OutputOptions outputOptions = new OutputOptions().setProjection(FieldProjection.of("requestid", "bytessent", "op"));
+        try (AvroAuditLogSink avroAuditLogSink = new AvroAuditLogSink(avroFile, false, outputOptions)) {
+            avroAuditLogSink.write(sampleRecord("REQUEST0", "794"));
+        }
+        try (AvroAuditLogSink avroAuditLogSink = new AvroAuditLogSink(avroFile, true, outputOptions)) {
+            avroAuditLogSink.write(sampleRecord("REQUEST1", "-"));
+        }
+        try (DataFileReader<GenericRecord> dataFileReader =
+                     new DataFileReader<>(avroFile, new GenericDatumReader<GenericRecord>())) {
+            assertEquals("the expected and actual results should be same", 3, dataFileReader.getSchema().getFields().size());
+            assertNull("the timestamp should not be written", dataFileReader.getSchema().getField("timestampMillis"));
+            GenericRecord genericRecord = dataFileReader.next();
+            assertEquals("the expected and actual results should be same", "REQUEST0", genericRecord.get("requestid").toString());
+            assertEquals("the expected and actual results should be same", 794L, genericRecord.get("bytessent"));
+            assertEquals("the expected and actual results should be same", "REQUEST1",
+                    dataFileReader.next().get("requestid").toString());
+            assertFalse("every record should be written", dataFileReader.hasNext());
+        }
+        try {
+            new AvroAuditLogSink(avroFile, true, new OutputOptions()).close();
+            fail("appending with other columns should fail");
+        } catch (IOException e) {
+            assertTrue("the expected and actual results should be same", e.getMessage().contains(avroFile.getName()));
+        }
+    }
+
+    /**
+     * parseLongTest() will test parseLong() method
+     * by passing numbers, "-" and values which are not numbers
+     * and checks if only natural numbers are parsed
+     */
+    @Test
+    public void parseLongTest() {
+        assertEquals("the expected and actual results should be same", Long.valueOf(794), AvroAuditLogSink.parseLong("794"));
+        assertEquals("the expected and actual results should be same", Long.valueOf(0), AvroAuditLogSink.parseLong("0"));
+        assertNull("'-' is not a number", AvroAuditLogSink.parseLong("-"));
+        assertNull("an empty value is not a number", AvroAuditLogSink.parseLong(""));
+        assertNull("null is not a number", AvroAuditLogSink.parseLong(null));
+        assertNull("'12a' is not a number", AvroAuditLogSink.parseLong("12a"));
+        assertNull("too long values are not parsed", AvroAuditLogSink.parseLong("1234567890123456789012"));
+    }
+
+    /**
+     * delete the sample file after each test
+     */
+    @After
+    public void tearDown() {
+        avroFile.delete();
+    }
+}
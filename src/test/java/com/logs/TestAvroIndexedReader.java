@@ -0,0 +1,183 @@
+package com.logs;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static org.junit.Assert.*;
+
+/**
+ * TestAvroIndexedReader will implement different tests on AvroIndexedReader and AvroBlockIndex class methods
+ */
+public class TestAvroIndexedReader {
+
+    /**
+     * sample directory and files to test
+     */
+    private final File inputDirectory = new File("indexInputDirectory");
+    private final File avroFile = new File("sampleindexed.avro");
+    private final File indexFile = AvroBlockIndex.indexFile(avroFile);
+
+    private final OutputOptions outputOptions = new OutputOptions().setAvroSyncInterval(4096).setWriteAvroIndex(true);
+
+    /**
+     * writes the sample audit logs into the sample avro file and its index before each test
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws IOException {
+        inputDirectory.mkdir();
+        new AuditLogGenerator().setSeed(25).setFiles(4).setTotalBytes(300_000).writeAuditLogFiles(inputDirectory);
+        writeAvroFile(false);
+    }
+
+    private void writeAvroFile(boolean append) throws IOException {
+        List<ParallelAuditLogParser.FileRange> fileRanges = new ArrayList<>();
+        for (File file : ParallelAuditLogParser.listAuditLogFiles(inputDirectory.getPath())) {
+            fileRanges.add(new ParallelAuditLogParser.FileRange(file, 0, Long.MAX_VALUE));
+        }
+        try (AvroAuditLogSink avroAuditLogSink = new AvroAuditLogSink(avroFile, append, outputOptions)) {
+            new ParallelAuditLogParser(new S3LogParser(), 2, true).parseFileRanges(fileRanges, avroAuditLogSink);
+        }
+    }
+
+    private List<GenericRecord> readAll() throws IOException {
+        List<GenericRecord> genericRecords = new ArrayList<>();
+        try (DataFileReader<GenericRecord> dataFileReader =
+                     new DataFileReader<>(avroFile, new GenericDatumReader<GenericRecord>())) {
+            for (GenericRecord genericRecord : dataFileReader) {
+                genericRecords.add(genericRecord);
+            }
+        }
+        return genericRecords;
+    }
+
+    private List<String> find(AvroIndexedReader avroIndexedReader, long fromMillis, long toMillis,
+                              Map<String, String> values) throws IOException {
+        List<String> requestIds = new ArrayList<>();
+        avroIndexedReader.find(fromMillis, toMillis, values,
+                genericRecord -> requestIds.add(genericRecord.get("requestid").toString()));
+        return requestIds;
+    }
+
+    /**
+     * checks if the lookups of a bucket in a time range and of a single request id find the same audit logs
+     * as a full scan of the avro file
+     */
+    private void checkLookups(List<GenericRecord> genericRecords) throws IOException {
+        GenericRecord sample = genericRecords.get(genericRecords.size() / 3);
+        String bucket = sample.get("bucket").toString();
+        long fromMillis = (Long) sample.get("timestampMillis");
+        long toMillis = fromMillis + 5 * 60 * 1000;
+        List<String> expectedRange = new ArrayList<>();
+        List<String> expectedPoint = new ArrayList<>();
+        for (GenericRecord genericRecord : genericRecords) {
+            Long timestampMillis = (Long) genericRecord.get("timestampMillis");
+            if (genericRecord.get("bucket").toString().equals(bucket) && timestampMillis != null
+                    && timestampMillis >= fromMillis && timestampMillis < toMillis) {
+                expectedRange.add(genericRecord.get("requestid").toString());
+            }
+            if (genericRecord.get("requestid").toString().equals(sample.get("requestid").toString())) {
+                expectedPoint.add(genericRecord.get("requestid").toString());
+            }
+        }
+
+        try (AvroIndexedReader avroIndexedReader = new AvroIndexedReader(avroFile)) {
+            assertEquals("the expected and actual results should be same", expectedRange,
+                    find(avroIndexedReader, fromMillis, toMillis, Collections.singletonMap("bucket", bucket)));
+            assertEquals("the expected and actual results should be same", expectedPoint,
+                    find(avroIndexedReader, Long.MIN_VALUE, Long.MAX_VALUE,
+                            Collections.singletonMap("requestid", sample.get("requestid").toString())));
+        }
+    }
+
+    /**
+     * findTest() will test find() method of AvroIndexedReader
+     * by looking up a bucket in a time range, a single request id and a request id which isn't in the file
+     * and checks if they find the same audit logs as a full scan while reading only a few blocks for a request id
+     * @throws IOException
+     */
+    @Test
+    public void findTest() throws IOException {
+        List<GenericRecord> genericRecords = readAll();
+        checkLookups(genericRecords);
+
+        try (AvroIndexedReader avroIndexedReader = new AvroIndexedReader(avroFile)) {
+            List<AvroBlockIndex.Block> blocks = avroIndexedReader.getIndex().getBlocks();
+            assertTrue("the sample avro file should have many blocks", blocks.size() > 20);
+            long records = 0;
+            for (AvroBlockIndex.Block block : blocks) {
+                records += block.getRecords();
+            }
+            assertEquals("every audit log should be in an indexed block", genericRecords.size(), records);
+            assertEquals("the index should end with the avro file", avroFile.length(),
+                    blocks.get(blocks.size() - 1).getEnd());
+
+            Map<String, String> values = new HashMap<>();
+            values.put("requestid", genericRecords.get(7).get("requestid").toString());
+            values.put("bucket", genericRecords.get(7).get("bucket").toString());
+            assertEquals("the expected and actual results should be same", 1,
+                    avroIndexedReader.find(Long.MIN_VALUE, Long.MAX_VALUE, values, genericRecord -> { }));
+            List<String> indexedFields = avroIndexedReader.getIndex().getFields();
+            long candidateBlocks = 0;
+            for (AvroBlockIndex.Block block : blocks) {
+                if (block.mightContain(indexedFields.indexOf("requestid"), values.get("requestid"))
+                        && block.mightContain(indexedFields.indexOf("bucket"), values.get("bucket"))) {
+                    candidateBlocks++;
+                }
+            }
+            assertEquals("only the blocks which may have the request id should be read", candidateBlocks,
+                    avroIndexedReader.getBlocksRead());
+            assertTrue("only a few blocks should be read", candidateBlocks <= 3);
+            assertEquals("the expected and actual results should be same", 0,
+                    avroIndexedReader.find(Long.MIN_VALUE, Long.MAX_VALUE,
+                            Collections.singletonMap("requestid", "NOSUCHREQUEST"), genericRecord -> { }));
+        }
+    }
+
+    /**
+     * findWithoutIndexTest() will test find() method of AvroIndexedReader
+     * with an index which lost its last blocks, after appending to the avro file and without index
+     * and checks if the blocks missing from the index are still read
+     * @throws IOException
+     */
+    @Test
+    public void findWithoutIndexTest() throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "rw")) {
+            randomAccessFile.setLength(indexFile.length() * 2 / 3);
+        }
+        checkLookups(readAll());
+
+        writeAvroFile(true);
+        List<GenericRecord> genericRecords = readAll();
+        List<AvroBlockIndex.Block> blocks = AvroBlockIndex.read(indexFile).getBlocks();
+        assertEquals("the appended blocks should be indexed", avroFile.length(), blocks.get(blocks.size() - 1).getEnd());
+        checkLookups(genericRecords);
+
+        indexFile.delete();
+        checkLookups(genericRecords);
+    }
+
+    /**
+     * delete the sample directory and files after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(inputDirectory);
+        avroFile.delete();
+        indexFile.delete();
+    }
+}
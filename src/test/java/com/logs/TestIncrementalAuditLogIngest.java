@@ -0,0 +1,206 @@
+package com.logs;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static com.logs.AuditLogFixtures.sampleLogEntry;
+import static org.junit.Assert.*;
+
+/**
+ * TestIncrementalAuditLogIngest will implement different tests on IncrementalAuditLogIngest class methods
+ */
+public class TestIncrementalAuditLogIngest {
+
+    /**
+     * sample directories and files to test
+     */
+    private final File inputDirectory = new File("incrementalInputDirectory");
+    private final File outputDirectory = new File("incrementalOutputDirectory");
+    private final File firstSampleFile = new File(inputDirectory, "sampleFile1.txt");
+    private final File secondSampleFile = new File(inputDirectory, "sampleFile2.txt");
+    private final File avroFile = new File(outputDirectory, IncrementalAuditLogIngest.AVRO_FILE_NAME);
+    private final File csvFile = new File(outputDirectory, IncrementalAuditLogIngest.CSV_FILE_NAME);
+
+    private IncrementalAuditLogIngest incrementalAuditLogIngest;
+
+    /**
+     * creates the sample directories before each test
+     */
+    @Before
+    public void setUp() {
+        inputDirectory.mkdir();
+        outputDirectory.mkdir();
+        incrementalAuditLogIngest = new IncrementalAuditLogIngest(
+                new ParallelAuditLogParser(new S3LogParser(), 2, true), outputDirectory, false);
+    }
+
+    private void appendAuditLogs(File file, String prefix, int numberOfLogs) throws IOException {
+        try (FileWriter fw = new FileWriter(file, true)) {
+            for (int i = 0; i < numberOfLogs; i++) {
+                fw.write(sampleLogEntry(prefix + i) + "\n");
+            }
+        }
+    }
+
+    private long countAvroRecords() throws IOException {
+        long count = 0;
+        try (DataFileReader<GenericRecord> dataFileReader =
+                     new DataFileReader<>(avroFile, new GenericDatumReader<GenericRecord>())) {
+            while (dataFileReader.hasNext()) {
+                dataFileReader.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * ingestTest() will test ingest() method
+     * by running it again without changes, after touching a file, after appending to a file and after adding a file
+     * and checks if only new audit logs are parsed and appended to the outputs
+     * @throws IOException
+     */
+    @Test
+    public void ingestTest() throws IOException {
+        appendAuditLogs(firstSampleFile, "first", 5);
+        assertEquals("all audit logs should be parsed on the first run", 5, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        assertEquals("nothing should be parsed when nothing changed", 0, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        firstSampleFile.setLastModified(firstSampleFile.lastModified() + 10000);
+        assertEquals("a touched file should not be parsed again", 0, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+
+        appendAuditLogs(firstSampleFile, "firstAppended", 2);
+        appendAuditLogs(secondSampleFile, "second", 3);
+        assertEquals("only new audit logs should be parsed", 5, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+
+        assertEquals("the avro file should have every audit log once", 10, countAvroRecords());
+        assertEquals("the csv file should have a single header and every audit log once", 11,
+                Files.readAllLines(csvFile.toPath()).size());
+    }
+
+    /**
+     * ingestRecoveryTest() will test ingest() method
+     * after a run which wrote into the outputs and the dead letter file but didn't finish
+     * and checks if the unfinished data is dropped before appending
+     * @throws IOException
+     */
+    @Test
+    public void ingestRecoveryTest() throws IOException {
+        File deadLetterFile = new File(outputDirectory, "rejects.txt");
+        incrementalAuditLogIngest = new IncrementalAuditLogIngest(new ParallelAuditLogParser(new S3LogParser(), 2, true),
+                outputDirectory, false, new OutputOptions().setDeadLetterFile(deadLetterFile));
+        appendAuditLogs(firstSampleFile, "first", 3);
+        try (FileWriter fw = new FileWriter(firstSampleFile, true)) {
+            fw.write("not an audit log\n");
+        }
+        incrementalAuditLogIngest.ingest(inputDirectory.getPath());
+        try (FileWriter fw = new FileWriter(csvFile, true)) {
+            fw.write("half written row");
+        }
+        try (FileWriter fw = new FileWriter(deadLetterFile, true)) {
+            fw.write("half written reject");
+        }
+        appendAuditLogs(secondSampleFile, "second", 2);
+        assertEquals("only new audit logs should be parsed", 2, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        assertEquals("the csv file should not have the unfinished data", 6, Files.readAllLines(csvFile.toPath()).size());
+        assertEquals("the avro file should have every audit log once", 5, countAvroRecords());
+        assertEquals("the dead letter file should not have the unfinished data", 1,
+                Files.readAllLines(deadLetterFile.toPath()).size());
+    }
+
+    /**
+     * ingestContentHashTest() will test ingest() method with content hashing
+     * by touching a file without changing it, rewriting a file with the same size and appending to the rewritten file
+     * and checks if neither file is parsed again but what is appended afterwards is
+     * @throws IOException
+     */
+    @Test
+    public void ingestContentHashTest() throws IOException {
+        incrementalAuditLogIngest = new IncrementalAuditLogIngest(
+                new ParallelAuditLogParser(new S3LogParser(), 1, true), outputDirectory, true);
+        appendAuditLogs(firstSampleFile, "a", 2);
+        appendAuditLogs(secondSampleFile, "b", 2);
+        incrementalAuditLogIngest.ingest(inputDirectory.getPath());
+
+        firstSampleFile.setLastModified(firstSampleFile.lastModified() + 10000);
+        secondSampleFile.delete();
+        appendAuditLogs(secondSampleFile, "c", 2);
+        secondSampleFile.setLastModified(secondSampleFile.lastModified() + 20000);
+        assertEquals("a rewritten file should not be parsed again", 0, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        appendAuditLogs(secondSampleFile, "d", 1);
+        assertEquals("only what is appended after the rewrite should be parsed", 1,
+                incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        assertEquals("the avro file should have every audit log once", 5, countAvroRecords());
+    }
+
+    /**
+     * ingestSettleTest() will test ingest() method with a settle time
+     * by ingesting a file whose last line is still being written
+     * and checks if the last line is only parsed once it is complete or the file settled
+     * @throws IOException
+     */
+    @Test
+    public void ingestSettleTest() throws IOException {
+        incrementalAuditLogIngest.setSettleMillis(60_000);
+        appendAuditLogs(firstSampleFile, "first", 2);
+        String halfLine = sampleLogEntry("half");
+        try (FileWriter fw = new FileWriter(firstSampleFile, true)) {
+            fw.write(halfLine.substring(0, 100));
+        }
+        assertEquals("only complete lines should be parsed", 2, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        assertEquals("nothing should be parsed while the line is incomplete", 0,
+                incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+
+        try (FileWriter fw = new FileWriter(firstSampleFile, true)) {
+            fw.write(halfLine.substring(100) + "\n" + halfLine);
+        }
+        assertEquals("the completed line should be parsed", 1, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        firstSampleFile.setLastModified(System.currentTimeMillis() - 120_000);
+        assertEquals("the last line should be parsed once the file settled", 1,
+                incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        assertEquals("the avro file should have every audit log once", 4, countAvroRecords());
+    }
+
+    /**
+     * rollOutputsTest() will test rollOutputs() method
+     * by rolling the outputs between two runs
+     * and checks if the next run writes new outputs and the rolled outputs keep their audit logs
+     * @throws IOException
+     */
+    @Test
+    public void rollOutputsTest() throws IOException {
+        appendAuditLogs(firstSampleFile, "first", 3);
+        incrementalAuditLogIngest.ingest(inputDirectory.getPath());
+        List<File> rolledFiles = incrementalAuditLogIngest.rollOutputs("20211018-120000");
+        assertEquals("the expected and actual results should be same",
+                Arrays.asList(new File(outputDirectory, "data-20211018-120000.avro"),
+                        new File(outputDirectory, "CsvLogs-20211018-120000.csv")), rolledFiles);
+        assertFalse("the avro file should be rolled", avroFile.exists());
+
+        appendAuditLogs(firstSampleFile, "firstAppended", 2);
+        assertEquals("only new audit logs should be parsed", 2, incrementalAuditLogIngest.ingest(inputDirectory.getPath()));
+        assertEquals("the new avro file should only have the new audit logs", 2, countAvroRecords());
+        assertEquals("the rolled csv file should keep its audit logs", 4,
+                Files.readAllLines(rolledFiles.get(1).toPath()).size());
+    }
+
+    /**
+     * delete all the sample directories and files after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(inputDirectory);
+        deleteDirectory(outputDirectory);
+    }
+}
@@ -8,6 +8,9 @@ import org.junit.Test;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -63,6 +66,92 @@ public class TestMerger {
         assertTrue("the string 'ijkl' should be in the merged file", fileText.contains("ijkl"));
     }
 
+    /**
+     * mergeFilesTestNewlines() will test the mergeFiles() method in Merger class
+     * by passing files which end with and without a newline
+     * and checks if the bytes are copied as they are and a newline is only added when missing
+     * @throws IOException
+     */
+    @Test
+    public void mergeFilesTestNewlines() throws IOException {
+        try (FileWriter fw = new FileWriter(firstSampleFile);
+             FileWriter fw1 = new FileWriter(secondSampleFile);
+             FileWriter fw2 = new FileWriter(thirdSampleFile)) {
+            fw.write("abcd\r\nefgh");
+            fw1.write("ijkl\n");
+            fw2.write("");
+        }
+        merger.mergeFiles(sampleDirectory.getPath());
+        String str = new String(Files.readAllBytes(Paths.get(auditLogFile.getPath())));
+        assertEquals("only the missing newline should be added", "abcd\r\nefgh\n".length() + "ijkl\n".length(), str.length());
+        assertTrue("the first file should be copied as it is with a newline added", str.contains("abcd\r\nefgh\n"));
+        assertTrue("the second file should be copied as it is", str.contains("ijkl\n"));
+    }
+
+    /**
+     * mergeFilesTestTimestampOrder() will test the mergeFiles() method in timestamp order
+     * by passing files whose time ranges overlap and a line without timestamp
+     * and checks if the merged file is ordered by timestamp
+     * @throws IOException
+     */
+    @Test
+    public void mergeFilesTestTimestampOrder() throws IOException {
+        try (FileWriter fw = new FileWriter(firstSampleFile);
+             FileWriter fw1 = new FileWriter(secondSampleFile);
+             FileWriter fw2 = new FileWriter(thirdSampleFile)) {
+            fw.write("owner bucket [13/May/2021:11:26:01 +0000] a1\n"
+                    + "owner bucket [13/May/2021:11:26:04 +0000] a4\n"
+                    + "junk line a4b\n"
+                    + "owner bucket [13/May/2021:11:26:07 +0000] a7\n");
+            fw1.write("owner bucket [13/May/2021:11:26:02 +0000] b2\n"
+                    + "owner bucket [13/May/2021:11:26:06 +0000] b6\n");
+            fw2.write("owner bucket [13/May/2021:12:26:03 +0100] c3\n"
+                    + "owner bucket [13/May/2021:11:26:05 +0000] c5");
+        }
+        merger.mergeFiles(sampleDirectory.getPath(), true);
+        List<String> lines = Files.readAllLines(Paths.get(auditLogFile.getPath()));
+        List<String> ids = new ArrayList<>();
+        for (String line : lines) {
+            ids.add(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        assertEquals("the audit logs should be ordered by timestamp",
+                Arrays.asList("a1", "b2", "c3", "a4", "a4b", "c5", "b6", "a7"), ids);
+    }
+
+    /**
+     * mergeInTimestampOrderTestManyFiles() will test the timestamp ordered merge
+     * with more files than can be open at the same time
+     * and checks if all audit logs are merged in order and the temporary files are deleted
+     * @throws IOException
+     */
+    @Test
+    public void mergeInTimestampOrderTestManyFiles() throws IOException {
+        List<File> files = new ArrayList<>();
+        try {
+            int numberOfFiles = Merger.MAX_OPEN_FILES + 3;
+            for (int i = 0; i < numberOfFiles; i++) {
+                File file = new File(sampleDirectory, "many" + i);
+                try (FileWriter fw = new FileWriter(file)) {
+                    fw.write(String.format("o b [13/May/2021:11:%02d:%02d +0000] %d%n", i / 60 % 60, i % 60, i));
+                }
+                files.add(0, file);
+            }
+            merger.mergeInTimestampOrder(files, auditLogFile);
+            List<String> lines = Files.readAllLines(Paths.get(auditLogFile.getPath()));
+            assertEquals("all audit logs should be merged", numberOfFiles, lines.size());
+            for (int i = 0; i < numberOfFiles; i++) {
+                assertTrue("the audit logs should be ordered by timestamp", lines.get(i).endsWith("] " + i));
+            }
+            String[] temporaryFiles = auditLogFile.getAbsoluteFile().getParentFile().list(
+                    (directory, name) -> name.startsWith("AuditLogMerge") && name.endsWith(".tmp"));
+            assertEquals("the temporary files should be deleted", 0, temporaryFiles.length);
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
     /**
      * mergeFilesTestEmpty() will test the mergeFiles()
      * by passing an empty directory and checks if merged file is created or not
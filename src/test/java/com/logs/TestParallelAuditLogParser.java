@@ -0,0 +1,168 @@
+package com.logs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static com.logs.AuditLogFixtures.sampleLogEntry;
+import static org.junit.Assert.*;
+
+/**
+ * TestParallelAuditLogParser will implement different tests on ParallelAuditLogParser class methods
+ */
+public class TestParallelAuditLogParser {
+
+    private static final int NUMBER_OF_LOGS = 500;
+
+    private final S3LogParser s3LogParser = new S3LogParser();
+
+    /**
+     * sample file to test
+     */
+    private final File sampleAuditLogFile = new File("sampleparallelauditlogfile.txt");
+
+    /**
+     * creates the sample file before each test, with a line without referrer header every ten lines
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        try (FileWriter fw = new FileWriter(sampleAuditLogFile)) {
+            for (int i = 0; i < NUMBER_OF_LOGS; i++) {
+                String singleAuditLog = sampleLogEntry("REQUEST" + i);
+                if (i % 10 == 9) {
+                    singleAuditLog = singleAuditLog.replaceAll("\"https://[^\"]*\"", "-");
+                }
+                fw.write(singleAuditLog + (i % 2 == 0 ? "\n" : "\r\n"));
+            }
+        }
+    }
+
+    private List<String> parseRequestIds(ParallelAuditLogParser parallelAuditLogParser) throws IOException {
+        List<String> requestIds = Collections.synchronizedList(new ArrayList<>());
+        long count = parallelAuditLogParser.parseWholeAuditLog(sampleAuditLogFile.getPath(),
+                auditLogRecord -> requestIds.add(auditLogRecord.getAuditLogMap().get("requestid")));
+        assertEquals("the returned count should match the written audit logs", requestIds.size(), count);
+        return requestIds;
+    }
+
+    /**
+     * parseWholeAuditLogOrderedTest() will test parseWholeAuditLog() method in ordered mode
+     * with small chunks, so the file is split into many ranges,
+     * and checks if the audit logs are the same and in the same order as with a single thread
+     * @throws IOException
+     */
+    @Test
+    public void parseWholeAuditLogOrderedTest() throws IOException {
+        List<String> expected = new ArrayList<>();
+        s3LogParser.parseWholeAuditLog(sampleAuditLogFile.getPath(),
+                auditLogRecord -> expected.add(auditLogRecord.getAuditLogMap().get("requestid")));
+        assertEquals("the expected and actual results should be same", NUMBER_OF_LOGS - NUMBER_OF_LOGS / 10, expected.size());
+
+        List<String> actual = parseRequestIds(new ParallelAuditLogParser(s3LogParser, 4, true, 1000));
+        assertEquals("the audit logs should be parsed in the order of the file", expected, actual);
+    }
+
+    /**
+     * parseWholeAuditLogUnorderedTest() will test parseWholeAuditLog() method in unordered mode
+     * and checks if every audit log is parsed exactly once
+     * @throws IOException
+     */
+    @Test
+    public void parseWholeAuditLogUnorderedTest() throws IOException {
+        List<String> actual = parseRequestIds(new ParallelAuditLogParser(s3LogParser, 4, false, 1000));
+        assertEquals("the expected and actual results should be same", NUMBER_OF_LOGS - NUMBER_OF_LOGS / 10, actual.size());
+        assertEquals("every audit log should be parsed exactly once", actual.size(), new HashSet<>(actual).size());
+    }
+
+    /**
+     * parseWholeAuditLogLargeChunkTest() will test parseWholeAuditLog() method
+     * with a chunk larger than the file and checks if the whole file is parsed
+     * @throws IOException
+     */
+    @Test
+    public void parseWholeAuditLogLargeChunkTest() throws IOException {
+        List<String> actual = parseRequestIds(new ParallelAuditLogParser(s3LogParser, 2, true));
+        assertEquals("the expected and actual results should be same", NUMBER_OF_LOGS - NUMBER_OF_LOGS / 10, actual.size());
+        assertEquals("the expected and actual results should be same", "REQUEST0", actual.get(0));
+    }
+
+    /**
+     * parseAuditLogDirectoryTest() will test parseAuditLogDirectory() method
+     * by passing a directory with the sample file split into two files, an empty file and a sub directory
+     * and checks if the audit logs are the same as after merging the files, without writing a merged file
+     * @throws IOException
+     */
+    @Test
+    public void parseAuditLogDirectoryTest() throws IOException {
+        File sampleDirectory = new File("sampleParallelDirectory");
+        File subDirectory = new File(sampleDirectory, "subDirectory");
+        File firstSampleFile = new File(sampleDirectory, "sampleFile1.txt");
+        File secondSampleFile = new File(sampleDirectory, "sampleFile2.txt");
+        File emptySampleFile = new File(sampleDirectory, "sampleFile3.txt");
+        File auditLogFile = new File("AuditLogFile");
+        auditLogFile.delete();
+        try {
+            subDirectory.mkdirs();
+            emptySampleFile.createNewFile();
+            List<String> lines = Files.readAllLines(sampleAuditLogFile.toPath());
+            Files.write(firstSampleFile.toPath(), lines.subList(0, 100));
+            Files.write(secondSampleFile.toPath(), lines.subList(100, lines.size()));
+
+            List<String> actual = new ArrayList<>();
+            long count = new ParallelAuditLogParser(s3LogParser, 3, true, 1000).parseAuditLogDirectory(sampleDirectory.getPath(),
+                    auditLogRecord -> actual.add(auditLogRecord.getAuditLogMap().get("requestid")));
+            assertEquals("the expected and actual results should be same", NUMBER_OF_LOGS - NUMBER_OF_LOGS / 10, count);
+            assertEquals("every audit log should be parsed exactly once", actual.size(), new HashSet<>(actual).size());
+            assertFalse("no merged file should be written", auditLogFile.exists());
+        } finally {
+            firstSampleFile.delete();
+            secondSampleFile.delete();
+            emptySampleFile.delete();
+            subDirectory.delete();
+            sampleDirectory.delete();
+        }
+    }
+
+    /**
+     * parseWholeAuditLogRejectTest() will test parseWholeAuditLog() method
+     * with small chunks on several threads
+     * and checks if every line without referrer header is handed over to the sink as rejected, on the calling thread
+     * @throws IOException
+     */
+    @Test
+    public void parseWholeAuditLogRejectTest() throws IOException {
+        Thread callingThread = Thread.currentThread();
+        List<RejectReason> rejectReasons = new ArrayList<>();
+        long count = new ParallelAuditLogParser(s3LogParser, 4, false, 1000).parseWholeAuditLog(sampleAuditLogFile.getPath(),
+                new AuditLogSink() {
+                    @Override
+                    public void write(AuditLogRecord auditLogRecord) {
+                    }
+
+                    @Override
+                    public void reject(String singleAuditLog, RejectReason rejectReason) {
+                        assertSame("rejected lines should reach the sink on the calling thread", callingThread, Thread.currentThread());
+                        rejectReasons.add(rejectReason);
+                    }
+                });
+        assertEquals("the expected and actual results should be same", NUMBER_OF_LOGS - NUMBER_OF_LOGS / 10, count);
+        assertEquals("every line without referrer header should be rejected",
+                Collections.nCopies(NUMBER_OF_LOGS / 10, RejectReason.NO_REFERRER), rejectReasons);
+    }
+
+    /**
+     * delete the sample file after each test
+     * @throws Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        sampleAuditLogFile.delete();
+    }
+}
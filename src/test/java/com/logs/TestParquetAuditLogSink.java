@@ -0,0 +1,133 @@
+package com.logs;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.column.EncodingStats;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.io.LocalInputFile;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestParquetAuditLogSink will implement different tests on ParquetAuditLogSink class methods
+ */
+public class TestParquetAuditLogSink {
+
+    private final File parquetFile = new File("sampleparquetsink.parquet");
+
+    private static final int NUMBER_OF_LOGS = 5000;
+
+    private AuditLogRecord sampleRecord(int i) {
+        Map<String, String> auditLogMap = new HashMap<>();
+        for (String group : S3LogParser.AWS_LOG_REGEXP_GROUPS) {
+            auditLogMap.put(group, "-");
+        }
+        auditLogMap.put("bucket", "bucket-london");
+        auditLogMap.put("verb", i % 3 == 0 ? "REST.GET.OBJECT" : "REST.PUT.OBJECT");
+        auditLogMap.put("requestid", "REQUEST" + i);
+        auditLogMap.put("totaltime", String.valueOf(i));
+        Map<String, String> referrerHeaderMap = new HashMap<>();
+        referrerHeaderMap.put("op", "op_create");
+        referrerHeaderMap.put("pr", "alice");
+        if (i == 0) {
+            referrerHeaderMap.put("unknown", "value");
+        }
+        return new AuditLogRecord(auditLogMap, referrerHeaderMap);
+    }
+
+    /**
+     * writeTest() will test write() method with small row groups
+     * and checks if the records read back have the right values,
+     * if the file has several row groups and if only the low cardinality columns are dictionary encoded
+     * @throws IOException
+     */
+    @Test
+    public void writeTest() throws IOException {
+        OutputOptions outputOptions = new OutputOptions().setParquetRowGroupSize(64 * 1024);
+        try (ParquetAuditLogSink parquetAuditLogSink = new ParquetAuditLogSink(parquetFile, outputOptions)) {
+            for (int i = 0; i < NUMBER_OF_LOGS; i++) {
+                parquetAuditLogSink.write(sampleRecord(i));
+            }
+        }
+
+        try (ParquetReader<GenericRecord> parquetReader =
+                     AvroParquetReader.<GenericRecord>builder(new LocalInputFile(parquetFile.toPath()),
+                             new PlainParquetConfiguration()).build()) {
+            int count = 0;
+            GenericRecord genericRecord;
+            while ((genericRecord = parquetReader.read()) != null) {
+                assertEquals("the expected and actual results should be same", "REQUEST" + count,
+                        genericRecord.get("requestid").toString());
+                assertEquals("the expected and actual results should be same", (long) count, genericRecord.get("totaltime"));
+                assertNull("'-' should be written as null for long values", genericRecord.get("bytessent"));
+                assertEquals("known referrer keys should have their own column", "alice", genericRecord.get("pr").toString());
+                assertNull("missing referrer keys should be null", genericRecord.get("p1"));
+                assertEquals("only other referrer keys should be in the map", count == 0 ? 1 : 0,
+                        ((Map<?, ?>) genericRecord.get("referrerMap")).size());
+                count++;
+            }
+            assertEquals("every record should be written", NUMBER_OF_LOGS, count);
+        }
+
+        try (ParquetFileReader parquetFileReader = ParquetFileReader.open(new LocalInputFile(parquetFile.toPath()))) {
+            List<BlockMetaData> rowGroups = parquetFileReader.getFooter().getBlocks();
+            assertTrue("the row group size should be used", rowGroups.size() > 1);
+            for (ColumnChunkMetaData column : rowGroups.get(0).getColumns()) {
+                String name = column.getPath().toDotString();
+                EncodingStats encodingStats = column.getEncodingStats();
+                assertNotNull(name + " should have encoding stats", encodingStats);
+                boolean dictionary = encodingStats.hasDictionaryPages();
+                if (name.equals("verb") || name.equals("op")) {
+                    assertTrue(name + " should be dictionary encoded", dictionary);
+                } else if (name.equals("requestid") || name.equals("bucket")) {
+                    assertFalse(name + " should not be dictionary encoded", dictionary);
+                }
+            }
+        }
+    }
+
+    /**
+     * writeProjectionTest() will test write() method with a field projection
+     * and checks if only the projected columns and referrer keys are in the file
+     * @throws IOException
+     */
+    @Test
+    public void writeProjectionTest() throws IOException {
+        OutputOptions outputOptions = new OutputOptions().setProjection(FieldProjection.of("verb", "totaltime", "pr"));
+        try (ParquetAuditLogSink parquetAuditLogSink = new ParquetAuditLogSink(parquetFile, outputOptions)) {
+            for (int i = 0; i < 10; i++) {
+                parquetAuditLogSink.write(sampleRecord(i));
+            }
+        }
+
+        try (ParquetReader<GenericRecord> parquetReader =
+                     AvroParquetReader.<GenericRecord>builder(new LocalInputFile(parquetFile.toPath()),
+                             new PlainParquetConfiguration()).build()) {
+            GenericRecord genericRecord = parquetReader.read();
+            assertEquals("only the projected columns should be written", 3, genericRecord.getSchema().getFields().size());
+            assertEquals("the expected and actual results should be same", "REST.GET.OBJECT", genericRecord.get("verb").toString());
+            assertEquals("the expected and actual results should be same", 0L, genericRecord.get("totaltime"));
+            assertEquals("the expected and actual results should be same", "alice", genericRecord.get("pr").toString());
+        }
+    }
+
+    /**
+     * delete the sample file after each test
+     */
+    @After
+    public void tearDown() {
+        parquetFile.delete();
+    }
+}
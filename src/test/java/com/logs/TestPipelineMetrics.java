@@ -0,0 +1,103 @@
+package com.logs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static com.logs.AuditLogFixtures.deleteDirectory;
+import static org.junit.Assert.*;
+
+/**
+ * TestPipelineMetrics will implement different tests on PipelineMetrics and StageMetrics class methods
+ */
+public class TestPipelineMetrics {
+
+    /**
+     * sample directory to test
+     */
+    private final File auditLogsDirectory = new File("metricsDirectory");
+
+    /**
+     * percentileTest() will test percentileNanos() method
+     * by recording known latencies into the histogram of a stage
+     * and checks if the percentiles are within the precision of the histogram
+     */
+    @Test
+    public void percentileTest() {
+        StageMetrics stageMetrics = new PipelineMetrics().stage(PipelineMetrics.Stage.TOKENIZE);
+        for (int i = 1; i <= 1000; i++) {
+            stageMetrics.recordBatch(1, 100, i * 1000L);
+        }
+        assertEquals("the expected and actual results should be same", 1000, stageMetrics.getRecords());
+        assertEquals("the expected and actual results should be same", 100_000, stageMetrics.getBytes());
+        assertEquals("the p50 should be about 500 us", 500_000, stageMetrics.getP50LatencyNanos(), 500_000 / 16.0);
+        assertEquals("the p99 should be about 990 us", 990_000, stageMetrics.getP99LatencyNanos(), 990_000 / 16.0);
+        assertEquals("the expected and actual results should be same", 500_500, stageMetrics.getMeanLatencyNanos());
+        for (long nanos = 1; nanos < Long.MAX_VALUE / 2; nanos = nanos * 3 + 1) {
+            int bucket = StageMetrics.bucket(nanos);
+            assertTrue("every value should be in its bucket : " + nanos,
+                    StageMetrics.lowerBound(bucket) <= nanos && nanos < StageMetrics.lowerBound(bucket + 1));
+        }
+    }
+
+    /**
+     * parseAuditLogDirectoryTest() will test the metrics of parseAuditLogDirectory() method
+     * by parsing generated audit logs with malformed lines on several threads
+     * and checks if every stage counted every audit log and if the MBeans show the same counts
+     * @throws Exception
+     */
+    @Test
+    public void parseAuditLogDirectoryTest() throws Exception {
+        long bytes = new AuditLogGenerator().setSeed(5).setFiles(3).setTotalBytes(600 * 1024).setMalformedRate(0.05)
+                .writeAuditLogFiles(auditLogsDirectory);
+        try (PipelineMetrics pipelineMetrics = new PipelineMetrics()) {
+            pipelineMetrics.registerMBeans();
+            S3LogParser s3LogParser = new S3LogParser(S3LogParser.ParsingMode.TOKENIZER, true, pipelineMetrics);
+            ParallelAuditLogParser parallelAuditLogParser = new ParallelAuditLogParser(s3LogParser, 3, true, 64 * 1024);
+            long count;
+            try (AuditLogSink auditLogSink = MeteredAuditLogSink.meter(auditLogRecord -> { }, pipelineMetrics,
+                    PipelineMetrics.Stage.CSV_WRITE)) {
+                count = parallelAuditLogParser.parseAuditLogDirectory(auditLogsDirectory.getPath(), auditLogSink);
+            }
+
+            StageMetrics read = pipelineMetrics.stage(PipelineMetrics.Stage.READ);
+            StageMetrics tokenize = pipelineMetrics.stage(PipelineMetrics.Stage.TOKENIZE);
+            assertEquals("every byte should be read", bytes, read.getBytes());
+            assertEquals("every line should be tokenized", read.getRecords(), tokenize.getRecords());
+            assertEquals("every malformed line should be counted", read.getRecords() - count, tokenize.getMalformedRecords());
+            assertTrue("some lines should be malformed", tokenize.getMalformedRecords() > 0);
+            assertEquals("every well formed line should have its referrer header parsed", count,
+                    pipelineMetrics.stage(PipelineMetrics.Stage.REFERRER).getRecords());
+            assertEquals("every parsed audit log should be written", count,
+                    pipelineMetrics.stage(PipelineMetrics.Stage.CSV_WRITE).getRecords());
+            long writtenBytes = pipelineMetrics.stage(PipelineMetrics.Stage.CSV_WRITE).getBytes();
+            assertTrue("the bytes of the well formed lines should be written : " + writtenBytes,
+                    writtenBytes > 0 && writtenBytes < tokenize.getBytes());
+            assertTrue("some audit logs should be timed", tokenize.getP50LatencyNanos() > 0);
+            assertTrue("the progress line should show the stages : " + pipelineMetrics.progressLine(),
+                    pipelineMetrics.progressLine().contains(" | tokenize " + tokenize.getRecords() + " records"));
+
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.logs:type=PipelineMetrics,stage=tokenize");
+            assertEquals("the MBean should show the same count", tokenize.getRecords(),
+                    mBeanServer.getAttribute(objectName, "Records"));
+            assertEquals("the MBean should show the same count", tokenize.getMalformedRecords(),
+                    mBeanServer.getAttribute(objectName, "MalformedRecords"));
+        }
+        assertFalse("the MBeans should be unregistered when closed", ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(new ObjectName("com.logs:type=PipelineMetrics,stage=tokenize")));
+    }
+
+    /**
+     * delete the sample directory after each test
+     */
+    @After
+    public void tearDown() {
+        deleteDirectory(auditLogsDirectory);
+    }
+}
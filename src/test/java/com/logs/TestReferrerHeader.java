@@ -0,0 +1,92 @@
+package com.logs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestReferrerHeader will implement different tests on ReferrerHeader class methods
+ */
+public class TestReferrerHeader {
+
+    private final String SAMPLE_REFERRER_HEADER =
+            "\"https://audit.example.org/hadoop/1/op_create/e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278/?"
+                    + "op=op_create"
+                    + "&p1=fork-0001/test/testParseBrokenCSVFile"
+                    + "&pr=alice"
+                    + "&ps=2eac5a04-2153-48db-896a-09bc9a2fd132"
+                    + "&id=e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278&t0=154"
+                    + "&fs=e8ede3c7-8506-4a43-8268-fe8fcbb510a4&t1=156"
+                    + "&ts=1620905165700\"";
+
+    /**
+     * parseTest() will test parse() method
+     * by passing the sample referrer header
+     * and checks if it is the same map as the key-value pairs of its query
+     */
+    @Test
+    public void parseTest() {
+        ReferrerHeader referrerHeader = ReferrerHeader.parse(SAMPLE_REFERRER_HEADER, null, null);
+        Map<String, String> expected = new HashMap<>();
+        expected.put("op", "op_create");
+        expected.put("p1", "fork-0001/test/testParseBrokenCSVFile");
+        expected.put("pr", "alice");
+        expected.put("ps", "2eac5a04-2153-48db-896a-09bc9a2fd132");
+        expected.put("id", "e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278");
+        expected.put("t0", "154");
+        expected.put("fs", "e8ede3c7-8506-4a43-8268-fe8fcbb510a4");
+        expected.put("t1", "156");
+        expected.put("ts", "1620905165700");
+        assertEquals("the expected and actual results should be same", expected, referrerHeader);
+        assertEquals("the expected and actual results should be same", expected.hashCode(), referrerHeader.hashCode());
+        assertEquals("the expected and actual results should be same", 9, referrerHeader.size());
+        assertTrue("the known key should be found", referrerHeader.containsKey("pr"));
+        assertFalse("an absent key should not be found", referrerHeader.containsKey("p2"));
+        assertNull("an absent key should not have a value", referrerHeader.get("cm"));
+        assertTrue("there should be no other keys", referrerHeader.getOtherKeys().isEmpty());
+    }
+
+    /**
+     * parseOtherKeysTest() will test parse() method
+     * by passing a referrer header with unknown keys, escapes and a repeated key
+     * and checks if unknown keys are kept, values are percent-decoded and the last value of a key is used
+     */
+    @Test
+    public void parseOtherKeysTest() {
+        ReferrerHeader referrerHeader = ReferrerHeader.parse(
+                "\"https://audit.example.org/hadoop/1/op_open/span/?op=op_open&p1=dir%2Fa%20b%C3%A9.txt&pr=bob"
+                        + "&xx=1&custom=%E2%82%AC%&pr=carol\"", new StringDictionary[S3LogParser.REFERRER_HEADER_KEYS.size()], null);
+        assertEquals("the expected and actual results should be same", "dir/a b\u00e9.txt", referrerHeader.get("p1"));
+        assertEquals("the last value of a key should be used", "carol", referrerHeader.get("pr"));
+        assertEquals("the expected and actual results should be same", "1", referrerHeader.get("xx"));
+        assertEquals("an incomplete escape should be kept", "\u20ac%", referrerHeader.get("custom"));
+        Map<String, String> otherKeys = new HashMap<>();
+        otherKeys.put("xx", "1");
+        otherKeys.put("custom", "\u20ac%");
+        assertEquals("the expected and actual results should be same", otherKeys, referrerHeader.getOtherKeys());
+        assertEquals("the expected and actual results should be same", 5, referrerHeader.size());
+        assertEquals("the expected and actual results should be same", 5, referrerHeader.entrySet().size());
+    }
+
+    /**
+     * getPathSegmentsTest() will test getPathSegments() method
+     * by passing an S3A referrer header and headers which are not urls
+     * and checks if the path is split into its segments
+     */
+    @Test
+    public void getPathSegmentsTest() {
+        assertEquals("the expected and actual results should be same",
+                Arrays.asList("hadoop", "1", "op_create", "e8ede3c7-8506-4a43-8268-fe8fcbb510a4-00000278"),
+                ReferrerHeader.parse(SAMPLE_REFERRER_HEADER, null, null).getPathSegments());
+        assertEquals("the expected and actual results should be same", Arrays.asList("a", "b"),
+                ReferrerHeader.parse("\"https://example.org/a//b\"", null, null).getPathSegments());
+        assertEquals("the expected and actual results should be same", Collections.emptyList(),
+                ReferrerHeader.parse("-", null, null).getPathSegments());
+        assertTrue("the empty referrer header should be empty", ReferrerHeader.empty().isEmpty());
+    }
+}
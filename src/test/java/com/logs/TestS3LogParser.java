@@ -7,9 +7,14 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import static org.junit.Assert.*;
 
@@ -127,6 +132,40 @@ public class TestS3LogParser {
         assertTrue("the returned list should be empty for this test", parseAuditLogResultEmpty.isEmpty());
     }
 
+    /**
+     * parseAuditLogTokenizerTest() will test parseAuditLog() method
+     * by parsing the sample audit log and variants of it with the tokenizer and with the regular expression
+     * and checks if both give exactly the same key-value pairs
+     */
+    @Test
+    public void parseAuditLogTokenizerTest() {
+        S3LogParser regexParser = new S3LogParser(S3LogParser.ParsingMode.REGEX);
+        S3LogParser tokenizerParser = new S3LogParser(S3LogParser.ParsingMode.TOKENIZER);
+        String[] auditLogs = {
+                SAMPLE_LOG_ENTRY,
+                SAMPLE_LOG_ENTRY + " -",
+                SAMPLE_LOG_ENTRY + " extra fields at the tail",
+                SAMPLE_LOG_ENTRY.replace(" 200 ", " - "),
+                SAMPLE_LOG_ENTRY.replace(" 200 ", " 2x0 "),
+                SAMPLE_LOG_ENTRY.replace("[13/May/2021:11:26:06 +0000]", "[13/May/2021] 11:26:06 +0000]"),
+                SAMPLE_LOG_ENTRY.replace("\"Hadoop 3.4.0-SNAPSHOT, java/1.8.0_282 vendor/AdoptOpenJDK\"", "-"),
+                SAMPLE_LOG_ENTRY.replace("\"Hadoop 3.4.0-SNAPSHOT, java/1.8.0_282 vendor/AdoptOpenJDK\"", "-x"),
+                SAMPLE_LOG_ENTRY + "\r",
+                SAMPLE_LOG_ENTRY + " -\r",
+                SAMPLE_LOG_ENTRY.substring(0, 200),
+                "not an audit log"
+        };
+        for (String auditLog : auditLogs) {
+            assertEquals("the tokenizer and the regular expression should give the same result for " + auditLog,
+                    regexParser.parseAuditLog(auditLog), tokenizerParser.parseAuditLog(auditLog));
+        }
+        assertEquals("the expected and actual results should be same", "[13/May/2021:11:26:06 +0000]",
+                tokenizerParser.parseAuditLog(SAMPLE_LOG_ENTRY).get("timestamp"));
+        assertEquals("the expected and actual results should be same", "",
+                tokenizerParser.parseAuditLog(SAMPLE_LOG_ENTRY).get("tail"));
+        assertTrue("the returned map should be empty for this test", tokenizerParser.parseAuditLog("not an audit log").isEmpty());
+    }
+
     /**
      * parseReferrerHeaderTest() will test parseReferrerHeader() method
      * by passing sample referrer header taken from sample audit log
@@ -142,6 +181,91 @@ public class TestS3LogParser {
         assertEquals("the expected and actual results should be same","alice", parseReferrerHeaderResult.get("pr"));
     }
 
+    /**
+     * parseAuditLogInternTest() will test parseAuditLog() and parseReferrerHeader() methods
+     * by parsing two copies of the sample audit log
+     * and checks if low cardinality values are shared and other values are not
+     */
+    @Test
+    public void parseAuditLogInternTest() {
+        Map<String, String> first = s3LogParser.parseAuditLog(new String(SAMPLE_LOG_ENTRY));
+        Map<String, String> second = s3LogParser.parseAuditLog(new String(SAMPLE_LOG_ENTRY));
+        assertEquals("the expected and actual results should be same", first, second);
+        assertSame("the bucket should be shared", first.get("bucket"), second.get("bucket"));
+        assertSame("the user agent should be shared", first.get("useragent"), second.get("useragent"));
+        assertNotSame("the request id should not be shared", first.get("requestid"), second.get("requestid"));
+
+        Map<String, String> firstReferrer = s3LogParser.parseReferrerHeader(new String(SAMPLE_REFERRER_HEADER));
+        Map<String, String> secondReferrer = s3LogParser.parseReferrerHeader(new String(SAMPLE_REFERRER_HEADER));
+        assertEquals("the expected and actual results should be same", firstReferrer, secondReferrer);
+        assertSame("the principal should be shared", firstReferrer.get("pr"), secondReferrer.get("pr"));
+        assertNotSame("the path should not be shared", firstReferrer.get("p1"), secondReferrer.get("p1"));
+
+        S3LogParser notInterningParser = new S3LogParser(S3LogParser.ParsingMode.TOKENIZER, false);
+        assertNotSame("the bucket should not be shared without interning",
+                notInterningParser.parseAuditLog(SAMPLE_LOG_ENTRY).get("bucket"),
+                notInterningParser.parseAuditLog(SAMPLE_LOG_ENTRY).get("bucket"));
+        assertEquals("the expected and actual results should be same", first, notInterningParser.parseAuditLog(SAMPLE_LOG_ENTRY));
+    }
+
+    /**
+     * parseAuditLogRecordTest() will test parseAuditLogRecord() method
+     * by passing the sample audit log and one without referrer header
+     * and checks if the timestamp is decoded and logs without referrer header are skipped
+     */
+    @Test
+    public void parseAuditLogRecordTest() {
+        AuditLogRecord auditLogRecord = s3LogParser.parseAuditLogRecord(SAMPLE_LOG_ENTRY);
+        assertNotNull("the result of parseAuditLogRecord should be not null", auditLogRecord);
+        assertEquals("the expected and actual results should be same", 1620905166000L, auditLogRecord.getTimestampMillis());
+        assertEquals("the expected and actual results should be same", "alice", auditLogRecord.getReferrerHeaderMap().get("pr"));
+        assertNull("a log without referrer header should be skipped",
+                s3LogParser.parseAuditLogRecord(SAMPLE_LOG_ENTRY.replace(SAMPLE_REFERRER_HEADER, "-")));
+    }
+
+    /**
+     * parseAuditLogRecordProjectionTest() will test parseAuditLogRecord() method with a field projection
+     * by passing the sample audit log, one without referrer header and one cut after the projected fields
+     * and checks if only the projected fields are parsed, logs without referrer header are still skipped
+     * and the cut log is rejected in every parsing mode
+     */
+    @Test
+    public void parseAuditLogRecordProjectionTest() {
+        String cutAfterReferrer = SAMPLE_LOG_ENTRY.substring(0, SAMPLE_LOG_ENTRY.indexOf(SAMPLE_REFERRER_HEADER)
+                + SAMPLE_REFERRER_HEADER.length()) + " ";
+        for (S3LogParser.ParsingMode parsingMode : S3LogParser.ParsingMode.values()) {
+            S3LogParser projectingParser = new S3LogParser(parsingMode, true, null,
+                    FieldProjection.parse("op,verb,bucket,http"));
+            AuditLogRecord auditLogRecord = projectingParser.parseAuditLogRecord(SAMPLE_LOG_ENTRY);
+            assertNotNull("the result of parseAuditLogRecord should be not null", auditLogRecord);
+            assertEquals("the expected and actual results should be same", Arrays.asList("bucket", "http", "verb"),
+                    new ArrayList<>(new TreeSet<>(auditLogRecord.getAuditLogMap().keySet())));
+            assertEquals("the expected and actual results should be same", "REST.PUT.OBJECT",
+                    auditLogRecord.getAuditLogMap().get("verb"));
+            assertEquals("the expected and actual results should be same", "200", auditLogRecord.getAuditLogMap().get("http"));
+            assertEquals("the expected and actual results should be same", "op_create",
+                    auditLogRecord.getReferrerHeaderMap().get("op"));
+            assertEquals("only the projected referrer keys should be parsed", 1, auditLogRecord.getReferrerHeaderMap().size());
+            assertEquals("the timestamp should not be decoded", S3TimestampDecoder.INVALID,
+                    auditLogRecord.getTimestampMillis());
+            assertNull("a log without referrer header should be skipped",
+                    projectingParser.parseAuditLogRecord(SAMPLE_LOG_ENTRY.replace(SAMPLE_REFERRER_HEADER, "-")));
+            assertNull("a projection should not change which lines are parsed",
+                    projectingParser.parseAuditLogRecord(cutAfterReferrer));
+        }
+        S3LogParser timestampParser = new S3LogParser(S3LogParser.ParsingMode.TOKENIZER, true, null,
+                FieldProjection.of("timestamp", "pr"));
+        AuditLogRecord auditLogRecord = timestampParser.parseAuditLogRecord(SAMPLE_LOG_ENTRY);
+        assertEquals("the expected and actual results should be same", 1620905166000L, auditLogRecord.getTimestampMillis());
+        assertEquals("the expected and actual results should be same", "alice", auditLogRecord.getReferrerHeaderMap().get("pr"));
+        try {
+            FieldProjection.parse("bucket,nosuchfield");
+            fail("an unknown field should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("the expected and actual results should be same", e.getMessage().contains("nosuchfield"));
+        }
+    }
+
     /**
      * parseReferrerHeaderTest() will test parseReferrerHeader() method
      * by passing empty string and null string
@@ -171,6 +295,110 @@ public class TestS3LogParser {
         assertEquals("the expected and actual results should be same", SAMPLE_REFERRER_HEADER, parseWholeAuditLogTestResult.get(0).get("referrer"));
     }
 
+    /**
+     * streamWholeAuditLogTest() will test streamWholeAuditLog() method
+     * by passing sample file which contains the sample audit log twice and a log without referrer header
+     * and checks if the audit logs are counted and written into avro and csv files, and json file only when asked
+     * @throws IOException
+     */
+    @Test
+    public void streamWholeAuditLogTest() throws IOException {
+        try (FileWriter fw = new FileWriter(sampleAuditLogFile)) {
+            fw.write(SAMPLE_LOG_ENTRY + "\n" + SAMPLE_LOG_ENTRY + "\n" + SAMPLE_LOG_ENTRY.replace(SAMPLE_REFERRER_HEADER, "-"));
+        }
+        File jsonFile = new File("Json.json");
+        jsonFile.delete();
+        long streamWholeAuditLogTestResult = s3LogParser.streamWholeAuditLog(sampleAuditLogFile.getPath());
+        assertEquals("the expected and actual results should be same", 2, streamWholeAuditLogTestResult);
+        assertTrue("the avro file should be written", new File("data.avro").length() > 0);
+        assertFalse("the json file should only be written when asked", jsonFile.exists());
+        List<String> csvLines = Files.readAllLines(Paths.get("CsvLogs.csv"));
+        assertEquals("the csv file should have a header and a row per audit log", 3, csvLines.size());
+        assertTrue("the csv header should start with the log groups", csvLines.get(0).startsWith("owner,bucket,timestamp,"));
+        assertTrue("the csv header should end with the referrer keys", csvLines.get(0).endsWith(",ji,cm,ta"));
+        assertTrue("the csv rows should contain the parsed values", csvLines.get(1).contains("bucket-london"));
+        assertTrue("the csv rows should contain the referrer values", csvLines.get(1).contains(",alice,"));
+
+        s3LogParser.streamWholeAuditLog(sampleAuditLogFile.getPath(), true);
+        assertTrue("the json file should be written when asked", jsonFile.length() > 0);
+        jsonFile.delete();
+    }
+
+    /**
+     * parseAuditLogRecordRejectTest() will test parseAuditLogRecord() method
+     * by passing broken variants of the sample audit log with the tokenizer and with the regular expression
+     * and checks if each of them is rejected once with the right reason and handed over to the sink
+     * @throws IOException
+     */
+    @Test
+    public void parseAuditLogRecordRejectTest() throws IOException {
+        String[] brokenAuditLogs = {
+                "",
+                SAMPLE_LOG_ENTRY.substring(0, SAMPLE_LOG_ENTRY.indexOf(" HTTP/1.1")),
+                SAMPLE_LOG_ENTRY.replace("[13/May/2021:11:26:06 +0000]", "13/May/2021:11:26:06"),
+                SAMPLE_LOG_ENTRY.replace(" 200 ", " OK "),
+                SAMPLE_LOG_ENTRY.replace(SAMPLE_REFERRER_HEADER, "-")
+        };
+        RejectReason[] expectedReasons = {
+                RejectReason.EMPTY, RejectReason.TRUNCATED, RejectReason.BAD_TIMESTAMP, RejectReason.BAD_FIELD,
+                RejectReason.NO_REFERRER
+        };
+        for (S3LogParser.ParsingMode parsingMode : new S3LogParser.ParsingMode[] {
+                S3LogParser.ParsingMode.TOKENIZER, S3LogParser.ParsingMode.REGEX}) {
+            S3LogParser parser = new S3LogParser(parsingMode);
+            List<String> rejectedLines = new ArrayList<>();
+            List<RejectReason> rejectReasons = new ArrayList<>();
+            AuditLogSink auditLogSink = new AuditLogSink() {
+                @Override
+                public void write(AuditLogRecord auditLogRecord) {
+                }
+
+                @Override
+                public void reject(String singleAuditLog, RejectReason rejectReason) {
+                    rejectedLines.add(singleAuditLog);
+                    rejectReasons.add(rejectReason);
+                }
+            };
+            for (String brokenAuditLog : brokenAuditLogs) {
+                assertNull("a broken audit log should be rejected", parser.parseAuditLogRecord(brokenAuditLog, auditLogSink));
+            }
+            assertNotNull("the result of parseAuditLogRecord should be not null",
+                    parser.parseAuditLogRecord(SAMPLE_LOG_ENTRY, auditLogSink));
+            assertEquals("every broken audit log should be handed over once", Arrays.asList(brokenAuditLogs), rejectedLines);
+            assertEquals("the reasons should match with " + parsingMode, Arrays.asList(expectedReasons), rejectReasons);
+            for (RejectReason rejectReason : expectedReasons) {
+                assertEquals("the expected and actual results should be same", 1, parser.getRejectCount(rejectReason));
+            }
+        }
+    }
+
+    /**
+     * deadLetterTest() will test parseWholeAuditLog() method with a dead-letter sink
+     * by passing a file with audit logs and junk lines
+     * and checks if only the junk lines are written into the dead-letter file with their reasons
+     * @throws IOException
+     */
+    @Test
+    public void deadLetterTest() throws IOException {
+        File deadLetterFile = new File("sampledeadletter.txt");
+        try (FileWriter fw = new FileWriter(sampleAuditLogFile)) {
+            fw.write(SAMPLE_LOG_ENTRY + "\nnot an audit log\n" + SAMPLE_LOG_ENTRY + "\n\n"
+                    + SAMPLE_LOG_ENTRY.substring(0, 100) + "\n");
+        }
+        try {
+            long count;
+            try (AuditLogSink auditLogSink = new DeadLetterAuditLogSink(deadLetterFile, false)) {
+                count = s3LogParser.parseWholeAuditLog(sampleAuditLogFile.getPath(), auditLogSink);
+            }
+            assertEquals("the expected and actual results should be same", 2, count);
+            assertEquals("the expected and actual results should be same", Arrays.asList(
+                    "BAD_TIMESTAMP\tnot an audit log", "EMPTY\t", "TRUNCATED\t" + SAMPLE_LOG_ENTRY.substring(0, 100)),
+                    Files.readAllLines(deadLetterFile.toPath()));
+        } finally {
+            deadLetterFile.delete();
+        }
+    }
+
     /**
      * parseWholeAuditLogEmptyFileTest() will test parseWholeAuditLog() method
      * by passing an empty file which doesn't contain any data
@@ -0,0 +1,86 @@
+package com.logs;
+
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestS3TimestampDecoder will implement different tests on S3TimestampDecoder class methods
+ */
+public class TestS3TimestampDecoder {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    private long parseWithFormatter(String timestamp) {
+        try {
+            return OffsetDateTime.parse(timestamp, TIMESTAMP_FORMATTER).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return S3TimestampDecoder.INVALID;
+        }
+    }
+
+    /**
+     * decodeTest() will test decode() method
+     * by passing valid and invalid timestamps, with and without square braces
+     * and checks if the result is the same as with DateTimeFormatter
+     */
+    @Test
+    public void decodeTest() {
+        S3TimestampDecoder timestampDecoder = new S3TimestampDecoder();
+        String[] timestamps = {
+                "13/May/2021:11:26:06 +0000",
+                "13/May/2021:11:26:07 +0000",
+                "13/May/2021:11:27:07 +0000",
+                "13/May/2021:11:27:07 +0530",
+                "13/May/2021:11:27:07 -0800",
+                "31/Dec/1999:23:59:59 +0000",
+                "01/Jan/1970:00:00:00 +0000",
+                "29/Feb/2024:12:00:00 +0000",
+                "31/Apr/2021:12:00:00 +0000",
+                "00/May/2021:11:26:06 +0000",
+                "32/May/2021:11:26:06 +0000",
+                "13/may/2021:11:26:06 +0000",
+                "13/Foo/2021:11:26:06 +0000",
+                "13/May/2021:24:26:06 +0000",
+                "13/May/2021:11:60:06 +0000",
+                "13/May/2021:11:26:60 +0000",
+                "13/May/2021:11:26:06 +1900",
+                "13/May/2021:11:26:06 0000",
+                "13/May/2021 11:26:06 +0000",
+                "13/May/2021:11:26:0a +0000",
+                "13/May/2021:11:26:06",
+                "-"
+        };
+        for (String timestamp : timestamps) {
+            assertEquals("the decoder and DateTimeFormatter should give the same result for " + timestamp,
+                    parseWithFormatter(timestamp), timestampDecoder.decode(timestamp));
+            assertEquals("square braces should be ignored for " + timestamp,
+                    parseWithFormatter(timestamp), timestampDecoder.decode("[" + timestamp + "]"));
+        }
+        assertEquals("the expected and actual results should be same", 1620905166000L,
+                timestampDecoder.decode("183c bucket-london [13/May/2021:11:26:06 +0000] 109.157.171.174", 19, 47));
+        assertEquals("null is not a timestamp", S3TimestampDecoder.INVALID, timestampDecoder.decode(null));
+    }
+
+    /**
+     * decodeCacheTest() will test decode() method
+     * by decoding every second of a day in order
+     * and checks if the cached minute never gives a wrong result
+     */
+    @Test
+    public void decodeCacheTest() {
+        S3TimestampDecoder timestampDecoder = new S3TimestampDecoder();
+        long expected = parseWithFormatter("13/May/2021:00:00:00 +0100");
+        for (int second = 0; second < 24 * 3600; second++) {
+            String timestamp = String.format("[13/May/2021:%02d:%02d:%02d +0100]", second / 3600, second / 60 % 60, second % 60);
+            assertEquals("the expected and actual results should be same for " + timestamp,
+                    expected + second * 1000L, timestampDecoder.decode(timestamp));
+        }
+    }
+}
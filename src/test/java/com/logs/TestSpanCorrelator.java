@@ -0,0 +1,173 @@
+package com.logs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestSpanCorrelator will implement different tests on SpanCorrelator class methods
+ */
+public class TestSpanCorrelator {
+
+    /**
+     * sample spans file to test
+     */
+    private final File spansFile = new File("samplespans.json");
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private AuditLogRecord sampleRecord(String id, String op, String p1, long ts, String http, String bytesSent) {
+        return sampleRecord(id, op, p1, ts, ts, http, bytesSent);
+    }
+
+    /**
+     * @param ts the 'ts' referrer key, negative for none
+     * @param timestamp the milliseconds of the timestamp, whose seconds are kept; negative for none
+     */
+    private AuditLogRecord sampleRecord(String id, String op, String p1, long ts, long timestamp, String http,
+                                        String bytesSent) {
+        Map<String, String> auditLogMap = new HashMap<>();
+        for (String group : S3LogParser.AWS_LOG_REGEXP_GROUPS) {
+            auditLogMap.put(group, "-");
+        }
+        if (timestamp >= 0) {
+            auditLogMap.put(S3LogParser.TIMESTAMP_GROUP, "[" + TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(timestamp)) + "]");
+        }
+        auditLogMap.put("http", http);
+        auditLogMap.put("bytessent", bytesSent);
+        Map<String, String> referrerHeaderMap = new HashMap<>();
+        if (id != null) {
+            referrerHeaderMap.put("id", id);
+            referrerHeaderMap.put("op", op);
+            referrerHeaderMap.put("p1", p1);
+            referrerHeaderMap.put("pr", "alice");
+            if (ts >= 0) {
+                referrerHeaderMap.put("ts", String.valueOf(ts));
+            }
+        }
+        return new AuditLogRecord(auditLogMap, referrerHeaderMap);
+    }
+
+    private Map<String, JsonNode> readSpans() throws IOException {
+        Map<String, JsonNode> spans = new HashMap<>();
+        for (JsonNode span : new ObjectMapper().readTree(spansFile)) {
+            assertNull("every span should be written once", spans.put(span.get("id").asText(), span));
+        }
+        return spans;
+    }
+
+    /**
+     * writeTest() will test write() and close() methods of SpanCorrelator
+     * by writing the interleaved requests of a few spans and a request without span id
+     * and checks if idle spans are closed and if every summary has the right counts, bytes, errors and wall time
+     * @throws IOException
+     */
+    @Test
+    public void writeTest() throws IOException {
+        try (SpanCorrelator spanCorrelator = new SpanCorrelator(spansFile, 60_000, 1000)) {
+            spanCorrelator.write(sampleRecord("span-rename", "op_rename", "dir/a", 1_000, "200", "-"));
+            spanCorrelator.write(sampleRecord("span-open", "op_open", "dir/b", 2_000, "200", "100"));
+            spanCorrelator.write(sampleRecord(null, null, null, 0, "200", "7"));
+            spanCorrelator.write(sampleRecord("span-rename", "op_rename", "dir/a", 30_000, "503", "-"));
+            spanCorrelator.write(sampleRecord("span-open", "op_open", "dir/b", 4_000, "200", "50"));
+            assertEquals("the expected and actual results should be same", 2, spanCorrelator.getOpenSpans());
+
+            // both spans got their last request when the newest time was 30s, so they are idle after 90s
+            spanCorrelator.write(sampleRecord("span-late", "op_delete", "dir/c", 90_000, "404", "-"));
+            assertEquals("the expected and actual results should be same", 3, spanCorrelator.getOpenSpans());
+            spanCorrelator.write(sampleRecord("span-late", "op_delete", "dir/c", 91_000, "200", "-"));
+            assertEquals("the idle spans should be closed", 2, spanCorrelator.getSpans());
+            assertEquals("the expected and actual results should be same", 1, spanCorrelator.getOpenSpans());
+            spanCorrelator.write(sampleRecord("span-late", "op_delete", "dir/c", 95_000, "200", "-"));
+        }
+
+        Map<String, JsonNode> spans = readSpans();
+        assertEquals("the expected and actual results should be same", 3, spans.size());
+        JsonNode open = spans.get("span-open");
+        assertEquals("the expected and actual results should be same", "op_open", open.get("op").asText());
+        assertEquals("the expected and actual results should be same", "dir/b", open.get("p1").asText());
+        assertEquals("the expected and actual results should be same", 2, open.get("requests").asLong());
+        assertEquals("the expected and actual results should be same", 150, open.get("bytessent").asLong());
+        assertEquals("the expected and actual results should be same", 0, open.get("errors").asLong());
+        assertEquals("the expected and actual results should be same", 2_000, open.get("wallTime").asLong());
+        JsonNode rename = spans.get("span-rename");
+        assertEquals("the expected and actual results should be same", "alice", rename.get("pr").asText());
+        assertEquals("the expected and actual results should be same", 1, rename.get("errors").asLong());
+        assertEquals("the expected and actual results should be same", 29_000, rename.get("wallTime").asLong());
+        JsonNode late = spans.get("span-late");
+        assertEquals("the expected and actual results should be same", 3, late.get("requests").asLong());
+        assertEquals("the expected and actual results should be same", 1, late.get("errors").asLong());
+        assertEquals("the expected and actual results should be same", 5_000, late.get("wallTime").asLong());
+    }
+
+    /**
+     * idleTimeoutTest() will test the idle timeout of SpanCorrelator
+     * by writing a span before any audit log with a timestamp and a span whose 'ts' is far ahead of the timestamps
+     * and checks if spans are only closed by the timestamps, also the span which got no timestamp
+     * @throws IOException
+     */
+    @Test
+    public void idleTimeoutTest() throws IOException {
+        try (SpanCorrelator spanCorrelator = new SpanCorrelator(spansFile, 60_000, 1000)) {
+            spanCorrelator.write(sampleRecord("span-untimed", "op_open", "a", -1, -1, "200", "1"));
+            spanCorrelator.write(sampleRecord("span-early", "op_open", "b", 1_000, "200", "1"));
+            spanCorrelator.write(sampleRecord("span-skewed", "op_open", "c", 1_000_000, 2_000, "200", "1"));
+            assertEquals("a 'ts' ahead of the timestamps should close no span", 0, spanCorrelator.getSpans());
+            spanCorrelator.write(sampleRecord("span-skewed", "op_open", "c", 1_001_000, 100_000, "200", "1"));
+            assertEquals("the span without a timestamp should be closed with the other idle span", 2,
+                    spanCorrelator.getSpans());
+            assertEquals("the expected and actual results should be same", 1, spanCorrelator.getOpenSpans());
+        }
+        Map<String, JsonNode> spans = readSpans();
+        assertNull("the span without a timestamp should have no wall time", spans.get("span-untimed").get("wallTime"));
+        assertEquals("the wall time should be measured with 'ts'", 1_000, spans.get("span-skewed").get("wallTime").asLong());
+    }
+
+    /**
+     * maxOpenSpansTest() will test the bound of open spans of SpanCorrelator
+     * by writing more spans at the same time than may be open
+     * and checks if the least recently updated spans are closed early and every span is written once
+     * @throws IOException
+     */
+    @Test
+    public void maxOpenSpansTest() throws IOException {
+        try (SpanCorrelator spanCorrelator = new SpanCorrelator(spansFile, 60_000, 2)) {
+            spanCorrelator.write(sampleRecord("span-0", "op_open", "a", 1_000, "200", "1"));
+            spanCorrelator.write(sampleRecord("span-1", "op_open", "b", 1_000, "200", "1"));
+            spanCorrelator.write(sampleRecord("span-0", "op_open", "a", 1_000, "200", "1"));
+            spanCorrelator.write(sampleRecord("span-2", "op_open", "c", 1_000, "200", "1"));
+            assertEquals("the expected and actual results should be same", 2, spanCorrelator.getOpenSpans());
+            assertEquals("the least recently updated span should be closed", 1, spanCorrelator.getSpans());
+            // 'span-0' is still open, or it would be written twice
+            spanCorrelator.write(sampleRecord("span-0", "op_open", "a", 1_000, "200", "1"));
+            for (int i = 3; i < 10; i++) {
+                spanCorrelator.write(sampleRecord("span-" + i, "op_open", "d", 1_000, "200", "1"));
+                assertTrue("no more spans than the limit should be open", spanCorrelator.getOpenSpans() <= 2);
+            }
+        }
+        Map<String, JsonNode> spans = readSpans();
+        assertEquals("the expected and actual results should be same", 10, spans.size());
+        assertEquals("the expected and actual results should be same", 3, spans.get("span-0").get("requests").asLong());
+    }
+
+    /**
+     * delete the sample spans file after each test
+     */
+    @After
+    public void tearDown() {
+        spansFile.delete();
+    }
+}
@@ -0,0 +1,64 @@
+package com.logs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TestStringDictionary will implement different tests on StringDictionary class methods
+ */
+public class TestStringDictionary {
+
+    /**
+     * internTest() will test intern() method
+     * by looking up the same value from different sequences
+     * and checks if the same instance is returned every time
+     */
+    @Test
+    public void internTest() {
+        StringDictionary stringDictionary = new StringDictionary();
+        String first = stringDictionary.intern("GET bucket-london HTTP", 4, 17);
+        assertEquals("the expected and actual results should be same", "bucket-london", first);
+        assertSame("the value should be shared", first, stringDictionary.intern(new StringBuilder("bucket-london"), 0, 13));
+        assertSame("the value should be shared", first, stringDictionary.intern(new String("bucket-london")));
+        assertEquals("the expected and actual results should be same", "", stringDictionary.intern("abc", 1, 1));
+        assertNull("null should stay null", stringDictionary.intern(null));
+    }
+
+    /**
+     * internBoundedTest() will test intern() method
+     * by looking up more distinct values than the dictionary keeps
+     * and checks if the values are still right and recent values are still shared
+     */
+    @Test
+    public void internBoundedTest() {
+        StringDictionary stringDictionary = new StringDictionary(8);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("the expected and actual results should be same", "value" + i,
+                    stringDictionary.intern(new String("value" + i)));
+        }
+        String last = stringDictionary.intern(new String("value99"));
+        assertSame("the last value should be shared", last, stringDictionary.intern(new String("value99")));
+        assertFalse("the dictionary should not be evicted yet", stringDictionary.isEvicted());
+    }
+
+    /**
+     * internEvictionTest() will test intern() method
+     * by looking up a field with few distinct values and a field where every value is distinct
+     * and checks if only the dictionary of the second field is evicted
+     */
+    @Test
+    public void internEvictionTest() {
+        StringDictionary lowCardinality = new StringDictionary();
+        StringDictionary highCardinality = new StringDictionary();
+        for (int i = 0; i < 3 * StringDictionary.SAMPLE_SIZE; i++) {
+            lowCardinality.intern("REST.GET.OBJECT" + (i % 5));
+            assertEquals("the expected and actual results should be same", "REQUEST" + i,
+                    highCardinality.intern("REQUEST" + i));
+        }
+        assertFalse("a field with few distinct values should keep its dictionary", lowCardinality.isEvicted());
+        assertTrue("a field with many distinct values should be evicted", highCardinality.isEvicted());
+        assertNotSame("an evicted field should not share values",
+                highCardinality.intern(new String("x")), highCardinality.intern(new String("x")));
+    }
+}